@@ -1,3 +1,5 @@
 (cd tkonf-app-micronaut && ./mvnw clean install -Pdocker-tests)
 (cd tkonf-app-quarkus && ./mvnw clean install -Pdocker-tests)
-(cd tkonf-app-spring && ./mvnw clean install -Pdocker-tests)
\ No newline at end of file
+(cd tkonf-app-spring && ./mvnw clean install -Pdocker-tests)
+(cd tkonf-client && ./mvnw clean install)
+(cd tkonf-bench && ./mvnw clean install)
@@ -0,0 +1,42 @@
+#!/bin/bash
+# Собирает образ с CRaC-чекпоинтом прогретого приложения.
+# Использование: ./build-crac.sh spring|quarkus|micronaut
+#
+# 1. Сборка приложения и базового образа из Dockerfile.crac
+# 2. Запуск контейнера с CRAC_CHECKPOINT=true: обучающая нагрузка по /api/crypto и jcmd JDK.checkpoint
+# 3. docker commit контейнера в образ <service>-crypto-service:<version>-crac
+#
+# Для восстановления контейнеру нужны capabilities CHECKPOINT_RESTORE и SYS_PTRACE
+# (см. закомментированный cap_add в docker-compose.yml).
+
+set -e
+
+SERVICE="${1:?usage: $0 spring|quarkus|micronaut}"
+MODULE="tkonf-app-$SERVICE"
+IMAGE="$SERVICE-crypto-service"
+CONTAINER="$IMAGE-crac-checkpoint"
+
+case "$SERVICE" in
+    spring)    VERSION=0.0.1-SNAPSHOT; BUILD_GOALS="clean package -DskipTests spring-boot:repackage" ;;
+    quarkus)   VERSION=0.0.1-SNAPSHOT; BUILD_GOALS="clean package -DskipTests" ;;
+    micronaut) VERSION=0.0.2-SNAPSHOT; BUILD_GOALS="clean package -DskipTests" ;;
+    *) echo "Unknown service: $SERVICE"; exit 1 ;;
+esac
+
+(cd "$MODULE" && ./mvnw $BUILD_GOALS)
+docker build -f "$MODULE/src/main/docker/Dockerfile.crac" -t "$IMAGE:crac-base" "$MODULE"
+
+docker rm -f "$CONTAINER" > /dev/null 2>&1 || true
+echo "$(date): Прогрев и чекпоинт $SERVICE..."
+docker run --name "$CONTAINER" \
+    --cap-add CHECKPOINT_RESTORE --cap-add SYS_PTRACE \
+    -e CRAC_CHECKPOINT=true \
+    "$IMAGE:crac-base"
+
+docker commit \
+    --change 'ENV CRAC_CHECKPOINT=false' \
+    --change 'ENTRYPOINT ["/entrypoint.sh"]' \
+    "$CONTAINER" "$IMAGE:$VERSION-crac"
+docker rm "$CONTAINER" > /dev/null
+
+echo "$(date): Готово: $IMAGE:$VERSION-crac (IMAGE_ENV=$IMAGE:$VERSION-crac)"
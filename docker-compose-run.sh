@@ -1,5 +1,8 @@
 #!/bin/bash
 
+# Ручной прогон со стендом Envoy и lt-test. Сравнительный прогон с фиксированными лимитами и одним
+# отчетом для всех трех приложений: cd tkonf-bench && ./mvnw -q compile exec:java (план plans/default.json)
+
 # Функция для обработки прерывания
 cleanup() {
     echo "Завершение работы..."
@@ -0,0 +1,36 @@
+#!/bin/bash
+# Создает ключ арендатора для keyring: keys/<keyId>.pem с PKCS#8 PRIVATE KEY и X.509 PUBLIC KEY,
+# либо секрет HMAC-SHA256 keys/<keyId>.hmac (32 случайных байта в Base64) для /api/crypto/hmac/*.
+# Использование: ./generate-tenant-key.sh <keyId> [rsa|ec|ed25519|hmac]
+#
+# Каталог монтируется в контейнер приложения (см. docker-compose.yml, TKONF_KEYRING_DIR),
+# ключ подхватывается при первом запросе с "keyId":"<keyId>" без перезапуска.
+
+set -e
+
+KEY_ID="${1:?usage: $0 <keyId> [rsa|ec|ed25519|hmac]}"
+TYPE="${2:-rsa}"
+DIR="${KEYRING_DIR:-keys}"
+FILE="$DIR/$KEY_ID.pem"
+
+if ! [[ "$KEY_ID" =~ ^[A-Za-z0-9_-][A-Za-z0-9._-]{0,63}$ ]]; then
+    echo "Invalid keyId: $KEY_ID"; exit 1
+fi
+
+mkdir -p "$DIR"
+if [ "$TYPE" = "hmac" ]; then
+    FILE="$DIR/$KEY_ID.hmac"
+    (umask 077 && openssl rand -base64 32 > "$FILE")
+    echo "$(date): Создан $FILE ($TYPE)"
+    exit 0
+fi
+case "$TYPE" in
+    rsa)     openssl genpkey -algorithm RSA -pkeyopt rsa_keygen_bits:2048 -out "$FILE" ;;
+    ec)      openssl genpkey -algorithm EC -pkeyopt ec_paramgen_curve:P-256 -out "$FILE" ;;
+    ed25519) openssl genpkey -algorithm ED25519 -out "$FILE" ;;
+    *) echo "Unknown key type: $TYPE"; exit 1 ;;
+esac
+openssl pkey -in "$FILE" -pubout >> "$FILE"
+chmod 600 "$FILE"
+
+echo "$(date): Создан $FILE ($TYPE)"
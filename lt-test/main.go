@@ -10,6 +10,7 @@ import (
 	"path/filepath"
 	"sort"
 	"strconv"
+	"strings"
 	"sync"
 	"sync/atomic"
 	"time"
@@ -36,6 +37,7 @@ type LoadTestStats struct {
 	MinResponseTime  time.Duration
 	MaxResponseTime  time.Duration
 	ResponseTimes    []time.Duration
+	ServerPhases     map[string][]time.Duration
 	Mutex            sync.Mutex
 	ProgressFile     *os.File
 	SummaryFile      *os.File
@@ -64,6 +66,7 @@ func NewLoadTestStats(progressFilename, summaryFilename string) *LoadTestStats {
 		MinResponseTime: time.Hour,
 		MaxResponseTime: 0,
 		ResponseTimes:   make([]time.Duration, 0),
+		ServerPhases:    make(map[string][]time.Duration),
 		ProgressFile:    progressFile,
 		SummaryFile:     summaryFile,
 	}
@@ -87,7 +90,29 @@ func (s *LoadTestStats) WriteProgressLine(line string) {
 	}
 }
 
-func (s *LoadTestStats) AddSuccess(duration time.Duration) {
+// parseServerTiming разбирает заголовок вида "crypto;dur=1.234, ser;dur=0.050" в длительности по фазам
+func parseServerTiming(header string) map[string]time.Duration {
+	phases := make(map[string]time.Duration)
+	if header == "" {
+		return phases
+	}
+	for _, metric := range strings.Split(header, ",") {
+		parts := strings.Split(strings.TrimSpace(metric), ";")
+		name := strings.TrimSpace(parts[0])
+		for _, param := range parts[1:] {
+			param = strings.TrimSpace(param)
+			if !strings.HasPrefix(param, "dur=") {
+				continue
+			}
+			if ms, err := strconv.ParseFloat(strings.TrimPrefix(param, "dur="), 64); err == nil {
+				phases[name] = time.Duration(ms * float64(time.Millisecond))
+			}
+		}
+	}
+	return phases
+}
+
+func (s *LoadTestStats) AddSuccess(duration time.Duration, phases map[string]time.Duration) {
 	atomic.AddInt64(&s.TotalRequests, 1)
 	atomic.AddInt64(&s.SuccessRequests, 1)
 
@@ -102,6 +127,9 @@ func (s *LoadTestStats) AddSuccess(duration time.Duration) {
 		s.MaxResponseTime = duration
 	}
 	s.ResponseTimes = append(s.ResponseTimes, duration)
+	for name, phase := range phases {
+		s.ServerPhases[name] = append(s.ServerPhases[name], phase)
+	}
 }
 
 func (s *LoadTestStats) AddFailure() {
@@ -109,6 +137,43 @@ func (s *LoadTestStats) AddFailure() {
 	atomic.AddInt64(&s.FailedRequests, 1)
 }
 
+// PhaseSummary — распределение одной фазы из Server-Timing
+type PhaseSummary struct {
+	Samples      int    `json:"samples"`
+	Average      string `json:"average"`
+	Percentile50 string `json:"p50"`
+	Percentile95 string `json:"p95"`
+	Percentile99 string `json:"p99"`
+}
+
+func (s *LoadTestStats) CalculatePhaseSummaries() map[string]PhaseSummary {
+	s.Mutex.Lock()
+	defer s.Mutex.Unlock()
+
+	summaries := make(map[string]PhaseSummary)
+	for name, values := range s.ServerPhases {
+		if len(values) == 0 {
+			continue
+		}
+		times := make([]time.Duration, len(values))
+		copy(times, values)
+		sort.Slice(times, func(i, j int) bool { return times[i] < times[j] })
+
+		var total time.Duration
+		for _, v := range times {
+			total += v
+		}
+		summaries[name] = PhaseSummary{
+			Samples:      len(times),
+			Average:      (total / time.Duration(len(times))).String(),
+			Percentile50: times[int(float64(len(times))*0.50)].String(),
+			Percentile95: times[int(float64(len(times))*0.95)].String(),
+			Percentile99: times[int(float64(len(times))*0.99)].String(),
+		}
+	}
+	return summaries
+}
+
 func (s *LoadTestStats) CalculatePercentiles() (p50, p95, p99 time.Duration) {
 	s.Mutex.Lock()
 	defer s.Mutex.Unlock()
@@ -143,15 +208,17 @@ type TestSummary struct {
 	TestDuration     string  `json:"test_duration"`
 	RequestsPerSecond int    `json:"requests_per_second"`
 	Timestamp        string  `json:"timestamp"`
+	ServerTiming     map[string]PhaseSummary `json:"server_timing,omitempty"`
 	TestConfig       struct {
 		TargetURL   string `json:"target_url"`
 		HealthURL   string `json:"health_url"`
 		Service     string `json:"service"`
 		TestNumber  string `json:"test_number"`
+		Protocol    string `json:"protocol"`
 	} `json:"test_config"`
 }
 
-func (s *LoadTestStats) SaveSummaryToJSON(filename string, testDuration time.Duration, rps int, targetURL, healthURL, service, testNumber string) error {
+func (s *LoadTestStats) SaveSummaryToJSON(filename string, testDuration time.Duration, rps int, targetURL, healthURL, service, testNumber, protocol string) error {
 	total := atomic.LoadInt64(&s.TotalRequests)
 	success := atomic.LoadInt64(&s.SuccessRequests)
 	failed := atomic.LoadInt64(&s.FailedRequests)
@@ -170,6 +237,7 @@ func (s *LoadTestStats) SaveSummaryToJSON(filename string, testDuration time.Dur
 	summary.TestConfig.HealthURL = healthURL
 	summary.TestConfig.Service = service
 	summary.TestConfig.TestNumber = testNumber
+	summary.TestConfig.Protocol = protocol
 
 	if success > 0 {
 		s.Mutex.Lock()
@@ -185,6 +253,7 @@ func (s *LoadTestStats) SaveSummaryToJSON(filename string, testDuration time.Dur
 		summary.Percentile50 = p50.String()
 		summary.Percentile95 = p95.String()
 		summary.Percentile99 = p99.String()
+		summary.ServerTiming = s.CalculatePhaseSummaries()
 	}
 
 	// Создаем директорию если её нет
@@ -229,6 +298,18 @@ func (s *LoadTestStats) PrintSummary() {
 		summaryText += fmt.Sprintf("95th percentile: %v\n", p95)
 		summaryText += fmt.Sprintf("99th percentile: %v\n", p99)
 		summaryText += fmt.Sprintf("Success rate: %.2f%%\n", float64(success)/float64(total)*100)
+
+		phases := s.CalculatePhaseSummaries()
+		names := make([]string, 0, len(phases))
+		for name := range phases {
+			names = append(names, name)
+		}
+		sort.Strings(names)
+		for _, name := range names {
+			phase := phases[name]
+			summaryText += fmt.Sprintf("Server-Timing %s: avg %s | P50 %s | P95 %s | P99 %s\n",
+				name, phase.Average, phase.Percentile50, phase.Percentile95, phase.Percentile99)
+		}
 	}
 
 	// Выводим в консоль
@@ -259,38 +340,51 @@ func (s *LoadTestStats) PrintProgress() {
 	s.WriteProgressLine(progressLine)
 }
 
-func sendEncryptRequest(client *http.Client, url string, message string) error {
+func sendEncryptRequest(client *http.Client, url string, message string) (map[string]time.Duration, error) {
 	requestBody := SignatureRequest{
 		Message: message,
 	}
 
 	jsonData, err := json.Marshal(requestBody)
 	if err != nil {
-		return fmt.Errorf("failed to marshal JSON: %v", err)
+		return nil, fmt.Errorf("failed to marshal JSON: %v", err)
 	}
 
 	resp, err := client.Post(url, "application/json", bytes.NewBuffer(jsonData))
 	if err != nil {
-		return fmt.Errorf("request failed: %v", err)
+		return nil, fmt.Errorf("request failed: %v", err)
 	}
 	defer resp.Body.Close()
 
 	if resp.StatusCode != http.StatusOK {
 		var errorResp ErrorResponse
 		if err := json.NewDecoder(resp.Body).Decode(&errorResp); err != nil {
-			return fmt.Errorf("HTTP %d: failed to parse error response", resp.StatusCode)
+			return nil, fmt.Errorf("HTTP %d: failed to parse error response", resp.StatusCode)
 		}
-		return fmt.Errorf("HTTP %d: %s", resp.StatusCode, errorResp.Error)
+		return nil, fmt.Errorf("HTTP %d: %s", resp.StatusCode, errorResp.Error)
 	}
 
 	var cryptoResp CryptoResponse
 	if err := json.NewDecoder(resp.Body).Decode(&cryptoResp); err != nil {
-		return fmt.Errorf("failed to parse response: %v", err)
+		return nil, fmt.Errorf("failed to parse response: %v", err)
 	}
 
 	// Убрали логирование каждого успешного запроса
 	_ = cryptoResp.Encrypted // используем переменную, чтобы избежать warning
-	return nil
+	return parseServerTiming(resp.Header.Get("Server-Timing")), nil
+}
+
+// newHTTPClient создает клиента для HTTP/1.1 или h2c (HTTP/2 без TLS с prior knowledge).
+// В режиме h2c все запросы мультиплексируются в одно соединение, пока сервер не исчерпает
+// SETTINGS_MAX_CONCURRENT_STREAMS; после этого транспорт открывает следующее.
+func newHTTPClient(protocol string, timeout time.Duration) *http.Client {
+	transport := http.DefaultTransport.(*http.Transport).Clone()
+	if protocol == "h2c" {
+		var protocols http.Protocols
+		protocols.SetUnencryptedHTTP2(true)
+		transport.Protocols = &protocols
+	}
+	return &http.Client{Timeout: timeout, Transport: transport}
 }
 
 func waitForService(client *http.Client, healthURL string, timeout time.Duration, stats *LoadTestStats) error {
@@ -299,7 +393,7 @@ func waitForService(client *http.Client, healthURL string, timeout time.Duration
 	stats.WriteProgressLine(startMessage)
 
 	start := time.Now()
-	client = &http.Client{Timeout: 1 * time.Second}
+	client = &http.Client{Timeout: 1 * time.Second, Transport: client.Transport}
 
 	for {
 		elapsed := int(time.Since(start).Seconds())
@@ -350,13 +444,13 @@ func runWorker(id int, client *http.Client, url string, stats *LoadTestStats,
 			start := time.Now()
 			message := fmt.Sprintf("Test message %d %d", id, time.Now().UnixNano())
 
-			err := sendEncryptRequest(client, url, message)
+			phases, err := sendEncryptRequest(client, url, message)
 			if err != nil {
 				// Убрали логирование каждой ошибки
 				stats.AddFailure()
 			} else {
 				duration := time.Since(start)
-				stats.AddSuccess(duration)
+				stats.AddSuccess(duration, phases)
 			}
 
 		case <-done:
@@ -382,7 +476,7 @@ func runProgressReporter(stats *LoadTestStats, done <-chan bool, wg *sync.WaitGr
 	}
 }
 
-func runLoadTest(url string, healthURL string, requestsPerSecond int, duration time.Duration, progressFile, summaryFile string) *LoadTestStats {
+func runLoadTest(url string, healthURL string, protocol string, requestsPerSecond int, duration time.Duration, progressFile, summaryFile string) *LoadTestStats {
 	stats := NewLoadTestStats(progressFile, summaryFile)
 	defer stats.CloseFiles()
 
@@ -390,12 +484,11 @@ func runLoadTest(url string, healthURL string, requestsPerSecond int, duration t
 	stats.WriteProgressLine("=== Load Test Started ===")
 	stats.WriteProgressLine(fmt.Sprintf("Target: %s", url))
 	stats.WriteProgressLine(fmt.Sprintf("Rate: %d requests per second", requestsPerSecond))
+	stats.WriteProgressLine(fmt.Sprintf("Protocol: %s", protocol))
 	stats.WriteProgressLine(fmt.Sprintf("Duration: %v", duration))
 
 	// Создаем HTTP клиент с таймаутами
-	client := &http.Client{
-		Timeout: 5 * time.Second,
-	}
+	client := newHTTPClient(protocol, 5*time.Second)
 
 	fmt.Printf("Starting load test:\n")
 	fmt.Printf("  Target: %s\n", url)
@@ -481,6 +574,7 @@ func main() {
 	url := getEnv("TARGET_URL", "http://envoy:8090/api/crypto/encrypt")
 	healthURL := getEnv("HEALTH_URL", "http://envoy:8090/api/crypto/health")
 	requestsPerSecond := getEnvInt("REQUESTS_PER_SECOND", 20)
+	protocol := getEnv("HTTP_PROTOCOL", "h2c")
 	duration := getEnvDuration("TEST_DURATION", 10*time.Minute)
 
 	// Получаем параметры для пути
@@ -498,6 +592,7 @@ func main() {
 	fmt.Printf("  URL: %s\n", url)
 	fmt.Printf("  Health URL: %s\n", healthURL)
 	fmt.Printf("  RPS: %d\n", requestsPerSecond)
+	fmt.Printf("  Protocol: %s\n", protocol)
 	fmt.Printf("  Duration: %v\n", duration)
 	fmt.Printf("  Test Number: %s\n", testNumber)
 	fmt.Printf("  Service: %s\n", service)
@@ -507,13 +602,13 @@ func main() {
 	fmt.Printf("  JSON file: %s\n", jsonFile)
 
 	// Запускаем нагрузочный тест
-	stats := runLoadTest(url, healthURL, requestsPerSecond, duration, progressFile, summaryFile)
+	stats := runLoadTest(url, healthURL, protocol, requestsPerSecond, duration, progressFile, summaryFile)
 
 	// Выводим финальные результаты в консоль
 	stats.PrintSummary()
 
 	// Сохраняем итоговую статистику в JSON файл
-	err := stats.SaveSummaryToJSON(summaryFile, duration, requestsPerSecond, url, healthURL, service, testNumber)
+	err := stats.SaveSummaryToJSON(summaryFile, duration, requestsPerSecond, url, healthURL, service, testNumber, protocol)
 	if err != nil {
 		log.Printf("❌ Failed to save summary to JSON: %v", err)
 	} else {
@@ -521,7 +616,7 @@ func main() {
 	}
 
 	// Сохраняем результаты в дополнительный JSON файл (дублирование для совместимости)
-	err = stats.SaveSummaryToJSON(jsonFile, duration, requestsPerSecond, url, healthURL, service, testNumber)
+	err = stats.SaveSummaryToJSON(jsonFile, duration, requestsPerSecond, url, healthURL, service, testNumber, protocol)
 	if err != nil {
 		log.Printf("❌ Failed to save results to JSON: %v", err)
 	} else {
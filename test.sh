@@ -19,4 +19,95 @@ curl  -v -X POST http://localhost:8090/api/crypto/sign \
 echo '{"message":"From file","algorithm":"RSA"}' > request.json
 curl  -v -X POST http://localhost:8090/api/crypto/sign \
   -H "Content-Type: application/json" \
-  -d @request.json
\ No newline at end of file
+  -d @request.json
+
+# 6. Профиль CPU за 10 секунд в collapsed-формате (event=alloc — аллокации)
+curl  -s "http://localhost:8090/diagnostics/profile?seconds=10&event=cpu" > profile.collapsed
+
+
+# 7. Готовность после прогрева JIT (503, пока идет прогрев; напрямую в приложение, Envoy сам опрашивает этот путь)
+curl  -v -X GET http://localhost:8080/api/crypto/ready
+
+# 8. HTTP/2 без TLS (h2c, prior knowledge) через Envoy и напрямую; в ответе должно быть HTTP/2
+curl  -v --http2-prior-knowledge -X GET http://localhost:8090/api/crypto/health
+curl  -v --http2-prior-knowledge -X GET http://localhost:8080/api/crypto/health
+
+# 9. Проверка подписи ключом внешнего подписанта: publicKey в Base64 DER или jwk ({"kty":"RSA","n":...,"e":...})
+curl  -v -X POST http://localhost:8090/api/crypto/verify/external \
+  -H "Content-Type: application/json" \
+  -d '{"message":"Hello World","signature":"<Base64>","publicKey":"<Base64 DER>"}'
+
+# 10. Подпись ключом арендатора из keyring (./generate-tenant-key.sh acme) и статистика кэша ключей
+curl  -v -X POST http://localhost:8090/api/crypto/sign \
+  -H "Content-Type: application/json" \
+  -d '{"message":"Hello World","keyId":"acme"}'
+curl  -s http://localhost:8090/diagnostics/keyring
+
+# 11. Подпись по дайджесту: клиент сам считает SHA-256, подпись совпадает с подписью над сообщением
+DIGEST=$(printf 'Hello World' | openssl dgst -sha256 -binary | base64)
+curl  -v -X POST http://localhost:8090/api/crypto/sign \
+  -H "Content-Type: application/json" \
+  -d "{\"digest\":\"$DIGEST\"}"
+
+# 12. Потоковая подпись документа любого размера и подпись файла из каталога files/ на сервере
+curl  -v -X POST http://localhost:8090/api/crypto/sign/stream \
+  -H "Content-Type: application/octet-stream" \
+  --data-binary @request.json
+curl  -v -X POST http://localhost:8090/api/crypto/verify/stream \
+  -H "Content-Type: application/octet-stream" \
+  -H "X-Signature: <Base64>" \
+  --data-binary @request.json
+curl  -v -X POST http://localhost:8090/api/crypto/sign/file \
+  -H "Content-Type: application/json" \
+  -d '{"path":"report.pdf"}'
+
+# 13. Выпуск JWS (RS256/PS256 ключом сервиса, ES256/EdDSA ключом арендатора) и пакетный выпуск
+curl  -v -X POST http://localhost:8090/api/crypto/jws \
+  -H "Content-Type: application/json" \
+  -d '{"alg":"RS256","claims":{"sub":"user-1","exp":1900000000}}'
+curl  -v -X POST http://localhost:8090/api/crypto/jws/batch \
+  -H "Content-Type: application/json" \
+  -d '{"keyId":"acme","batch":[{"sub":"user-1"},{"sub":"user-2"}]}'
+
+# 14. Журнал аудита подписей: записано, очередь, ожидания подписантов и стоимость fsync
+curl  -s http://localhost:8090/diagnostics/audit
+
+# 15. Поиск выданных подписей по SHA-256 дайджесту (hex или Base64url) через индекс журнала аудита
+curl  -s http://localhost:8090/api/crypto/signatures/$(printf 'Hello, World!' | sha256sum | cut -c1-64)
+
+# 16. HMAC-SHA256 для внутренних вызовов (./generate-tenant-key.sh internal hmac)
+curl  -v -X POST http://localhost:8090/api/crypto/hmac/sign \
+  -H "Content-Type: application/json" \
+  -d '{"keyId":"internal","message":"Hello, World!"}'
+
+# 17. Сессия AES-GCM: RSA один раз при открытии, дальше /encrypt и /decrypt с sessionId симметричные
+SESSION_ID=$(curl -s -X POST http://localhost:8090/api/crypto/session \
+  -H "Content-Type: application/json" -d '{}' | sed -n 's/.*"sessionId":"\([^"]*\)".*/\1/p')
+ENCRYPTED=$(curl -s -X POST http://localhost:8090/api/crypto/encrypt \
+  -H "Content-Type: application/json" \
+  -d "{\"sessionId\":\"$SESSION_ID\",\"message\":\"Hello, World!\"}" | sed -n 's/.*"result":"\([^"]*\)".*/\1/p')
+curl  -v -X POST http://localhost:8090/api/crypto/decrypt \
+  -H "Content-Type: application/json" \
+  -d "{\"sessionId\":\"$SESSION_ID\",\"message\":\"$ENCRYPTED\"}"
+
+# 18. Новая пара ключей RSA из пула простых чисел и состояние пула
+curl  -v -X POST http://localhost:8090/api/crypto/keys
+curl  -s http://localhost:8090/diagnostics/keygen
+
+# 19. Пул предвычисленных пар ECDSA P-256 для ключей арендаторов (tkonf.ecdsa.presign.enabled=true)
+curl  -s http://localhost:8090/diagnostics/presign
+
+# 20. Пакетная проверка подписей: битовая карта результатов (mode: bitmap, count или fail-fast)
+SIGNATURE=$(curl -s -X POST http://localhost:8090/api/crypto/sign \
+  -H "Content-Type: application/json" \
+  -d '{"message":"Hello, World!"}' | sed -n 's/.*"signature":"\([^"]*\)".*/\1/p')
+curl  -v -X POST http://localhost:8090/api/crypto/verify/bulk \
+  -H "Content-Type: application/json" \
+  -d "{\"mode\":\"bitmap\",\"items\":[{\"message\":\"Hello, World!\",\"signature\":\"$SIGNATURE\"},{\"message\":\"tampered\",\"signature\":\"$SIGNATURE\"}]}"
+
+# 21. Пакетная подпись одним ключом (так ее использует tkonf-client) и условный запрос публичного ключа по ETag
+curl  -v -X POST http://localhost:8090/api/crypto/sign/batch \
+  -H "Content-Type: application/json" \
+  -d '{"batch":["first","second","third"]}'
+ETAG=$(curl -s -D - -o /dev/null http://localhost:8090/api/crypto/public-key | sed -n 's/^[Ee][Tt]ag: *\([^\r]*\).*/\1/p')
+curl  -v http://localhost:8090/api/crypto/public-key -H "If-None-Match: $ETAG"
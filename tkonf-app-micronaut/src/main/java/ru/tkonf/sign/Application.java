@@ -1,10 +1,46 @@
 package ru.tkonf.sign;
 
+import io.micronaut.context.env.PropertySource;
+import io.micronaut.core.annotation.TypeHint;
 import io.micronaut.runtime.Micronaut;
+import ru.tkonf.sign.service.ResourceTuning;
 
+import java.util.LinkedHashMap;
+
+/// Модели сериализуются через @Serdeable без рефлексии; для native-image регистрируются только
+/// SPI-классы JCA-провайдеров (SUN, SunRsaSign, SunJCE, SunEC), которые создаются через рефлексию
+@TypeHint(
+        typeNames = {
+                "sun.security.provider.SHA2$SHA256",
+                "sun.security.provider.NativePRNG",
+                "sun.security.provider.DRBG",
+                "sun.security.rsa.RSAKeyFactory$Legacy",
+                "sun.security.rsa.RSAKeyPairGenerator$Legacy",
+                "sun.security.rsa.RSASignature$SHA256withRSA",
+                "sun.security.rsa.RSAPSSSignature",
+                "com.sun.crypto.provider.RSACipher",
+                "sun.security.ec.ECKeyFactory",
+                "sun.security.ec.ECKeyPairGenerator",
+                "sun.security.ec.ECDSASignature$SHA256",
+                "sun.security.ec.ECDSASignature$SHA384",
+                "sun.security.ec.ECDSASignature$SHA512",
+                "sun.security.ec.ECDSASignature$SHA256inP1363Format",
+                "sun.security.ec.ECDSASignature$Raw",
+                "sun.security.ec.ed.EdDSAKeyFactory$Ed25519",
+                "sun.security.ec.ed.EdDSAKeyPairGenerator$Ed25519",
+                "sun.security.ec.ed.EdDSASignature$Ed25519"
+        },
+        accessType = TypeHint.AccessType.ALL_DECLARED_CONSTRUCTORS
+)
 public class Application {
+    // Ниже application.properties (-300): явные настройки перекрывают выведенные из cgroup значения
+    private static final int RESOURCE_TUNING_ORDER = -400;
 
     public static void main(String[] args) {
-        Micronaut.run(Application.class, args);
+        Micronaut.build(args)
+                .mainClass(Application.class)
+                .propertySources(PropertySource.of("resource-tuning",
+                        new LinkedHashMap<>(ResourceTuning.current().properties()), RESOURCE_TUNING_ORDER))
+                .start();
     }
-}
\ No newline at end of file
+}
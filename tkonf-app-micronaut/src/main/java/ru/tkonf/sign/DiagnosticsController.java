@@ -0,0 +1,114 @@
+package ru.tkonf.sign;
+
+import io.micronaut.http.HttpResponse;
+import io.micronaut.http.HttpStatus;
+import io.micronaut.http.MediaType;
+import io.micronaut.http.annotation.*;
+import io.micronaut.scheduling.TaskExecutors;
+import io.micronaut.scheduling.annotation.ExecuteOn;
+import jakarta.inject.Inject;
+import ru.tkonf.sign.model.AuditStats;
+import ru.tkonf.sign.model.ContainerTuning;
+import ru.tkonf.sign.model.KeyGenerationStats;
+import ru.tkonf.sign.model.KeyringStats;
+import ru.tkonf.sign.model.PresignStats;
+import ru.tkonf.sign.model.RequestLogStats;
+import ru.tkonf.sign.service.AuditLog;
+import ru.tkonf.sign.service.EcdsaPresigner;
+import ru.tkonf.sign.service.KeyGenerationService;
+import ru.tkonf.sign.service.KeyringService;
+import ru.tkonf.sign.service.ProfilingService;
+import ru.tkonf.sign.service.RequestLogger;
+import ru.tkonf.sign.service.ResourceTuning;
+
+@Controller("/diagnostics")
+@Produces(MediaType.TEXT_PLAIN)
+public class DiagnosticsController {
+
+    @Inject
+    ProfilingService profilingService;
+
+    @Inject
+    RequestLogger requestLogger;
+
+    @Inject
+    KeyringService keyringService;
+
+    @Inject
+    AuditLog auditLog;
+
+    @Inject
+    KeyGenerationService keyGenerationService;
+
+    @Inject
+    EcdsaPresigner ecdsaPresigner;
+
+    /**
+     * Снимает профиль за {@code seconds} секунд и отдает стеки в collapsed-формате.
+     * Запись блокирует поток на время профилирования, поэтому не на event loop.
+     */
+    @Get("/profile")
+    @ExecuteOn(TaskExecutors.BLOCKING)
+    public HttpResponse<String> profile(@QueryValue(defaultValue = "10") int seconds,
+                                        @QueryValue(defaultValue = "cpu") String event) {
+        try {
+            return HttpResponse.ok(profilingService.profile(seconds, ProfilingService.ProfileEvent.parse(event)));
+        } catch (IllegalArgumentException e) {
+            return HttpResponse.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        } catch (IllegalStateException e) {
+            return HttpResponse.status(HttpStatus.CONFLICT).body(e.getMessage());
+        } catch (Exception e) {
+            return HttpResponse.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Error profiling application: " + e.getMessage());
+        }
+    }
+
+    @Get("/request-log")
+    @Produces(MediaType.APPLICATION_JSON)
+    public HttpResponse<RequestLogStats> requestLog() {
+        return HttpResponse.ok(new RequestLogStats(requestLogger.getWritten(), requestLogger.getDropped(),
+                requestLogger.getRateLimited(), requestLogger.getPending()));
+    }
+
+    @Get("/keyring")
+    @Produces(MediaType.APPLICATION_JSON)
+    public HttpResponse<KeyringStats> keyring() {
+        return HttpResponse.ok(keyringService.getStats());
+    }
+
+    /**
+     * Счетчики журнала аудита подписей: записано, в очереди, ожидания и время fsync
+     */
+    @Get("/audit")
+    @Produces(MediaType.APPLICATION_JSON)
+    public HttpResponse<AuditStats> audit() {
+        return HttpResponse.ok(auditLog.getStats());
+    }
+
+    /**
+     * Пул простых чисел для /api/crypto/keys: глубина, скорость пополнения и промахи
+     */
+    @Get("/keygen")
+    @Produces(MediaType.APPLICATION_JSON)
+    public HttpResponse<KeyGenerationStats> keygen() {
+        return HttpResponse.ok(keyGenerationService.getStats());
+    }
+
+    /**
+     * Пул предвычисленных пар ECDSA P-256: глубина, стоимость пополнения, попадания и промахи
+     */
+    @Get("/presign")
+    @Produces(MediaType.APPLICATION_JSON)
+    public HttpResponse<PresignStats> presign() {
+        return HttpResponse.ok(ecdsaPresigner.getStats());
+    }
+
+    /**
+     * Лимиты контейнера, выбранные размеры пулов и счетчики троттлинга CPU
+     */
+    @Get("/resources")
+    @Produces(MediaType.APPLICATION_JSON)
+    public HttpResponse<ContainerTuning> resources() {
+        return HttpResponse.ok(ResourceTuning.current().report());
+    }
+}
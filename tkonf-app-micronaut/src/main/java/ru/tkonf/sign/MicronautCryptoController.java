@@ -1,89 +1,476 @@
 package ru.tkonf.sign;
 
 
+import io.micronaut.core.annotation.Nullable;
+import io.micronaut.http.HttpHeaders;
 import io.micronaut.http.HttpResponse;
 import io.micronaut.http.HttpStatus;
 import io.micronaut.http.MediaType;
 import io.micronaut.http.annotation.*;
+import io.micronaut.scheduling.TaskExecutors;
+import io.micronaut.scheduling.annotation.ExecuteOn;
 import jakarta.inject.Inject;
 import ru.tkonf.sign.model.*;
+import ru.tkonf.sign.service.AuditLog;
+import ru.tkonf.sign.service.BulkVerificationService;
+import ru.tkonf.sign.service.CryptoError;
+import ru.tkonf.sign.service.CryptoException;
+import ru.tkonf.sign.service.ExternalKeyVerifier;
+import ru.tkonf.sign.service.FileSigningService;
+import ru.tkonf.sign.service.HmacService;
+import ru.tkonf.sign.service.JwsService;
+import ru.tkonf.sign.service.KeyGenerationService;
+import ru.tkonf.sign.service.KeyringService;
+import ru.tkonf.sign.service.RequestLogger;
+import ru.tkonf.sign.service.SessionService;
 import ru.tkonf.sign.service.SignatureService;
+import ru.tkonf.sign.service.WarmupService;
+
+import java.io.InputStream;
 
 @Controller("/api/crypto")
 @Produces(MediaType.APPLICATION_JSON)
 @Consumes(MediaType.APPLICATION_JSON)
 public class MicronautCryptoController {
+    // Подпись для /verify/stream: тело запроса занято документом
+    private static final String SIGNATURE_HEADER = "X-Signature";
 
     @Inject
     SignatureService signatureService;
 
+    @Inject
+    RequestLogger requestLogger;
+
+    @Inject
+    WarmupService warmupService;
+
+    @Inject
+    ExternalKeyVerifier externalKeyVerifier;
+
+    @Inject
+    KeyringService keyringService;
+
+    @Inject
+    FileSigningService fileSigningService;
+
+    @Inject
+    JwsService jwsService;
+
+    @Inject
+    AuditLog auditLog;
+
+    @Inject
+    HmacService hmacService;
+
+    @Inject
+    SessionService sessionService;
+
+    @Inject
+    KeyGenerationService keyGenerationService;
+
+    @Inject
+    BulkVerificationService bulkVerificationService;
+
+    /**
+     * Подпись сообщения или дайджеста. Запись в журнал аудита может ждать писателя до
+     * {@code tkonf.audit.max-stall-millis}, поэтому не на event loop.
+     */
     @Post("/sign")
+    @ExecuteOn(TaskExecutors.BLOCKING)
     public HttpResponse<?> signMessage(@Body SignatureRequest request) {
+        long start = System.nanoTime();
         try {
-            System.out.println("Received sign request: " + request.getMessage());
 
-            String signature = signatureService.signMessage(request.getMessage());
-            SignedMessage signedMessage = new SignedMessage(
-                    request.getMessage(),
-                    signature,
-                    signatureService.getAlgorithm(),
-                    signatureService.getPublicKeyBase64()
-            );
+            SignedMessage signedMessage;
+            if (request.getKeyId() != null) {
+                signedMessage = request.getDigest() != null
+                        ? keyringService.signDigest(request.getKeyId(), request.getDigest())
+                        : keyringService.sign(request.getKeyId(), request.getMessage());
+            } else {
+                String signature = request.getDigest() != null
+                        ? signatureService.signDigest(request.getDigest())
+                        : signatureService.signMessage(request.getMessage());
+                signedMessage = new SignedMessage(
+                        request.getMessage(),
+                        signature,
+                        signatureService.getAlgorithm(),
+                        signatureService.getPublicKeyBase64()
+                );
+            }
+            requestLogger.success("sign", start);
             return HttpResponse.ok(signedMessage);
+        } catch (CryptoException e) {
+            requestLogger.failure("sign", start, e);
+            return HttpResponse.status(HttpStatus.BAD_REQUEST).body(e.getError().getResponse());
         } catch (Exception e) {
-            e.printStackTrace();
-            return HttpResponse.status(HttpStatus.BAD_REQUEST)
-                    .body(new ErrorResponse("Error signing message: " + e.getMessage()));
+            requestLogger.failure("sign", start, e);
+            return HttpResponse.status(HttpStatus.BAD_REQUEST).body(CryptoError.BAD_REQUEST.getResponse());
+        }
+    }
+
+    /**
+     * Пакетная подпись сообщений одним ключом: клиент собирает пакеты из одновременных вызовов /sign.
+     * Пакет подписывается сотни миллисекунд, поэтому не на event loop.
+     */
+    @Post("/sign/batch")
+    @ExecuteOn(TaskExecutors.BLOCKING)
+    public HttpResponse<?> signBatch(@Body SignatureRequest request) {
+        long start = System.nanoTime();
+        try {
+            SignatureBatch batch = request.getKeyId() != null
+                    ? keyringService.signBatch(request.getKeyId(), request.getBatch())
+                    : new SignatureBatch(signatureService.getAlgorithm(), signatureService.getPublicKeyBase64(),
+                            signatureService.signBatch(request.getBatch()));
+            requestLogger.success("sign-batch", start);
+            return HttpResponse.ok(batch);
+        } catch (CryptoException e) {
+            requestLogger.failure("sign-batch", start, e);
+            return HttpResponse.status(HttpStatus.BAD_REQUEST).body(e.getError().getResponse());
+        } catch (Exception e) {
+            requestLogger.failure("sign-batch", start, e);
+            return HttpResponse.status(HttpStatus.BAD_REQUEST).body(CryptoError.BAD_REQUEST.getResponse());
         }
     }
 
     @Post("/verify")
     public HttpResponse<?> verifySignature(@Body VerificationRequest request) {
+        long start = System.nanoTime();
+        try {
+
+            boolean isValid;
+            if (request.getKeyId() != null) {
+                isValid = request.getDigest() != null
+                        ? keyringService.verifyDigest(request.getKeyId(), request.getDigest(), request.getSignature())
+                        : keyringService.verify(request.getKeyId(), request.getMessage(), request.getSignature());
+            } else {
+                isValid = request.getDigest() != null
+                        ? signatureService.verifyDigest(request.getDigest(), request.getSignature())
+                        : signatureService.verifySignature(request.getMessage(), request.getSignature());
+            }
+            String message = isValid ? "Signature is VALID" : "Signature is INVALID";
+            requestLogger.success("verify", start);
+            return HttpResponse.ok(new VerificationResponse(isValid, message));
+        } catch (CryptoException e) {
+            requestLogger.failure("verify", start, e);
+            return HttpResponse.status(HttpStatus.BAD_REQUEST).body(e.getError().getResponse());
+        } catch (Exception e) {
+            requestLogger.failure("verify", start, e);
+            return HttpResponse.status(HttpStatus.BAD_REQUEST).body(CryptoError.BAD_REQUEST.getResponse());
+        }
+    }
+
+    /**
+     * Пакетная проверка подписей параллельно на всех потоках крипто-пула.
+     * Поток запроса ждет завершения пакета, поэтому не на event loop.
+     */
+    @Post("/verify/bulk")
+    @ExecuteOn(TaskExecutors.BLOCKING)
+    public HttpResponse<?> verifyBulk(@Body BulkVerificationRequest request) {
+        long start = System.nanoTime();
+        try {
+            BulkVerificationResponse response = bulkVerificationService.verify(request.getMode(), request.getItems());
+            requestLogger.success("verify-bulk", start);
+            return HttpResponse.ok(response);
+        } catch (CryptoException e) {
+            requestLogger.failure("verify-bulk", start, e);
+            return HttpResponse.status(HttpStatus.BAD_REQUEST).body(e.getError().getResponse());
+        } catch (Exception e) {
+            requestLogger.failure("verify-bulk", start, e);
+            return HttpResponse.status(HttpStatus.BAD_REQUEST).body(CryptoError.BAD_REQUEST.getResponse());
+        }
+    }
+
+    /**
+     * Проверка подписи внешнего подписанта ключом из запроса (Base64 DER или JWK)
+     */
+    @Post("/verify/external")
+    public HttpResponse<?> verifyExternalSignature(@Body ExternalVerificationRequest request) {
+        long start = System.nanoTime();
+        try {
+            boolean isValid = request.getDigest() != null
+                    ? externalKeyVerifier.verifyDigest(request.getDigest(), request.getSignature(),
+                            request.getPublicKey(), request.getJwk())
+                    : externalKeyVerifier.verify(request.getMessage(), request.getSignature(),
+                            request.getPublicKey(), request.getJwk());
+            String message = isValid ? "Signature is VALID" : "Signature is INVALID";
+            requestLogger.success("verify-external", start);
+            return HttpResponse.ok(new VerificationResponse(isValid, message));
+        } catch (CryptoException e) {
+            requestLogger.failure("verify-external", start, e);
+            return HttpResponse.status(HttpStatus.BAD_REQUEST).body(e.getError().getResponse());
+        } catch (Exception e) {
+            requestLogger.failure("verify-external", start, e);
+            return HttpResponse.status(HttpStatus.BAD_REQUEST).body(CryptoError.BAD_REQUEST.getResponse());
+        }
+    }
+
+    /**
+     * Подпись документа произвольного размера из тела application/octet-stream.
+     * Чтение потока блокирует, поэтому обработчик уходит с event loop на пул BLOCKING
+     */
+    @Post(value = "/sign/stream", consumes = MediaType.APPLICATION_OCTET_STREAM)
+    @ExecuteOn(TaskExecutors.BLOCKING)
+    public HttpResponse<?> signStream(@Body InputStream body) {
+        long start = System.nanoTime();
+        try {
+            String signature = signatureService.signStream(body);
+            requestLogger.success("sign-stream", start);
+            return HttpResponse.ok(new SignedMessage(null, signature, signatureService.getAlgorithm(),
+                    signatureService.getPublicKeyBase64()));
+        } catch (CryptoException e) {
+            requestLogger.failure("sign-stream", start, e);
+            return HttpResponse.status(HttpStatus.BAD_REQUEST).body(e.getError().getResponse());
+        } catch (Exception e) {
+            requestLogger.failure("sign-stream", start, e);
+            return HttpResponse.status(HttpStatus.BAD_REQUEST).body(CryptoError.BAD_REQUEST.getResponse());
+        }
+    }
+
+    /**
+     * Проверка подписи документа из тела application/octet-stream; подпись в заголовке X-Signature
+     */
+    @Post(value = "/verify/stream", consumes = MediaType.APPLICATION_OCTET_STREAM)
+    @ExecuteOn(TaskExecutors.BLOCKING)
+    public HttpResponse<?> verifyStream(@Body InputStream body, @Nullable @Header(SIGNATURE_HEADER) String signature) {
+        long start = System.nanoTime();
         try {
-            System.out.println("Received verify request: " + request.getMessage());
+            boolean isValid = signatureService.verifyStream(body, signature);
+            String message = isValid ? "Signature is VALID" : "Signature is INVALID";
+            requestLogger.success("verify-stream", start);
+            return HttpResponse.ok(new VerificationResponse(isValid, message));
+        } catch (CryptoException e) {
+            requestLogger.failure("verify-stream", start, e);
+            return HttpResponse.status(HttpStatus.BAD_REQUEST).body(e.getError().getResponse());
+        } catch (Exception e) {
+            requestLogger.failure("verify-stream", start, e);
+            return HttpResponse.status(HttpStatus.BAD_REQUEST).body(CryptoError.BAD_REQUEST.getResponse());
+        }
+    }
+
+    /**
+     * Подпись файла из каталога tkonf.files.dir на сервере
+     */
+    @Post("/sign/file")
+    @ExecuteOn(TaskExecutors.BLOCKING)
+    public HttpResponse<?> signFile(@Body FileSignatureRequest request) {
+        long start = System.nanoTime();
+        try {
+            SignedMessage signedMessage = fileSigningService.sign(request.getPath());
+            requestLogger.success("sign-file", start);
+            return HttpResponse.ok(signedMessage);
+        } catch (CryptoException e) {
+            requestLogger.failure("sign-file", start, e);
+            return HttpResponse.status(HttpStatus.BAD_REQUEST).body(e.getError().getResponse());
+        } catch (Exception e) {
+            requestLogger.failure("sign-file", start, e);
+            return HttpResponse.status(HttpStatus.BAD_REQUEST).body(CryptoError.BAD_REQUEST.getResponse());
+        }
+    }
 
-            boolean isValid = signatureService.verifySignature(request.getMessage(), request.getSignature());
+    @Post("/verify/file")
+    @ExecuteOn(TaskExecutors.BLOCKING)
+    public HttpResponse<?> verifyFile(@Body FileSignatureRequest request) {
+        long start = System.nanoTime();
+        try {
+            boolean isValid = fileSigningService.verify(request.getPath(), request.getSignature());
             String message = isValid ? "Signature is VALID" : "Signature is INVALID";
+            requestLogger.success("verify-file", start);
             return HttpResponse.ok(new VerificationResponse(isValid, message));
+        } catch (CryptoException e) {
+            requestLogger.failure("verify-file", start, e);
+            return HttpResponse.status(HttpStatus.BAD_REQUEST).body(e.getError().getResponse());
         } catch (Exception e) {
-            e.printStackTrace();
-            return HttpResponse.status(HttpStatus.BAD_REQUEST)
-                    .body(new ErrorResponse("Error verifying signature: " + e.getMessage()));
+            requestLogger.failure("verify-file", start, e);
+            return HttpResponse.status(HttpStatus.BAD_REQUEST).body(CryptoError.BAD_REQUEST.getResponse());
+        }
+    }
+
+    /**
+     * Выпуск JWS (compact) ключом сервиса или арендатора; как и /sign, пишет в журнал аудита,
+     * поэтому не на event loop
+     */
+    @Post("/jws")
+    @ExecuteOn(TaskExecutors.BLOCKING)
+    public HttpResponse<?> issueJws(@Body JwsRequest request) {
+        long start = System.nanoTime();
+        try {
+            JwsToken token = jwsService.issue(request.getAlg(), request.getKeyId(), request.getClaims());
+            requestLogger.success("jws", start);
+            return HttpResponse.ok(token);
+        } catch (CryptoException e) {
+            requestLogger.failure("jws", start, e);
+            return HttpResponse.status(HttpStatus.BAD_REQUEST).body(e.getError().getResponse());
+        } catch (Exception e) {
+            requestLogger.failure("jws", start, e);
+            return HttpResponse.status(HttpStatus.BAD_REQUEST).body(CryptoError.BAD_REQUEST.getResponse());
+        }
+    }
+
+    /**
+     * Пакетный выпуск JWS: один токен на каждый элемент batch.
+     * Пакет подписывается дольше одиночного запроса, поэтому обработчик уходит с event loop на пул BLOCKING
+     */
+    @Post("/jws/batch")
+    @ExecuteOn(TaskExecutors.BLOCKING)
+    public HttpResponse<?> issueJwsBatch(@Body JwsRequest request) {
+        long start = System.nanoTime();
+        try {
+            JwsBatch batch = jwsService.issueBatch(request.getAlg(), request.getKeyId(), request.getBatch());
+            requestLogger.success("jws-batch", start);
+            return HttpResponse.ok(batch);
+        } catch (CryptoException e) {
+            requestLogger.failure("jws-batch", start, e);
+            return HttpResponse.status(HttpStatus.BAD_REQUEST).body(e.getError().getResponse());
+        } catch (Exception e) {
+            requestLogger.failure("jws-batch", start, e);
+            return HttpResponse.status(HttpStatus.BAD_REQUEST).body(CryptoError.BAD_REQUEST.getResponse());
+        }
+    }
+
+    /**
+     * HMAC-SHA256 сообщения секретом keyId: для внутренних вызовов без асимметричной подписи
+     */
+    @Post("/hmac/sign")
+    public HttpResponse<?> signHmac(@Body SignatureRequest request) {
+        long start = System.nanoTime();
+        try {
+            SignedMessage signedMessage = hmacService.sign(request.getKeyId(), request.getMessage());
+            requestLogger.success("hmac-sign", start);
+            return HttpResponse.ok(signedMessage);
+        } catch (CryptoException e) {
+            requestLogger.failure("hmac-sign", start, e);
+            return HttpResponse.status(HttpStatus.BAD_REQUEST).body(e.getError().getResponse());
+        } catch (Exception e) {
+            requestLogger.failure("hmac-sign", start, e);
+            return HttpResponse.status(HttpStatus.BAD_REQUEST).body(CryptoError.BAD_REQUEST.getResponse());
+        }
+    }
+
+    @Post("/hmac/verify")
+    public HttpResponse<?> verifyHmac(@Body VerificationRequest request) {
+        long start = System.nanoTime();
+        try {
+            boolean isValid = hmacService.verify(request.getKeyId(), request.getMessage(), request.getSignature());
+            String message = isValid ? "Signature is VALID" : "Signature is INVALID";
+            requestLogger.success("hmac-verify", start);
+            return HttpResponse.ok(new VerificationResponse(isValid, message));
+        } catch (CryptoException e) {
+            requestLogger.failure("hmac-verify", start, e);
+            return HttpResponse.status(HttpStatus.BAD_REQUEST).body(e.getError().getResponse());
+        } catch (Exception e) {
+            requestLogger.failure("hmac-verify", start, e);
+            return HttpResponse.status(HttpStatus.BAD_REQUEST).body(CryptoError.BAD_REQUEST.getResponse());
+        }
+    }
+
+    /**
+     * Поиск выданных подписей по SHA-256 дайджесту (hex или Base64url) в журнале аудита.
+     * Холодные страницы индекса и сегментов читаются с диска, поэтому не на event loop
+     */
+    @Get("/signatures/{digest}")
+    @ExecuteOn(TaskExecutors.BLOCKING)
+    public HttpResponse<?> findSignatures(@PathVariable String digest) {
+        long start = System.nanoTime();
+        try {
+            SignatureLookup lookup = auditLog.lookup(digest);
+            requestLogger.success("signatures", start);
+            return HttpResponse.ok(lookup);
+        } catch (CryptoException e) {
+            requestLogger.failure("signatures", start, e);
+            return HttpResponse.status(HttpStatus.BAD_REQUEST).body(e.getError().getResponse());
+        } catch (Exception e) {
+            requestLogger.failure("signatures", start, e);
+            return HttpResponse.status(HttpStatus.BAD_REQUEST).body(CryptoError.BAD_REQUEST.getResponse());
+        }
+    }
+
+    /**
+     * Открывает сессию AES-GCM: дальше /encrypt и /decrypt с sessionId обходятся без RSA
+     */
+    @Post("/session")
+    public HttpResponse<?> openSession(@Body SessionRequest request) {
+        long start = System.nanoTime();
+        try {
+            SessionResponse session = sessionService.open(request.getWrappedKey());
+            requestLogger.success("session", start);
+            return HttpResponse.ok(session);
+        } catch (CryptoException e) {
+            requestLogger.failure("session", start, e);
+            return HttpResponse.status(HttpStatus.BAD_REQUEST).body(e.getError().getResponse());
+        } catch (Exception e) {
+            requestLogger.failure("session", start, e);
+            return HttpResponse.status(HttpStatus.BAD_REQUEST).body(CryptoError.BAD_REQUEST.getResponse());
         }
     }
 
     @Post("/encrypt")
     public HttpResponse<?> encryptMessage(@Body SignatureRequest request) {
+        long start = System.nanoTime();
         try {
-            String encrypted = signatureService.encrypt(request.getMessage());
+            String encrypted = request.getSessionId() != null
+                    ? sessionService.encrypt(request.getSessionId(), request.getMessage())
+                    : signatureService.encrypt(request.getMessage());
+            requestLogger.success("encrypt", start);
             return HttpResponse.ok(new CryptoResponse(encrypted));
+        } catch (CryptoException e) {
+            requestLogger.failure("encrypt", start, e);
+            return HttpResponse.status(HttpStatus.BAD_REQUEST).body(e.getError().getResponse());
         } catch (Exception e) {
-            e.printStackTrace();
-            return HttpResponse.status(HttpStatus.BAD_REQUEST)
-                    .body(new ErrorResponse("Error encrypting message: " + e.getMessage()));
+            requestLogger.failure("encrypt", start, e);
+            return HttpResponse.status(HttpStatus.BAD_REQUEST).body(CryptoError.BAD_REQUEST.getResponse());
         }
     }
 
     @Post("/decrypt")
     public HttpResponse<?> decryptMessage(@Body SignatureRequest request) {
+        long start = System.nanoTime();
         try {
-            System.out.println("Received decrypt request: " + request.getMessage());
 
-            String decrypted = signatureService.decrypt(request.getMessage());
+            String decrypted = request.getSessionId() != null
+                    ? sessionService.decrypt(request.getSessionId(), request.getMessage())
+                    : signatureService.decrypt(request.getMessage());
+            requestLogger.success("decrypt", start);
             return HttpResponse.ok(new CryptoResponse(decrypted));
+        } catch (CryptoException e) {
+            requestLogger.failure("decrypt", start, e);
+            return HttpResponse.status(HttpStatus.BAD_REQUEST).body(e.getError().getResponse());
         } catch (Exception e) {
-            e.printStackTrace();
-            return HttpResponse.status(HttpStatus.BAD_REQUEST)
-                    .body(new ErrorResponse("Error decrypting message: " + e.getMessage()));
+            requestLogger.failure("decrypt", start, e);
+            return HttpResponse.status(HttpStatus.BAD_REQUEST).body(CryptoError.BAD_REQUEST.getResponse());
         }
     }
 
+    /**
+     * Новая пара ключей RSA, собранная из заранее найденных простых чисел.
+     * При пустом пуле простое число ищется в потоке запроса, поэтому не на event loop.
+     */
+    @Post("/keys")
+    @ExecuteOn(TaskExecutors.BLOCKING)
+    public HttpResponse<?> generateKeyPair() {
+        long start = System.nanoTime();
+        try {
+            GeneratedKeyPair keyPair = keyGenerationService.generate();
+            requestLogger.success("keys", start);
+            return HttpResponse.ok(keyPair);
+        } catch (Exception e) {
+            requestLogger.failure("keys", start, e);
+            return HttpResponse.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(CryptoError.KEY_GENERATION_FAILED.getResponse());
+        }
+    }
+
+    /**
+     * Публичный ключ сервиса с ETag: клиент с закэшированным ключом получает 304 без тела
+     */
     @Get("/public-key")
     @Produces(MediaType.TEXT_PLAIN)
-    public HttpResponse<String> getPublicKey() {
+    public HttpResponse<String> getPublicKey(@Nullable @Header(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch) {
         try {
-            String publicKey = signatureService.getPublicKeyBase64();
-            return HttpResponse.ok(publicKey);
+            SignatureService.PublishedKey publicKey = signatureService.getPublishedKey();
+            if (publicKey.eTag().equals(ifNoneMatch)) {
+                return HttpResponse.<String>notModified().header(HttpHeaders.ETAG, publicKey.eTag());
+            }
+            return HttpResponse.ok(publicKey.base64()).header(HttpHeaders.ETAG, publicKey.eTag());
         } catch (Exception e) {
             return HttpResponse.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body("Error getting public key: " + e.getMessage());
@@ -94,4 +481,13 @@ public class MicronautCryptoController {
     public HttpResponse<HealthResponse> health() {
         return HttpResponse.ok(new HealthResponse("Micronaut Crypto Service is running"));
     }
+
+    /**
+     * Готовность к трафику: 503, пока идет прогрев JIT
+     */
+    @Get("/ready")
+    public HttpResponse<WarmupStatus> ready() {
+        return HttpResponse.<WarmupStatus>status(warmupService.isReady() ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE)
+                .body(warmupService.getStatus());
+    }
 }
\ No newline at end of file
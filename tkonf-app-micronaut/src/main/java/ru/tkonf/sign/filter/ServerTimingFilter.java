@@ -0,0 +1,52 @@
+package ru.tkonf.sign.filter;
+
+import io.micronaut.http.HttpRequest;
+import io.micronaut.http.MediaType;
+import io.micronaut.http.MutableHttpResponse;
+import io.micronaut.http.annotation.RequestFilter;
+import io.micronaut.http.annotation.ResponseFilter;
+import io.micronaut.http.annotation.ServerFilter;
+import io.micronaut.json.JsonMapper;
+import ru.tkonf.sign.service.ServerTiming;
+
+import java.io.IOException;
+
+/**
+ * Добавляет {@code Server-Timing} к ответам /api/crypto/*.
+ * Тело сериализуется прямо в фильтре, чтобы в заголовок попало и время сериализации.
+ * Замер привязан к потоку, поэтому для маршрутов на {@code @ExecuteOn} заголовок не выставляется.
+ */
+@ServerFilter("/api/crypto/**")
+public class ServerTimingFilter {
+
+    private final JsonMapper jsonMapper;
+
+    public ServerTimingFilter(JsonMapper jsonMapper) {
+        this.jsonMapper = jsonMapper;
+    }
+
+    @RequestFilter
+    public void begin(HttpRequest<?> request) {
+        ServerTiming.begin(request.getHeaders().get(ServerTiming.REQUEST_START_HEADER));
+    }
+
+    @ResponseFilter
+    public void finish(MutableHttpResponse<?> response) throws IOException {
+        ServerTiming timing = ServerTiming.current();
+        if (timing == null) {
+            return;
+        }
+
+        timing.serializationStarted();
+        Object body = response.body();
+        if (body != null && !(body instanceof CharSequence) && !(body instanceof byte[])) {
+            byte[] json = jsonMapper.writeValueAsBytes(body);
+            if (response.getContentType().isEmpty()) {
+                response.contentType(MediaType.APPLICATION_JSON_TYPE);
+            }
+            response.body(json);
+        }
+        timing.serializationFinished();
+        response.header(ServerTiming.HEADER, timing.finish());
+    }
+}
@@ -0,0 +1,29 @@
+package ru.tkonf.sign.model;
+
+import io.micronaut.serde.annotation.Serdeable;
+
+import java.util.List;
+
+/**
+ * Пакетная проверка подписей: элементы как у {@code /verify} (message или digest, signature, keyId)
+ */
+@Serdeable
+public class BulkVerificationRequest {
+    private String mode;
+    private List<VerificationRequest> items;
+
+    public BulkVerificationRequest() {}
+
+    public BulkVerificationRequest(String mode, List<VerificationRequest> items) {
+        this.mode = mode;
+        this.items = items;
+    }
+
+    // Геттеры и сеттеры
+    // bitmap (по умолчанию), count или fail-fast
+    public String getMode() { return mode; }
+    public void setMode(String mode) { this.mode = mode; }
+
+    public List<VerificationRequest> getItems() { return items; }
+    public void setItems(List<VerificationRequest> items) { this.items = items; }
+}
@@ -0,0 +1,54 @@
+package ru.tkonf.sign.model;
+
+import io.micronaut.serde.annotation.Serdeable;
+
+@Serdeable
+public class BulkVerificationResponse {
+    private String mode;
+    private int total;
+    private int verified;
+    private int valid;
+    private int rejected;
+    private int firstInvalid;
+    private String bitmap;
+
+    public BulkVerificationResponse() {}
+
+    public BulkVerificationResponse(String mode, int total, int verified, int valid, int rejected, int firstInvalid,
+                                    String bitmap) {
+        this.mode = mode;
+        this.total = total;
+        this.verified = verified;
+        this.valid = valid;
+        this.rejected = rejected;
+        this.firstInvalid = firstInvalid;
+        this.bitmap = bitmap;
+    }
+
+    // Геттеры и сеттеры
+    public String getMode() { return mode; }
+    public void setMode(String mode) { this.mode = mode; }
+
+    public int getTotal() { return total; }
+    public void setTotal(int total) { this.total = total; }
+
+    // Проверено элементов; в режиме fail-fast элементы после первой недействительной подписи пропускаются
+    public int getVerified() { return verified; }
+    public void setVerified(int verified) { this.verified = verified; }
+
+    public int getValid() { return valid; }
+    public void setValid(int valid) { this.valid = valid; }
+
+    // Недействительные из-за самого элемента: нет сообщения, не Base64, неизвестный keyId
+    public int getRejected() { return rejected; }
+    public void setRejected(int rejected) { this.rejected = rejected; }
+
+    // Индекс первого недействительного элемента; -1, если все проверенные действительны
+    public int getFirstInvalid() { return firstInvalid; }
+    public void setFirstInvalid(int firstInvalid) { this.firstInvalid = firstInvalid; }
+
+    // Base64 битовой карты: бит i (байт i / 8, младший бит первым) - подпись элемента i действительна;
+    // null в режимах count и fail-fast
+    public String getBitmap() { return bitmap; }
+    public void setBitmap(String bitmap) { this.bitmap = bitmap; }
+}
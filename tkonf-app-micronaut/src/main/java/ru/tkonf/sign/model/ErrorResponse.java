@@ -1,23 +1,34 @@
 package ru.tkonf.sign.model;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import io.micronaut.serde.annotation.Serdeable;
 
+/**
+ * Неизменяемый ответ об ошибке: типовые ответы создаются один раз и переиспользуются
+ */
 @Serdeable
-public class ErrorResponse {
-    private String error;
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public final class ErrorResponse {
+    private final String code;
+    private final String error;
 
-    public ErrorResponse() {
+    public ErrorResponse(String error) {
+        this(null, error);
     }
 
-    public ErrorResponse(String error) {
+    @JsonCreator
+    public ErrorResponse(@JsonProperty("code") String code, @JsonProperty("error") String error) {
+        this.code = code;
         this.error = error;
     }
 
-    public String getError() {
-        return error;
+    public String getCode() {
+        return code;
     }
 
-    public void setError(String error) {
-        this.error = error;
+    public String getError() {
+        return error;
     }
-}
\ No newline at end of file
+}
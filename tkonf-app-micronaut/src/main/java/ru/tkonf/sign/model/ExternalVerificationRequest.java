@@ -0,0 +1,43 @@
+package ru.tkonf.sign.model;
+
+import io.micronaut.serde.annotation.Serdeable;
+
+import java.util.Map;
+
+/**
+ * Проверка подписи ключом внешнего подписанта: {@code publicKey} в Base64 DER либо {@code jwk}
+ */
+@Serdeable
+public class ExternalVerificationRequest {
+    private String message;
+    private String signature;
+    private String publicKey;
+    private Map<String, String> jwk;
+    private String digest;
+
+    public ExternalVerificationRequest() {}
+
+    public ExternalVerificationRequest(String message, String signature, String publicKey, Map<String, String> jwk) {
+        this.message = message;
+        this.signature = signature;
+        this.publicKey = publicKey;
+        this.jwk = jwk;
+    }
+
+    // Геттеры и сеттеры
+    public String getMessage() { return message; }
+    public void setMessage(String message) { this.message = message; }
+
+    public String getSignature() { return signature; }
+    public void setSignature(String signature) { this.signature = signature; }
+
+    public String getPublicKey() { return publicKey; }
+    public void setPublicKey(String publicKey) { this.publicKey = publicKey; }
+
+    public Map<String, String> getJwk() { return jwk; }
+    public void setJwk(Map<String, String> jwk) { this.jwk = jwk; }
+
+    // SHA-256 дайджест сообщения в Base64 вместо самого сообщения
+    public String getDigest() { return digest; }
+    public void setDigest(String digest) { this.digest = digest; }
+}
@@ -0,0 +1,25 @@
+package ru.tkonf.sign.model;
+
+import io.micronaut.serde.annotation.Serdeable;
+
+@Serdeable
+public class FileSignatureRequest {
+    private String path;
+    private String signature;
+
+    public FileSignatureRequest() {}
+
+    public FileSignatureRequest(String path, String signature) {
+        this.path = path;
+        this.signature = signature;
+    }
+
+    // Геттеры и сеттеры
+    // Путь относительно каталога tkonf.files.dir
+    public String getPath() { return path; }
+    public void setPath(String path) { this.path = path; }
+
+    // Подпись в Base64; только для проверки
+    public String getSignature() { return signature; }
+    public void setSignature(String signature) { this.signature = signature; }
+}
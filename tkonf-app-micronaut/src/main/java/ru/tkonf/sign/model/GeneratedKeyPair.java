@@ -0,0 +1,36 @@
+package ru.tkonf.sign.model;
+
+import io.micronaut.serde.annotation.Serdeable;
+
+/**
+ * Новая пара ключей RSA: открытый ключ X.509 и приватный PKCS#8 в Base64
+ */
+@Serdeable
+public class GeneratedKeyPair {
+    private String algorithm;
+    private int keySize;
+    private String publicKey;
+    private String privateKey;
+
+    public GeneratedKeyPair() {}
+
+    public GeneratedKeyPair(String algorithm, int keySize, String publicKey, String privateKey) {
+        this.algorithm = algorithm;
+        this.keySize = keySize;
+        this.publicKey = publicKey;
+        this.privateKey = privateKey;
+    }
+
+    // Геттеры и сеттеры
+    public String getAlgorithm() { return algorithm; }
+    public void setAlgorithm(String algorithm) { this.algorithm = algorithm; }
+
+    public int getKeySize() { return keySize; }
+    public void setKeySize(int keySize) { this.keySize = keySize; }
+
+    public String getPublicKey() { return publicKey; }
+    public void setPublicKey(String publicKey) { this.publicKey = publicKey; }
+
+    public String getPrivateKey() { return privateKey; }
+    public void setPrivateKey(String privateKey) { this.privateKey = privateKey; }
+}
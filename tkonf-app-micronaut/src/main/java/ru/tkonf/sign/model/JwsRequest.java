@@ -0,0 +1,40 @@
+package ru.tkonf.sign.model;
+
+import io.micronaut.serde.annotation.Serdeable;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Выпуск JWS compact: {@code claims} для одного токена или {@code batch} для пакетного выпуска
+ */
+@Serdeable
+public class JwsRequest {
+    private String alg;
+    private String keyId;
+    private Map<String, Object> claims;
+    private List<Map<String, Object>> batch;
+
+    public JwsRequest() {}
+
+    public JwsRequest(String alg, String keyId, Map<String, Object> claims) {
+        this.alg = alg;
+        this.keyId = keyId;
+        this.claims = claims;
+    }
+
+    // Геттеры и сеттеры
+    // RS256, PS256, ES256 или EdDSA; null - алгоритм по типу ключа
+    public String getAlg() { return alg; }
+    public void setAlg(String alg) { this.alg = alg; }
+
+    // Ключ арендатора из keyring; null - ключ сервиса
+    public String getKeyId() { return keyId; }
+    public void setKeyId(String keyId) { this.keyId = keyId; }
+
+    public Map<String, Object> getClaims() { return claims; }
+    public void setClaims(Map<String, Object> claims) { this.claims = claims; }
+
+    public List<Map<String, Object>> getBatch() { return batch; }
+    public void setBatch(List<Map<String, Object>> batch) { this.batch = batch; }
+}
@@ -0,0 +1,72 @@
+package ru.tkonf.sign.model;
+
+import io.micronaut.serde.annotation.Serdeable;
+
+/**
+ * Состояние пула простых чисел для выдачи ключей RSA: глубина, скорость пополнения и промахи
+ */
+@Serdeable
+public class KeyGenerationStats {
+    private int keySize;
+    private int poolDepth;
+    private int poolCapacity;
+    private long primesGenerated;
+    private long candidatesRejected;
+    private long averagePrimeMicros;
+    private double refillPrimesPerSecond;
+    private long refillPauses;
+    private long keysIssued;
+    private long poolMisses;
+
+    public KeyGenerationStats() {}
+
+    public KeyGenerationStats(int keySize, int poolDepth, int poolCapacity, long primesGenerated,
+                              long candidatesRejected, long averagePrimeMicros, double refillPrimesPerSecond,
+                              long refillPauses, long keysIssued, long poolMisses) {
+        this.keySize = keySize;
+        this.poolDepth = poolDepth;
+        this.poolCapacity = poolCapacity;
+        this.primesGenerated = primesGenerated;
+        this.candidatesRejected = candidatesRejected;
+        this.averagePrimeMicros = averagePrimeMicros;
+        this.refillPrimesPerSecond = refillPrimesPerSecond;
+        this.refillPauses = refillPauses;
+        this.keysIssued = keysIssued;
+        this.poolMisses = poolMisses;
+    }
+
+    // Геттеры и сеттеры
+    public int getKeySize() { return keySize; }
+    public void setKeySize(int keySize) { this.keySize = keySize; }
+
+    public int getPoolDepth() { return poolDepth; }
+    public void setPoolDepth(int poolDepth) { this.poolDepth = poolDepth; }
+
+    public int getPoolCapacity() { return poolCapacity; }
+    public void setPoolCapacity(int poolCapacity) { this.poolCapacity = poolCapacity; }
+
+    public long getPrimesGenerated() { return primesGenerated; }
+    public void setPrimesGenerated(long primesGenerated) { this.primesGenerated = primesGenerated; }
+
+    // Числа, отброшенные из-за нижней границы или gcd(p - 1, e) != 1
+    public long getCandidatesRejected() { return candidatesRejected; }
+    public void setCandidatesRejected(long candidatesRejected) { this.candidatesRejected = candidatesRejected; }
+
+    public long getAveragePrimeMicros() { return averagePrimeMicros; }
+    public void setAveragePrimeMicros(long averagePrimeMicros) { this.averagePrimeMicros = averagePrimeMicros; }
+
+    // Скорость фонового потока за время работы, без пауз
+    public double getRefillPrimesPerSecond() { return refillPrimesPerSecond; }
+    public void setRefillPrimesPerSecond(double refillPrimesPerSecond) { this.refillPrimesPerSecond = refillPrimesPerSecond; }
+
+    // Паузы пополнения из-за загруженного CPU
+    public long getRefillPauses() { return refillPauses; }
+    public void setRefillPauses(long refillPauses) { this.refillPauses = refillPauses; }
+
+    public long getKeysIssued() { return keysIssued; }
+    public void setKeysIssued(long keysIssued) { this.keysIssued = keysIssued; }
+
+    // Простые числа, найденные в потоке запроса из-за пустого пула
+    public long getPoolMisses() { return poolMisses; }
+    public void setPoolMisses(long poolMisses) { this.poolMisses = poolMisses; }
+}
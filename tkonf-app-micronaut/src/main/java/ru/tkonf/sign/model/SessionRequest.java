@@ -0,0 +1,22 @@
+package ru.tkonf.sign.model;
+
+import io.micronaut.serde.annotation.Serdeable;
+
+/**
+ * Открытие сессии шифрования: ключ AES, зашифрованный публичным ключом сервиса (RSA PKCS#1 v1.5)
+ */
+@Serdeable
+public class SessionRequest {
+    private String wrappedKey;
+
+    public SessionRequest() {}
+
+    public SessionRequest(String wrappedKey) {
+        this.wrappedKey = wrappedKey;
+    }
+
+    // Геттеры и сеттеры
+    // Base64; null - ключ генерирует сервис
+    public String getWrappedKey() { return wrappedKey; }
+    public void setWrappedKey(String wrappedKey) { this.wrappedKey = wrappedKey; }
+}
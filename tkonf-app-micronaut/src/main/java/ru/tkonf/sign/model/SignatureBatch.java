@@ -0,0 +1,31 @@
+package ru.tkonf.sign.model;
+
+import io.micronaut.serde.annotation.Serdeable;
+
+import java.util.List;
+
+@Serdeable
+public class SignatureBatch {
+    private String algorithm;
+    private String publicKey;
+    private List<String> signatures;
+
+    public SignatureBatch() {}
+
+    public SignatureBatch(String algorithm, String publicKey, List<String> signatures) {
+        this.algorithm = algorithm;
+        this.publicKey = publicKey;
+        this.signatures = signatures;
+    }
+
+    // Геттеры и сеттеры
+    public String getAlgorithm() { return algorithm; }
+    public void setAlgorithm(String algorithm) { this.algorithm = algorithm; }
+
+    public String getPublicKey() { return publicKey; }
+    public void setPublicKey(String publicKey) { this.publicKey = publicKey; }
+
+    // Подписи в порядке сообщений batch запроса
+    public List<String> getSignatures() { return signatures; }
+    public void setSignatures(List<String> signatures) { this.signatures = signatures; }
+}
@@ -0,0 +1,34 @@
+package ru.tkonf.sign.model;
+
+import io.micronaut.serde.annotation.Serdeable;
+
+import java.util.List;
+
+/**
+ * Ответ поиска подписей по SHA-256 дайджесту; дайджест возвращается в hex
+ */
+@Serdeable
+public class SignatureLookup {
+    private String digest;
+    private boolean signed;
+    private List<SignatureRecord> records;
+
+    public SignatureLookup() {}
+
+    public SignatureLookup(String digest, boolean signed, List<SignatureRecord> records) {
+        this.digest = digest;
+        this.signed = signed;
+        this.records = records;
+    }
+
+    // Геттеры и сеттеры
+    public String getDigest() { return digest; }
+    public void setDigest(String digest) { this.digest = digest; }
+
+    public boolean isSigned() { return signed; }
+    public void setSigned(boolean signed) { this.signed = signed; }
+
+    // Записи журнала аудита в порядке выдачи
+    public List<SignatureRecord> getRecords() { return records; }
+    public void setRecords(List<SignatureRecord> records) { this.records = records; }
+}
@@ -0,0 +1,43 @@
+package ru.tkonf.sign.model;
+
+import io.micronaut.serde.annotation.Serdeable;
+
+/**
+ * Выданная подпись из журнала аудита
+ */
+@Serdeable
+public class SignatureRecord {
+    private long sequence;
+    private String timestamp;
+    private String operation;
+    private String keyId;
+    private String signature;
+
+    public SignatureRecord() {}
+
+    public SignatureRecord(long sequence, String timestamp, String operation, String keyId, String signature) {
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+        this.operation = operation;
+        this.keyId = keyId;
+        this.signature = signature;
+    }
+
+    // Геттеры и сеттеры
+    public long getSequence() { return sequence; }
+    public void setSequence(long sequence) { this.sequence = sequence; }
+
+    // Время выдачи в ISO-8601 (UTC)
+    public String getTimestamp() { return timestamp; }
+    public void setTimestamp(String timestamp) { this.timestamp = timestamp; }
+
+    public String getOperation() { return operation; }
+    public void setOperation(String operation) { this.operation = operation; }
+
+    // null - ключ сервиса
+    public String getKeyId() { return keyId; }
+    public void setKeyId(String keyId) { this.keyId = keyId; }
+
+    public String getSignature() { return signature; }
+    public void setSignature(String signature) { this.signature = signature; }
+}
@@ -2,10 +2,16 @@ package ru.tkonf.sign.model;
 
 import io.micronaut.serde.annotation.Serdeable;
 
+import java.util.List;
+
 @Serdeable
 public class SignatureRequest {
     private String message;
     private String algorithm;
+    private String keyId;
+    private String digest;
+    private String sessionId;
+    private List<String> batch;
 
     public SignatureRequest() {}
 
@@ -20,4 +26,20 @@ public class SignatureRequest {
 
     public String getAlgorithm() { return algorithm; }
     public void setAlgorithm(String algorithm) { this.algorithm = algorithm; }
-}
\ No newline at end of file
+
+    // Ключ арендатора из keyring; null - ключ сервиса
+    public String getKeyId() { return keyId; }
+    public void setKeyId(String keyId) { this.keyId = keyId; }
+
+    // SHA-256 дайджест сообщения в Base64 вместо самого сообщения
+    public String getDigest() { return digest; }
+    public void setDigest(String digest) { this.digest = digest; }
+
+    // Сессия AES-GCM для /encrypt и /decrypt (POST /api/crypto/session); null - RSA ключ сервиса
+    public String getSessionId() { return sessionId; }
+    public void setSessionId(String sessionId) { this.sessionId = sessionId; }
+
+    // Сообщения для /sign/batch, подписываются одним ключом
+    public List<String> getBatch() { return batch; }
+    public void setBatch(List<String> batch) { this.batch = batch; }
+}
@@ -6,6 +6,8 @@ import io.micronaut.serde.annotation.Serdeable;
 public class VerificationRequest {
     private String message;
     private String signature;
+    private String keyId;
+    private String digest;
 
     public VerificationRequest() {}
 
@@ -20,4 +22,12 @@ public class VerificationRequest {
 
     public String getSignature() { return signature; }
     public void setSignature(String signature) { this.signature = signature; }
-}
\ No newline at end of file
+
+    // Ключ арендатора из keyring; null - ключ сервиса
+    public String getKeyId() { return keyId; }
+    public void setKeyId(String keyId) { this.keyId = keyId; }
+
+    // SHA-256 дайджест сообщения в Base64 вместо самого сообщения
+    public String getDigest() { return digest; }
+    public void setDigest(String digest) { this.digest = digest; }
+}
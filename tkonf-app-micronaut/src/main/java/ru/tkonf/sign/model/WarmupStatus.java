@@ -0,0 +1,44 @@
+package ru.tkonf.sign.model;
+
+import io.micronaut.serde.annotation.Serdeable;
+
+@Serdeable
+public class WarmupStatus {
+    private String state;
+    private boolean ready;
+    private long iterations;
+    private long compilations;
+    private long elapsedMillis;
+    private String reason;
+
+    public WarmupStatus() {}
+
+    public WarmupStatus(String state, boolean ready, long iterations, long compilations, long elapsedMillis,
+                        String reason) {
+        this.state = state;
+        this.ready = ready;
+        this.iterations = iterations;
+        this.compilations = compilations;
+        this.elapsedMillis = elapsedMillis;
+        this.reason = reason;
+    }
+
+    // Геттеры и сеттеры
+    public String getState() { return state; }
+    public void setState(String state) { this.state = state; }
+
+    public boolean isReady() { return ready; }
+    public void setReady(boolean ready) { this.ready = ready; }
+
+    public long getIterations() { return iterations; }
+    public void setIterations(long iterations) { this.iterations = iterations; }
+
+    public long getCompilations() { return compilations; }
+    public void setCompilations(long compilations) { this.compilations = compilations; }
+
+    public long getElapsedMillis() { return elapsedMillis; }
+    public void setElapsedMillis(long elapsedMillis) { this.elapsedMillis = elapsedMillis; }
+
+    public String getReason() { return reason; }
+    public void setReason(String reason) { this.reason = reason; }
+}
@@ -0,0 +1,77 @@
+package ru.tkonf.sign.service;
+
+import ru.tkonf.sign.model.ErrorResponse;
+
+/**
+ * Типизированные ошибки криптоопераций. Ответ и исключение для каждой ошибки создаются
+ * один раз, поэтому отказ по некорректному запросу ничего не аллоцирует.
+ */
+public enum CryptoError {
+    MESSAGE_REQUIRED("message is required"),
+    MESSAGE_TOO_LARGE("message exceeds the maximum size"),
+    PLAINTEXT_TOO_LARGE("message is too long for RSA encryption with the service key"),
+    SIGNATURE_REQUIRED("signature is required"),
+    SIGNATURE_MALFORMED("signature is not valid Base64"),
+    SIGNATURE_LENGTH("signature length does not match the service key"),
+    CIPHERTEXT_MALFORMED("encrypted message is not valid Base64"),
+    CIPHERTEXT_LENGTH("encrypted message length does not match the service key"),
+    DECRYPTION_FAILED("encrypted message cannot be decrypted with the service key"),
+    PUBLIC_KEY_REQUIRED("publicKey or jwk is required"),
+    PUBLIC_KEY_MALFORMED("public key cannot be parsed"),
+    PUBLIC_KEY_UNSUPPORTED("public key type is not supported, expected RSA, EC or Ed25519"),
+    SIGNATURE_KEY_LENGTH("signature length does not match the public key"),
+    KEY_ID_INVALID("keyId must be 1-64 letters, digits, '.', '_' or '-' and not start with '.'"),
+    KEY_NOT_FOUND("no key with this keyId in the keyring"),
+    KEY_UNREADABLE("keyring entry cannot be parsed"),
+    DIGEST_MALFORMED("digest is not valid Base64"),
+    DIGEST_LENGTH("digest must be a 32-byte SHA-256 value"),
+    DIGEST_UNSUPPORTED("digest mode requires an RSA or EC P-256 key"),
+    FILE_PATH_REQUIRED("path is required"),
+    FILE_PATH_INVALID("path must stay inside the files directory"),
+    FILE_NOT_FOUND("no regular file at this path"),
+    JWS_ALGORITHM_UNSUPPORTED("alg must be RS256, PS256, ES256 or EdDSA"),
+    JWS_KEY_MISMATCH("alg does not match the key type"),
+    JWS_CLAIMS_REQUIRED("claims or batch is required"),
+    JWS_BATCH_TOO_LARGE("batch exceeds the maximum number of tokens"),
+    AUDIT_UNAVAILABLE("signature audit log is not accepting records"),
+    HMAC_KEY_REQUIRED("keyId of an HMAC key is required"),
+    MAC_LENGTH("signature must be a 32-byte HMAC-SHA256 value"),
+    SESSION_NOT_FOUND("session is unknown or expired"),
+    SESSION_KEY_INVALID("wrappedKey must be a 16, 24 or 32-byte AES key encrypted with the service public key"),
+    SESSION_DECRYPTION_FAILED("encrypted message cannot be decrypted with the session key"),
+    KEY_GENERATION_FAILED("key pair cannot be generated"),
+    BULK_ITEMS_REQUIRED("items must contain at least one signature to verify"),
+    BULK_TOO_LARGE("items exceed the maximum number of signatures per request"),
+    BULK_MODE_INVALID("mode must be bitmap, count or fail-fast"),
+    SIGN_BATCH_REQUIRED("batch must contain at least one message"),
+    SIGN_BATCH_TOO_LARGE("batch exceeds the maximum number of messages"),
+    BAD_REQUEST("request cannot be processed");
+
+    private final String message;
+    private final ErrorResponse response;
+    private final CryptoException exception;
+
+    CryptoError(String message) {
+        this.message = message;
+        this.response = new ErrorResponse(name(), message);
+        this.exception = new CryptoException(this);
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Неизменяемый предсозданный ответ с кодом ошибки
+     */
+    public ErrorResponse getResponse() {
+        return response;
+    }
+
+    /**
+     * Предсозданное исключение без стектрейса
+     */
+    public CryptoException exception() {
+        return exception;
+    }
+}
@@ -0,0 +1,104 @@
+package ru.tkonf.sign.service;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HexFormat;
+
+/**
+ * Подпись готового SHA-256 дайджеста алгоритмами без встроенного хеширования.
+ * <p>
+ * {@code NONEwithRSA} над DigestInfo дает ту же подпись PKCS#1 v1.5, что и {@code SHA256withRSA}
+ * над исходным сообщением, {@code NONEwithECDSA} над дайджестом - ту же, что {@code SHA256withECDSA}.
+ * Размер запроса и работа сервера не зависят от размера документа, а дайджест, посчитанный один раз,
+ * попадает и в подпись, и в журнал аудита.
+ */
+final class DigestSigning {
+    static final int SHA256_BYTES = 32;
+
+    // DER-заголовок DigestInfo для SHA-256 (RFC 8017, раздел 9.2, примечание 1)
+    static final byte[] SHA256_DIGEST_INFO_PREFIX = {
+            0x30, 0x31, 0x30, 0x0d, 0x06, 0x09, 0x60, (byte) 0x86, 0x48, 0x01, 0x65, 0x03, 0x04, 0x02, 0x01,
+            0x05, 0x00, 0x04, 0x20
+    };
+    private static final String RAW_RSA = "NONEwithRSA";
+    private static final String RAW_ECDSA = "NONEwithECDSA";
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private DigestSigning() {
+    }
+
+    /**
+     * Сброшенный MessageDigest потока; сброс нужен, если предыдущее чтение оборвалось посередине
+     */
+    static MessageDigest sha256() {
+        MessageDigest digest = SHA256.get();
+        digest.reset();
+        return digest;
+    }
+
+    static byte[] sha256(byte[] data, int offset, int length) {
+        MessageDigest digest = sha256();
+        digest.update(data, offset, length);
+        return digest.digest();
+    }
+
+    static byte[] decodeDigest(String digestBase64) throws CryptoException {
+        SignatureService.checkBase64(digestBase64, SHA256_BYTES, CryptoError.DIGEST_MALFORMED,
+                CryptoError.DIGEST_MALFORMED, CryptoError.DIGEST_LENGTH);
+        return Base64.getDecoder().decode(digestBase64);
+    }
+
+    /**
+     * Дайджест из пути URL: hex (вывод sha256sum) или Base64url без дополнения
+     */
+    static byte[] decodePathDigest(String digest) throws CryptoException {
+        if (digest == null) {
+            throw CryptoError.DIGEST_MALFORMED.exception();
+        }
+        try {
+            if (digest.length() == SHA256_BYTES * 2) {
+                return HexFormat.of().parseHex(digest);
+            }
+            byte[] decoded = Base64.getUrlDecoder().decode(digest);
+            if (decoded.length != SHA256_BYTES) {
+                throw CryptoError.DIGEST_LENGTH.exception();
+            }
+            return decoded;
+        } catch (IllegalArgumentException e) {
+            throw CryptoError.DIGEST_MALFORMED.exception();
+        }
+    }
+
+    /**
+     * Алгоритм без хеширования, совместимый с {@code signatureAlgorithm}; null - у ключа хеш не SHA-256
+     * (EC P-384/P-521) или схема не допускает внешнего дайджеста (Ed25519)
+     */
+    static String rawAlgorithm(String signatureAlgorithm) {
+        return switch (signatureAlgorithm) {
+            case "SHA256withRSA" -> RAW_RSA;
+            case "SHA256withECDSA" -> RAW_ECDSA;
+            default -> null;
+        };
+    }
+
+    /**
+     * Вход для алгоритма без хеширования: DigestInfo для RSA, сам дайджест для ECDSA
+     */
+    static byte[] rawInput(String rawAlgorithm, byte[] digest) {
+        if (!RAW_RSA.equals(rawAlgorithm)) {
+            return digest;
+        }
+        byte[] digestInfo = new byte[SHA256_DIGEST_INFO_PREFIX.length + digest.length];
+        System.arraycopy(SHA256_DIGEST_INFO_PREFIX, 0, digestInfo, 0, SHA256_DIGEST_INFO_PREFIX.length);
+        System.arraycopy(digest, 0, digestInfo, SHA256_DIGEST_INFO_PREFIX.length, digest.length);
+        return digestInfo;
+    }
+}
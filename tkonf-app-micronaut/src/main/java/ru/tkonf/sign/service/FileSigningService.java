@@ -0,0 +1,73 @@
+package ru.tkonf.sign.service;
+
+import io.micronaut.context.annotation.Value;
+import jakarta.inject.Singleton;
+import ru.tkonf.sign.model.SignedMessage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+
+/**
+ * Подпись файлов, уже лежащих на сервере, в каталоге {@code tkonf.files.dir}.
+ * <p>
+ * Документ не передается по сети и не читается в кучу: {@link SignatureService#signFile}
+ * хеширует его прямо из отображенной в память страницы. Путь в запросе относительный;
+ * выход за пределы каталога через {@code ..}, абсолютный путь или символическую ссылку отклоняется.
+ */
+@Singleton
+public class FileSigningService {
+    private final SignatureService signatureService;
+    private final Path directory;
+
+    public FileSigningService(SignatureService signatureService,
+                              @Value("${tkonf.files.dir:files}") String directory) {
+        this.signatureService = signatureService;
+        this.directory = Path.of(directory).toAbsolutePath().normalize();
+    }
+
+    /**
+     * Подписывает файл ключом сервиса; в ответе вместо сообщения - путь к файлу
+     */
+    public SignedMessage sign(String path) throws Exception {
+        String signature = signatureService.signFile(resolve(path));
+        return new SignedMessage(path, signature, signatureService.getAlgorithm(),
+                signatureService.getPublicKeyBase64());
+    }
+
+    /**
+     * Проверяет подпись файла ключом сервиса
+     */
+    public boolean verify(String path, String signatureBase64) throws Exception {
+        return signatureService.verifyFile(resolve(path), signatureBase64);
+    }
+
+    Path resolve(String path) throws CryptoException {
+        if (path == null || path.isEmpty()) {
+            throw CryptoError.FILE_PATH_REQUIRED.exception();
+        }
+        Path file;
+        try {
+            file = directory.resolve(path).normalize();
+        } catch (InvalidPathException e) {
+            throw CryptoError.FILE_PATH_INVALID.exception();
+        }
+        if (!file.startsWith(directory)) {
+            throw CryptoError.FILE_PATH_INVALID.exception();
+        }
+        try {
+            // toRealPath раскрывает символические ссылки: ссылка внутри каталога не должна вести наружу
+            Path real = file.toRealPath();
+            if (!real.startsWith(directory.toRealPath())) {
+                throw CryptoError.FILE_PATH_INVALID.exception();
+            }
+            if (!Files.isRegularFile(real)) {
+                throw CryptoError.FILE_NOT_FOUND.exception();
+            }
+            return real;
+        } catch (IOException e) {
+            throw CryptoError.FILE_NOT_FOUND.exception();
+        }
+    }
+}
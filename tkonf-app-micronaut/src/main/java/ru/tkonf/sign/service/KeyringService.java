@@ -0,0 +1,364 @@
+package ru.tkonf.sign.service;
+
+import io.micronaut.context.annotation.Value;
+import jakarta.inject.Singleton;
+import org.crac.Context;
+import org.crac.Core;
+import org.crac.Resource;
+import ru.tkonf.sign.model.KeyringStats;
+import ru.tkonf.sign.model.SignatureBatch;
+import ru.tkonf.sign.model.SignedMessage;
+import ru.tkonf.sign.util.StripedLruCache;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.RSAPrivateCrtKey;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.RSAPublicKeySpec;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Ключи подписи арендаторов, выбираемые по {@code keyId} запроса.
+ * <p>
+ * Ключ {@code <keyId>.pem} читается из каталога {@code tkonf.keyring.dir} при первом обращении
+ * (PKCS#8 {@code PRIVATE KEY} и, для EC и Ed25519, {@code PUBLIC KEY}; см. generate-tenant-key.sh).
+ * В памяти остаются только горячие ключи: LRU размером {@code tkonf.cache.entries} хранит
+ * разобранные ключи вместе с пулами готовых объектов Signature для подписи и проверки.
+ * Подпись ключом EC P-256 завершается из пула {@link EcdsaPresigner}, если он включен и не пуст.
+ */
+@Singleton
+public class KeyringService implements Resource {
+    // Буквы, цифры, '.', '_' и '-' без ведущей точки: keyId не может выйти за пределы каталога
+    static final Pattern KEY_ID = Pattern.compile("[A-Za-z0-9_-][A-Za-z0-9._-]{0,63}");
+    private static final String KEY_FILE_SUFFIX = ".pem";
+    // Пробное значение для проверки, что блок PUBLIC KEY принадлежит приватному ключу
+    private static final byte[] KEY_PROBE = "tkonf keyring probe".getBytes(StandardCharsets.US_ASCII);
+
+    private final AuditLog auditLog;
+    private final EcdsaPresigner presigner;
+    private final Path directory;
+    private final StripedLruCache<String, TenantKey> cache;
+    private final int enginesPerKey;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder loadNanos = new LongAdder();
+    private final LongAccumulator maxLoadNanos = new LongAccumulator(Math::max, 0);
+
+    public KeyringService(AuditLog auditLog, EcdsaPresigner presigner,
+                          @Value("${tkonf.keyring.dir:keys}") String directory,
+                          @Value("${tkonf.cache.entries:1024}") int cacheEntries,
+                          @Value("${tkonf.crypto.threads:2}") int cryptoThreads) {
+        this.auditLog = auditLog;
+        this.presigner = presigner;
+        this.directory = Path.of(directory);
+        this.cache = new StripedLruCache<>(cacheEntries);
+        this.enginesPerKey = cryptoThreads;
+        Core.getGlobalContext().register(this);
+    }
+
+    /**
+     * Подписывает сообщение ключом арендатора
+     */
+    public SignedMessage sign(String keyId, String message) throws Exception {
+        SignatureService.checkMessage(message, SignatureService.MAX_MESSAGE_BYTES);
+        TenantKey key = resolve(keyId);
+        long start = System.nanoTime();
+        try {
+            return new SignedMessage(message, Base64.getEncoder().encodeToString(sign(keyId, key, message)),
+                    key.algorithm, key.publicKeyBase64);
+        } finally {
+            ServerTiming.recordCrypto(start);
+        }
+    }
+
+    /**
+     * Подписывает пакет сообщений ключом арендатора; ключ разрешается один раз на пакет
+     */
+    public SignatureBatch signBatch(String keyId, List<String> messages) throws Exception {
+        SignatureService.checkBatch(messages);
+        TenantKey key = resolve(keyId);
+        long start = System.nanoTime();
+        try {
+            List<String> signatures = new ArrayList<>(messages.size());
+            for (String message : messages) {
+                signatures.add(Base64.getEncoder().encodeToString(sign(keyId, key, message)));
+            }
+            return new SignatureBatch(key.algorithm, key.publicKeyBase64, signatures);
+        } finally {
+            ServerTiming.recordCrypto(start);
+        }
+    }
+
+    /**
+     * Проверяет подпись сообщения открытым ключом арендатора
+     */
+    public boolean verify(String keyId, String message, String signatureBase64) throws Exception {
+        SignatureService.checkMessage(message, SignatureService.MAX_MESSAGE_BYTES);
+        TenantKey key = resolve(keyId);
+        SignatureService.checkBase64(signatureBase64, key.signatureBytes, CryptoError.SIGNATURE_REQUIRED,
+                CryptoError.SIGNATURE_MALFORMED, CryptoError.SIGNATURE_KEY_LENGTH);
+        long start = System.nanoTime();
+        try {
+            return key.verifier.verify(message.getBytes(), Base64.getDecoder().decode(signatureBase64));
+        } finally {
+            ServerTiming.recordCrypto(start);
+        }
+    }
+
+    /**
+     * Подписывает готовый SHA-256 дайджест ключом арендатора (RSA или EC P-256)
+     */
+    public SignedMessage signDigest(String keyId, String digestBase64) throws Exception {
+        byte[] digest = DigestSigning.decodeDigest(digestBase64);
+        TenantKey key = resolve(keyId);
+        if (key.digestSigner == null) {
+            throw CryptoError.DIGEST_UNSUPPORTED.exception();
+        }
+        long start = System.nanoTime();
+        try {
+            byte[] signature = digestSignature(key, digest);
+            auditLog.record(AuditLog.Operation.SIGN_DIGEST, keyId, digest, signature);
+            return new SignedMessage(null, Base64.getEncoder().encodeToString(signature),
+                    key.algorithm, key.publicKeyBase64);
+        } finally {
+            ServerTiming.recordCrypto(start);
+        }
+    }
+
+    /**
+     * Проверяет подпись по готовому SHA-256 дайджесту открытым ключом арендатора
+     */
+    public boolean verifyDigest(String keyId, String digestBase64, String signatureBase64) throws Exception {
+        byte[] digest = DigestSigning.decodeDigest(digestBase64);
+        TenantKey key = resolve(keyId);
+        if (key.digestVerifier == null) {
+            throw CryptoError.DIGEST_UNSUPPORTED.exception();
+        }
+        SignatureService.checkBase64(signatureBase64, key.signatureBytes, CryptoError.SIGNATURE_REQUIRED,
+                CryptoError.SIGNATURE_MALFORMED, CryptoError.SIGNATURE_KEY_LENGTH);
+        long start = System.nanoTime();
+        try {
+            return key.digestVerifier.verify(DigestSigning.rawInput(key.digestVerifier.getAlgorithm(), digest),
+                    Base64.getDecoder().decode(signatureBase64));
+        } finally {
+            ServerTiming.recordCrypto(start);
+        }
+    }
+
+    /**
+     * Пара ключей арендатора для операций, которые держат собственные пулы Signature (JWS)
+     */
+    KeyPair keyPair(String keyId) throws CryptoException {
+        TenantKey key = resolve(keyId);
+        return key.keyPair;
+    }
+
+    public KeyringStats getStats() {
+        long loads = misses.sum() - loadFailures.sum();
+        long averageLoadMicros = loads > 0 ? TimeUnit.NANOSECONDS.toMicros(loadNanos.sum() / loads) : 0;
+        return new KeyringStats(cache.size(), hits.sum(), misses.sum(), loadFailures.sum(), cache.getEvictions(),
+                averageLoadMicros, TimeUnit.NANOSECONDS.toMicros(maxLoadNanos.get()));
+    }
+
+    @Override
+    public void beforeCheckpoint(Context<? extends Resource> context) {
+        // Ключи перечитываются с диска после восстановления
+    }
+
+    /**
+     * Сбрасывает кэш: объекты Signature для ECDSA захватили SecureRandom при initSign, и реплики,
+     * поднятые из одного чекпоинта, не должны разделять его состояние
+     */
+    @Override
+    public void afterRestore(Context<? extends Resource> context) {
+        cache.clear();
+    }
+
+    private byte[] sign(String keyId, TenantKey key, String message) throws Exception {
+        byte[] bytes = message.getBytes();
+        byte[] digest = DigestSigning.sha256(bytes, 0, bytes.length);
+        // Для RSA и EC P-256 дайджест для подписи и журнала считается один раз; Ed25519 хеширует сам
+        byte[] signature = key.digestSigner != null
+                ? digestSignature(key, digest)
+                : key.signer.sign(bytes);
+        auditLog.record(AuditLog.Operation.SIGN, keyId, digest, signature);
+        return signature;
+    }
+
+    /**
+     * Подпись дайджеста: из пула предвычисленных пар для P-256, иначе пулом Signature дайджест-режима
+     */
+    private byte[] digestSignature(TenantKey key, byte[] digest) throws GeneralSecurityException {
+        if (key.presignKey != null) {
+            byte[] signature = presigner.sign(key.presignKey, digest);
+            if (signature != null) {
+                return signature;
+            }
+        }
+        return key.digestSigner.sign(DigestSigning.rawInput(key.digestSigner.getAlgorithm(), digest));
+    }
+
+    private TenantKey resolve(String keyId) throws CryptoException {
+        if (!KEY_ID.matcher(keyId).matches()) {
+            throw CryptoError.KEY_ID_INVALID.exception();
+        }
+        TenantKey key = cache.get(keyId);
+        if (key != null) {
+            hits.increment();
+            return key;
+        }
+        misses.increment();
+        // Одновременные промахи по одному ключу читают файл независимо, в кэше остается первый результат
+        long start = System.nanoTime();
+        try {
+            key = load(directory.resolve(keyId + KEY_FILE_SUFFIX));
+        } catch (CryptoException e) {
+            loadFailures.increment();
+            throw e;
+        }
+        long elapsed = System.nanoTime() - start;
+        loadNanos.add(elapsed);
+        maxLoadNanos.accumulate(elapsed);
+        return cache.putIfAbsent(keyId, key);
+    }
+
+    private TenantKey load(Path file) throws CryptoException {
+        String pem;
+        try {
+            pem = Files.readString(file, StandardCharsets.US_ASCII);
+        } catch (NoSuchFileException e) {
+            throw CryptoError.KEY_NOT_FOUND.exception();
+        } catch (IOException e) {
+            throw CryptoError.KEY_UNREADABLE.exception();
+        }
+        try {
+            String privateBlock = pemBlock(pem, "PRIVATE KEY");
+            if (privateBlock == null) {
+                throw CryptoError.KEY_UNREADABLE.exception();
+            }
+            PrivateKey privateKey = PublicKeyParser.privateFromBase64Pkcs8(privateBlock);
+            String publicBlock = pemBlock(pem, "PUBLIC KEY");
+            PublicKey publicKey = publicBlock != null
+                    ? PublicKeyParser.fromBase64Der(publicBlock)
+                    : derivePublicKey(privateKey);
+            // Чужой открытый ключ подписывал бы успешно, но все проверки подписей этим ключом не проходили бы
+            if (publicBlock != null && !belongTogether(privateKey, publicKey)) {
+                throw CryptoError.KEY_UNREADABLE.exception();
+            }
+            return new TenantKey(privateKey, publicKey, enginesPerKey, presigner);
+        } catch (GeneralSecurityException | IllegalArgumentException | CryptoException e) {
+            throw CryptoError.KEY_UNREADABLE.exception();
+        }
+    }
+
+    /**
+     * Блок PUBLIC KEY принадлежит приватному ключу: для RSA сравнивается с ключом из CRT-представления,
+     * для EC и Ed25519 проверяется подпись пробного значения (один раз при загрузке)
+     */
+    private static boolean belongTogether(PrivateKey privateKey, PublicKey publicKey)
+            throws GeneralSecurityException, CryptoException {
+        if (privateKey instanceof RSAPrivateCrtKey rsaKey) {
+            return publicKey instanceof RSAPublicKey rsaPublicKey
+                    && rsaPublicKey.getModulus().equals(rsaKey.getModulus())
+                    && rsaPublicKey.getPublicExponent().equals(rsaKey.getPublicExponent());
+        }
+        String algorithm = SignaturePool.algorithmFor(publicKey);
+        Signature signer = Signature.getInstance(algorithm);
+        signer.initSign(privateKey);
+        signer.update(KEY_PROBE);
+        byte[] probeSignature = signer.sign();
+        Signature verifier = Signature.getInstance(algorithm);
+        verifier.initVerify(publicKey);
+        verifier.update(KEY_PROBE);
+        return verifier.verify(probeSignature);
+    }
+
+    /**
+     * Открытый ключ RSA восстанавливается из CRT-представления приватного; для EC и Ed25519 нужен блок PUBLIC KEY
+     */
+    private static PublicKey derivePublicKey(PrivateKey privateKey) throws GeneralSecurityException {
+        if (privateKey instanceof RSAPrivateCrtKey rsaKey) {
+            return KeyFactory.getInstance("RSA").generatePublic(
+                    new RSAPublicKeySpec(rsaKey.getModulus(), rsaKey.getPublicExponent()));
+        }
+        throw new GeneralSecurityException("PUBLIC KEY block is missing");
+    }
+
+    /**
+     * Base64-содержимое блока {@code -----BEGIN <type>-----} без переводов строк; null, если блока нет
+     */
+    private static String pemBlock(String pem, String type) {
+        String begin = "-----BEGIN " + type + "-----";
+        int from = pem.indexOf(begin);
+        if (from < 0) {
+            return null;
+        }
+        from += begin.length();
+        int to = pem.indexOf("-----END " + type + "-----", from);
+        if (to < 0) {
+            return null;
+        }
+        StringBuilder base64 = new StringBuilder(to - from);
+        for (int i = from; i < to; i++) {
+            char c = pem.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                base64.append(c);
+            }
+        }
+        return base64.toString();
+    }
+
+    /**
+     * Ключ арендатора с пулами готовых объектов Signature; пулы дайджест-режима null, если ключ его не поддерживает
+     */
+    private static final class TenantKey {
+        private final KeyPair keyPair;
+        private final String algorithm;
+        private final String publicKeyBase64;
+        private final int signatureBytes;
+        private final SignaturePool signer;
+        private final SignaturePool verifier;
+        private final SignaturePool digestSigner;
+        private final SignaturePool digestVerifier;
+        // Ключ P-256 для завершения подписи из пула предвычисленных пар; null - пул не применим
+        private final ECPrivateKey presignKey;
+
+        TenantKey(PrivateKey privateKey, PublicKey publicKey, int poolSize, EcdsaPresigner presigner)
+                throws CryptoException {
+            String signatureAlgorithm = SignaturePool.algorithmFor(publicKey);
+            this.keyPair = new KeyPair(publicKey, privateKey);
+            this.algorithm = publicKey.getAlgorithm();
+            this.publicKeyBase64 = Base64.getEncoder().encodeToString(publicKey.getEncoded());
+            this.signatureBytes = SignaturePool.signatureLength(publicKey);
+            this.signer = SignaturePool.forSigning(privateKey, signatureAlgorithm, poolSize);
+            this.verifier = SignaturePool.forVerification(publicKey, signatureAlgorithm, poolSize);
+            String rawAlgorithm = DigestSigning.rawAlgorithm(signatureAlgorithm);
+            this.digestSigner = rawAlgorithm != null
+                    ? SignaturePool.forSigning(privateKey, rawAlgorithm, poolSize)
+                    : null;
+            this.digestVerifier = rawAlgorithm != null
+                    ? SignaturePool.forVerification(publicKey, rawAlgorithm, poolSize)
+                    : null;
+            this.presignKey = rawAlgorithm != null && privateKey instanceof ECPrivateKey ecKey
+                    && presigner.supports(ecKey) ? ecKey : null;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package ru.tkonf.sign.service;
+
+import ru.tkonf.sign.util.BoundedRingBuffer;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+
+/**
+ * Пул объектов {@link Mac}, уже инициализированных одним секретным ключом.
+ * <p>
+ * {@code doFinal} возвращает Mac в состояние после {@code init}, поэтому объект переиспользуется
+ * без повторного разбора ключа и расчета ipad/opad. Объект, на котором операция завершилась
+ * исключением, в пул не возвращается.
+ */
+final class MacPool {
+    private final String algorithm;
+    private final SecretKeySpec key;
+    private final BoundedRingBuffer<Mac> pool;
+
+    MacPool(String algorithm, byte[] secret, int size) {
+        this.algorithm = algorithm;
+        this.key = new SecretKeySpec(secret, algorithm);
+        this.pool = new BoundedRingBuffer<>(Math.max(2, size));
+    }
+
+    byte[] mac(byte[] data) throws GeneralSecurityException {
+        Mac mac = pool.poll();
+        if (mac == null) {
+            mac = Mac.getInstance(algorithm);
+            mac.init(key);
+        }
+        byte[] result = mac.doFinal(data);
+        pool.offer(mac);
+        return result;
+    }
+}
@@ -0,0 +1,120 @@
+package ru.tkonf.sign.service;
+
+import jakarta.inject.Singleton;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Короткая JFR-запись по запросу с агрегацией стеков в collapsed-формат
+ * (одна строка на стек: кадры от корня через ';', затем вес).
+ * Результат напрямую открывается в flamegraph.pl или speedscope.
+ */
+@Singleton
+public class ProfilingService {
+    public static final int MAX_SECONDS = 60;
+
+    private static final String EXECUTION_SAMPLE = "jdk.ExecutionSample";
+    private static final String ALLOCATION_SAMPLE = "jdk.ObjectAllocationSample";
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    /**
+     * Пишет сэмплы CPU и аллокаций в течение {@code seconds} секунд и возвращает
+     * стеки выбранного типа событий. Одновременно выполняется только одна запись.
+     */
+    public String profile(int seconds, ProfileEvent event) throws IOException, InterruptedException {
+        if (seconds < 1 || seconds > MAX_SECONDS) {
+            throw new IllegalArgumentException("seconds must be between 1 and " + MAX_SECONDS);
+        }
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("Profiling is already in progress");
+        }
+        // Флаг снимается при любой ошибке, включая создание и удаление временного файла
+        try {
+            Path file = Files.createTempFile("tkonf-profile", ".jfr");
+            try (Recording recording = new Recording()) {
+                recording.setName("tkonf-profile");
+                recording.setToDisk(true);
+                recording.enable(EXECUTION_SAMPLE).withPeriod(Duration.ofMillis(10));
+                recording.enable(ALLOCATION_SAMPLE).with("throttle", "150/s");
+                recording.start();
+                Thread.sleep(seconds * 1000L);
+                recording.stop();
+                recording.dump(file);
+                return collapse(file, event);
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private String collapse(Path file, ProfileEvent event) throws IOException {
+        String eventName = event == ProfileEvent.ALLOC ? ALLOCATION_SAMPLE : EXECUTION_SAMPLE;
+        Map<String, Long> stacks = new TreeMap<>();
+        StringBuilder key = new StringBuilder(512);
+
+        try (RecordingFile recordingFile = new RecordingFile(file)) {
+            while (recordingFile.hasMoreEvents()) {
+                RecordedEvent recorded = recordingFile.readEvent();
+                if (!eventName.equals(recorded.getEventType().getName())) {
+                    continue;
+                }
+                RecordedStackTrace stackTrace = recorded.getStackTrace();
+                if (stackTrace == null) {
+                    continue;
+                }
+                key.setLength(0);
+                List<RecordedFrame> frames = stackTrace.getFrames();
+                for (int i = frames.size() - 1; i >= 0; i--) {
+                    RecordedFrame frame = frames.get(i);
+                    if (!key.isEmpty()) {
+                        key.append(';');
+                    }
+                    key.append(frame.getMethod().getType().getName())
+                            .append('.')
+                            .append(frame.getMethod().getName());
+                }
+                long weight = 1;
+                if (event == ProfileEvent.ALLOC) {
+                    // Листовой кадр — тип аллоцированного объекта, вес — байты
+                    key.append(';').append(recorded.getClass("objectClass").getName()).append("_[k]");
+                    weight = recorded.getLong("weight");
+                }
+                stacks.merge(key.toString(), weight, Long::sum);
+            }
+        }
+
+        StringBuilder out = new StringBuilder(stacks.size() * 128);
+        stacks.forEach((stack, weight) -> out.append(stack).append(' ').append(weight).append('\n'));
+        return out.toString();
+    }
+
+    public enum ProfileEvent {
+        CPU, ALLOC;
+
+        public static ProfileEvent parse(String value) {
+            if (value == null || value.isEmpty() || "cpu".equalsIgnoreCase(value)) {
+                return CPU;
+            }
+            if ("alloc".equalsIgnoreCase(value)) {
+                return ALLOC;
+            }
+            throw new IllegalArgumentException("event must be 'cpu' or 'alloc'");
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package ru.tkonf.sign.service;
+
+import java.math.BigInteger;
+import java.security.AlgorithmParameters;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.ECParameterSpec;
+import java.security.spec.ECPoint;
+import java.security.spec.ECPublicKeySpec;
+import java.security.spec.EdECPoint;
+import java.security.spec.EdECPublicKeySpec;
+import java.security.spec.NamedParameterSpec;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.RSAPublicKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Base64;
+import java.util.Map;
+
+/**
+ * Разбор открытых ключей внешних подписантов: Base64 DER (X.509 SubjectPublicKeyInfo) или JWK
+ * (RFC 7517/7518/8037) для RSA, EC P-256/P-384/P-521 и Ed25519; там же разбор приватных ключей
+ * арендаторов (PKCS#8)
+ */
+public final class PublicKeyParser {
+    // Алгоритмы KeyFactory, которыми пробуем разобрать DER без собственного разбора ASN.1
+    private static final String[] DER_ALGORITHMS = {"RSA", "EC", "Ed25519"};
+
+    private PublicKeyParser() {
+    }
+
+    public static PublicKey fromBase64Der(String value) throws CryptoException {
+        byte[] der;
+        try {
+            der = Base64.getDecoder().decode(value);
+        } catch (IllegalArgumentException e) {
+            throw CryptoError.PUBLIC_KEY_MALFORMED.exception();
+        }
+        X509EncodedKeySpec spec = new X509EncodedKeySpec(der);
+        PublicKey key = probeAlgorithms(factory -> factory.generatePublic(spec));
+        if (key == null) {
+            throw CryptoError.PUBLIC_KEY_MALFORMED.exception();
+        }
+        return key;
+    }
+
+    /**
+     * Приватный ключ арендатора из Base64 PKCS#8; нечитаемый ключ - KEY_UNREADABLE
+     */
+    static PrivateKey privateFromBase64Pkcs8(String value) throws CryptoException {
+        byte[] der;
+        try {
+            der = Base64.getDecoder().decode(value);
+        } catch (IllegalArgumentException e) {
+            throw CryptoError.KEY_UNREADABLE.exception();
+        }
+        PKCS8EncodedKeySpec spec = new PKCS8EncodedKeySpec(der);
+        PrivateKey key = probeAlgorithms(factory -> factory.generatePrivate(spec));
+        if (key == null) {
+            throw CryptoError.KEY_UNREADABLE.exception();
+        }
+        return key;
+    }
+
+    public static PublicKey fromJwk(Map<String, String> jwk) throws CryptoException {
+        try {
+            String kty = member(jwk, "kty");
+            return switch (kty) {
+                case "RSA" -> KeyFactory.getInstance("RSA").generatePublic(
+                        new RSAPublicKeySpec(unsigned(member(jwk, "n")), unsigned(member(jwk, "e"))));
+                case "EC" -> KeyFactory.getInstance("EC").generatePublic(new ECPublicKeySpec(
+                        new ECPoint(unsigned(member(jwk, "x")), unsigned(member(jwk, "y"))),
+                        curve(member(jwk, "crv"))));
+                case "OKP" -> {
+                    if (!"Ed25519".equals(member(jwk, "crv"))) {
+                        throw CryptoError.PUBLIC_KEY_UNSUPPORTED.exception();
+                    }
+                    yield KeyFactory.getInstance("Ed25519").generatePublic(
+                            new EdECPublicKeySpec(NamedParameterSpec.ED25519, edPoint(member(jwk, "x"))));
+                }
+                default -> throw CryptoError.PUBLIC_KEY_UNSUPPORTED.exception();
+            };
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            throw CryptoError.PUBLIC_KEY_MALFORMED.exception();
+        }
+    }
+
+    /**
+     * Первый ключ, который разобрала KeyFactory одного из {@link #DER_ALGORITHMS}; null, если ни одна
+     */
+    private static <K> K probeAlgorithms(KeyDecoder<K> decoder) {
+        for (String algorithm : DER_ALGORITHMS) {
+            try {
+                return decoder.decode(KeyFactory.getInstance(algorithm));
+            } catch (GeneralSecurityException e) {
+                // Ключ другого типа - пробуем следующий алгоритм
+            }
+        }
+        return null;
+    }
+
+    private static String member(Map<String, String> jwk, String name) throws CryptoException {
+        String value = jwk.get(name);
+        if (value == null || value.isEmpty()) {
+            throw CryptoError.PUBLIC_KEY_MALFORMED.exception();
+        }
+        return value;
+    }
+
+    private static BigInteger unsigned(String base64Url) {
+        return new BigInteger(1, Base64.getUrlDecoder().decode(base64Url));
+    }
+
+    private static ECParameterSpec curve(String crv) throws GeneralSecurityException, CryptoException {
+        String name = switch (crv) {
+            case "P-256" -> "secp256r1";
+            case "P-384" -> "secp384r1";
+            case "P-521" -> "secp521r1";
+            default -> throw CryptoError.PUBLIC_KEY_UNSUPPORTED.exception();
+        };
+        AlgorithmParameters parameters = AlgorithmParameters.getInstance("EC");
+        parameters.init(new ECGenParameterSpec(name));
+        return parameters.getParameterSpec(ECParameterSpec.class);
+    }
+
+    /**
+     * Точка Ed25519 из RFC 8032: y в little-endian, старший бит последнего байта - четность x
+     */
+    private static EdECPoint edPoint(String base64Url) {
+        byte[] encoded = Base64.getUrlDecoder().decode(base64Url);
+        if (encoded.length != 32) {
+            throw new IllegalArgumentException("Ed25519 public key must be 32 bytes");
+        }
+        boolean xOdd = (encoded[31] & 0x80) != 0;
+        byte[] y = new byte[32];
+        for (int i = 0; i < 32; i++) {
+            y[i] = encoded[31 - i];
+        }
+        y[0] &= 0x7F;
+        return new EdECPoint(xOdd, new BigInteger(1, y));
+    }
+
+    @FunctionalInterface
+    private interface KeyDecoder<K> {
+        K decode(KeyFactory factory) throws GeneralSecurityException;
+    }
+}
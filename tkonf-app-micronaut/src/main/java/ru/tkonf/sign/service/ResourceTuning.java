@@ -0,0 +1,149 @@
+package ru.tkonf.sign.service;
+
+import ru.tkonf.sign.model.ContainerTuning;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Размеры пулов, очередей и буферов, выведенные из лимитов контейнера.
+ * <p>
+ * Под жесткой квотой CPU лишние потоки не добавляют пропускной способности, а только
+ * дробят квоту и приводят к троттлингу в хвосте задержек, поэтому число серверных потоков
+ * привязано к квоте, а не к числу ядер хоста. Значения подставляются как конфигурация
+ * с самым низким приоритетом: явные настройки из application.properties, переменных
+ * окружения и системных свойств их перекрывают. Отключается через
+ * {@code -Dtkonf.tuning.enabled=false} или {@code TKONF_TUNING_ENABLED=false}.
+ */
+public final class ResourceTuning {
+    public static final String ENABLED_PROPERTY = "tkonf.tuning.enabled";
+
+    private static final long MB = 1024 * 1024;
+    private static final int THREADS_PER_CPU = 2;
+    private static final int QUEUE_PER_THREAD = 32;
+    private static final int STREAMS_PER_CRYPTO_THREAD = 32;
+
+    private static volatile ResourceTuning current;
+
+    private final ContainerResources resources;
+    private final boolean enabled;
+    private final int effectiveCpus;
+    private final int serverThreads;
+    private final int cryptoThreads;
+    private final int acceptQueue;
+    private final int http2Streams;
+    private final int requestLogCapacity;
+    private final int cacheEntries;
+
+    ResourceTuning(ContainerResources resources, boolean enabled) {
+        this.resources = resources;
+        this.enabled = enabled;
+        this.effectiveCpus = Math.max(1, (int) Math.ceil(resources.getCpuLimit()));
+        // Один поток на CPU считает, второй успевает разбирать/писать запросы, пока первый в RSA
+        this.serverThreads = Math.max(2, effectiveCpus * THREADS_PER_CPU);
+        this.cryptoThreads = effectiveCpus;
+        this.acceptQueue = serverThreads * QUEUE_PER_THREAD;
+        // Потоков HTTP/2 на соединение столько, сколько запросов крипто-пул успевает взять в очередь:
+        // остальные ждут у прокси, а не в памяти приложения
+        this.http2Streams = cryptoThreads * STREAMS_PER_CRYPTO_THREAD;
+        long memoryMb = Math.max(1, resources.getMemoryLimitBytes() / MB);
+        this.requestLogCapacity = (int) Math.min(65536, Math.max(1024, Long.highestOneBit(memoryMb * 8)));
+        this.cacheEntries = (int) Math.min(65536, Math.max(256, memoryMb * 4));
+    }
+
+    /**
+     * Настройка для текущего процесса; лимиты читаются один раз при первом обращении
+     */
+    public static ResourceTuning current() {
+        ResourceTuning tuning = current;
+        if (tuning == null) {
+            synchronized (ResourceTuning.class) {
+                tuning = current;
+                if (tuning == null) {
+                    String flag = System.getProperty(ENABLED_PROPERTY, System.getenv("TKONF_TUNING_ENABLED"));
+                    tuning = new ResourceTuning(ContainerResources.detect(), !"false".equalsIgnoreCase(flag));
+                    current = tuning;
+                }
+            }
+        }
+        return tuning;
+    }
+
+    /**
+     * Свойства конфигурации фреймворка и приложения, которые нужно подставить по умолчанию
+     */
+    public Map<String, String> properties() {
+        if (!enabled) {
+            return Collections.emptyMap();
+        }
+        Map<String, String> properties = new LinkedHashMap<>();
+        // Контроллеры выполняются на event loop, поэтому он и есть пул серверных потоков
+        properties.put("micronaut.netty.event-loops.default.num-threads", Integer.toString(serverThreads));
+        properties.put("micronaut.server.netty.options.so_backlog", Integer.toString(acceptQueue));
+        properties.put("micronaut.server.netty.http2.max-concurrent-streams", Integer.toString(http2Streams));
+        properties.put("tkonf.crypto.threads", Integer.toString(cryptoThreads));
+        properties.put("tkonf.cache.entries", Integer.toString(cacheEntries));
+        properties.put("tkonf.request-log.capacity", Integer.toString(requestLogCapacity));
+        return properties;
+    }
+
+    /**
+     * Выбранные значения вместе с текущими счетчиками троттлинга из cpu.stat
+     */
+    public ContainerTuning report() {
+        long[] throttling = resources.readThrottling();
+        ContainerTuning report = new ContainerTuning();
+        report.setEnabled(enabled);
+        report.setSource(resources.getSource());
+        report.setCpuLimit(resources.getCpuLimit());
+        report.setMemoryLimitBytes(resources.getMemoryLimitBytes());
+        report.setEffectiveCpus(effectiveCpus);
+        report.setServerThreads(serverThreads);
+        report.setCryptoThreads(cryptoThreads);
+        report.setAcceptQueue(acceptQueue);
+        report.setRequestLogCapacity(requestLogCapacity);
+        report.setCacheEntries(cacheEntries);
+        report.setCpuPeriods(throttling[0]);
+        report.setThrottledPeriods(throttling[1]);
+        report.setThrottledMillis(throttling[2] / 1000);
+        report.setProperties(properties());
+        return report;
+    }
+
+    public ContainerResources getResources() {
+        return resources;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getEffectiveCpus() {
+        return effectiveCpus;
+    }
+
+    public int getServerThreads() {
+        return serverThreads;
+    }
+
+    public int getCryptoThreads() {
+        return cryptoThreads;
+    }
+
+    public int getAcceptQueue() {
+        return acceptQueue;
+    }
+
+    public int getHttp2Streams() {
+        return http2Streams;
+    }
+
+    public int getRequestLogCapacity() {
+        return requestLogCapacity;
+    }
+
+    public int getCacheEntries() {
+        return cacheEntries;
+    }
+}
@@ -0,0 +1,124 @@
+package ru.tkonf.sign.service;
+
+import ru.tkonf.sign.util.BoundedRingBuffer;
+
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.security.spec.AlgorithmParameterSpec;
+import java.security.interfaces.ECKey;
+import java.security.interfaces.EdECKey;
+import java.security.interfaces.RSAKey;
+
+/**
+ * Пул объектов {@link Signature}, уже инициализированных одним ключом.
+ * <p>
+ * После {@code sign}/{@code verify} объект возвращается в состояние после {@code initSign}/{@code initVerify},
+ * поэтому его можно переиспользовать без повторной инициализации ключом. Объект, на котором операция
+ * завершилась исключением, в пул не возвращается: его состояние не гарантировано.
+ */
+final class SignaturePool {
+    private final String algorithm;
+    private final PrivateKey privateKey;
+    private final PublicKey publicKey;
+    private final AlgorithmParameterSpec parameters;
+    private final BoundedRingBuffer<Signature> pool;
+
+    private SignaturePool(String algorithm, AlgorithmParameterSpec parameters, PrivateKey privateKey,
+                          PublicKey publicKey, int size) {
+        this.algorithm = algorithm;
+        this.parameters = parameters;
+        this.privateKey = privateKey;
+        this.publicKey = publicKey;
+        this.pool = new BoundedRingBuffer<>(Math.max(2, size));
+    }
+
+    static SignaturePool forSigning(PrivateKey key, String algorithm, int size) {
+        return new SignaturePool(algorithm, null, key, null, size);
+    }
+
+    /**
+     * Пул для алгоритма с параметрами, например RSASSA-PSS с {@code PSSParameterSpec}
+     */
+    static SignaturePool forSigning(PrivateKey key, String algorithm, AlgorithmParameterSpec parameters, int size) {
+        return new SignaturePool(algorithm, parameters, key, null, size);
+    }
+
+    static SignaturePool forVerification(PublicKey key, String algorithm, int size) {
+        return new SignaturePool(algorithm, null, null, key, size);
+    }
+
+    byte[] sign(byte[] data) throws GeneralSecurityException {
+        return sign(data, 0, data.length);
+    }
+
+    byte[] sign(byte[] data, int offset, int length) throws GeneralSecurityException {
+        Signature signature = acquire();
+        signature.update(data, offset, length);
+        byte[] result = signature.sign();
+        pool.offer(signature);
+        return result;
+    }
+
+    /**
+     * Проверяет подпись; подпись, которую не удалось разобрать (например, неверный DER у ECDSA), - false
+     */
+    boolean verify(byte[] data, byte[] signatureBytes) throws GeneralSecurityException {
+        Signature signature = acquire();
+        boolean valid;
+        try {
+            signature.update(data);
+            valid = signature.verify(signatureBytes);
+        } catch (SignatureException e) {
+            return false;
+        }
+        pool.offer(signature);
+        return valid;
+    }
+
+    String getAlgorithm() {
+        return algorithm;
+    }
+
+    private Signature acquire() throws GeneralSecurityException {
+        Signature signature = pool.poll();
+        if (signature == null) {
+            signature = Signature.getInstance(algorithm);
+            if (parameters != null) {
+                signature.setParameter(parameters);
+            }
+            if (privateKey != null) {
+                signature.initSign(privateKey);
+            } else {
+                signature.initVerify(publicKey);
+            }
+        }
+        return signature;
+    }
+
+    /**
+     * Алгоритм подписи по типу ключа: RSA - SHA256withRSA, EC - SHA-2 по размеру кривой, Ed25519
+     */
+    static String algorithmFor(Object key) throws CryptoException {
+        if (key instanceof RSAKey) {
+            return "SHA256withRSA";
+        }
+        if (key instanceof ECKey ecKey) {
+            int bits = ecKey.getParams().getCurve().getField().getFieldSize();
+            return bits <= 256 ? "SHA256withECDSA" : bits <= 384 ? "SHA384withECDSA" : "SHA512withECDSA";
+        }
+        if (key instanceof EdECKey) {
+            return "Ed25519";
+        }
+        throw CryptoError.PUBLIC_KEY_UNSUPPORTED.exception();
+    }
+
+    /**
+     * Длина подписи RSA в байтах; -1 для ECDSA (DER переменной длины) и Ed25519, где длина не проверяется
+     */
+    static int signatureLength(Object key) {
+        return key instanceof RSAKey rsaKey ? (rsaKey.getModulus().bitLength() + 7) / 8 : -1;
+    }
+}
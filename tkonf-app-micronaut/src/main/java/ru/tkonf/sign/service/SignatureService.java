@@ -4,89 +4,471 @@ package ru.tkonf.sign.service;
 
 
 
+import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
+import org.crac.Context;
+import org.crac.Core;
+import org.crac.Resource;
 
+import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
+import javax.crypto.IllegalBlockSizeException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.security.KeyPair;
 import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
 import java.security.Signature;
+import java.security.interfaces.RSAKey;
+import java.security.interfaces.RSAPublicKey;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.HexFormat;
+import java.util.List;
 
 @Singleton
-public class SignatureService {
-    private KeyPair keyPair;
+public class SignatureService implements Resource {
+    // Ограничение размера сообщения для подписи, проверяется до хеширования
+    public static final int MAX_MESSAGE_BYTES = 1024 * 1024;
+    // Пакетная подпись ограничена, как и выпуск JWS, чтобы один запрос не занимал поток обработки надолго
+    public static final int MAX_BATCH_MESSAGES = 256;
+    // Накладные расходы паддинга PKCS#1 v1.5 при шифровании
+    private static final int PKCS1_PADDING_BYTES = 11;
+    private static final String SIGNATURE_ALGORITHM = "SHA256withRSA";
+    // Буфер чтения потокового тела: одна копия фиксированного размера на запрос вместо всего документа
+    private static final int STREAM_BUFFER_BYTES = 64 * 1024;
+    // Окно отображения файла в память; старые окна освобождаются GC вместе с MappedByteBuffer
+    private static final long MAP_WINDOW_BYTES = 64L * 1024 * 1024;
+
+    // Ключи и источник случайности пересоздаются после восстановления из CRaC-чекпоинта;
+    // пара ключей публикуется вместе с производными значениями одной ссылкой
+    private volatile KeyMaterial keys;
+    private volatile SecureRandom secureRandom;
     private final String algorithm;
+    private final AuditLog auditLog;
 
-    public SignatureService() throws NoSuchAlgorithmException {
+    @Inject
+    public SignatureService(AuditLog auditLog) throws NoSuchAlgorithmException {
         this.algorithm = "RSA";
+        this.auditLog = auditLog;
         generateKeyPair();
+        Core.getGlobalContext().register(this);
     }
 
-    public SignatureService(String algorithm) throws NoSuchAlgorithmException {
+    public SignatureService(String algorithm, AuditLog auditLog) throws NoSuchAlgorithmException {
         this.algorithm = algorithm;
+        this.auditLog = auditLog;
         generateKeyPair();
+        Core.getGlobalContext().register(this);
     }
 
     private void generateKeyPair() throws NoSuchAlgorithmException {
+        this.secureRandom = new SecureRandom();
         KeyPairGenerator keyGen = KeyPairGenerator.getInstance(algorithm);
-        keyGen.initialize(2048); // Размер ключа
-        this.keyPair = keyGen.generateKeyPair();
+        keyGen.initialize(2048, secureRandom); // Размер ключа
+        this.keys = KeyMaterial.of(keyGen.generateKeyPair());
     }
 
     /**
      * Подписывает сообщение с использованием приватного ключа
      */
     public String signMessage(String message) throws Exception {
-        Signature signature = Signature.getInstance("SHA256withRSA");
-        signature.initSign(keyPair.getPrivate());
-        signature.update(message.getBytes());
+        checkMessage(message, MAX_MESSAGE_BYTES);
+        long start = System.nanoTime();
+        try {
+            byte[] bytes = message.getBytes();
+            return signDigest(AuditLog.Operation.SIGN, DigestSigning.sha256(bytes, 0, bytes.length));
+        } finally {
+            ServerTiming.recordCrypto(start);
+        }
+    }
 
-        byte[] digitalSignature = signature.sign();
-        return Base64.getEncoder().encodeToString(digitalSignature);
+    /**
+     * Подписывает пакет сообщений; пакет проверяется целиком до первой подписи
+     */
+    public List<String> signBatch(List<String> messages) throws Exception {
+        checkBatch(messages);
+        long start = System.nanoTime();
+        try {
+            List<String> signatures = new ArrayList<>(messages.size());
+            for (String message : messages) {
+                byte[] bytes = message.getBytes();
+                signatures.add(signDigest(AuditLog.Operation.SIGN, DigestSigning.sha256(bytes, 0, bytes.length)));
+            }
+            return signatures;
+        } finally {
+            ServerTiming.recordCrypto(start);
+        }
     }
 
     /**
      * Проверяет подпись сообщения с использованием публичного ключа
      */
     public boolean verifySignature(String message, String signatureBase64) throws Exception {
-        Signature signature = Signature.getInstance("SHA256withRSA");
-        signature.initVerify(keyPair.getPublic());
-        signature.update(message.getBytes());
+        checkMessage(message, MAX_MESSAGE_BYTES);
+        KeyMaterial current = keys;
+        checkBase64(signatureBase64, current.keySizeBytes(), CryptoError.SIGNATURE_REQUIRED,
+                CryptoError.SIGNATURE_MALFORMED, CryptoError.SIGNATURE_LENGTH);
+        long start = System.nanoTime();
+        try {
+            byte[] bytes = message.getBytes();
+            return verifyDigest(current, DigestSigning.sha256(bytes, 0, bytes.length), signatureBase64);
+        } finally {
+            ServerTiming.recordCrypto(start);
+        }
+    }
+
+    /**
+     * Подписывает готовый SHA-256 дайджест; подпись совпадает с SHA256withRSA над исходным сообщением
+     */
+    public String signDigest(String digestBase64) throws Exception {
+        byte[] digest = DigestSigning.decodeDigest(digestBase64);
+        long start = System.nanoTime();
+        try {
+            return signDigest(AuditLog.Operation.SIGN_DIGEST, digest);
+        } finally {
+            ServerTiming.recordCrypto(start);
+        }
+    }
 
-        byte[] digitalSignature = Base64.getDecoder().decode(signatureBase64);
-        return signature.verify(digitalSignature);
+    /**
+     * Проверяет подпись SHA256withRSA по готовому SHA-256 дайджесту сообщения
+     */
+    public boolean verifyDigest(String digestBase64, String signatureBase64) throws Exception {
+        byte[] digest = DigestSigning.decodeDigest(digestBase64);
+        KeyMaterial current = keys;
+        checkBase64(signatureBase64, current.keySizeBytes(), CryptoError.SIGNATURE_REQUIRED,
+                CryptoError.SIGNATURE_MALFORMED, CryptoError.SIGNATURE_LENGTH);
+        long start = System.nanoTime();
+        try {
+            return verifyDigest(current, digest, signatureBase64);
+        } finally {
+            ServerTiming.recordCrypto(start);
+        }
+    }
+
+    /**
+     * Подписывает документ произвольного размера, читая поток буфером фиксированного размера;
+     * подпись совпадает с подписью того же документа через {@link #signMessage}
+     */
+    public String signStream(InputStream input) throws Exception {
+        long start = System.nanoTime();
+        try {
+            return signDigest(AuditLog.Operation.SIGN_STREAM, digest(input));
+        } finally {
+            ServerTiming.recordCrypto(start);
+        }
+    }
+
+    /**
+     * Проверяет подпись документа, читаемого из потока
+     */
+    public boolean verifyStream(InputStream input, String signatureBase64) throws Exception {
+        KeyMaterial current = keys;
+        checkBase64(signatureBase64, current.keySizeBytes(), CryptoError.SIGNATURE_REQUIRED,
+                CryptoError.SIGNATURE_MALFORMED, CryptoError.SIGNATURE_LENGTH);
+        long start = System.nanoTime();
+        try {
+            return verifyDigest(current, digest(input), signatureBase64);
+        } finally {
+            ServerTiming.recordCrypto(start);
+        }
+    }
+
+    /**
+     * Подписывает локальный файл, отображая его в память: содержимое хешируется
+     * из page cache без копирования в кучу
+     */
+    public String signFile(Path file) throws Exception {
+        long start = System.nanoTime();
+        try {
+            return signDigest(AuditLog.Operation.SIGN_FILE, digest(file));
+        } finally {
+            ServerTiming.recordCrypto(start);
+        }
+    }
+
+    /**
+     * Проверяет подпись локального файла, отображая его в память
+     */
+    public boolean verifyFile(Path file, String signatureBase64) throws Exception {
+        KeyMaterial current = keys;
+        checkBase64(signatureBase64, current.keySizeBytes(), CryptoError.SIGNATURE_REQUIRED,
+                CryptoError.SIGNATURE_MALFORMED, CryptoError.SIGNATURE_LENGTH);
+        long start = System.nanoTime();
+        try {
+            return verifyDigest(current, digest(file), signatureBase64);
+        } finally {
+            ServerTiming.recordCrypto(start);
+        }
+    }
+
+    /**
+     * Подпись SHA-256 дайджеста через NONEwithRSA над DigestInfo: сообщение хешируется один раз,
+     * и тот же дайджест уходит в журнал аудита
+     */
+    private String signDigest(AuditLog.Operation operation, byte[] digest) throws Exception {
+        String rawAlgorithm = DigestSigning.rawAlgorithm(SIGNATURE_ALGORITHM);
+        Signature signature = Signature.getInstance(rawAlgorithm);
+        signature.initSign(keys.keyPair().getPrivate());
+        signature.update(DigestSigning.rawInput(rawAlgorithm, digest));
+        byte[] signatureBytes = signature.sign();
+        auditLog.record(operation, null, digest, signatureBytes);
+        return Base64.getEncoder().encodeToString(signatureBytes);
+    }
+
+    private boolean verifyDigest(KeyMaterial current, byte[] digest, String signatureBase64) throws Exception {
+        RsaPublicEngine engine = current.publicEngine();
+        if (engine != null) {
+            return engine.verifySha256(digest, Base64.getDecoder().decode(signatureBase64));
+        }
+        String rawAlgorithm = DigestSigning.rawAlgorithm(SIGNATURE_ALGORITHM);
+        Signature signature = Signature.getInstance(rawAlgorithm);
+        signature.initVerify(current.keyPair().getPublic());
+        signature.update(DigestSigning.rawInput(rawAlgorithm, digest));
+        return signature.verify(Base64.getDecoder().decode(signatureBase64));
     }
 
     /**
      * Шифрует сообщение с использованием публичного ключа
      */
     public String encrypt(String message) throws Exception {
-        Cipher cipher = Cipher.getInstance(algorithm);
-        cipher.init(Cipher.ENCRYPT_MODE, keyPair.getPublic());
-        byte[] encryptedBytes = cipher.doFinal(message.getBytes());
-        return Base64.getEncoder().encodeToString(encryptedBytes);
+        KeyMaterial current = keys;
+        int keySizeBytes = current.keySizeBytes();
+        checkMessage(message, keySizeBytes > 0 ? keySizeBytes - PKCS1_PADDING_BYTES : MAX_MESSAGE_BYTES);
+        long start = System.nanoTime();
+        try {
+            return Base64.getEncoder().encodeToString(encryptBytes(current, message.getBytes()));
+        } finally {
+            ServerTiming.recordCrypto(start);
+        }
     }
 
     /**
      * Расшифровывает сообщение с использованием приватного ключа
      */
     public String decrypt(String encryptedMessage) throws Exception {
+        KeyMaterial current = keys;
+        checkBase64(encryptedMessage, current.keySizeBytes(), CryptoError.MESSAGE_REQUIRED,
+                CryptoError.CIPHERTEXT_MALFORMED, CryptoError.CIPHERTEXT_LENGTH);
+        long start = System.nanoTime();
+        try {
+            return new String(decryptBytes(current, encryptedMessage));
+        } finally {
+            ServerTiming.recordCrypto(start);
+        }
+    }
+
+    /**
+     * Шифрует ключ сессии публичным ключом сервиса тем же RSA, что и {@link #encrypt}
+     */
+    byte[] wrapKey(byte[] sessionKey) throws Exception {
+        return encryptBytes(keys, sessionKey);
+    }
+
+    /**
+     * Расшифровывает ключ сессии, зашифрованный клиентом публичным ключом сервиса
+     */
+    byte[] unwrapKey(String wrappedKeyBase64) throws Exception {
+        KeyMaterial current = keys;
+        checkBase64(wrappedKeyBase64, current.keySizeBytes(), CryptoError.SESSION_KEY_INVALID,
+                CryptoError.CIPHERTEXT_MALFORMED, CryptoError.CIPHERTEXT_LENGTH);
+        return decryptBytes(current, wrappedKeyBase64);
+    }
+
+    private byte[] encryptBytes(KeyMaterial current, byte[] message) throws Exception {
+        RsaPublicEngine engine = current.publicEngine();
+        if (engine != null) {
+            return engine.encrypt(message, secureRandom);
+        }
         Cipher cipher = Cipher.getInstance(algorithm);
-        cipher.init(Cipher.DECRYPT_MODE, keyPair.getPrivate());
-        byte[] decryptedBytes = cipher.doFinal(Base64.getDecoder().decode(encryptedMessage));
-        return new String(decryptedBytes);
+        cipher.init(Cipher.ENCRYPT_MODE, current.keyPair().getPublic(), secureRandom);
+        return cipher.doFinal(message);
+    }
+
+    private byte[] decryptBytes(KeyMaterial current, String encryptedBase64) throws Exception {
+        try {
+            Cipher cipher = Cipher.getInstance(algorithm);
+            cipher.init(Cipher.DECRYPT_MODE, current.keyPair().getPrivate());
+            return cipher.doFinal(Base64.getDecoder().decode(encryptedBase64));
+        } catch (BadPaddingException | IllegalBlockSizeException e) {
+            throw CryptoError.DECRYPTION_FAILED.exception();
+        }
+    }
+
+    @Override
+    public void beforeCheckpoint(Context<? extends Resource> context) {
+        // Состояние пересоздаётся в afterRestore, перед чекпоинтом освобождать нечего
+    }
+
+    /**
+     * После восстановления генерирует новую пару ключей и SecureRandom, чтобы реплики,
+     * поднятые из одного чекпоинта, не разделяли секреты и состояние генератора
+     */
+    @Override
+    public void afterRestore(Context<? extends Resource> context) throws NoSuchAlgorithmException {
+        generateKeyPair();
+    }
+
+    /**
+     * Текущая пара ключей; меняется после восстановления из CRaC-чекпоинта
+     */
+    KeyPair getKeyPair() {
+        return keys.keyPair();
+    }
+
+    /**
+     * Публичный ключ вместе с его сильным ETag; меняется вместе с ключом после восстановления из CRaC
+     */
+    public PublishedKey getPublishedKey() {
+        return keys.publishedKey();
     }
 
     public String getPublicKeyBase64() {
-        return Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded());
+        return keys.publishedKey().base64();
     }
 
     public String getPrivateKeyBase64() {
-        return Base64.getEncoder().encodeToString(keyPair.getPrivate().getEncoded());
+        return Base64.getEncoder().encodeToString(keys.keyPair().getPrivate().getEncoded());
     }
 
     public String getAlgorithm() {
         return algorithm;
     }
-}
\ No newline at end of file
+
+    /**
+     * Проверяет наличие и размер сообщения в UTF-8 без кодирования строки
+     */
+    static void checkMessage(String message, int maxBytes) throws CryptoException {
+        if (message == null) {
+            throw CryptoError.MESSAGE_REQUIRED.exception();
+        }
+        if (message.length() > maxBytes || utf8Length(message) > maxBytes) {
+            throw (maxBytes == MAX_MESSAGE_BYTES ? CryptoError.MESSAGE_TOO_LARGE : CryptoError.PLAINTEXT_TOO_LARGE)
+                    .exception();
+        }
+    }
+
+    /**
+     * Проверяет размер пакета и каждое сообщение пакета
+     */
+    static void checkBatch(List<String> messages) throws CryptoException {
+        if (messages == null || messages.isEmpty()) {
+            throw CryptoError.SIGN_BATCH_REQUIRED.exception();
+        }
+        if (messages.size() > MAX_BATCH_MESSAGES) {
+            throw CryptoError.SIGN_BATCH_TOO_LARGE.exception();
+        }
+        for (String message : messages) {
+            checkMessage(message, MAX_MESSAGE_BYTES);
+        }
+    }
+
+    /**
+     * Проверяет алфавит Base64 и длину декодированных данных (размер модуля RSA) без декодирования;
+     * {@code expectedBytes <= 0} отключает проверку длины
+     */
+    static void checkBase64(String value, int expectedBytes, CryptoError missing, CryptoError malformed,
+                            CryptoError wrongLength) throws CryptoException {
+        if (value == null || value.isEmpty()) {
+            throw missing.exception();
+        }
+        int length = value.length();
+        int padding = 0;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c == '=') {
+                padding++;
+            } else if (padding > 0 || !isBase64(c)) {
+                throw malformed.exception();
+            }
+        }
+        int dataChars = length - padding;
+        if (padding > 2 || dataChars % 4 == 1 || (padding > 0 && length % 4 != 0)) {
+            throw malformed.exception();
+        }
+        if (expectedBytes > 0 && dataChars * 3 / 4 != expectedBytes) {
+            throw wrongLength.exception();
+        }
+    }
+
+    private static byte[] digest(InputStream input) throws Exception {
+        MessageDigest digest = DigestSigning.sha256();
+        byte[] buffer = new byte[STREAM_BUFFER_BYTES];
+        int read;
+        while ((read = input.read(buffer)) != -1) {
+            digest.update(buffer, 0, read);
+        }
+        return digest.digest();
+    }
+
+    private static byte[] digest(Path file) throws Exception {
+        MessageDigest digest = DigestSigning.sha256();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long position = 0; position < size; position += MAP_WINDOW_BYTES) {
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(MAP_WINDOW_BYTES, size - position));
+                digest.update(window);
+            }
+        }
+        return digest.digest();
+    }
+
+    private static boolean isBase64(char c) {
+        return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '+' || c == '/';
+    }
+
+    private static int utf8Length(String value) {
+        int bytes = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Публичный ключ в Base64 и его ETag: клиенты кэшируют ключ и проверяют подписи сервиса локально
+     */
+    public record PublishedKey(String base64, String eTag) {
+    }
+
+    /**
+     * Пара ключей и производные от нее значения одного поколения
+     *
+     * @param keySizeBytes размер модуля RSA в байтах: длина подписи и шифротекста; -1 для не-RSA ключей
+     * @param publicEngine операции открытым ключом без JCA; null для не-RSA ключей
+     */
+    private record KeyMaterial(KeyPair keyPair, int keySizeBytes, RsaPublicEngine publicEngine,
+                               PublishedKey publishedKey) {
+        static KeyMaterial of(KeyPair keyPair) {
+            int keySizeBytes = keyPair.getPublic() instanceof RSAKey rsaKey
+                    ? (rsaKey.getModulus().bitLength() + 7) / 8
+                    : -1;
+            RsaPublicEngine publicEngine = keyPair.getPublic() instanceof RSAPublicKey rsaPublicKey
+                    ? new RsaPublicEngine(rsaPublicKey)
+                    : null;
+            byte[] encoded = keyPair.getPublic().getEncoded();
+            String eTag = '"' + HexFormat.of().formatHex(DigestSigning.sha256(encoded, 0, encoded.length), 0, 16)
+                    + '"';
+            return new KeyMaterial(keyPair, keySizeBytes, publicEngine,
+                    new PublishedKey(Base64.getEncoder().encodeToString(encoded), eTag));
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package ru.tkonf.sign.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Ограниченный потокобезопасный LRU-кэш.
+ * <p>
+ * Ключи распределены по независимым сегментам, каждый — {@link LinkedHashMap} в порядке доступа
+ * под собственным монитором. Потоки, обращающиеся к разным ключам, почти не конкурируют за
+ * блокировку, а вытеснение идет внутри сегмента, поэтому общий размер не превышает емкость.
+ */
+public final class StripedLruCache<K, V> {
+    private static final int DEFAULT_STRIPES = 16;
+
+    private final Stripe<K, V>[] stripes;
+    private final int mask;
+    private final LongAdder evictions = new LongAdder();
+
+    public StripedLruCache(int capacity) {
+        this(capacity, DEFAULT_STRIPES);
+    }
+
+    @SuppressWarnings("unchecked")
+    public StripedLruCache(int capacity, int stripeCount) {
+        if (capacity < 1 || stripeCount < 1) {
+            throw new IllegalArgumentException("capacity and stripe count must be positive");
+        }
+        int size = Integer.highestOneBit(Math.min(stripeCount, capacity));
+        int perStripe = Math.max(1, capacity / size);
+        this.stripes = new Stripe[size];
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new Stripe<>(perStripe, evictions);
+        }
+    }
+
+    public V get(K key) {
+        Stripe<K, V> stripe = stripeFor(key);
+        synchronized (stripe) {
+            return stripe.get(key);
+        }
+    }
+
+    /**
+     * Кладет значение, если ключа нет; возвращает значение, оказавшееся в кэше
+     */
+    public V putIfAbsent(K key, V value) {
+        Stripe<K, V> stripe = stripeFor(key);
+        synchronized (stripe) {
+            V existing = stripe.putIfAbsent(key, value);
+            return existing != null ? existing : value;
+        }
+    }
+
+    /**
+     * Кладет значение, заменяя прежнее
+     */
+    public void put(K key, V value) {
+        Stripe<K, V> stripe = stripeFor(key);
+        synchronized (stripe) {
+            stripe.put(key, value);
+        }
+    }
+
+    public void remove(K key) {
+        Stripe<K, V> stripe = stripeFor(key);
+        synchronized (stripe) {
+            stripe.remove(key);
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe<K, V> stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Число записей, вытесненных по LRU с момента создания
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public void clear() {
+        for (Stripe<K, V> stripe : stripes) {
+            synchronized (stripe) {
+                stripe.clear();
+            }
+        }
+    }
+
+    private Stripe<K, V> stripeFor(K key) {
+        int hash = key.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & mask];
+    }
+
+    private static final class Stripe<K, V> extends LinkedHashMap<K, V> {
+        private final int capacity;
+        private final LongAdder evictions;
+
+        Stripe(int capacity, LongAdder evictions) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+            this.evictions = evictions;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            if (size() > capacity) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package ru.tkonf.sign;
+
+import jakarta.inject.Inject;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import ru.tkonf.sign.model.RequestLogStats;
+import ru.tkonf.sign.service.AuditLog;
+import ru.tkonf.sign.service.EcdsaPresigner;
+import ru.tkonf.sign.service.KeyGenerationService;
+import ru.tkonf.sign.service.KeyringService;
+import ru.tkonf.sign.service.ProfilingService;
+import ru.tkonf.sign.service.RequestLogger;
+import ru.tkonf.sign.service.ResourceTuning;
+
+@Path("/diagnostics")
+@Produces(MediaType.TEXT_PLAIN)
+public class DiagnosticsController {
+
+    @Inject
+    ProfilingService profilingService;
+
+    @Inject
+    RequestLogger requestLogger;
+
+    @Inject
+    KeyringService keyringService;
+
+    @Inject
+    AuditLog auditLog;
+
+    @Inject
+    KeyGenerationService keyGenerationService;
+
+    @Inject
+    EcdsaPresigner ecdsaPresigner;
+
+    /**
+     * Снимает профиль за {@code seconds} секунд и отдает стеки в collapsed-формате
+     */
+    @GET
+    @Path("/profile")
+    public Response profile(@QueryParam("seconds") @DefaultValue("10") int seconds,
+                            @QueryParam("event") @DefaultValue("cpu") String event) {
+        try {
+            return Response.ok(profilingService.profile(seconds, ProfilingService.ProfileEvent.parse(event))).build();
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST).entity(e.getMessage()).build();
+        } catch (IllegalStateException e) {
+            return Response.status(Response.Status.CONFLICT).entity(e.getMessage()).build();
+        } catch (Exception e) {
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .entity("Error profiling application: " + e.getMessage())
+                    .build();
+        }
+    }
+
+    @GET
+    @Path("/request-log")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response requestLog() {
+        return Response.ok(new RequestLogStats(requestLogger.getWritten(), requestLogger.getDropped(),
+                requestLogger.getRateLimited(), requestLogger.getPending())).build();
+    }
+
+    @GET
+    @Path("/keyring")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response keyring() {
+        return Response.ok(keyringService.getStats()).build();
+    }
+
+    /**
+     * Счетчики журнала аудита подписей: записано, в очереди, ожидания и время fsync
+     */
+    @GET
+    @Path("/audit")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response audit() {
+        return Response.ok(auditLog.getStats()).build();
+    }
+
+    /**
+     * Пул простых чисел для /api/crypto/keys: глубина, скорость пополнения и промахи
+     */
+    @GET
+    @Path("/keygen")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response keygen() {
+        return Response.ok(keyGenerationService.getStats()).build();
+    }
+
+    /**
+     * Пул предвычисленных пар ECDSA P-256: глубина, стоимость пополнения, попадания и промахи
+     */
+    @GET
+    @Path("/presign")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response presign() {
+        return Response.ok(ecdsaPresigner.getStats()).build();
+    }
+
+    /**
+     * Лимиты контейнера, выбранные размеры пулов и счетчики троттлинга CPU
+     */
+    @GET
+    @Path("/resources")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response resources() {
+        return Response.ok(ResourceTuning.current().report()).build();
+    }
+}
@@ -4,93 +4,473 @@ package ru.tkonf.sign;
 
 import jakarta.inject.Inject;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import ru.tkonf.sign.model.*;
+import ru.tkonf.sign.service.AuditLog;
+import ru.tkonf.sign.service.BulkVerificationService;
+import ru.tkonf.sign.service.CryptoError;
+import ru.tkonf.sign.service.CryptoException;
+import ru.tkonf.sign.service.ExternalKeyVerifier;
+import ru.tkonf.sign.service.FileSigningService;
+import ru.tkonf.sign.service.HmacService;
+import ru.tkonf.sign.service.JwsService;
+import ru.tkonf.sign.service.KeyGenerationService;
+import ru.tkonf.sign.service.KeyringService;
+import ru.tkonf.sign.service.RequestLogger;
+import ru.tkonf.sign.service.SessionService;
 import ru.tkonf.sign.service.SignatureService;
+import ru.tkonf.sign.service.WarmupService;
+
+import java.io.InputStream;
 
 @Path("/api/crypto")
 @Produces(MediaType.APPLICATION_JSON)
 @Consumes(MediaType.APPLICATION_JSON)
 public class QuarkusCryptoController {
+    // Подпись для /verify/stream: тело запроса занято документом
+    private static final String SIGNATURE_HEADER = "X-Signature";
 
     @Inject
     SignatureService signatureService;
 
+    @Inject
+    RequestLogger requestLogger;
+
+    @Inject
+    WarmupService warmupService;
+
+    @Inject
+    ExternalKeyVerifier externalKeyVerifier;
+
+    @Inject
+    KeyringService keyringService;
+
+    @Inject
+    FileSigningService fileSigningService;
+
+    @Inject
+    JwsService jwsService;
+
+    @Inject
+    AuditLog auditLog;
+
+    @Inject
+    HmacService hmacService;
+
+    @Inject
+    SessionService sessionService;
+
+    @Inject
+    KeyGenerationService keyGenerationService;
+
+    @Inject
+    BulkVerificationService bulkVerificationService;
+
     @POST
     @Path("/sign")
     public Response signMessage(SignatureRequest request) {
+        long start = System.nanoTime();
         try {
 
-            String signature = signatureService.signMessage(request.getMessage());
-            SignedMessage signedMessage = new SignedMessage(
-                    request.getMessage(),
-                    signature,
-                    signatureService.getAlgorithm(),
-                    signatureService.getPublicKeyBase64()
-            );
+            SignedMessage signedMessage;
+            if (request.getKeyId() != null) {
+                signedMessage = request.getDigest() != null
+                        ? keyringService.signDigest(request.getKeyId(), request.getDigest())
+                        : keyringService.sign(request.getKeyId(), request.getMessage());
+            } else {
+                String signature = request.getDigest() != null
+                        ? signatureService.signDigest(request.getDigest())
+                        : signatureService.signMessage(request.getMessage());
+                signedMessage = new SignedMessage(
+                        request.getMessage(),
+                        signature,
+                        signatureService.getAlgorithm(),
+                        signatureService.getPublicKeyBase64()
+                );
+            }
+            requestLogger.success("sign", start);
             return Response.ok(signedMessage).build();
+        } catch (CryptoException e) {
+            requestLogger.failure("sign", start, e);
+            return Response.status(Response.Status.BAD_REQUEST).entity(e.getError().getResponse()).build();
         } catch (Exception e) {
-            e.printStackTrace();
-            return Response.status(Response.Status.BAD_REQUEST)
-                    .entity(new ErrorResponse("Error signing message: " + e.getMessage()))
-                    .build();
+            requestLogger.failure("sign", start, e);
+            return Response.status(Response.Status.BAD_REQUEST).entity(CryptoError.BAD_REQUEST.getResponse()).build();
+        }
+    }
+
+    /**
+     * Пакетная подпись сообщений одним ключом: клиент собирает пакеты из одновременных вызовов /sign
+     */
+    @POST
+    @Path("/sign/batch")
+    public Response signBatch(SignatureRequest request) {
+        long start = System.nanoTime();
+        try {
+            SignatureBatch batch = request.getKeyId() != null
+                    ? keyringService.signBatch(request.getKeyId(), request.getBatch())
+                    : new SignatureBatch(signatureService.getAlgorithm(), signatureService.getPublicKeyBase64(),
+                            signatureService.signBatch(request.getBatch()));
+            requestLogger.success("sign-batch", start);
+            return Response.ok(batch).build();
+        } catch (CryptoException e) {
+            requestLogger.failure("sign-batch", start, e);
+            return Response.status(Response.Status.BAD_REQUEST).entity(e.getError().getResponse()).build();
+        } catch (Exception e) {
+            requestLogger.failure("sign-batch", start, e);
+            return Response.status(Response.Status.BAD_REQUEST).entity(CryptoError.BAD_REQUEST.getResponse()).build();
         }
     }
 
     @POST
     @Path("/verify")
     public Response verifySignature(VerificationRequest request) {
+        long start = System.nanoTime();
         try {
 
-            boolean isValid = signatureService.verifySignature(request.getMessage(), request.getSignature());
+            boolean isValid;
+            if (request.getKeyId() != null) {
+                isValid = request.getDigest() != null
+                        ? keyringService.verifyDigest(request.getKeyId(), request.getDigest(), request.getSignature())
+                        : keyringService.verify(request.getKeyId(), request.getMessage(), request.getSignature());
+            } else {
+                isValid = request.getDigest() != null
+                        ? signatureService.verifyDigest(request.getDigest(), request.getSignature())
+                        : signatureService.verifySignature(request.getMessage(), request.getSignature());
+            }
             String message = isValid ? "Signature is VALID" : "Signature is INVALID";
+            requestLogger.success("verify", start);
             return Response.ok(new VerificationResponse(isValid, message)).build();
+        } catch (CryptoException e) {
+            requestLogger.failure("verify", start, e);
+            return Response.status(Response.Status.BAD_REQUEST).entity(e.getError().getResponse()).build();
         } catch (Exception e) {
-            e.printStackTrace();
-            return Response.status(Response.Status.BAD_REQUEST)
-                    .entity(new ErrorResponse("Error verifying signature: " + e.getMessage()))
-                    .build();
+            requestLogger.failure("verify", start, e);
+            return Response.status(Response.Status.BAD_REQUEST).entity(CryptoError.BAD_REQUEST.getResponse()).build();
+        }
+    }
+
+    /**
+     * Пакетная проверка подписей параллельно на всех потоках крипто-пула
+     */
+    @POST
+    @Path("/verify/bulk")
+    public Response verifyBulk(BulkVerificationRequest request) {
+        long start = System.nanoTime();
+        try {
+            BulkVerificationResponse response = bulkVerificationService.verify(request.getMode(), request.getItems());
+            requestLogger.success("verify-bulk", start);
+            return Response.ok(response).build();
+        } catch (CryptoException e) {
+            requestLogger.failure("verify-bulk", start, e);
+            return Response.status(Response.Status.BAD_REQUEST).entity(e.getError().getResponse()).build();
+        } catch (Exception e) {
+            requestLogger.failure("verify-bulk", start, e);
+            return Response.status(Response.Status.BAD_REQUEST).entity(CryptoError.BAD_REQUEST.getResponse()).build();
+        }
+    }
+
+    /**
+     * Проверка подписи внешнего подписанта ключом из запроса (Base64 DER или JWK)
+     */
+    @POST
+    @Path("/verify/external")
+    public Response verifyExternalSignature(ExternalVerificationRequest request) {
+        long start = System.nanoTime();
+        try {
+            boolean isValid = request.getDigest() != null
+                    ? externalKeyVerifier.verifyDigest(request.getDigest(), request.getSignature(),
+                            request.getPublicKey(), request.getJwk())
+                    : externalKeyVerifier.verify(request.getMessage(), request.getSignature(),
+                            request.getPublicKey(), request.getJwk());
+            String message = isValid ? "Signature is VALID" : "Signature is INVALID";
+            requestLogger.success("verify-external", start);
+            return Response.ok(new VerificationResponse(isValid, message)).build();
+        } catch (CryptoException e) {
+            requestLogger.failure("verify-external", start, e);
+            return Response.status(Response.Status.BAD_REQUEST).entity(e.getError().getResponse()).build();
+        } catch (Exception e) {
+            requestLogger.failure("verify-external", start, e);
+            return Response.status(Response.Status.BAD_REQUEST).entity(CryptoError.BAD_REQUEST.getResponse()).build();
+        }
+    }
+
+    /**
+     * Подпись документа произвольного размера из тела application/octet-stream
+     */
+    @POST
+    @Path("/sign/stream")
+    @Consumes(MediaType.APPLICATION_OCTET_STREAM)
+    public Response signStream(InputStream body) {
+        long start = System.nanoTime();
+        try {
+            String signature = signatureService.signStream(body);
+            requestLogger.success("sign-stream", start);
+            return Response.ok(new SignedMessage(null, signature, signatureService.getAlgorithm(),
+                    signatureService.getPublicKeyBase64())).build();
+        } catch (CryptoException e) {
+            requestLogger.failure("sign-stream", start, e);
+            return Response.status(Response.Status.BAD_REQUEST).entity(e.getError().getResponse()).build();
+        } catch (Exception e) {
+            requestLogger.failure("sign-stream", start, e);
+            return Response.status(Response.Status.BAD_REQUEST).entity(CryptoError.BAD_REQUEST.getResponse()).build();
+        }
+    }
+
+    /**
+     * Проверка подписи документа из тела application/octet-stream; подпись в заголовке X-Signature
+     */
+    @POST
+    @Path("/verify/stream")
+    @Consumes(MediaType.APPLICATION_OCTET_STREAM)
+    public Response verifyStream(InputStream body, @HeaderParam(SIGNATURE_HEADER) String signature) {
+        long start = System.nanoTime();
+        try {
+            boolean isValid = signatureService.verifyStream(body, signature);
+            String message = isValid ? "Signature is VALID" : "Signature is INVALID";
+            requestLogger.success("verify-stream", start);
+            return Response.ok(new VerificationResponse(isValid, message)).build();
+        } catch (CryptoException e) {
+            requestLogger.failure("verify-stream", start, e);
+            return Response.status(Response.Status.BAD_REQUEST).entity(e.getError().getResponse()).build();
+        } catch (Exception e) {
+            requestLogger.failure("verify-stream", start, e);
+            return Response.status(Response.Status.BAD_REQUEST).entity(CryptoError.BAD_REQUEST.getResponse()).build();
+        }
+    }
+
+    /**
+     * Подпись файла из каталога tkonf.files.dir на сервере
+     */
+    @POST
+    @Path("/sign/file")
+    public Response signFile(FileSignatureRequest request) {
+        long start = System.nanoTime();
+        try {
+            SignedMessage signedMessage = fileSigningService.sign(request.getPath());
+            requestLogger.success("sign-file", start);
+            return Response.ok(signedMessage).build();
+        } catch (CryptoException e) {
+            requestLogger.failure("sign-file", start, e);
+            return Response.status(Response.Status.BAD_REQUEST).entity(e.getError().getResponse()).build();
+        } catch (Exception e) {
+            requestLogger.failure("sign-file", start, e);
+            return Response.status(Response.Status.BAD_REQUEST).entity(CryptoError.BAD_REQUEST.getResponse()).build();
+        }
+    }
+
+    @POST
+    @Path("/verify/file")
+    public Response verifyFile(FileSignatureRequest request) {
+        long start = System.nanoTime();
+        try {
+            boolean isValid = fileSigningService.verify(request.getPath(), request.getSignature());
+            String message = isValid ? "Signature is VALID" : "Signature is INVALID";
+            requestLogger.success("verify-file", start);
+            return Response.ok(new VerificationResponse(isValid, message)).build();
+        } catch (CryptoException e) {
+            requestLogger.failure("verify-file", start, e);
+            return Response.status(Response.Status.BAD_REQUEST).entity(e.getError().getResponse()).build();
+        } catch (Exception e) {
+            requestLogger.failure("verify-file", start, e);
+            return Response.status(Response.Status.BAD_REQUEST).entity(CryptoError.BAD_REQUEST.getResponse()).build();
+        }
+    }
+
+    /**
+     * Выпуск JWS (compact) ключом сервиса или арендатора
+     */
+    @POST
+    @Path("/jws")
+    public Response issueJws(JwsRequest request) {
+        long start = System.nanoTime();
+        try {
+            JwsToken token = jwsService.issue(request.getAlg(), request.getKeyId(), request.getClaims());
+            requestLogger.success("jws", start);
+            return Response.ok(token).build();
+        } catch (CryptoException e) {
+            requestLogger.failure("jws", start, e);
+            return Response.status(Response.Status.BAD_REQUEST).entity(e.getError().getResponse()).build();
+        } catch (Exception e) {
+            requestLogger.failure("jws", start, e);
+            return Response.status(Response.Status.BAD_REQUEST).entity(CryptoError.BAD_REQUEST.getResponse()).build();
+        }
+    }
+
+    /**
+     * Пакетный выпуск JWS: один токен на каждый элемент batch
+     */
+    @POST
+    @Path("/jws/batch")
+    public Response issueJwsBatch(JwsRequest request) {
+        long start = System.nanoTime();
+        try {
+            JwsBatch batch = jwsService.issueBatch(request.getAlg(), request.getKeyId(), request.getBatch());
+            requestLogger.success("jws-batch", start);
+            return Response.ok(batch).build();
+        } catch (CryptoException e) {
+            requestLogger.failure("jws-batch", start, e);
+            return Response.status(Response.Status.BAD_REQUEST).entity(e.getError().getResponse()).build();
+        } catch (Exception e) {
+            requestLogger.failure("jws-batch", start, e);
+            return Response.status(Response.Status.BAD_REQUEST).entity(CryptoError.BAD_REQUEST.getResponse()).build();
+        }
+    }
+
+    /**
+     * HMAC-SHA256 сообщения секретом keyId: для внутренних вызовов без асимметричной подписи
+     */
+    @POST
+    @Path("/hmac/sign")
+    public Response signHmac(SignatureRequest request) {
+        long start = System.nanoTime();
+        try {
+            SignedMessage signedMessage = hmacService.sign(request.getKeyId(), request.getMessage());
+            requestLogger.success("hmac-sign", start);
+            return Response.ok(signedMessage).build();
+        } catch (CryptoException e) {
+            requestLogger.failure("hmac-sign", start, e);
+            return Response.status(Response.Status.BAD_REQUEST).entity(e.getError().getResponse()).build();
+        } catch (Exception e) {
+            requestLogger.failure("hmac-sign", start, e);
+            return Response.status(Response.Status.BAD_REQUEST).entity(CryptoError.BAD_REQUEST.getResponse()).build();
+        }
+    }
+
+    @POST
+    @Path("/hmac/verify")
+    public Response verifyHmac(VerificationRequest request) {
+        long start = System.nanoTime();
+        try {
+            boolean isValid = hmacService.verify(request.getKeyId(), request.getMessage(), request.getSignature());
+            String message = isValid ? "Signature is VALID" : "Signature is INVALID";
+            requestLogger.success("hmac-verify", start);
+            return Response.ok(new VerificationResponse(isValid, message)).build();
+        } catch (CryptoException e) {
+            requestLogger.failure("hmac-verify", start, e);
+            return Response.status(Response.Status.BAD_REQUEST).entity(e.getError().getResponse()).build();
+        } catch (Exception e) {
+            requestLogger.failure("hmac-verify", start, e);
+            return Response.status(Response.Status.BAD_REQUEST).entity(CryptoError.BAD_REQUEST.getResponse()).build();
+        }
+    }
+
+    /**
+     * Поиск выданных подписей по SHA-256 дайджесту (hex или Base64url) в журнале аудита
+     */
+    @GET
+    @Path("/signatures/{digest}")
+    public Response findSignatures(@PathParam("digest") String digest) {
+        long start = System.nanoTime();
+        try {
+            SignatureLookup lookup = auditLog.lookup(digest);
+            requestLogger.success("signatures", start);
+            return Response.ok(lookup).build();
+        } catch (CryptoException e) {
+            requestLogger.failure("signatures", start, e);
+            return Response.status(Response.Status.BAD_REQUEST).entity(e.getError().getResponse()).build();
+        } catch (Exception e) {
+            requestLogger.failure("signatures", start, e);
+            return Response.status(Response.Status.BAD_REQUEST).entity(CryptoError.BAD_REQUEST.getResponse()).build();
+        }
+    }
+
+    /**
+     * Открывает сессию AES-GCM: дальше /encrypt и /decrypt с sessionId обходятся без RSA
+     */
+    @POST
+    @Path("/session")
+    public Response openSession(SessionRequest request) {
+        long start = System.nanoTime();
+        try {
+            SessionResponse session = sessionService.open(request.getWrappedKey());
+            requestLogger.success("session", start);
+            return Response.ok(session).build();
+        } catch (CryptoException e) {
+            requestLogger.failure("session", start, e);
+            return Response.status(Response.Status.BAD_REQUEST).entity(e.getError().getResponse()).build();
+        } catch (Exception e) {
+            requestLogger.failure("session", start, e);
+            return Response.status(Response.Status.BAD_REQUEST).entity(CryptoError.BAD_REQUEST.getResponse()).build();
         }
     }
 
     @POST
     @Path("/encrypt")
     public Response encryptMessage(SignatureRequest request) {
+        long start = System.nanoTime();
         try {
 
-            String encrypted = signatureService.encrypt(request.getMessage());
+            String encrypted = request.getSessionId() != null
+                    ? sessionService.encrypt(request.getSessionId(), request.getMessage())
+                    : signatureService.encrypt(request.getMessage());
+            requestLogger.success("encrypt", start);
             return Response.ok(new CryptoResponse(encrypted)).build();
+        } catch (CryptoException e) {
+            requestLogger.failure("encrypt", start, e);
+            return Response.status(Response.Status.BAD_REQUEST).entity(e.getError().getResponse()).build();
         } catch (Exception e) {
-            e.printStackTrace();
-            return Response.status(Response.Status.BAD_REQUEST)
-                    .entity(new ErrorResponse("Error encrypting message: " + e.getMessage()))
-                    .build();
+            requestLogger.failure("encrypt", start, e);
+            return Response.status(Response.Status.BAD_REQUEST).entity(CryptoError.BAD_REQUEST.getResponse()).build();
         }
     }
 
     @POST
     @Path("/decrypt")
     public Response decryptMessage(SignatureRequest request) {
+        long start = System.nanoTime();
         try {
 
-            String decrypted = signatureService.decrypt(request.getMessage());
+            String decrypted = request.getSessionId() != null
+                    ? sessionService.decrypt(request.getSessionId(), request.getMessage())
+                    : signatureService.decrypt(request.getMessage());
+            requestLogger.success("decrypt", start);
             return Response.ok(new CryptoResponse(decrypted)).build();
+        } catch (CryptoException e) {
+            requestLogger.failure("decrypt", start, e);
+            return Response.status(Response.Status.BAD_REQUEST).entity(e.getError().getResponse()).build();
         } catch (Exception e) {
-            e.printStackTrace();
-            return Response.status(Response.Status.BAD_REQUEST)
-                    .entity(new ErrorResponse("Error decrypting message: " + e.getMessage()))
+            requestLogger.failure("decrypt", start, e);
+            return Response.status(Response.Status.BAD_REQUEST).entity(CryptoError.BAD_REQUEST.getResponse()).build();
+        }
+    }
+
+    /**
+     * Новая пара ключей RSA, собранная из заранее найденных простых чисел
+     */
+    @POST
+    @Path("/keys")
+    // Запрос без тела: иначе действует @Consumes класса, и POST без Content-Type получает 415
+    @Consumes(MediaType.WILDCARD)
+    public Response generateKeyPair() {
+        long start = System.nanoTime();
+        try {
+            GeneratedKeyPair keyPair = keyGenerationService.generate();
+            requestLogger.success("keys", start);
+            return Response.ok(keyPair).build();
+        } catch (Exception e) {
+            requestLogger.failure("keys", start, e);
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .entity(CryptoError.KEY_GENERATION_FAILED.getResponse())
                     .build();
         }
     }
 
+    /**
+     * Публичный ключ сервиса с ETag: клиент с закэшированным ключом получает 304 без тела
+     */
     @GET
     @Path("/public-key")
     @Produces(MediaType.TEXT_PLAIN)
-    public Response getPublicKey() {
+    public Response getPublicKey(@HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch) {
         try {
-            String publicKey = signatureService.getPublicKeyBase64();
-            return Response.ok(publicKey).build();
+            SignatureService.PublishedKey publicKey = signatureService.getPublishedKey();
+            if (publicKey.eTag().equals(ifNoneMatch)) {
+                return Response.notModified().header(HttpHeaders.ETAG, publicKey.eTag()).build();
+            }
+            return Response.ok(publicKey.base64()).header(HttpHeaders.ETAG, publicKey.eTag()).build();
         } catch (Exception e) {
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
                     .entity("Error getting public key: " + e.getMessage())
@@ -103,4 +483,15 @@ public class QuarkusCryptoController {
     public Response health() {
         return Response.ok(new HealthResponse("Quarkus Crypto Service is running")).build();
     }
+
+    /**
+     * Готовность к трафику: 503, пока идет прогрев JIT
+     */
+    @GET
+    @Path("/ready")
+    public Response ready() {
+        return Response.status(warmupService.isReady() ? Response.Status.OK : Response.Status.SERVICE_UNAVAILABLE)
+                .entity(warmupService.getStatus())
+                .build();
+    }
 }
\ No newline at end of file
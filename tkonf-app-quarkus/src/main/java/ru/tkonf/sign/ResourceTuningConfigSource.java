@@ -0,0 +1,42 @@
+package ru.tkonf.sign;
+
+import org.eclipse.microprofile.config.spi.ConfigSource;
+import ru.tkonf.sign.service.ResourceTuning;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Размеры пулов Vert.x/воркеров и приложения, выведенные из лимитов cgroup. Ординал ниже
+ * application.properties (250), поэтому все явные настройки имеют приоритет
+ */
+public class ResourceTuningConfigSource implements ConfigSource {
+    private static final int ORDINAL = 50;
+
+    private final Map<String, String> properties = ResourceTuning.current().properties();
+
+    @Override
+    public Map<String, String> getProperties() {
+        return properties;
+    }
+
+    @Override
+    public Set<String> getPropertyNames() {
+        return properties.keySet();
+    }
+
+    @Override
+    public String getValue(String propertyName) {
+        return properties.get(propertyName);
+    }
+
+    @Override
+    public String getName() {
+        return "resource-tuning";
+    }
+
+    @Override
+    public int getOrdinal() {
+        return ORDINAL;
+    }
+}
@@ -0,0 +1,23 @@
+package ru.tkonf.sign.filter;
+
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerRequestFilter;
+import jakarta.ws.rs.container.PreMatching;
+import jakarta.ws.rs.ext.Provider;
+import ru.tkonf.sign.service.ServerTiming;
+
+/**
+ * Начинает замер {@code Server-Timing} для запросов /api/crypto/*,
+ * заголовок выставляет {@link ServerTimingWriterInterceptor}
+ */
+@Provider
+@PreMatching
+public class ServerTimingFilter implements ContainerRequestFilter {
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        if (requestContext.getUriInfo().getPath().startsWith("/api/crypto/")) {
+            ServerTiming.begin(requestContext.getHeaderString(ServerTiming.REQUEST_START_HEADER));
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package ru.tkonf.sign.filter;
+
+import jakarta.ws.rs.ext.Provider;
+import jakarta.ws.rs.ext.WriterInterceptor;
+import jakarta.ws.rs.ext.WriterInterceptorContext;
+import ru.tkonf.sign.service.ServerTiming;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Пишет тело в буфер потока, чтобы в {@code Server-Timing} попало и время сериализации
+ */
+@Provider
+public class ServerTimingWriterInterceptor implements WriterInterceptor {
+
+    @Override
+    public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+        ServerTiming timing = ServerTiming.current();
+        if (timing == null) {
+            context.proceed();
+            return;
+        }
+
+        OutputStream original = context.getOutputStream();
+        ByteArrayOutputStream buffer = timing.bodyBuffer();
+        context.setOutputStream(buffer);
+        timing.serializationStarted();
+        try {
+            context.proceed();
+        } finally {
+            timing.serializationFinished();
+            context.setOutputStream(original);
+        }
+        context.getHeaders().putSingle(ServerTiming.HEADER, timing.finish());
+        buffer.writeTo(original);
+    }
+}
@@ -0,0 +1,106 @@
+package ru.tkonf.sign.model;
+
+/**
+ * Состояние журнала аудита подписей: записи, ожидание подписантов и стоимость fsync
+ */
+public class AuditStats {
+    private boolean enabled;
+    private String fsyncPolicy;
+    private long written;
+    private int pending;
+    private long stalls;
+    private long rejected;
+    private long writeFailures;
+    private long lastSequence;
+    private long fsyncs;
+    private long averageFsyncMicros;
+    private long maxFsyncMicros;
+    private long segmentsOpened;
+    private String segment;
+    private long indexedRecords;
+    private long indexSlots;
+    private boolean indexCrowded;
+    private long unindexedRecords;
+
+    public AuditStats() {}
+
+    public AuditStats(boolean enabled, String fsyncPolicy, long written, int pending, long stalls, long rejected,
+                      long writeFailures, long lastSequence, long fsyncs, long averageFsyncMicros,
+                      long maxFsyncMicros, long segmentsOpened, String segment, long indexedRecords,
+                      long indexSlots, boolean indexCrowded, long unindexedRecords) {
+        this.enabled = enabled;
+        this.fsyncPolicy = fsyncPolicy;
+        this.written = written;
+        this.pending = pending;
+        this.stalls = stalls;
+        this.rejected = rejected;
+        this.writeFailures = writeFailures;
+        this.lastSequence = lastSequence;
+        this.fsyncs = fsyncs;
+        this.averageFsyncMicros = averageFsyncMicros;
+        this.maxFsyncMicros = maxFsyncMicros;
+        this.segmentsOpened = segmentsOpened;
+        this.segment = segment;
+        this.indexedRecords = indexedRecords;
+        this.indexSlots = indexSlots;
+        this.indexCrowded = indexCrowded;
+        this.unindexedRecords = unindexedRecords;
+    }
+
+    // Геттеры и сеттеры
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+    public String getFsyncPolicy() { return fsyncPolicy; }
+    public void setFsyncPolicy(String fsyncPolicy) { this.fsyncPolicy = fsyncPolicy; }
+
+    public long getWritten() { return written; }
+    public void setWritten(long written) { this.written = written; }
+
+    public int getPending() { return pending; }
+    public void setPending(int pending) { this.pending = pending; }
+
+    // Подписи, ждавшие места в заполненном буфере
+    public long getStalls() { return stalls; }
+    public void setStalls(long stalls) { this.stalls = stalls; }
+
+    // Подписи, не выданные из-за недоступного журнала
+    public long getRejected() { return rejected; }
+    public void setRejected(long rejected) { this.rejected = rejected; }
+
+    public long getWriteFailures() { return writeFailures; }
+    public void setWriteFailures(long writeFailures) { this.writeFailures = writeFailures; }
+
+    public long getLastSequence() { return lastSequence; }
+    public void setLastSequence(long lastSequence) { this.lastSequence = lastSequence; }
+
+    public long getFsyncs() { return fsyncs; }
+    public void setFsyncs(long fsyncs) { this.fsyncs = fsyncs; }
+
+    public long getAverageFsyncMicros() { return averageFsyncMicros; }
+    public void setAverageFsyncMicros(long averageFsyncMicros) { this.averageFsyncMicros = averageFsyncMicros; }
+
+    public long getMaxFsyncMicros() { return maxFsyncMicros; }
+    public void setMaxFsyncMicros(long maxFsyncMicros) { this.maxFsyncMicros = maxFsyncMicros; }
+
+    public long getSegmentsOpened() { return segmentsOpened; }
+    public void setSegmentsOpened(long segmentsOpened) { this.segmentsOpened = segmentsOpened; }
+
+    public String getSegment() { return segment; }
+    public void setSegment(String segment) { this.segment = segment; }
+
+    // Заполнение индекса поиска подписей: записи и слоты
+    public long getIndexedRecords() { return indexedRecords; }
+    public void setIndexedRecords(long indexedRecords) { this.indexedRecords = indexedRecords; }
+
+    public long getIndexSlots() { return indexSlots; }
+    public void setIndexSlots(long indexSlots) { this.indexSlots = indexSlots; }
+
+    // Индекс заполнен больше чем на 3/4 и требует большего tkonf.audit.index-slots
+    public boolean isIndexCrowded() { return indexCrowded; }
+    public void setIndexCrowded(boolean indexCrowded) { this.indexCrowded = indexCrowded; }
+
+    // Записи журнала, не попавшие в заполненный индекс: поиск их не находит
+    public long getUnindexedRecords() { return unindexedRecords; }
+    public void setUnindexedRecords(long unindexedRecords) { this.unindexedRecords = unindexedRecords; }
+}
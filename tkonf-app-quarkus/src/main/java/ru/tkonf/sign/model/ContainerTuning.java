@@ -0,0 +1,65 @@
+package ru.tkonf.sign.model;
+
+import java.util.Map;
+
+public class ContainerTuning {
+    private boolean enabled;
+    private String source;
+    private double cpuLimit;
+    private long memoryLimitBytes;
+    private int effectiveCpus;
+    private int serverThreads;
+    private int cryptoThreads;
+    private int acceptQueue;
+    private int requestLogCapacity;
+    private int cacheEntries;
+    private long cpuPeriods;
+    private long throttledPeriods;
+    private long throttledMillis;
+    private Map<String, String> properties;
+
+    public ContainerTuning() {}
+
+    // Геттеры и сеттеры
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+    public String getSource() { return source; }
+    public void setSource(String source) { this.source = source; }
+
+    public double getCpuLimit() { return cpuLimit; }
+    public void setCpuLimit(double cpuLimit) { this.cpuLimit = cpuLimit; }
+
+    public long getMemoryLimitBytes() { return memoryLimitBytes; }
+    public void setMemoryLimitBytes(long memoryLimitBytes) { this.memoryLimitBytes = memoryLimitBytes; }
+
+    public int getEffectiveCpus() { return effectiveCpus; }
+    public void setEffectiveCpus(int effectiveCpus) { this.effectiveCpus = effectiveCpus; }
+
+    public int getServerThreads() { return serverThreads; }
+    public void setServerThreads(int serverThreads) { this.serverThreads = serverThreads; }
+
+    public int getCryptoThreads() { return cryptoThreads; }
+    public void setCryptoThreads(int cryptoThreads) { this.cryptoThreads = cryptoThreads; }
+
+    public int getAcceptQueue() { return acceptQueue; }
+    public void setAcceptQueue(int acceptQueue) { this.acceptQueue = acceptQueue; }
+
+    public int getRequestLogCapacity() { return requestLogCapacity; }
+    public void setRequestLogCapacity(int requestLogCapacity) { this.requestLogCapacity = requestLogCapacity; }
+
+    public int getCacheEntries() { return cacheEntries; }
+    public void setCacheEntries(int cacheEntries) { this.cacheEntries = cacheEntries; }
+
+    public long getCpuPeriods() { return cpuPeriods; }
+    public void setCpuPeriods(long cpuPeriods) { this.cpuPeriods = cpuPeriods; }
+
+    public long getThrottledPeriods() { return throttledPeriods; }
+    public void setThrottledPeriods(long throttledPeriods) { this.throttledPeriods = throttledPeriods; }
+
+    public long getThrottledMillis() { return throttledMillis; }
+    public void setThrottledMillis(long throttledMillis) { this.throttledMillis = throttledMillis; }
+
+    public Map<String, String> getProperties() { return properties; }
+    public void setProperties(Map<String, String> properties) { this.properties = properties; }
+}
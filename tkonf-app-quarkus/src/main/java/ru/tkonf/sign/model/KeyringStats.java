@@ -0,0 +1,49 @@
+package ru.tkonf.sign.model;
+
+/**
+ * Состояние кэша ключей арендаторов: попадания, загрузки с диска и вытеснения
+ */
+public class KeyringStats {
+    private int cachedKeys;
+    private long hits;
+    private long misses;
+    private long loadFailures;
+    private long evictions;
+    private long averageLoadMicros;
+    private long maxLoadMicros;
+
+    public KeyringStats() {}
+
+    public KeyringStats(int cachedKeys, long hits, long misses, long loadFailures, long evictions,
+                        long averageLoadMicros, long maxLoadMicros) {
+        this.cachedKeys = cachedKeys;
+        this.hits = hits;
+        this.misses = misses;
+        this.loadFailures = loadFailures;
+        this.evictions = evictions;
+        this.averageLoadMicros = averageLoadMicros;
+        this.maxLoadMicros = maxLoadMicros;
+    }
+
+    // Геттеры и сеттеры
+    public int getCachedKeys() { return cachedKeys; }
+    public void setCachedKeys(int cachedKeys) { this.cachedKeys = cachedKeys; }
+
+    public long getHits() { return hits; }
+    public void setHits(long hits) { this.hits = hits; }
+
+    public long getMisses() { return misses; }
+    public void setMisses(long misses) { this.misses = misses; }
+
+    public long getLoadFailures() { return loadFailures; }
+    public void setLoadFailures(long loadFailures) { this.loadFailures = loadFailures; }
+
+    public long getEvictions() { return evictions; }
+    public void setEvictions(long evictions) { this.evictions = evictions; }
+
+    public long getAverageLoadMicros() { return averageLoadMicros; }
+    public void setAverageLoadMicros(long averageLoadMicros) { this.averageLoadMicros = averageLoadMicros; }
+
+    public long getMaxLoadMicros() { return maxLoadMicros; }
+    public void setMaxLoadMicros(long maxLoadMicros) { this.maxLoadMicros = maxLoadMicros; }
+}
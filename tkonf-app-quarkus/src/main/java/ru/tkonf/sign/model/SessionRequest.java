@@ -0,0 +1,19 @@
+package ru.tkonf.sign.model;
+
+/**
+ * Открытие сессии шифрования: ключ AES, зашифрованный публичным ключом сервиса (RSA PKCS#1 v1.5)
+ */
+public class SessionRequest {
+    private String wrappedKey;
+
+    public SessionRequest() {}
+
+    public SessionRequest(String wrappedKey) {
+        this.wrappedKey = wrappedKey;
+    }
+
+    // Геттеры и сеттеры
+    // Base64; null - ключ генерирует сервис
+    public String getWrappedKey() { return wrappedKey; }
+    public void setWrappedKey(String wrappedKey) { this.wrappedKey = wrappedKey; }
+}
@@ -3,6 +3,8 @@ package ru.tkonf.sign.model;
 public class VerificationRequest {
     private String message;
     private String signature;
+    private String keyId;
+    private String digest;
 
     public VerificationRequest() {}
 
@@ -17,4 +19,12 @@ public class VerificationRequest {
 
     public String getSignature() { return signature; }
     public void setSignature(String signature) { this.signature = signature; }
-}
\ No newline at end of file
+
+    // Ключ арендатора из keyring; null - ключ сервиса
+    public String getKeyId() { return keyId; }
+    public void setKeyId(String keyId) { this.keyId = keyId; }
+
+    // SHA-256 дайджест сообщения в Base64 вместо самого сообщения
+    public String getDigest() { return digest; }
+    public void setDigest(String digest) { this.digest = digest; }
+}
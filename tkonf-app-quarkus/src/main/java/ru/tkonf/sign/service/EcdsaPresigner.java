@@ -0,0 +1,223 @@
+package ru.tkonf.sign.service;
+
+import io.quarkus.runtime.Startup;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.crac.Context;
+import org.crac.Core;
+import org.crac.Resource;
+import ru.tkonf.sign.model.PresignStats;
+import ru.tkonf.sign.util.BoundedRingBuffer;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.SecureRandom;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.ECParameterSpec;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Предвычисленные пары ECDSA P-256 для подписи ключами арендаторов.
+ * <p>
+ * Основная цена подписи ECDSA - умножение базовой точки на одноразовое k, и оно не зависит ни от
+ * сообщения, ни от ключа. Фоновый поток заранее получает пары (k, kG) от генератора ключей EC
+ * провайдера, сохраняет {@code k^-1 mod n} и {@code r = x(kG) mod n} в lock-free кольце емкостью
+ * {@code tkonf.ecdsa.presign.pool}, а запрос считает только {@code s = k^-1 (z + r d) mod n}.
+ * Пара выдается ровно один раз: повтор k с двумя сообщениями раскрывает приватный ключ. Пока загрузка
+ * CPU выше {@code tkonf.ecdsa.presign.busy-cpu-load}, пополнение ждет; при пустом пуле подписывает
+ * обычный {@link java.security.Signature}.
+ * <p>
+ * Выключено по умолчанию ({@code tkonf.ecdsa.presign.enabled}): завершение подписи считается на
+ * {@link BigInteger}, который, в отличие от реализации ECDSA в JDK, не работает за постоянное время.
+ */
+@ApplicationScoped
+@Startup
+public class EcdsaPresigner implements Resource {
+    public static final String CURVE = "secp256r1";
+
+    private static final long IDLE_PARK_NANOS = 1_000_000_000L;
+    private static final long BUSY_PARK_NANOS = 100_000_000L;
+
+    private final boolean enabled;
+    private final double busyCpuLoad;
+    private final ECParameterSpec curve;
+    private final BigInteger order;
+    private final BoundedRingBuffer<Presignature> pool;
+    private final com.sun.management.OperatingSystemMXBean os;
+
+    private final LongAdder precomputed = new LongAdder();
+    private final LongAdder precomputeNanos = new LongAdder();
+    private final LongAdder refillPauses = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    // Генератор захватывает SecureRandom, поэтому пересоздается после восстановления из CRaC
+    private volatile KeyPairGenerator generator;
+    private volatile boolean suspended;
+    private volatile boolean running = true;
+    private final Thread refillThread;
+
+    @Inject
+    public EcdsaPresigner(@ConfigProperty(name = "tkonf.ecdsa.presign.enabled", defaultValue = "false") boolean enabled,
+                          @ConfigProperty(name = "tkonf.ecdsa.presign.pool", defaultValue = "1024") int poolSize,
+                          @ConfigProperty(name = "tkonf.ecdsa.presign.busy-cpu-load", defaultValue = "0.75") double busyCpuLoad)
+            throws GeneralSecurityException {
+        this.enabled = enabled;
+        this.busyCpuLoad = busyCpuLoad;
+        this.generator = newGenerator();
+        this.curve = ((ECPublicKey) generator.generateKeyPair().getPublic()).getParams();
+        this.order = curve.getOrder();
+        this.pool = new BoundedRingBuffer<>(poolSize);
+        this.os = ManagementFactory.getOperatingSystemMXBean() instanceof com.sun.management.OperatingSystemMXBean bean
+                ? bean
+                : null;
+        if (enabled) {
+            this.refillThread = new Thread(this::refillLoop, "ecdsa-presign-refill");
+            this.refillThread.setDaemon(true);
+            this.refillThread.setPriority(Thread.MIN_PRIORITY);
+            this.refillThread.start();
+            Core.getGlobalContext().register(this);
+        } else {
+            this.refillThread = null;
+        }
+    }
+
+    /**
+     * Ключ на кривой P-256, которую обслуживает пул
+     */
+    public boolean supports(ECPrivateKey key) {
+        return enabled && order.equals(key.getParams().getOrder())
+                && curve.getCurve().equals(key.getParams().getCurve());
+    }
+
+    /**
+     * Подпись SHA-256 дайджеста в DER, как у {@code SHA256withECDSA}; null - пул пуст, нужна обычная подпись
+     */
+    public byte[] sign(ECPrivateKey key, byte[] digest) {
+        while (true) {
+            Presignature presignature = pool.poll();
+            if (presignature == null) {
+                misses.increment();
+                return null;
+            }
+            LockSupport.unpark(refillThread);
+            // Длина дайджеста равна длине порядка P-256, усечение z не нужно
+            BigInteger z = new BigInteger(1, digest);
+            BigInteger s = presignature.kInverse.multiply(z.add(presignature.r.multiply(key.getS())).mod(order))
+                    .mod(order);
+            if (s.signum() != 0) {
+                hits.increment();
+                return toDer(presignature.r, s);
+            }
+            // s = 0 недопустима (FIPS 186-4, 6.4); пара израсходована, берем следующую
+        }
+    }
+
+    public PresignStats getStats() {
+        long count = precomputed.sum();
+        long averagePrecomputeMicros = count > 0 ? TimeUnit.NANOSECONDS.toMicros(precomputeNanos.sum() / count) : 0;
+        return new PresignStats(enabled, pool.size(), pool.capacity(), count, averagePrecomputeMicros,
+                refillPauses.sum(), hits.sum(), misses.sum());
+    }
+
+    @PreDestroy
+    public void close() {
+        running = false;
+        LockSupport.unpark(refillThread);
+    }
+
+    /**
+     * Одноразовые k не должны попасть в образ: реплики из одного чекпоинта повторили бы их
+     */
+    @Override
+    public synchronized void beforeCheckpoint(Context<? extends Resource> context) {
+        suspended = true;
+        while (pool.poll() != null) {
+            // Пары отбрасываются
+        }
+    }
+
+    @Override
+    public synchronized void afterRestore(Context<? extends Resource> context) throws GeneralSecurityException {
+        generator = newGenerator();
+        suspended = false;
+        LockSupport.unpark(refillThread);
+    }
+
+    private void refillLoop() {
+        while (running) {
+            if (suspended || pool.size() >= pool.capacity()) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+            if (pool.size() > pool.capacity() / 4 && isCpuBusy()) {
+                refillPauses.increment();
+                LockSupport.parkNanos(BUSY_PARK_NANOS);
+                continue;
+            }
+            long start = System.nanoTime();
+            KeyPair ephemeral = generator.generateKeyPair();
+            BigInteger k = ((ECPrivateKey) ephemeral.getPrivate()).getS();
+            BigInteger r = ((ECPublicKey) ephemeral.getPublic()).getW().getAffineX().mod(order);
+            if (r.signum() == 0) {
+                continue;
+            }
+            Presignature presignature = new Presignature(k.modInverse(order), r);
+            precomputeNanos.add(System.nanoTime() - start);
+            precomputed.increment();
+            synchronized (this) {
+                // Пара, посчитанная во время чекпоинта, отбрасывается вместе с остальными
+                if (!suspended) {
+                    pool.offer(presignature);
+                }
+            }
+        }
+    }
+
+    /**
+     * Загрузка CPU машины или контейнера; если JVM ее не сообщает, CPU считается свободным
+     */
+    private boolean isCpuBusy() {
+        return os != null && os.getCpuLoad() > busyCpuLoad;
+    }
+
+    private static KeyPairGenerator newGenerator() throws GeneralSecurityException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec(CURVE), new SecureRandom());
+        return generator;
+    }
+
+    /**
+     * {@code SEQUENCE { INTEGER r, INTEGER s }}; для P-256 длины укладываются в короткую форму
+     */
+    private static byte[] toDer(BigInteger r, BigInteger s) {
+        byte[] rBytes = r.toByteArray();
+        byte[] sBytes = s.toByteArray();
+        ByteArrayOutputStream der = new ByteArrayOutputStream(6 + rBytes.length + sBytes.length);
+        der.write(0x30);
+        der.write(4 + rBytes.length + sBytes.length);
+        der.write(0x02);
+        der.write(rBytes.length);
+        der.writeBytes(rBytes);
+        der.write(0x02);
+        der.write(sBytes.length);
+        der.writeBytes(sBytes);
+        return der.toByteArray();
+    }
+
+    /**
+     * Половина подписи, не зависящая от сообщения и ключа
+     */
+    private record Presignature(BigInteger kInverse, BigInteger r) {
+    }
+}
@@ -0,0 +1,139 @@
+package ru.tkonf.sign.service;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import ru.tkonf.sign.util.StripedLruCache;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.PublicKey;
+import java.util.Base64;
+import java.util.Map;
+
+/**
+ * Проверка подписей внешних подписантов по открытому ключу из запроса.
+ * <p>
+ * Разобранный ключ и пул {@link java.security.Signature}, уже инициализированных через {@code initVerify},
+ * кэшируются по SHA-256 отпечатку ключа, поэтому {@code KeyFactory} и {@code initVerify}
+ * выполняются один раз на ключ, а не на каждый запрос.
+ */
+@ApplicationScoped
+public class ExternalKeyVerifier {
+    // Больше любого поддерживаемого ключа (RSA 16384 в DER - около 2.8 КБ в Base64)
+    private static final int MAX_KEY_CHARS = 8192;
+    private static final String[] JWK_MEMBERS = {"kty", "crv", "n", "e", "x", "y"};
+
+    private final StripedLruCache<String, CachedVerifier> cache;
+    private final int verifiersPerKey;
+
+    @Inject
+    public ExternalKeyVerifier(@ConfigProperty(name = "tkonf.cache.entries", defaultValue = "1024") int cacheEntries,
+                               @ConfigProperty(name = "tkonf.crypto.threads", defaultValue = "2") int cryptoThreads) {
+        this.cache = new StripedLruCache<>(cacheEntries);
+        // Одновременно ключ может использовать не больше потоков, чем считают криптографию
+        this.verifiersPerKey = Math.max(2, cryptoThreads);
+    }
+
+    /**
+     * Проверяет подпись сообщения ключом, переданным как Base64 DER ({@code publicKey}) либо JWK
+     */
+    public boolean verify(String message, String signatureBase64, String publicKey, Map<String, String> jwk)
+            throws Exception {
+        SignatureService.checkMessage(message, SignatureService.MAX_MESSAGE_BYTES);
+        CachedVerifier verifier = resolve(publicKey, jwk);
+        SignatureService.checkBase64(signatureBase64, verifier.signatureBytes, CryptoError.SIGNATURE_REQUIRED,
+                CryptoError.SIGNATURE_MALFORMED, CryptoError.SIGNATURE_KEY_LENGTH);
+        long start = System.nanoTime();
+        try {
+            return verifier.pool.verify(message.getBytes(), Base64.getDecoder().decode(signatureBase64));
+        } finally {
+            ServerTiming.recordCrypto(start);
+        }
+    }
+
+    /**
+     * Проверяет подпись по готовому SHA-256 дайджесту сообщения (RSA или EC P-256)
+     */
+    public boolean verifyDigest(String digestBase64, String signatureBase64, String publicKey, Map<String, String> jwk)
+            throws Exception {
+        byte[] digest = DigestSigning.decodeDigest(digestBase64);
+        CachedVerifier verifier = resolve(publicKey, jwk);
+        if (verifier.digestPool == null) {
+            throw CryptoError.DIGEST_UNSUPPORTED.exception();
+        }
+        SignatureService.checkBase64(signatureBase64, verifier.signatureBytes, CryptoError.SIGNATURE_REQUIRED,
+                CryptoError.SIGNATURE_MALFORMED, CryptoError.SIGNATURE_KEY_LENGTH);
+        long start = System.nanoTime();
+        try {
+            return verifier.digestPool.verify(DigestSigning.rawInput(verifier.digestPool.getAlgorithm(), digest),
+                    Base64.getDecoder().decode(signatureBase64));
+        } finally {
+            ServerTiming.recordCrypto(start);
+        }
+    }
+
+    public int getCachedKeys() {
+        return cache.size();
+    }
+
+    private CachedVerifier resolve(String publicKey, Map<String, String> jwk) throws Exception {
+        boolean hasDer = publicKey != null && !publicKey.isEmpty();
+        if (!hasDer && (jwk == null || jwk.isEmpty())) {
+            throw CryptoError.PUBLIC_KEY_REQUIRED.exception();
+        }
+        if (hasDer && publicKey.length() > MAX_KEY_CHARS) {
+            throw CryptoError.PUBLIC_KEY_MALFORMED.exception();
+        }
+        String fingerprint = hasDer ? fingerprint(publicKey) : fingerprint(jwk);
+        CachedVerifier verifier = cache.get(fingerprint);
+        if (verifier == null) {
+            PublicKey key = hasDer ? PublicKeyParser.fromBase64Der(publicKey) : PublicKeyParser.fromJwk(jwk);
+            verifier = cache.putIfAbsent(fingerprint, new CachedVerifier(key, verifiersPerKey));
+        }
+        return verifier;
+    }
+
+    private static String fingerprint(String publicKey) throws GeneralSecurityException {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        digest.update((byte) 'D');
+        digest.update(publicKey.getBytes(StandardCharsets.ISO_8859_1));
+        return Base64.getEncoder().encodeToString(digest.digest());
+    }
+
+    private static String fingerprint(Map<String, String> jwk) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        digest.update((byte) 'J');
+        for (String member : JWK_MEMBERS) {
+            String value = jwk.get(member);
+            if (value != null) {
+                if (value.length() > MAX_KEY_CHARS) {
+                    throw CryptoError.PUBLIC_KEY_MALFORMED.exception();
+                }
+                digest.update(value.getBytes(StandardCharsets.ISO_8859_1));
+            }
+            // Разделитель, чтобы значения соседних полей не склеивались в один отпечаток
+            digest.update((byte) 0);
+        }
+        return Base64.getEncoder().encodeToString(digest.digest());
+    }
+
+    /**
+     * Пулы готовых к проверке объектов Signature и ожидаемая длина подписи для ключа;
+     * {@code digestPool} null, если ключ не поддерживает дайджест-режим
+     */
+    private static final class CachedVerifier {
+        private final SignaturePool pool;
+        private final SignaturePool digestPool;
+        private final int signatureBytes;
+
+        CachedVerifier(PublicKey key, int poolSize) throws CryptoException {
+            String algorithm = SignaturePool.algorithmFor(key);
+            String rawAlgorithm = DigestSigning.rawAlgorithm(algorithm);
+            this.pool = SignaturePool.forVerification(key, algorithm, poolSize);
+            this.digestPool = rawAlgorithm != null ? SignaturePool.forVerification(key, rawAlgorithm, poolSize) : null;
+            this.signatureBytes = SignaturePool.signatureLength(key);
+        }
+    }
+}
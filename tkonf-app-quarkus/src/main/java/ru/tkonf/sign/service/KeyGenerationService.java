@@ -0,0 +1,226 @@
+package ru.tkonf.sign.service;
+
+import io.quarkus.runtime.Startup;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.crac.Context;
+import org.crac.Core;
+import org.crac.Resource;
+import ru.tkonf.sign.model.GeneratedKeyPair;
+import ru.tkonf.sign.model.KeyGenerationStats;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.security.spec.RSAKeyGenParameterSpec;
+import java.security.spec.RSAPrivateCrtKeySpec;
+import java.security.spec.RSAPublicKeySpec;
+import java.util.Base64;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Выдача новых пар ключей RSA клиентам ({@code POST /api/crypto/keys}).
+ * <p>
+ * Дорогая часть генерации RSA - поиск простых чисел: {@code KeyPairGenerator} тратит на него от десятков
+ * миллисекунд до секунд. Фоновый поток заранее находит проверенные вероятно простые числа половинной длины
+ * и держит до {@code tkonf.keygen.pool-primes} штук в очереди; запрос берет из нее два числа, и на сборку
+ * ключа остается несколько модульных операций. Пока загрузка CPU выше {@code tkonf.keygen.busy-cpu-load},
+ * а в очереди больше четверти емкости, пополнение ждет. Если очередь пуста, недостающее число ищется
+ * в потоке запроса.
+ * <p>
+ * Каждое число выдается ровно один раз и не попадает в образ CRaC-чекпоинта, иначе реплики из одного
+ * образа выдали бы ключи с общими множителями.
+ */
+@ApplicationScoped
+@Startup
+public class KeyGenerationService implements Resource {
+    public static final String ALGORITHM = "RSA";
+
+    private static final BigInteger PUBLIC_EXPONENT = RSAKeyGenParameterSpec.F4;
+    // FIPS 186-4 B.3.3: множители должны отличаться хотя бы в старших 100 битах
+    private static final int MIN_FACTOR_DISTANCE_BITS = 100;
+    private static final long IDLE_PARK_NANOS = 1_000_000_000L;
+    private static final long BUSY_PARK_NANOS = 100_000_000L;
+
+    private final int keyBits;
+    private final int primeBits;
+    private final int poolCapacity;
+    private final double busyCpuLoad;
+    // sqrt(2) * 2^(primeBits - 1): произведение двух чисел не меньше границы имеет ровно keyBits бит
+    private final BigInteger minPrime;
+    private final BigInteger minFactorDistance;
+    private final BigInteger minPrivateExponent;
+    private final ArrayBlockingQueue<BigInteger> pool;
+    private final com.sun.management.OperatingSystemMXBean os;
+
+    private final LongAdder primesGenerated = new LongAdder();
+    private final LongAdder candidatesRejected = new LongAdder();
+    private final LongAdder refillNanos = new LongAdder();
+    private final LongAdder refillPauses = new LongAdder();
+    private final LongAdder keysIssued = new LongAdder();
+    private final LongAdder poolMisses = new LongAdder();
+
+    // Пересоздается после восстановления из CRaC, как и в SignatureService
+    private volatile SecureRandom secureRandom = new SecureRandom();
+    private volatile boolean suspended;
+    private volatile boolean running = true;
+    private final Thread refillThread;
+
+    @Inject
+    public KeyGenerationService(@ConfigProperty(name = "tkonf.keygen.key-bits", defaultValue = "2048") int keyBits,
+                                @ConfigProperty(name = "tkonf.keygen.pool-primes", defaultValue = "64") int poolPrimes,
+                                @ConfigProperty(name = "tkonf.keygen.busy-cpu-load", defaultValue = "0.75") double busyCpuLoad) {
+        this.keyBits = keyBits;
+        this.primeBits = keyBits / 2;
+        this.busyCpuLoad = busyCpuLoad;
+        this.minPrime = BigInteger.ONE.shiftLeft(2 * primeBits - 1).sqrt().add(BigInteger.ONE);
+        this.minFactorDistance = BigInteger.ONE.shiftLeft(primeBits - MIN_FACTOR_DISTANCE_BITS);
+        this.minPrivateExponent = BigInteger.ONE.shiftLeft(primeBits);
+        this.poolCapacity = poolPrimes;
+        this.pool = new ArrayBlockingQueue<>(poolPrimes);
+        this.os = ManagementFactory.getOperatingSystemMXBean() instanceof com.sun.management.OperatingSystemMXBean bean
+                ? bean
+                : null;
+        this.refillThread = new Thread(this::refillLoop, "rsa-prime-refill");
+        this.refillThread.setDaemon(true);
+        this.refillThread.setPriority(Thread.MIN_PRIORITY);
+        this.refillThread.start();
+        Core.getGlobalContext().register(this);
+    }
+
+    /**
+     * Собирает новую пару ключей из двух чисел пула; ключи в ответе - PKCS#8 и X.509 в Base64
+     */
+    public GeneratedKeyPair generate() throws GeneralSecurityException {
+        long start = System.nanoTime();
+        try {
+            while (true) {
+                BigInteger p = nextPrime();
+                BigInteger q = nextPrime();
+                if (p.subtract(q).abs().compareTo(minFactorDistance) <= 0) {
+                    continue;
+                }
+                if (p.compareTo(q) < 0) {
+                    BigInteger swap = p;
+                    p = q;
+                    q = swap;
+                }
+                BigInteger pMinus1 = p.subtract(BigInteger.ONE);
+                BigInteger qMinus1 = q.subtract(BigInteger.ONE);
+                // Показатель по функции Кармайкла lcm(p-1, q-1), как в FIPS 186-4 B.3.1
+                BigInteger lambda = pMinus1.divide(pMinus1.gcd(qMinus1)).multiply(qMinus1);
+                BigInteger d = PUBLIC_EXPONENT.modInverse(lambda);
+                if (d.compareTo(minPrivateExponent) <= 0) {
+                    continue;
+                }
+                BigInteger n = p.multiply(q);
+                KeyFactory keyFactory = KeyFactory.getInstance(ALGORITHM);
+                PrivateKey privateKey = keyFactory.generatePrivate(new RSAPrivateCrtKeySpec(n, PUBLIC_EXPONENT, d,
+                        p, q, d.mod(pMinus1), d.mod(qMinus1), q.modInverse(p)));
+                PublicKey publicKey = keyFactory.generatePublic(new RSAPublicKeySpec(n, PUBLIC_EXPONENT));
+                keysIssued.increment();
+                return new GeneratedKeyPair(ALGORITHM, keyBits,
+                        Base64.getEncoder().encodeToString(publicKey.getEncoded()),
+                        Base64.getEncoder().encodeToString(privateKey.getEncoded()));
+            }
+        } finally {
+            ServerTiming.recordCrypto(start);
+        }
+    }
+
+    public KeyGenerationStats getStats() {
+        long generated = primesGenerated.sum();
+        long nanos = refillNanos.sum();
+        long averagePrimeMicros = generated > 0 ? TimeUnit.NANOSECONDS.toMicros(nanos / generated) : 0;
+        double refillPrimesPerSecond = nanos > 0 ? generated * 1e9 / nanos : 0;
+        return new KeyGenerationStats(keyBits, pool.size(), poolCapacity, generated,
+                candidatesRejected.sum(), averagePrimeMicros, refillPrimesPerSecond, refillPauses.sum(),
+                keysIssued.sum(), poolMisses.sum());
+    }
+
+    @PreDestroy
+    public void close() {
+        running = false;
+        LockSupport.unpark(refillThread);
+    }
+
+    /**
+     * Простые числа пула секретны: очередь очищается, а поток пополнения ждет восстановления
+     */
+    @Override
+    public synchronized void beforeCheckpoint(Context<? extends Resource> context) {
+        suspended = true;
+        pool.clear();
+    }
+
+    @Override
+    public synchronized void afterRestore(Context<? extends Resource> context) {
+        secureRandom = new SecureRandom();
+        suspended = false;
+        LockSupport.unpark(refillThread);
+    }
+
+    private BigInteger nextPrime() {
+        BigInteger prime = pool.poll();
+        if (prime != null) {
+            LockSupport.unpark(refillThread);
+            return prime;
+        }
+        poolMisses.increment();
+        return generatePrime();
+    }
+
+    private void refillLoop() {
+        while (running) {
+            if (suspended || pool.remainingCapacity() == 0) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+            if (pool.size() > poolCapacity / 4 && isCpuBusy()) {
+                refillPauses.increment();
+                LockSupport.parkNanos(BUSY_PARK_NANOS);
+                continue;
+            }
+            long start = System.nanoTime();
+            BigInteger prime = generatePrime();
+            refillNanos.add(System.nanoTime() - start);
+            primesGenerated.increment();
+            synchronized (this) {
+                // Число, найденное во время чекпоинта, отбрасывается вместе с остальными
+                if (!suspended) {
+                    pool.offer(prime);
+                }
+            }
+        }
+    }
+
+    /**
+     * Вероятно простое число длиной primeBits не меньше minPrime, для которого gcd(p - 1, e) = 1
+     */
+    private BigInteger generatePrime() {
+        while (true) {
+            BigInteger candidate = BigInteger.probablePrime(primeBits, secureRandom);
+            if (candidate.compareTo(minPrime) >= 0
+                    && candidate.subtract(BigInteger.ONE).gcd(PUBLIC_EXPONENT).equals(BigInteger.ONE)) {
+                return candidate;
+            }
+            candidatesRejected.increment();
+        }
+    }
+
+    /**
+     * Загрузка CPU машины или контейнера; если JVM ее не сообщает, CPU считается свободным
+     */
+    private boolean isCpuBusy() {
+        return os != null && os.getCpuLoad() > busyCpuLoad;
+    }
+}
@@ -0,0 +1,191 @@
+package ru.tkonf.sign.service;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.crac.Context;
+import org.crac.Core;
+import org.crac.Resource;
+import ru.tkonf.sign.model.SessionResponse;
+import ru.tkonf.sign.util.StripedLruCache;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сессии симметричного шифрования для длинных потоков {@code /encrypt} и {@code /decrypt}.
+ * <p>
+ * {@code POST /api/crypto/session} один раз расшифровывает RSA ключ AES, присланный клиентом
+ * ({@code wrappedKey}), или генерирует новый и возвращает его зашифрованным ключом сервиса.
+ * Дальше запросы с {@code sessionId} шифруются AES-GCM без операций RSA. Шифротекст -
+ * Base64 от {@code nonce(12) || данные || тег(16)}; nonce сервера - 96 случайных бит на каждое
+ * сообщение: один {@code wrappedKey} можно открыть в нескольких сессиях, и счетчик внутри сессии
+ * не уберег бы от повтора nonce под тем же ключом. Сессии живут в LRU размером
+ * {@code tkonf.session.entries} не дольше {@code tkonf.session.ttl-seconds} от открытия:
+ * истекшая сессия удаляется при первом обращении к ней.
+ */
+@ApplicationScoped
+public class SessionService implements Resource {
+    public static final String CIPHER_ALGORITHM = "AES/GCM/NoPadding";
+
+    private static final int KEY_BYTES = 32;
+    private static final int SESSION_ID_BYTES = 16;
+    private static final int NONCE_BYTES = 12;
+    private static final int TAG_BITS = 128;
+    private static final int OVERHEAD_BYTES = NONCE_BYTES + TAG_BITS / 8;
+    // Шифротекст сообщения предельного размера в Base64
+    private static final int MAX_CIPHERTEXT_CHARS = (SignatureService.MAX_MESSAGE_BYTES + OVERHEAD_BYTES + 2) / 3 * 4;
+    private static final Base64.Encoder SESSION_ID = Base64.getUrlEncoder().withoutPadding();
+
+    private static final ThreadLocal<Cipher> CIPHER = ThreadLocal.withInitial(() -> {
+        try {
+            return Cipher.getInstance(CIPHER_ALGORITHM);
+        } catch (NoSuchAlgorithmException | NoSuchPaddingException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final SignatureService signatureService;
+    private final StripedLruCache<String, Session> sessions;
+    private final long ttlNanos;
+    // Пересоздается после восстановления из CRaC, как и в SignatureService
+    private volatile SecureRandom secureRandom = new SecureRandom();
+
+    @Inject
+    public SessionService(SignatureService signatureService,
+                          @ConfigProperty(name = "tkonf.session.entries", defaultValue = "10000") int entries,
+                          @ConfigProperty(name = "tkonf.session.ttl-seconds", defaultValue = "600") int ttlSeconds) {
+        this.signatureService = signatureService;
+        this.sessions = new StripedLruCache<>(entries);
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        Core.getGlobalContext().register(this);
+    }
+
+    /**
+     * Открывает сессию ключом клиента или новым ключом; единственная операция RSA за время жизни сессии
+     */
+    public SessionResponse open(String wrappedKey) throws Exception {
+        long start = System.nanoTime();
+        try {
+            byte[] key;
+            if (wrappedKey != null) {
+                key = signatureService.unwrapKey(wrappedKey);
+                if (key.length != 16 && key.length != 24 && key.length != KEY_BYTES) {
+                    throw CryptoError.SESSION_KEY_INVALID.exception();
+                }
+            } else {
+                key = new byte[KEY_BYTES];
+                secureRandom.nextBytes(key);
+                wrappedKey = Base64.getEncoder().encodeToString(signatureService.wrapKey(key));
+            }
+            byte[] id = new byte[SESSION_ID_BYTES];
+            secureRandom.nextBytes(id);
+            String sessionId = SESSION_ID.encodeToString(id);
+            sessions.put(sessionId, new Session(key, System.nanoTime() + ttlNanos));
+            return new SessionResponse(sessionId, wrappedKey, CIPHER_ALGORITHM, TimeUnit.NANOSECONDS.toSeconds(ttlNanos));
+        } finally {
+            ServerTiming.recordCrypto(start);
+        }
+    }
+
+    /**
+     * Шифрует сообщение ключом сессии
+     */
+    public String encrypt(String sessionId, String message) throws Exception {
+        SignatureService.checkMessage(message, SignatureService.MAX_MESSAGE_BYTES);
+        Session session = resolve(sessionId);
+        long start = System.nanoTime();
+        try {
+            byte[] plaintext = message.getBytes();
+            byte[] nonce = new byte[NONCE_BYTES];
+            secureRandom.nextBytes(nonce);
+            byte[] output = new byte[NONCE_BYTES + plaintext.length + TAG_BITS / 8];
+            System.arraycopy(nonce, 0, output, 0, NONCE_BYTES);
+            Cipher cipher = CIPHER.get();
+            cipher.init(Cipher.ENCRYPT_MODE, session.key, new GCMParameterSpec(TAG_BITS, nonce));
+            cipher.doFinal(plaintext, 0, plaintext.length, output, NONCE_BYTES);
+            return Base64.getEncoder().encodeToString(output);
+        } finally {
+            ServerTiming.recordCrypto(start);
+        }
+    }
+
+    /**
+     * Расшифровывает сообщение ключом сессии; подмена шифротекста или чужой ключ дают
+     * SESSION_DECRYPTION_FAILED
+     */
+    public String decrypt(String sessionId, String encryptedMessage) throws Exception {
+        SignatureService.checkBase64(encryptedMessage, -1, CryptoError.MESSAGE_REQUIRED,
+                CryptoError.CIPHERTEXT_MALFORMED, CryptoError.CIPHERTEXT_MALFORMED);
+        if (encryptedMessage.length() > MAX_CIPHERTEXT_CHARS) {
+            throw CryptoError.MESSAGE_TOO_LARGE.exception();
+        }
+        Session session = resolve(sessionId);
+        long start = System.nanoTime();
+        try {
+            byte[] input = Base64.getDecoder().decode(encryptedMessage);
+            if (input.length < OVERHEAD_BYTES) {
+                throw CryptoError.SESSION_DECRYPTION_FAILED.exception();
+            }
+            Cipher cipher = CIPHER.get();
+            cipher.init(Cipher.DECRYPT_MODE, session.key, new GCMParameterSpec(TAG_BITS, input, 0, NONCE_BYTES));
+            byte[] plaintext = cipher.doFinal(input, NONCE_BYTES, input.length - NONCE_BYTES);
+            return new String(plaintext);
+        } catch (AEADBadTagException e) {
+            throw CryptoError.SESSION_DECRYPTION_FAILED.exception();
+        } finally {
+            ServerTiming.recordCrypto(start);
+        }
+    }
+
+    /**
+     * Ключи сессий не должны попадать в образ чекпоинта; после восстановления у сервиса новая пара RSA,
+     * и клиенты все равно открывают сессии заново
+     */
+    @Override
+    public void beforeCheckpoint(Context<? extends Resource> context) {
+        sessions.clear();
+    }
+
+    @Override
+    public void afterRestore(Context<? extends Resource> context) {
+        secureRandom = new SecureRandom();
+    }
+
+    private Session resolve(String sessionId) throws CryptoException {
+        if (sessionId == null) {
+            throw CryptoError.SESSION_NOT_FOUND.exception();
+        }
+        Session session = sessions.get(sessionId);
+        if (session == null) {
+            throw CryptoError.SESSION_NOT_FOUND.exception();
+        }
+        if (System.nanoTime() - session.expiresNanos > 0) {
+            sessions.remove(sessionId);
+            throw CryptoError.SESSION_NOT_FOUND.exception();
+        }
+        return session;
+    }
+
+    /**
+     * Ключ сессии и срок ее жизни
+     */
+    private static final class Session {
+        private final SecretKeySpec key;
+        private final long expiresNanos;
+
+        Session(byte[] key, long expiresNanos) {
+            this.key = new SecretKeySpec(key, "AES");
+            this.expiresNanos = expiresNanos;
+            Arrays.fill(key, (byte) 0);
+        }
+    }
+}
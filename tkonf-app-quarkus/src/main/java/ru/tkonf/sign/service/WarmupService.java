@@ -0,0 +1,213 @@
+package ru.tkonf.sign.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import jdk.jfr.consumer.RecordingStream;
+import ru.tkonf.sign.model.CryptoResponse;
+import ru.tkonf.sign.model.SignatureRequest;
+import ru.tkonf.sign.model.SignedMessage;
+import ru.tkonf.sign.model.VerificationRequest;
+import ru.tkonf.sign.model.VerificationResponse;
+import ru.tkonf.sign.model.WarmupStatus;
+
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Прогрев JIT перед приемом трафика.
+ * <p>
+ * Фоновый поток гоняет все операции SignatureService, сессии шифрования, выпуск JWS и JSON-кодеки моделей на синтетических
+ * данных (их подписи не пишутся в журнал аудита), а JFR-поток событий {@code jdk.Compilation}
+ * отмечает время последней компиляции.
+ * Когда за окно {@code quiet-millis} не скомпилировано ни одного метода, прогрев завершен и
+ * {@code /api/crypto/ready} начинает отвечать 200. Выключенный прогрев означает готовность сразу.
+ */
+@ApplicationScoped
+public class WarmupService {
+    public enum State { DISABLED, WARMING, READY }
+
+    private static final String COMPILATION_EVENT = "jdk.Compilation";
+    private static final int BATCH = 20;
+    private static final String MESSAGE = "JIT warmup message";
+
+    private final SignatureService signatureService;
+    private final JwsService jwsService;
+    private final SessionService sessionService;
+    private final ObjectMapper jsonMapper;
+    private final boolean enabled;
+    private final long maxNanos;
+    private final long quietNanos;
+
+    private final AtomicLong compilations = new AtomicLong();
+    private volatile long lastCompilationNanos;
+    private volatile long iterations;
+    private volatile long startedNanos;
+    private volatile long finishedNanos;
+    private volatile State state;
+    private volatile String reason;
+    private volatile Thread worker;
+    // Одна сессия на весь прогрев, чтобы не вытеснять из кэша сессии клиентов
+    private String sessionId;
+
+    @Inject
+    public WarmupService(SignatureService signatureService,
+                         JwsService jwsService,
+                         SessionService sessionService,
+                         ObjectMapper jsonMapper,
+                         @ConfigProperty(name = "tkonf.warmup.enabled", defaultValue = "false") boolean enabled,
+                         @ConfigProperty(name = "tkonf.warmup.max-seconds", defaultValue = "180") int maxSeconds,
+                         @ConfigProperty(name = "tkonf.warmup.quiet-millis", defaultValue = "3000") int quietMillis) {
+        this.signatureService = signatureService;
+        this.jwsService = jwsService;
+        this.sessionService = sessionService;
+        this.jsonMapper = jsonMapper;
+        this.enabled = enabled;
+        this.maxNanos = TimeUnit.SECONDS.toNanos(maxSeconds);
+        this.quietNanos = TimeUnit.MILLISECONDS.toNanos(quietMillis);
+        this.state = enabled ? State.WARMING : State.DISABLED;
+    }
+
+    void onStart(@Observes StartupEvent event) {
+        start();
+    }
+
+    /**
+     * Запускает прогрев в фоновом потоке; повторные вызовы игнорируются
+     */
+    public synchronized void start() {
+        if (!enabled || worker != null) {
+            return;
+        }
+        worker = new Thread(this::run, "jit-warmup");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    public boolean isReady() {
+        return state != State.WARMING;
+    }
+
+    public WarmupStatus getStatus() {
+        long end = finishedNanos != 0 ? finishedNanos : System.nanoTime();
+        long elapsedMillis = startedNanos == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(end - startedNanos);
+        return new WarmupStatus(state.name(), isReady(), iterations, compilations.get(), elapsedMillis, reason);
+    }
+
+    @PreDestroy
+    public void close() {
+        Thread thread = worker;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    private void run() {
+        AuditLog.excludeCurrentThread();
+        startedNanos = System.nanoTime();
+        lastCompilationNanos = startedNanos;
+        try (RecordingStream compilationStream = openCompilationStream()) {
+            while (!Thread.currentThread().isInterrupted()) {
+                for (int i = 0; i < BATCH; i++) {
+                    exercise(i);
+                }
+                iterations += BATCH;
+
+                long now = System.nanoTime();
+                if (compilationStream != null && now - lastCompilationNanos >= quietNanos) {
+                    finish("compilation settled");
+                    return;
+                }
+                if (now - startedNanos >= maxNanos) {
+                    finish(compilationStream != null ? "time limit reached" : "time limit reached, JFR unavailable");
+                    return;
+                }
+            }
+            finish("interrupted");
+        } catch (Exception e) {
+            // Прогрев не должен навсегда держать сервис неготовым
+            finish("failed: " + e.getClass().getSimpleName());
+        }
+    }
+
+    /**
+     * Один проход по всем операциям в том же виде, что и обработка HTTP-запроса,
+     * включая ветку ошибки валидации
+     */
+    private void exercise(int i) throws Exception {
+        String message = MESSAGE + i;
+
+        SignatureRequest signRequest = fromJson(toJson(new SignatureRequest(message, "RSA")), SignatureRequest.class);
+        String signature = signatureService.signMessage(signRequest.getMessage());
+        toJson(new SignedMessage(message, signature, signatureService.getAlgorithm(),
+                signatureService.getPublicKeyBase64()));
+
+        VerificationRequest verifyRequest = fromJson(toJson(new VerificationRequest(message, signature)),
+                VerificationRequest.class);
+        boolean valid = signatureService.verifySignature(verifyRequest.getMessage(), verifyRequest.getSignature());
+        toJson(new VerificationResponse(valid, valid ? "Signature is VALID" : "Signature is INVALID"));
+
+        String encrypted = signatureService.encrypt(message);
+        toJson(new CryptoResponse(signatureService.decrypt(encrypted)));
+
+        if (sessionId == null) {
+            sessionId = sessionService.open(null).getSessionId();
+        }
+        String sessionEncrypted = sessionService.encrypt(sessionId, message);
+        toJson(new CryptoResponse(sessionService.decrypt(sessionId, sessionEncrypted)));
+
+        // Дайджест-режим: та же подпись, что и над сообщением
+        String digest = Base64.getEncoder().encodeToString(
+                MessageDigest.getInstance("SHA-256").digest(message.getBytes()));
+        signatureService.verifyDigest(digest, signatureService.signDigest(digest));
+
+        toJson(jwsService.issue(null, null, Map.of("sub", message)));
+
+        try {
+            signatureService.verifySignature(message, "invalid_signature");
+        } catch (CryptoException e) {
+            toJson(e.getError().getResponse());
+        }
+    }
+
+    private byte[] toJson(Object value) throws IOException {
+        return jsonMapper.writeValueAsBytes(value);
+    }
+
+    private <T> T fromJson(byte[] json, Class<T> type) throws IOException {
+        return jsonMapper.readValue(json, type);
+    }
+
+    /**
+     * Подписка на события JIT-компиляции; null, если JFR недоступен (например, в native-image)
+     */
+    private RecordingStream openCompilationStream() {
+        try {
+            RecordingStream stream = new RecordingStream();
+            stream.enable(COMPILATION_EVENT).withThreshold(Duration.ZERO);
+            stream.onEvent(COMPILATION_EVENT, event -> {
+                compilations.incrementAndGet();
+                lastCompilationNanos = System.nanoTime();
+            });
+            stream.startAsync();
+            return stream;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private void finish(String reason) {
+        this.reason = reason;
+        this.finishedNanos = System.nanoTime();
+        this.state = State.READY;
+    }
+}
@@ -138,7 +138,8 @@ public class DockerIT {
 
         assertEquals(400, verifyResponse.statusCode());
         ErrorResponse verificationResponse = objectMapper.readValue(verifyResponse.body(), ErrorResponse.class);
-        assertEquals("Error verifying signature: Illegal base64 character 5f", verificationResponse.getError());
+        assertEquals("SIGNATURE_MALFORMED", verificationResponse.getCode());
+        assertEquals("signature is not valid Base64", verificationResponse.getError());
     }
 
     @Test
@@ -0,0 +1,81 @@
+package ru.tkonf.sign.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.crypto.Cipher;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.SecureRandom;
+import java.security.Signature;
+import java.security.interfaces.RSAPublicKey;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Операции открытым ключом RSA-2048: путь JCA, как в {@link SignatureService} до {@link RsaPublicEngine},
+ * против движка. Проверка по сообщению включает хеширование, как в {@code POST /api/crypto/verify}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RsaPublicEngineBenchmark {
+    private static final byte[] MESSAGE = "tkonf benchmark message".getBytes(StandardCharsets.UTF_8);
+
+    private KeyPair keyPair;
+    private RsaPublicEngine engine;
+    private SecureRandom secureRandom;
+    private byte[] signature;
+
+    @Setup
+    public void setup() throws Exception {
+        secureRandom = new SecureRandom();
+        KeyPairGenerator keyGen = KeyPairGenerator.getInstance("RSA");
+        keyGen.initialize(2048, secureRandom);
+        keyPair = keyGen.generateKeyPair();
+        engine = new RsaPublicEngine((RSAPublicKey) keyPair.getPublic());
+        Signature signer = Signature.getInstance("SHA256withRSA");
+        signer.initSign(keyPair.getPrivate());
+        signer.update(MESSAGE);
+        signature = signer.sign();
+        if (!verifyEngine()) {
+            throw new IllegalStateException("Движок не принял подпись JCA");
+        }
+    }
+
+    @Benchmark
+    public boolean verifyJca() throws Exception {
+        Signature verifier = Signature.getInstance("SHA256withRSA");
+        verifier.initVerify(keyPair.getPublic());
+        verifier.update(MESSAGE);
+        return verifier.verify(signature);
+    }
+
+    @Benchmark
+    public boolean verifyEngine() {
+        return engine.verifySha256(DigestSigning.sha256(MESSAGE, 0, MESSAGE.length), signature);
+    }
+
+    @Benchmark
+    public byte[] encryptJca() throws Exception {
+        Cipher cipher = Cipher.getInstance("RSA");
+        cipher.init(Cipher.ENCRYPT_MODE, keyPair.getPublic(), secureRandom);
+        return cipher.doFinal(MESSAGE);
+    }
+
+    @Benchmark
+    public byte[] encryptEngine() {
+        return engine.encrypt(MESSAGE, secureRandom);
+    }
+}
@@ -16,7 +16,30 @@ if [ -n "$ADDITIONAL_JAVA_OPTS" ]; then
     JAVA_OPTS="$JAVA_OPTS $ADDITIONAL_JAVA_OPTS"
 fi
 
+# CRaC (образ из Dockerfile.crac): CRAC_CHECKPOINT=true прогревает приложение обучающей нагрузкой
+# и снимает чекпоинт в $CRAC_DIR (см. build-crac.sh); если чекпоинт уже есть, восстанавливаемся из него.
+# При восстановлении JAVA_OPTS не применяются - действуют опции момента чекпоинта
+CRAC_DIR="${CRAC_DIR:-/crac}"
+if [ "$CRAC_CHECKPOINT" = "true" ]; then
+    export JAVA_OPTS
+    CRAC_CHECKPOINT_TO="$CRAC_DIR" exec sh /training.sh -jar /deployments/application/tkonf-app-spring-0.0.1-SNAPSHOT.jar
+fi
+if [ "$CRAC_ENABLED" != "false" ] && [ -n "$(ls -A "$CRAC_DIR" 2>/dev/null)" ]; then
+    echo "Restoring application from CRaC checkpoint $CRAC_DIR"
+    exec java -XX:CRaCRestoreFrom="$CRAC_DIR"
+fi
+
+# Подключаем AOT-кэш (JDK 25+) или AppCDS-архив, снятые на обучающей нагрузке при сборке образа.
+# CDS_ENABLED=false отключает архив для сравнения времени старта
+if [ "$CDS_ENABLED" != "false" ]; then
+    if [ -f /deployments/app.aot ]; then
+        JAVA_OPTS="$JAVA_OPTS -XX:AOTCache=/deployments/app.aot"
+    elif [ -f /deployments/app.jsa ]; then
+        JAVA_OPTS="$JAVA_OPTS -XX:SharedArchiveFile=/deployments/app.jsa"
+    fi
+fi
+
 echo "Starting application with Java options: $JAVA_OPTS"
 
 # Start the application
-exec java $JAVA_OPTS -jar /deployments/tkonf-app-spring-0.0.1-SNAPSHOT.jar
\ No newline at end of file
+exec java $JAVA_OPTS -jar /deployments/application/tkonf-app-spring-0.0.1-SNAPSHOT.jar
\ No newline at end of file
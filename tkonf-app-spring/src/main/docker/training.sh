@@ -0,0 +1,148 @@
+#!/bin/sh
+# Обучающий прогон при сборке образа: запускает приложение, проходит по всем /api/crypto
+# эндпоинтам (включая ветки ошибок) и останавливает JVM, чтобы при выходе записался
+# AOT-кэш (JDK 25+), динамический AppCDS-архив или CRaC-чекпоинт.
+#
+# Использование: training.sh -jar /deployments/app.jar
+
+set -e
+
+ARCHIVE_DIR="${ARCHIVE_DIR:-/deployments}"
+ITERATIONS="${TRAINING_ITERATIONS:-200}"
+BASE_URL="http://localhost:${PORT:-8080}/api/crypto"
+# Каталог журнала аудита (tkonf.audit.dir относительно рабочего каталога)
+AUDIT_DIR="${AUDIT_DIR:-audit}"
+# Документ для /sign/file и /verify/file в каталоге tkonf.files.dir
+FILES_DIR="${FILES_DIR:-files}"
+TRAINING_FILE="training-document.txt"
+
+# Обучающие подписи и документ не должны попасть в образ. Перед чекпоинтом журнал закрыт,
+# после восстановления писатель заведёт каталог заново
+cleanup() {
+    rm -rf "$AUDIT_DIR"
+    rm -f "$FILES_DIR/$TRAINING_FILE"
+    rmdir "$FILES_DIR" 2>/dev/null || true
+}
+
+mkdir -p "$FILES_DIR"
+echo "training document" > "$FILES_DIR/$TRAINING_FILE"
+
+# CRAC_CHECKPOINT_TO задан: вместо архива снимаем CRaC-чекпоинт прогретой JVM (нужен JDK с CRaC).
+# AOTCacheOutput появился в JDK 25, на более старых JDK пишем AppCDS-архив.
+# Предупреждения о пропущенных классах (прокси, JFR-события) отключены, чтобы не засорять лог сборки
+if [ -n "$CRAC_CHECKPOINT_TO" ]; then
+    ARCHIVE_OPTS="-XX:CRaCCheckpointTo=$CRAC_CHECKPOINT_TO"
+elif java -XX:+PrintFlagsFinal -version 2>/dev/null | grep -q AOTCacheOutput; then
+    ARCHIVE_OPTS="-XX:AOTCacheOutput=$ARCHIVE_DIR/app.aot -Xlog:aot=off"
+else
+    ARCHIVE_OPTS="-XX:ArchiveClassesAtExit=$ARCHIVE_DIR/app.jsa -Xlog:cds=off"
+fi
+
+echo "Training with Java options: $ARCHIVE_OPTS $JAVA_OPTS"
+java $ARCHIVE_OPTS $JAVA_OPTS "$@" &
+APP_PID=$!
+
+attempts=0
+until curl -sf "$BASE_URL/health" > /dev/null; do
+    attempts=$((attempts + 1))
+    if [ "$attempts" -gt 120 ] || ! kill -0 "$APP_PID" 2>/dev/null; then
+        echo "Application did not become healthy"
+        kill "$APP_PID" 2>/dev/null || true
+        exit 1
+    fi
+    sleep 0.5
+done
+
+post() {
+    curl -s -H "Content-Type: application/json" -d "$2" "$BASE_URL/$1"
+}
+
+field() {
+    sed -n "s/.*\"$1\":\"\([^\"]*\)\".*/\1/p"
+}
+
+DIGEST="aX3MYl1AMSo3MRR4lfhS/IG8TRY4/ufvywqG/VQGzGg="
+# Тот же дайджест в Base64url для пути /signatures/{digest}
+DIGEST_URL="aX3MYl1AMSo3MRR4lfhS_IG8TRY4_ufvywqG_VQGzGg"
+# Ключ сервиса в роли ключа внешнего подписанта для /verify/external
+PUBLIC_KEY=$(curl -s "$BASE_URL/public-key")
+
+i=0
+while [ "$i" -lt "$ITERATIONS" ]; do
+    message="training message $i"
+
+    signature=$(post sign "{\"message\":\"$message\",\"algorithm\":\"RSA\"}" | field signature)
+    post verify "{\"message\":\"$message\",\"signature\":\"$signature\"}" > /dev/null
+    post verify/bulk "{\"items\":[{\"message\":\"$message\",\"signature\":\"$signature\"},{\"message\":\"$i\",\"signature\":\"$signature\"}]}" > /dev/null
+    post sign/batch "{\"batch\":[\"$message\",\"$i\"]}" > /dev/null
+
+    # Дайджест-режим: SHA-256 от "training digest"
+    digest_signature=$(post sign "{\"digest\":\"$DIGEST\"}" | field signature)
+    post verify "{\"digest\":\"$DIGEST\",\"signature\":\"$digest_signature\"}" > /dev/null
+
+    # Проверка внешним ключом (Base64 DER): по сообщению и по дайджесту
+    post verify/external "{\"message\":\"$message\",\"signature\":\"$signature\",\"publicKey\":\"$PUBLIC_KEY\"}" > /dev/null
+    post verify/external "{\"digest\":\"$DIGEST\",\"signature\":\"$digest_signature\",\"publicKey\":\"$PUBLIC_KEY\"}" > /dev/null
+
+    # Потоковая подпись тела и подпись файла на сервере
+    stream_signature=$(curl -s -H "Content-Type: application/octet-stream" --data-binary "$message" \
+        "$BASE_URL/sign/stream" | field signature)
+    curl -s -H "Content-Type: application/octet-stream" -H "X-Signature: $stream_signature" \
+        --data-binary "$message" "$BASE_URL/verify/stream" > /dev/null
+    file_signature=$(post sign/file "{\"path\":\"$TRAINING_FILE\"}" | field signature)
+    post verify/file "{\"path\":\"$TRAINING_FILE\",\"signature\":\"$file_signature\"}" > /dev/null
+
+    # Поиск выданных подписей дайджеста по индексу журнала аудита
+    curl -s "$BASE_URL/signatures/$DIGEST_URL" > /dev/null
+
+    # Выпуск JWS: одиночный и пакетный
+    post jws "{\"claims\":{\"sub\":\"$message\"}}" > /dev/null
+    post jws/batch "{\"alg\":\"PS256\",\"batch\":[{\"sub\":\"$message\"},{\"sub\":\"$i\"}]}" > /dev/null
+
+    encrypted=$(post encrypt "{\"message\":\"$message\"}" | field result)
+    post decrypt "{\"message\":\"$encrypted\"}" > /dev/null
+
+    # Сессия AES-GCM: открытие с RSA и симметричные шифрование и расшифровка
+    session=$(post session "{}" | field sessionId)
+    session_encrypted=$(post encrypt "{\"sessionId\":\"$session\",\"message\":\"$message\"}" | field result)
+    post decrypt "{\"sessionId\":\"$session\",\"message\":\"$session_encrypted\"}" > /dev/null
+
+    # Выдача ключа RSA из пула простых чисел
+    post keys "{}" > /dev/null
+
+    # Ветки ошибок тоже должны попасть в архив
+    post verify "{\"message\":\"$message\",\"signature\":\"invalid_signature_here\"}" > /dev/null
+    post sign "{\"message\":null}" > /dev/null
+    post sign "{invalid json" > /dev/null
+    # Секретов HMAC при сборке образа нет: проходим ветку KEY_NOT_FOUND
+    post hmac/sign "{\"keyId\":\"training\",\"message\":\"$message\"}" > /dev/null
+    post hmac/verify "{\"keyId\":\"training\",\"message\":\"$message\",\"signature\":\"$signature\"}" > /dev/null
+
+    curl -s "$BASE_URL/public-key" > /dev/null
+    curl -s "$BASE_URL/health" > /dev/null
+
+    i=$((i + 1))
+done
+
+if [ -n "$CRAC_CHECKPOINT_TO" ]; then
+    # После записи чекпоинта JVM завершается сама
+    jcmd "$APP_PID" JDK.checkpoint
+    wait "$APP_PID" || true
+    cleanup
+    if [ -z "$(ls -A "$CRAC_CHECKPOINT_TO" 2>/dev/null)" ]; then
+        echo "Checkpoint was not written to $CRAC_CHECKPOINT_TO"
+        exit 1
+    fi
+    exit 0
+fi
+
+# SIGTERM проводит JVM через штатное завершение, на котором пишется архив
+kill -TERM "$APP_PID"
+wait "$APP_PID" || true
+cleanup
+
+if [ ! -f "$ARCHIVE_DIR/app.aot" ] && [ ! -f "$ARCHIVE_DIR/app.jsa" ]; then
+    echo "Training finished without producing a class archive"
+    exit 1
+fi
+ls -l "$ARCHIVE_DIR"/app.*
@@ -0,0 +1,77 @@
+package ru.tkonf.sign;
+
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import ru.tkonf.sign.model.*;
+
+/**
+ * Метаданные для native-image: модели, которые контроллеры возвращают через ResponseEntity<?>
+ * (AOT не выводит их из сигнатур), и JCA-реализации, создаваемые провайдерами через рефлексию
+ */
+public class CryptoRuntimeHints implements RuntimeHintsRegistrar {
+
+    private static final Class<?>[] MODEL_TYPES = {
+            SignatureRequest.class,
+            VerificationRequest.class,
+            ExternalVerificationRequest.class,
+            FileSignatureRequest.class,
+            JwsRequest.class,
+            JwsToken.class,
+            JwsBatch.class,
+            SignedMessage.class,
+            SignatureBatch.class,
+            VerificationResponse.class,
+            CryptoResponse.class,
+            ErrorResponse.class,
+            HealthResponse.class,
+            RequestLogStats.class,
+            ContainerTuning.class,
+            KeyringStats.class,
+            AuditStats.class,
+            SignatureLookup.class,
+            SignatureRecord.class,
+            SessionRequest.class,
+            SessionResponse.class,
+            GeneratedKeyPair.class,
+            KeyGenerationStats.class,
+            PresignStats.class,
+            BulkVerificationRequest.class,
+            BulkVerificationResponse.class
+    };
+
+    // SPI-классы провайдеров SUN, SunRsaSign, SunJCE и SunEC для RSA, ECDSA, Ed25519, HMAC и AES-GCM
+    private static final String[] JCA_TYPES = {
+            "sun.security.provider.SHA2$SHA256",
+            "sun.security.provider.NativePRNG",
+            "sun.security.provider.DRBG",
+            "sun.security.rsa.RSAKeyFactory$Legacy",
+            "sun.security.rsa.RSAKeyPairGenerator$Legacy",
+            "sun.security.rsa.RSASignature$SHA256withRSA",
+            "sun.security.rsa.RSAPSSSignature",
+            "com.sun.crypto.provider.RSACipher",
+            "com.sun.crypto.provider.HmacCore$HmacSHA256",
+            "com.sun.crypto.provider.GaloisCounterMode$AESGCM",
+            "sun.security.ec.ECKeyFactory",
+            "sun.security.ec.ECKeyPairGenerator",
+            "sun.security.ec.ECDSASignature$SHA256",
+            "sun.security.ec.ECDSASignature$SHA384",
+            "sun.security.ec.ECDSASignature$SHA512",
+            "sun.security.ec.ECDSASignature$SHA256inP1363Format",
+            "sun.security.ec.ECDSASignature$Raw",
+            "sun.security.ec.ed.EdDSAKeyFactory$Ed25519",
+            "sun.security.ec.ed.EdDSAKeyPairGenerator$Ed25519",
+            "sun.security.ec.ed.EdDSASignature$Ed25519"
+    };
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        BindingReflectionHintsRegistrar bindingRegistrar = new BindingReflectionHintsRegistrar();
+        bindingRegistrar.registerReflectionHints(hints.reflection(), MODEL_TYPES);
+
+        for (String type : JCA_TYPES) {
+            hints.reflection().registerTypeIfPresent(classLoader, type, MemberCategory.INVOKE_DECLARED_CONSTRUCTORS);
+        }
+    }
+}
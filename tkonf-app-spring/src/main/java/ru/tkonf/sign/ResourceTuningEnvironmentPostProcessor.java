@@ -0,0 +1,23 @@
+package ru.tkonf.sign;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MapPropertySource;
+import ru.tkonf.sign.service.ResourceTuning;
+
+import java.util.LinkedHashMap;
+
+/**
+ * Подставляет размеры пулов Tomcat и приложения, выведенные из лимитов cgroup, последним
+ * источником свойств: все явные настройки имеют приоритет
+ */
+public class ResourceTuningEnvironmentPostProcessor implements EnvironmentPostProcessor {
+    private static final String SOURCE_NAME = "resourceTuning";
+
+    @Override
+    public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+        environment.getPropertySources().addLast(
+                new MapPropertySource(SOURCE_NAME, new LinkedHashMap<>(ResourceTuning.current().properties())));
+    }
+}
@@ -5,6 +5,7 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
 import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
 import org.springframework.boot.autoconfigure.security.servlet.SecurityAutoConfiguration;
+import org.springframework.context.annotation.ImportRuntimeHints;
 import org.springframework.context.annotation.Lazy;
 
 /// Отключение ненужных автоконфигураций
@@ -16,6 +17,7 @@ import org.springframework.context.annotation.Lazy;
 		SecurityAutoConfiguration.class
 },proxyBeanMethods = false)
 @Lazy
+@ImportRuntimeHints(CryptoRuntimeHints.class)
 public class TkonfAppSpringApplication {
 
 	public static void main(String[] args) {
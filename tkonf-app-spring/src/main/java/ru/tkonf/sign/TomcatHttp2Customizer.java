@@ -0,0 +1,39 @@
+package ru.tkonf.sign;
+
+import org.apache.coyote.UpgradeProtocol;
+import org.apache.coyote.http2.Http2Protocol;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.stereotype.Component;
+
+/**
+ * Лимиты HTTP/2 для Tomcat: Spring Boot включает h2c ({@code server.http2.enabled}), но не дает
+ * настроить число потоков на соединение. {@code max-concurrent-streams} ограничивает,
+ * сколько запросов клиент держит в одном соединении, {@code max-stream-execution} - сколько из них
+ * одновременно занимают потоки Tomcat
+ */
+@Component
+public class TomcatHttp2Customizer implements WebServerFactoryCustomizer<TomcatServletWebServerFactory> {
+
+    private final int maxConcurrentStreams;
+    private final int maxStreamExecution;
+
+    public TomcatHttp2Customizer(@Value("${tkonf.http2.max-concurrent-streams:100}") int maxConcurrentStreams,
+                                 @Value("${tkonf.http2.max-stream-execution:20}") int maxStreamExecution) {
+        this.maxConcurrentStreams = maxConcurrentStreams;
+        this.maxStreamExecution = maxStreamExecution;
+    }
+
+    @Override
+    public void customize(TomcatServletWebServerFactory factory) {
+        factory.addConnectorCustomizers(connector -> {
+            for (UpgradeProtocol protocol : connector.findUpgradeProtocols()) {
+                if (protocol instanceof Http2Protocol http2) {
+                    http2.setMaxConcurrentStreams(maxConcurrentStreams);
+                    http2.setMaxConcurrentStreamExecution(maxStreamExecution);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,103 @@
+package ru.tkonf.sign.controller;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import ru.tkonf.sign.model.AuditStats;
+import ru.tkonf.sign.model.ContainerTuning;
+import ru.tkonf.sign.model.KeyGenerationStats;
+import ru.tkonf.sign.model.KeyringStats;
+import ru.tkonf.sign.model.PresignStats;
+import ru.tkonf.sign.model.RequestLogStats;
+import ru.tkonf.sign.service.AuditLog;
+import ru.tkonf.sign.service.EcdsaPresigner;
+import ru.tkonf.sign.service.KeyGenerationService;
+import ru.tkonf.sign.service.KeyringService;
+import ru.tkonf.sign.service.ProfilingService;
+import ru.tkonf.sign.service.RequestLogger;
+import ru.tkonf.sign.service.ResourceTuning;
+
+@RestController
+@RequestMapping("/diagnostics")
+public class DiagnosticsController {
+
+    private final ProfilingService profilingService;
+    private final RequestLogger requestLogger;
+    private final KeyringService keyringService;
+    private final AuditLog auditLog;
+    private final KeyGenerationService keyGenerationService;
+    private final EcdsaPresigner ecdsaPresigner;
+
+    public DiagnosticsController(ProfilingService profilingService, RequestLogger requestLogger,
+                                 KeyringService keyringService, AuditLog auditLog,
+                                 KeyGenerationService keyGenerationService, EcdsaPresigner ecdsaPresigner) {
+        this.profilingService = profilingService;
+        this.requestLogger = requestLogger;
+        this.keyringService = keyringService;
+        this.auditLog = auditLog;
+        this.keyGenerationService = keyGenerationService;
+        this.ecdsaPresigner = ecdsaPresigner;
+    }
+
+    /**
+     * Снимает профиль за {@code seconds} секунд и отдает стеки в collapsed-формате
+     */
+    @GetMapping(value = "/profile", produces = MediaType.TEXT_PLAIN_VALUE)
+    public ResponseEntity<String> profile(@RequestParam(defaultValue = "10") int seconds,
+                                          @RequestParam(defaultValue = "cpu") String event) {
+        try {
+            return ResponseEntity.ok(profilingService.profile(seconds, ProfilingService.ProfileEvent.parse(event)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError()
+                    .body("Error profiling application: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("/request-log")
+    public ResponseEntity<RequestLogStats> requestLog() {
+        return ResponseEntity.ok(new RequestLogStats(requestLogger.getWritten(), requestLogger.getDropped(),
+                requestLogger.getRateLimited(), requestLogger.getPending()));
+    }
+
+    @GetMapping("/keyring")
+    public ResponseEntity<KeyringStats> keyring() {
+        return ResponseEntity.ok(keyringService.getStats());
+    }
+
+    /**
+     * Счетчики журнала аудита подписей: записано, в очереди, ожидания и время fsync
+     */
+    @GetMapping("/audit")
+    public ResponseEntity<AuditStats> audit() {
+        return ResponseEntity.ok(auditLog.getStats());
+    }
+
+    /**
+     * Пул простых чисел для /api/crypto/keys: глубина, скорость пополнения и промахи
+     */
+    @GetMapping("/keygen")
+    public ResponseEntity<KeyGenerationStats> keygen() {
+        return ResponseEntity.ok(keyGenerationService.getStats());
+    }
+
+    /**
+     * Пул предвычисленных пар ECDSA P-256: глубина, стоимость пополнения, попадания и промахи
+     */
+    @GetMapping("/presign")
+    public ResponseEntity<PresignStats> presign() {
+        return ResponseEntity.ok(ecdsaPresigner.getStats());
+    }
+
+    /**
+     * Лимиты контейнера, выбранные размеры пулов и счетчики троттлинга CPU
+     */
+    @GetMapping("/resources")
+    public ResponseEntity<ContainerTuning> resources() {
+        return ResponseEntity.ok(ResourceTuning.current().report());
+    }
+}
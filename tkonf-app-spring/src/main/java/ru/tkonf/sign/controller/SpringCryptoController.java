@@ -1,85 +1,448 @@
 package ru.tkonf.sign.controller;
 
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import ru.tkonf.sign.service.AuditLog;
+import ru.tkonf.sign.service.BulkVerificationService;
+import ru.tkonf.sign.service.CryptoError;
+import ru.tkonf.sign.service.CryptoException;
+import ru.tkonf.sign.service.ExternalKeyVerifier;
+import ru.tkonf.sign.service.FileSigningService;
+import ru.tkonf.sign.service.HmacService;
+import ru.tkonf.sign.service.JwsService;
+import ru.tkonf.sign.service.KeyGenerationService;
+import ru.tkonf.sign.service.KeyringService;
+import ru.tkonf.sign.service.RequestLogger;
+import ru.tkonf.sign.service.SessionService;
 import ru.tkonf.sign.service.SignatureService;
 import ru.tkonf.sign.model.*;
+import ru.tkonf.sign.service.WarmupService;
+
+import java.io.InputStream;
 
 @RestController
 @RequestMapping("/api/crypto")
 public class SpringCryptoController {
+    // Подпись для /verify/stream: тело запроса занято документом
+    private static final String SIGNATURE_HEADER = "X-Signature";
 
     private final SignatureService signatureService;
+    private final RequestLogger requestLogger;
+    private final WarmupService warmupService;
+    private final ExternalKeyVerifier externalKeyVerifier;
+    private final KeyringService keyringService;
+    private final FileSigningService fileSigningService;
+    private final JwsService jwsService;
+    private final AuditLog auditLog;
+    private final HmacService hmacService;
+    private final SessionService sessionService;
+    private final KeyGenerationService keyGenerationService;
+    private final BulkVerificationService bulkVerificationService;
 
     // Конструктор с инъекцией зависимости
-    public SpringCryptoController(SignatureService signatureService) {
+    public SpringCryptoController(SignatureService signatureService, RequestLogger requestLogger,
+                                  WarmupService warmupService, ExternalKeyVerifier externalKeyVerifier,
+                                  KeyringService keyringService, FileSigningService fileSigningService,
+                                  JwsService jwsService, AuditLog auditLog,
+                                  HmacService hmacService, SessionService sessionService,
+                                  KeyGenerationService keyGenerationService,
+                                  BulkVerificationService bulkVerificationService) {
         this.signatureService = signatureService;
+        this.requestLogger = requestLogger;
+        this.warmupService = warmupService;
+        this.externalKeyVerifier = externalKeyVerifier;
+        this.keyringService = keyringService;
+        this.fileSigningService = fileSigningService;
+        this.jwsService = jwsService;
+        this.auditLog = auditLog;
+        this.hmacService = hmacService;
+        this.sessionService = sessionService;
+        this.keyGenerationService = keyGenerationService;
+        this.bulkVerificationService = bulkVerificationService;
     }
 
     @PostMapping("/sign")
     public ResponseEntity<?> signMessage(@RequestBody SignatureRequest request) {
+        long start = System.nanoTime();
         try {
 
-            String signature = signatureService.signMessage(request.getMessage());
-            SignedMessage signedMessage = new SignedMessage(
-                    request.getMessage(),
-                    signature,
-                    signatureService.getAlgorithm(),
-                    signatureService.getPublicKeyBase64()
-            );
+            SignedMessage signedMessage;
+            if (request.getKeyId() != null) {
+                signedMessage = request.getDigest() != null
+                        ? keyringService.signDigest(request.getKeyId(), request.getDigest())
+                        : keyringService.sign(request.getKeyId(), request.getMessage());
+            } else {
+                String signature = request.getDigest() != null
+                        ? signatureService.signDigest(request.getDigest())
+                        : signatureService.signMessage(request.getMessage());
+                signedMessage = new SignedMessage(
+                        request.getMessage(),
+                        signature,
+                        signatureService.getAlgorithm(),
+                        signatureService.getPublicKeyBase64()
+                );
+            }
+            requestLogger.success("sign", start);
             return ResponseEntity.ok(signedMessage);
+        } catch (CryptoException e) {
+            requestLogger.failure("sign", start, e);
+            return ResponseEntity.badRequest().body(e.getError().getResponse());
+        } catch (Exception e) {
+            requestLogger.failure("sign", start, e);
+            return ResponseEntity.badRequest().body(CryptoError.BAD_REQUEST.getResponse());
+        }
+    }
+
+    /**
+     * Пакетная подпись сообщений одним ключом: клиент собирает пакеты из одновременных вызовов /sign
+     */
+    @PostMapping("/sign/batch")
+    public ResponseEntity<?> signBatch(@RequestBody SignatureRequest request) {
+        long start = System.nanoTime();
+        try {
+            SignatureBatch batch = request.getKeyId() != null
+                    ? keyringService.signBatch(request.getKeyId(), request.getBatch())
+                    : new SignatureBatch(signatureService.getAlgorithm(), signatureService.getPublicKeyBase64(),
+                            signatureService.signBatch(request.getBatch()));
+            requestLogger.success("sign-batch", start);
+            return ResponseEntity.ok(batch);
+        } catch (CryptoException e) {
+            requestLogger.failure("sign-batch", start, e);
+            return ResponseEntity.badRequest().body(e.getError().getResponse());
         } catch (Exception e) {
-            e.printStackTrace();
-            return ResponseEntity.badRequest()
-                    .body(new ErrorResponse("Error signing message: " + e.getMessage()));
+            requestLogger.failure("sign-batch", start, e);
+            return ResponseEntity.badRequest().body(CryptoError.BAD_REQUEST.getResponse());
         }
     }
 
     @PostMapping("/verify")
     public ResponseEntity<?> verifySignature(@RequestBody VerificationRequest request) {
+        long start = System.nanoTime();
+        try {
+
+            boolean isValid;
+            if (request.getKeyId() != null) {
+                isValid = request.getDigest() != null
+                        ? keyringService.verifyDigest(request.getKeyId(), request.getDigest(), request.getSignature())
+                        : keyringService.verify(request.getKeyId(), request.getMessage(), request.getSignature());
+            } else {
+                isValid = request.getDigest() != null
+                        ? signatureService.verifyDigest(request.getDigest(), request.getSignature())
+                        : signatureService.verifySignature(request.getMessage(), request.getSignature());
+            }
+            String message = isValid ? "Signature is VALID" : "Signature is INVALID";
+            requestLogger.success("verify", start);
+            return ResponseEntity.ok(new VerificationResponse(isValid, message));
+        } catch (CryptoException e) {
+            requestLogger.failure("verify", start, e);
+            return ResponseEntity.badRequest().body(e.getError().getResponse());
+        } catch (Exception e) {
+            requestLogger.failure("verify", start, e);
+            return ResponseEntity.badRequest().body(CryptoError.BAD_REQUEST.getResponse());
+        }
+    }
+
+    /**
+     * Пакетная проверка подписей параллельно на всех потоках крипто-пула
+     */
+    @PostMapping("/verify/bulk")
+    public ResponseEntity<?> verifyBulk(@RequestBody BulkVerificationRequest request) {
+        long start = System.nanoTime();
+        try {
+            BulkVerificationResponse response = bulkVerificationService.verify(request.getMode(), request.getItems());
+            requestLogger.success("verify-bulk", start);
+            return ResponseEntity.ok(response);
+        } catch (CryptoException e) {
+            requestLogger.failure("verify-bulk", start, e);
+            return ResponseEntity.badRequest().body(e.getError().getResponse());
+        } catch (Exception e) {
+            requestLogger.failure("verify-bulk", start, e);
+            return ResponseEntity.badRequest().body(CryptoError.BAD_REQUEST.getResponse());
+        }
+    }
+
+    /**
+     * Проверка подписи внешнего подписанта ключом из запроса (Base64 DER или JWK)
+     */
+    @PostMapping("/verify/external")
+    public ResponseEntity<?> verifyExternalSignature(@RequestBody ExternalVerificationRequest request) {
+        long start = System.nanoTime();
+        try {
+            boolean isValid = request.getDigest() != null
+                    ? externalKeyVerifier.verifyDigest(request.getDigest(), request.getSignature(),
+                            request.getPublicKey(), request.getJwk())
+                    : externalKeyVerifier.verify(request.getMessage(), request.getSignature(),
+                            request.getPublicKey(), request.getJwk());
+            String message = isValid ? "Signature is VALID" : "Signature is INVALID";
+            requestLogger.success("verify-external", start);
+            return ResponseEntity.ok(new VerificationResponse(isValid, message));
+        } catch (CryptoException e) {
+            requestLogger.failure("verify-external", start, e);
+            return ResponseEntity.badRequest().body(e.getError().getResponse());
+        } catch (Exception e) {
+            requestLogger.failure("verify-external", start, e);
+            return ResponseEntity.badRequest().body(CryptoError.BAD_REQUEST.getResponse());
+        }
+    }
+
+    /**
+     * Подпись документа произвольного размера из тела application/octet-stream
+     */
+    @PostMapping(value = "/sign/stream", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<?> signStream(InputStream body) {
+        long start = System.nanoTime();
         try {
+            String signature = signatureService.signStream(body);
+            requestLogger.success("sign-stream", start);
+            return ResponseEntity.ok(new SignedMessage(null, signature, signatureService.getAlgorithm(),
+                    signatureService.getPublicKeyBase64()));
+        } catch (CryptoException e) {
+            requestLogger.failure("sign-stream", start, e);
+            return ResponseEntity.badRequest().body(e.getError().getResponse());
+        } catch (Exception e) {
+            requestLogger.failure("sign-stream", start, e);
+            return ResponseEntity.badRequest().body(CryptoError.BAD_REQUEST.getResponse());
+        }
+    }
 
-            boolean isValid = signatureService.verifySignature(request.getMessage(), request.getSignature());
+    /**
+     * Проверка подписи документа из тела application/octet-stream; подпись в заголовке X-Signature
+     */
+    @PostMapping(value = "/verify/stream", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<?> verifyStream(InputStream body,
+                                          @RequestHeader(value = SIGNATURE_HEADER, required = false) String signature) {
+        long start = System.nanoTime();
+        try {
+            boolean isValid = signatureService.verifyStream(body, signature);
             String message = isValid ? "Signature is VALID" : "Signature is INVALID";
+            requestLogger.success("verify-stream", start);
             return ResponseEntity.ok(new VerificationResponse(isValid, message));
+        } catch (CryptoException e) {
+            requestLogger.failure("verify-stream", start, e);
+            return ResponseEntity.badRequest().body(e.getError().getResponse());
         } catch (Exception e) {
-            e.printStackTrace();
-            return ResponseEntity.badRequest()
-                    .body(new ErrorResponse("Error verifying signature: " + e.getMessage()));
+            requestLogger.failure("verify-stream", start, e);
+            return ResponseEntity.badRequest().body(CryptoError.BAD_REQUEST.getResponse());
+        }
+    }
+
+    /**
+     * Подпись файла из каталога tkonf.files.dir на сервере
+     */
+    @PostMapping("/sign/file")
+    public ResponseEntity<?> signFile(@RequestBody FileSignatureRequest request) {
+        long start = System.nanoTime();
+        try {
+            SignedMessage signedMessage = fileSigningService.sign(request.getPath());
+            requestLogger.success("sign-file", start);
+            return ResponseEntity.ok(signedMessage);
+        } catch (CryptoException e) {
+            requestLogger.failure("sign-file", start, e);
+            return ResponseEntity.badRequest().body(e.getError().getResponse());
+        } catch (Exception e) {
+            requestLogger.failure("sign-file", start, e);
+            return ResponseEntity.badRequest().body(CryptoError.BAD_REQUEST.getResponse());
+        }
+    }
+
+    @PostMapping("/verify/file")
+    public ResponseEntity<?> verifyFile(@RequestBody FileSignatureRequest request) {
+        long start = System.nanoTime();
+        try {
+            boolean isValid = fileSigningService.verify(request.getPath(), request.getSignature());
+            String message = isValid ? "Signature is VALID" : "Signature is INVALID";
+            requestLogger.success("verify-file", start);
+            return ResponseEntity.ok(new VerificationResponse(isValid, message));
+        } catch (CryptoException e) {
+            requestLogger.failure("verify-file", start, e);
+            return ResponseEntity.badRequest().body(e.getError().getResponse());
+        } catch (Exception e) {
+            requestLogger.failure("verify-file", start, e);
+            return ResponseEntity.badRequest().body(CryptoError.BAD_REQUEST.getResponse());
+        }
+    }
+
+    /**
+     * Выпуск JWS (compact) ключом сервиса или арендатора
+     */
+    @PostMapping("/jws")
+    public ResponseEntity<?> issueJws(@RequestBody JwsRequest request) {
+        long start = System.nanoTime();
+        try {
+            JwsToken token = jwsService.issue(request.getAlg(), request.getKeyId(), request.getClaims());
+            requestLogger.success("jws", start);
+            return ResponseEntity.ok(token);
+        } catch (CryptoException e) {
+            requestLogger.failure("jws", start, e);
+            return ResponseEntity.badRequest().body(e.getError().getResponse());
+        } catch (Exception e) {
+            requestLogger.failure("jws", start, e);
+            return ResponseEntity.badRequest().body(CryptoError.BAD_REQUEST.getResponse());
+        }
+    }
+
+    /**
+     * Пакетный выпуск JWS: один токен на каждый элемент batch
+     */
+    @PostMapping("/jws/batch")
+    public ResponseEntity<?> issueJwsBatch(@RequestBody JwsRequest request) {
+        long start = System.nanoTime();
+        try {
+            JwsBatch batch = jwsService.issueBatch(request.getAlg(), request.getKeyId(), request.getBatch());
+            requestLogger.success("jws-batch", start);
+            return ResponseEntity.ok(batch);
+        } catch (CryptoException e) {
+            requestLogger.failure("jws-batch", start, e);
+            return ResponseEntity.badRequest().body(e.getError().getResponse());
+        } catch (Exception e) {
+            requestLogger.failure("jws-batch", start, e);
+            return ResponseEntity.badRequest().body(CryptoError.BAD_REQUEST.getResponse());
+        }
+    }
+
+    /**
+     * HMAC-SHA256 сообщения секретом keyId: для внутренних вызовов без асимметричной подписи
+     */
+    @PostMapping("/hmac/sign")
+    public ResponseEntity<?> signHmac(@RequestBody SignatureRequest request) {
+        long start = System.nanoTime();
+        try {
+            SignedMessage signedMessage = hmacService.sign(request.getKeyId(), request.getMessage());
+            requestLogger.success("hmac-sign", start);
+            return ResponseEntity.ok(signedMessage);
+        } catch (CryptoException e) {
+            requestLogger.failure("hmac-sign", start, e);
+            return ResponseEntity.badRequest().body(e.getError().getResponse());
+        } catch (Exception e) {
+            requestLogger.failure("hmac-sign", start, e);
+            return ResponseEntity.badRequest().body(CryptoError.BAD_REQUEST.getResponse());
+        }
+    }
+
+    @PostMapping("/hmac/verify")
+    public ResponseEntity<?> verifyHmac(@RequestBody VerificationRequest request) {
+        long start = System.nanoTime();
+        try {
+            boolean isValid = hmacService.verify(request.getKeyId(), request.getMessage(), request.getSignature());
+            String message = isValid ? "Signature is VALID" : "Signature is INVALID";
+            requestLogger.success("hmac-verify", start);
+            return ResponseEntity.ok(new VerificationResponse(isValid, message));
+        } catch (CryptoException e) {
+            requestLogger.failure("hmac-verify", start, e);
+            return ResponseEntity.badRequest().body(e.getError().getResponse());
+        } catch (Exception e) {
+            requestLogger.failure("hmac-verify", start, e);
+            return ResponseEntity.badRequest().body(CryptoError.BAD_REQUEST.getResponse());
+        }
+    }
+
+    /**
+     * Поиск выданных подписей по SHA-256 дайджесту (hex или Base64url) в журнале аудита
+     */
+    @GetMapping("/signatures/{digest}")
+    public ResponseEntity<?> findSignatures(@PathVariable String digest) {
+        long start = System.nanoTime();
+        try {
+            SignatureLookup lookup = auditLog.lookup(digest);
+            requestLogger.success("signatures", start);
+            return ResponseEntity.ok(lookup);
+        } catch (CryptoException e) {
+            requestLogger.failure("signatures", start, e);
+            return ResponseEntity.badRequest().body(e.getError().getResponse());
+        } catch (Exception e) {
+            requestLogger.failure("signatures", start, e);
+            return ResponseEntity.badRequest().body(CryptoError.BAD_REQUEST.getResponse());
+        }
+    }
+
+    /**
+     * Открывает сессию AES-GCM: дальше /encrypt и /decrypt с sessionId обходятся без RSA
+     */
+    @PostMapping("/session")
+    public ResponseEntity<?> openSession(@RequestBody SessionRequest request) {
+        long start = System.nanoTime();
+        try {
+            SessionResponse session = sessionService.open(request.getWrappedKey());
+            requestLogger.success("session", start);
+            return ResponseEntity.ok(session);
+        } catch (CryptoException e) {
+            requestLogger.failure("session", start, e);
+            return ResponseEntity.badRequest().body(e.getError().getResponse());
+        } catch (Exception e) {
+            requestLogger.failure("session", start, e);
+            return ResponseEntity.badRequest().body(CryptoError.BAD_REQUEST.getResponse());
         }
     }
 
     @PostMapping("/encrypt")
     public ResponseEntity<?> encryptMessage(@RequestBody SignatureRequest request) {
+        long start = System.nanoTime();
         try {
 
-            String encrypted = signatureService.encrypt(request.getMessage());
+            String encrypted = request.getSessionId() != null
+                    ? sessionService.encrypt(request.getSessionId(), request.getMessage())
+                    : signatureService.encrypt(request.getMessage());
+            requestLogger.success("encrypt", start);
             return ResponseEntity.ok(new CryptoResponse(encrypted));
+        } catch (CryptoException e) {
+            requestLogger.failure("encrypt", start, e);
+            return ResponseEntity.badRequest().body(e.getError().getResponse());
         } catch (Exception e) {
-            e.printStackTrace();
-            return ResponseEntity.badRequest()
-                    .body(new ErrorResponse("Error encrypting message: " + e.getMessage()));
+            requestLogger.failure("encrypt", start, e);
+            return ResponseEntity.badRequest().body(CryptoError.BAD_REQUEST.getResponse());
         }
     }
 
     @PostMapping("/decrypt")
     public ResponseEntity<?> decryptMessage(@RequestBody SignatureRequest request) {
+        long start = System.nanoTime();
         try {
 
-            String decrypted = signatureService.decrypt(request.getMessage());
+            String decrypted = request.getSessionId() != null
+                    ? sessionService.decrypt(request.getSessionId(), request.getMessage())
+                    : signatureService.decrypt(request.getMessage());
+            requestLogger.success("decrypt", start);
             return ResponseEntity.ok(new CryptoResponse(decrypted));
+        } catch (CryptoException e) {
+            requestLogger.failure("decrypt", start, e);
+            return ResponseEntity.badRequest().body(e.getError().getResponse());
+        } catch (Exception e) {
+            requestLogger.failure("decrypt", start, e);
+            return ResponseEntity.badRequest().body(CryptoError.BAD_REQUEST.getResponse());
+        }
+    }
+
+    /**
+     * Новая пара ключей RSA, собранная из заранее найденных простых чисел
+     */
+    @PostMapping("/keys")
+    public ResponseEntity<?> generateKeyPair() {
+        long start = System.nanoTime();
+        try {
+            GeneratedKeyPair keyPair = keyGenerationService.generate();
+            requestLogger.success("keys", start);
+            return ResponseEntity.ok(keyPair);
         } catch (Exception e) {
-            e.printStackTrace();
-            return ResponseEntity.badRequest()
-                    .body(new ErrorResponse("Error decrypting message: " + e.getMessage()));
+            requestLogger.failure("keys", start, e);
+            return ResponseEntity.internalServerError().body(CryptoError.KEY_GENERATION_FAILED.getResponse());
         }
     }
 
+    /**
+     * Публичный ключ сервиса с ETag: клиент с закэшированным ключом получает 304 без тела
+     */
     @GetMapping("/public-key")
-    public ResponseEntity<String> getPublicKey() {
+    public ResponseEntity<String> getPublicKey(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         try {
-            String publicKey = signatureService.getPublicKeyBase64();
-            return ResponseEntity.ok(publicKey);
+            SignatureService.PublishedKey publicKey = signatureService.getPublishedKey();
+            if (publicKey.eTag().equals(ifNoneMatch)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(publicKey.eTag()).build();
+            }
+            return ResponseEntity.ok().eTag(publicKey.eTag()).body(publicKey.base64());
         } catch (Exception e) {
             return ResponseEntity.internalServerError()
                     .body("Error getting public key: " + e.getMessage());
@@ -90,4 +453,13 @@ public class SpringCryptoController {
     public ResponseEntity<HealthResponse> health() {
         return ResponseEntity.ok(new HealthResponse("Spring Crypto Service is running"));
     }
+
+    /**
+     * Готовность к трафику: 503, пока идет прогрев JIT
+     */
+    @GetMapping("/ready")
+    public ResponseEntity<WarmupStatus> ready() {
+        return ResponseEntity.status(warmupService.isReady() ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE)
+                .body(warmupService.getStatus());
+    }
 }
\ No newline at end of file
@@ -0,0 +1,150 @@
+package ru.tkonf.sign.filter;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import ru.tkonf.sign.service.ServerTiming;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+
+/**
+ * Добавляет {@code Server-Timing} к ответам /api/crypto/*.
+ * Тело буферизуется в переиспользуемый буфер потока ({@link ServerTiming#bodyBuffer()}),
+ * чтобы в заголовок попало и время сериализации.
+ */
+@Component
+public class ServerTimingFilter extends OncePerRequestFilter {
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith("/api/crypto/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        ServerTiming timing = ServerTiming.begin(request.getHeader(ServerTiming.REQUEST_START_HEADER));
+        BufferedResponse buffered = new BufferedResponse(response, timing.bodyBuffer());
+        try {
+            filterChain.doFilter(request, buffered);
+        } finally {
+            timing.serializationFinished();
+            response.setHeader(ServerTiming.HEADER, timing.finish());
+            buffered.copyBodyToResponse();
+        }
+    }
+
+    /**
+     * Ответ, тело которого до конца цепочки фильтров копится в буфере потока
+     */
+    private static final class BufferedResponse extends HttpServletResponseWrapper {
+        private final ByteArrayOutputStream buffer;
+        private ServletOutputStream outputStream;
+        private PrintWriter writer;
+
+        BufferedResponse(HttpServletResponse response, ByteArrayOutputStream buffer) {
+            super(response);
+            this.buffer = buffer;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            if (outputStream == null) {
+                outputStream = new BufferOutputStream(buffer);
+            }
+            return outputStream;
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (writer == null) {
+                writer = new PrintWriter(new OutputStreamWriter(getOutputStream(), getCharacterEncoding()));
+            }
+            return writer;
+        }
+
+        // Длину выставляет copyBodyToResponse по фактическому телу
+        @Override
+        public void setContentLength(int length) {
+        }
+
+        @Override
+        public void setContentLengthLong(long length) {
+        }
+
+        // Сброс в сеть зафиксировал бы ответ до выставления заголовка
+        @Override
+        public void flushBuffer() {
+            if (writer != null) {
+                writer.flush();
+            }
+        }
+
+        @Override
+        public void resetBuffer() {
+            super.resetBuffer();
+            buffer.reset();
+        }
+
+        @Override
+        public void reset() {
+            super.reset();
+            buffer.reset();
+        }
+
+        void copyBodyToResponse() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+            if (buffer.size() > 0) {
+                HttpServletResponse response = (HttpServletResponse) getResponse();
+                if (!response.isCommitted()) {
+                    response.setContentLength(buffer.size());
+                }
+                buffer.writeTo(response.getOutputStream());
+            }
+        }
+    }
+
+    private static final class BufferOutputStream extends ServletOutputStream {
+        private final ByteArrayOutputStream buffer;
+
+        BufferOutputStream(ByteArrayOutputStream buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void write(int b) {
+            buffer.write(b);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            buffer.write(bytes, offset, length);
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        // Запись в память не блокируется: поток сразу готов к записи
+        @Override
+        public void setWriteListener(WriteListener listener) {
+            try {
+                listener.onWritePossible();
+            } catch (IOException e) {
+                listener.onError(e);
+            }
+        }
+    }
+}
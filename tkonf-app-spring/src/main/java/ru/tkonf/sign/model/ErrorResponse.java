@@ -1,20 +1,32 @@
 package ru.tkonf.sign.model;
 
-public class ErrorResponse {
-    private String error;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
 
-    public ErrorResponse() {
-    }
+/**
+ * Неизменяемый ответ об ошибке: типовые ответы создаются один раз и переиспользуются
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public final class ErrorResponse {
+    private final String code;
+    private final String error;
 
     public ErrorResponse(String error) {
+        this(null, error);
+    }
+
+    @JsonCreator
+    public ErrorResponse(@JsonProperty("code") String code, @JsonProperty("error") String error) {
+        this.code = code;
         this.error = error;
     }
 
-    public String getError() {
-        return error;
+    public String getCode() {
+        return code;
     }
 
-    public void setError(String error) {
-        this.error = error;
+    public String getError() {
+        return error;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,23 @@
+package ru.tkonf.sign.model;
+
+import java.util.List;
+
+public class JwsBatch {
+    private String alg;
+    private List<String> tokens;
+
+    public JwsBatch() {}
+
+    public JwsBatch(String alg, List<String> tokens) {
+        this.alg = alg;
+        this.tokens = tokens;
+    }
+
+    // Геттеры и сеттеры
+    public String getAlg() { return alg; }
+    public void setAlg(String alg) { this.alg = alg; }
+
+    // Токены в порядке элементов batch запроса
+    public List<String> getTokens() { return tokens; }
+    public void setTokens(List<String> tokens) { this.tokens = tokens; }
+}
@@ -0,0 +1,20 @@
+package ru.tkonf.sign.model;
+
+public class JwsToken {
+    private String alg;
+    private String token;
+
+    public JwsToken() {}
+
+    public JwsToken(String alg, String token) {
+        this.alg = alg;
+        this.token = token;
+    }
+
+    // Геттеры и сеттеры
+    public String getAlg() { return alg; }
+    public void setAlg(String alg) { this.alg = alg; }
+
+    public String getToken() { return token; }
+    public void setToken(String token) { this.token = token; }
+}
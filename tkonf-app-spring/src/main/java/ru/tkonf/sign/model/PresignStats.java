@@ -0,0 +1,57 @@
+package ru.tkonf.sign.model;
+
+/**
+ * Состояние пула предвычисленных пар ECDSA P-256: глубина, стоимость пополнения и промахи
+ */
+public class PresignStats {
+    private boolean enabled;
+    private int poolDepth;
+    private int poolCapacity;
+    private long precomputed;
+    private long averagePrecomputeMicros;
+    private long refillPauses;
+    private long hits;
+    private long misses;
+
+    public PresignStats() {}
+
+    public PresignStats(boolean enabled, int poolDepth, int poolCapacity, long precomputed,
+                        long averagePrecomputeMicros, long refillPauses, long hits, long misses) {
+        this.enabled = enabled;
+        this.poolDepth = poolDepth;
+        this.poolCapacity = poolCapacity;
+        this.precomputed = precomputed;
+        this.averagePrecomputeMicros = averagePrecomputeMicros;
+        this.refillPauses = refillPauses;
+        this.hits = hits;
+        this.misses = misses;
+    }
+
+    // Геттеры и сеттеры
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+    public int getPoolDepth() { return poolDepth; }
+    public void setPoolDepth(int poolDepth) { this.poolDepth = poolDepth; }
+
+    public int getPoolCapacity() { return poolCapacity; }
+    public void setPoolCapacity(int poolCapacity) { this.poolCapacity = poolCapacity; }
+
+    public long getPrecomputed() { return precomputed; }
+    public void setPrecomputed(long precomputed) { this.precomputed = precomputed; }
+
+    public long getAveragePrecomputeMicros() { return averagePrecomputeMicros; }
+    public void setAveragePrecomputeMicros(long averagePrecomputeMicros) { this.averagePrecomputeMicros = averagePrecomputeMicros; }
+
+    // Паузы пополнения из-за загруженного CPU
+    public long getRefillPauses() { return refillPauses; }
+    public void setRefillPauses(long refillPauses) { this.refillPauses = refillPauses; }
+
+    // Подписи, завершенные из пула
+    public long getHits() { return hits; }
+    public void setHits(long hits) { this.hits = hits; }
+
+    // Подписи ключом P-256 обычным путем из-за пустого пула
+    public long getMisses() { return misses; }
+    public void setMisses(long misses) { this.misses = misses; }
+}
@@ -0,0 +1,30 @@
+package ru.tkonf.sign.model;
+
+public class RequestLogStats {
+    private long written;
+    private long dropped;
+    private long rateLimited;
+    private int pending;
+
+    public RequestLogStats() {}
+
+    public RequestLogStats(long written, long dropped, long rateLimited, int pending) {
+        this.written = written;
+        this.dropped = dropped;
+        this.rateLimited = rateLimited;
+        this.pending = pending;
+    }
+
+    // Геттеры и сеттеры
+    public long getWritten() { return written; }
+    public void setWritten(long written) { this.written = written; }
+
+    public long getDropped() { return dropped; }
+    public void setDropped(long dropped) { this.dropped = dropped; }
+
+    public long getRateLimited() { return rateLimited; }
+    public void setRateLimited(long rateLimited) { this.rateLimited = rateLimited; }
+
+    public int getPending() { return pending; }
+    public void setPending(int pending) { this.pending = pending; }
+}
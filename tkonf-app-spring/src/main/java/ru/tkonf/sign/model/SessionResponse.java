@@ -0,0 +1,33 @@
+package ru.tkonf.sign.model;
+
+/**
+ * Открытая сессия шифрования: sessionId для /encrypt и /decrypt и ключ сессии, зашифрованный ключом сервиса
+ */
+public class SessionResponse {
+    private String sessionId;
+    private String wrappedKey;
+    private String algorithm;
+    private long expiresInSeconds;
+
+    public SessionResponse() {}
+
+    public SessionResponse(String sessionId, String wrappedKey, String algorithm, long expiresInSeconds) {
+        this.sessionId = sessionId;
+        this.wrappedKey = wrappedKey;
+        this.algorithm = algorithm;
+        this.expiresInSeconds = expiresInSeconds;
+    }
+
+    // Геттеры и сеттеры
+    public String getSessionId() { return sessionId; }
+    public void setSessionId(String sessionId) { this.sessionId = sessionId; }
+
+    public String getWrappedKey() { return wrappedKey; }
+    public void setWrappedKey(String wrappedKey) { this.wrappedKey = wrappedKey; }
+
+    public String getAlgorithm() { return algorithm; }
+    public void setAlgorithm(String algorithm) { this.algorithm = algorithm; }
+
+    public long getExpiresInSeconds() { return expiresInSeconds; }
+    public void setExpiresInSeconds(long expiresInSeconds) { this.expiresInSeconds = expiresInSeconds; }
+}
@@ -0,0 +1,573 @@
+package ru.tkonf.sign.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.crac.Context;
+import org.crac.Core;
+import org.crac.Resource;
+import ru.tkonf.sign.model.AuditStats;
+import ru.tkonf.sign.model.SignatureLookup;
+import ru.tkonf.sign.model.SignatureRecord;
+import ru.tkonf.sign.util.BoundedRingBuffer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32C;
+
+/**
+ * Журнал аудита выданных подписей: время, keyId, SHA-256 подписанных данных и сама подпись.
+ * <p>
+ * Поток запроса только кладет запись в lock-free кольцевой буфер; фоновый поток пачками переносит
+ * записи фиксированного размера {@link #RECORD_BYTES} в отображенный в память сегмент
+ * {@code audit-<sequence>.log} и фиксирует пачку одним {@code force} (group commit) по политике
+ * {@code tkonf.audit.fsync}: {@code batch} - после каждой пачки, {@code interval} - не чаще
+ * {@code fsync-interval-millis}, {@code none} - на усмотрение ОС. Сегмент заполняется до
+ * {@code segment-bytes}, затем открывается следующий.
+ * <p>
+ * В отличие от журнала запросов, записи аудита не отбрасываются: при переполнении буфера подписант
+ * ждет писателя, а если писатель не успевает за {@code max-stall-millis} (например, диск заполнен),
+ * подпись не выдается ({@link CryptoError#AUDIT_UNAVAILABLE}).
+ * <p>
+ * Писатель ведет {@link SignatureIndex} (префикс дайджеста -> номер записи), поэтому вопрос
+ * «подписывался ли дайджест и когда» решается без сканирования сегментов: номер записи однозначно
+ * дает сегмент и смещение в нем.
+ */
+@Service
+public class AuditLog implements Resource {
+    public enum Operation { SIGN, SIGN_DIGEST, SIGN_STREAM, SIGN_FILE, JWS }
+
+    public enum FsyncPolicy { BATCH, INTERVAL, NONE }
+
+    /*
+     * Формат записи (big-endian), нулевая версия означает конец данных сегмента:
+     *   0  short  версия               8  long  номер записи          16 long  время, мкс от эпохи
+     *   2  byte   операция            24  32    SHA-256 данных         56 64    keyId (ASCII, "" - ключ сервиса)
+     *   3  byte   длина keyId        120  512   подпись (до RSA-4096) 632 int   CRC32C байтов 0..631
+     *   4  short  длина подписи      636  4     резерв
+     */
+    public static final int RECORD_BYTES = 640;
+    private static final short VERSION = 1;
+    private static final int DIGEST_OFFSET = 24;
+    private static final int KEY_ID_OFFSET = 56;
+    private static final int KEY_ID_BYTES = 64;
+    private static final int SIGNATURE_OFFSET = 120;
+    private static final int SIGNATURE_BYTES = 512;
+    private static final int CRC_OFFSET = 632;
+
+    private static final String SEGMENT_PREFIX = "audit-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String INDEX_FILE = "signatures.idx";
+    // Один дайджест подписывают редко; ограничение защищает ответ от бесконечной истории
+    private static final int MAX_LOOKUP_RECORDS = 64;
+    private static final int DRAIN_BATCH = 256;
+    private static final long IDLE_PARK_NANOS = 1_000_000L;
+    private static final long STALL_PARK_NANOS = 50_000L;
+    private static final long REOPEN_PARK_NANOS = 100_000_000L;
+    // Потоки, подписи которых в журнал не пишутся (прогрев JIT)
+    private static final ThreadLocal<Boolean> EXCLUDED = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    private final boolean enabled;
+    private final Path directory;
+    private final long segmentBytes;
+    private final long indexSlots;
+    private final FsyncPolicy fsyncPolicy;
+    private final long fsyncIntervalNanos;
+    private final long maxStallNanos;
+    private final BoundedRingBuffer<Entry> buffer;
+
+    private final LongAdder written = new LongAdder();
+    private final LongAdder stalls = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder writeFailures = new LongAdder();
+    private final LongAdder fsyncs = new LongAdder();
+    private final LongAdder fsyncNanos = new LongAdder();
+    private final LongAccumulator maxFsyncNanos = new LongAccumulator(Math::max, 0);
+    private final LongAdder segmentsOpened = new LongAdder();
+    // Записи, не попавшие в заполненный индекс
+    private final LongAdder unindexed = new LongAdder();
+
+    // Состояние сегмента меняет только писатель (и CRaC-колбэки) под монитором this
+    private final byte[] record = new byte[RECORD_BYTES];
+    private final CRC32C crc = new CRC32C();
+    private FileChannel channel;
+    private MappedByteBuffer mapping;
+    private Path segmentPath;
+    private int position;
+    private boolean dirty;
+    private long lastForceNanos;
+    private volatile long sequence;
+    // Индекс и сегменты для поиска; писатель подменяет их целиком, читатели берут снимок ссылки
+    private volatile SignatureIndex index;
+    private volatile SegmentTable segments;
+    private volatile boolean suspended;
+
+    private final Thread writerThread;
+    private volatile boolean running = true;
+
+    public AuditLog(@Value("${tkonf.audit.enabled:false}") boolean enabled,
+                    @Value("${tkonf.audit.dir:audit}") String directory,
+                    @Value("${tkonf.audit.segment-bytes:67108864}") long segmentBytes,
+                    @Value("${tkonf.audit.index-slots:4194304}") long indexSlots,
+                    @Value("${tkonf.audit.fsync:interval}") String fsyncPolicy,
+                    @Value("${tkonf.audit.fsync-interval-millis:1000}") long fsyncIntervalMillis,
+                    @Value("${tkonf.audit.capacity:8192}") int capacity,
+                    @Value("${tkonf.audit.max-stall-millis:1000}") long maxStallMillis) {
+        this.enabled = enabled;
+        this.directory = Path.of(directory);
+        // Сегмент вмещает целое число записей и адресуется int-смещением
+        this.segmentBytes = Math.max(1, Math.min(segmentBytes, Integer.MAX_VALUE) / RECORD_BYTES) * RECORD_BYTES;
+        this.indexSlots = indexSlots;
+        this.fsyncPolicy = FsyncPolicy.valueOf(fsyncPolicy.toUpperCase());
+        this.fsyncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(fsyncIntervalMillis);
+        this.maxStallNanos = TimeUnit.MILLISECONDS.toNanos(maxStallMillis);
+        this.buffer = new BoundedRingBuffer<>(capacity);
+        if (enabled) {
+            // Индекс дописывается до первого запроса, иначе ранний поиск не нашел бы старых записей
+            synchronized (this) {
+                try {
+                    openLatestSegment();
+                } catch (IOException | UncheckedIOException e) {
+                    // Писатель повторит открытие
+                    writeFailures.increment();
+                    closeQuietly();
+                }
+            }
+            this.writerThread = new Thread(this::drainLoop, "audit-log-writer");
+            this.writerThread.setDaemon(true);
+            this.writerThread.start();
+            Core.getGlobalContext().register(this);
+        } else {
+            this.writerThread = null;
+        }
+    }
+
+    /**
+     * Ставит выданную подпись в очередь на запись; ждет, только если очередь заполнена
+     */
+    public void record(Operation operation, String keyId, byte[] digest, byte[] signature) throws CryptoException {
+        if (!enabled || EXCLUDED.get()) {
+            return;
+        }
+        Instant now = Instant.now();
+        Entry entry = new Entry(operation, keyId, digest, signature,
+                TimeUnit.SECONDS.toMicros(now.getEpochSecond()) + now.getNano() / 1000);
+        if (buffer.offer(entry)) {
+            return;
+        }
+        stalls.increment();
+        long deadline = System.nanoTime() + maxStallNanos;
+        do {
+            LockSupport.unpark(writerThread);
+            LockSupport.parkNanos(STALL_PARK_NANOS);
+            if (buffer.offer(entry)) {
+                return;
+            }
+        } while (System.nanoTime() < deadline);
+        rejected.increment();
+        throw CryptoError.AUDIT_UNAVAILABLE.exception();
+    }
+
+    /**
+     * Подписи текущего потока больше не попадают в журнал: синтетические подписи прогрева
+     * засоряли бы аудит и индекс
+     */
+    public static void excludeCurrentThread() {
+        EXCLUDED.set(Boolean.TRUE);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Выданные подписи SHA-256 дайджеста (hex или Base64url) по индексу; кандидаты с совпавшим префиксом
+     * сверяются с записью журнала (CRC, номер, полный дайджест)
+     */
+    public SignatureLookup lookup(String digestValue) throws CryptoException {
+        byte[] digest = DigestSigning.decodePathDigest(digestValue);
+        SignatureIndex current = index;
+        SegmentTable table = segments;
+        if (current == null || table == null) {
+            throw CryptoError.AUDIT_UNAVAILABLE.exception();
+        }
+        long[] sequences = new long[MAX_LOOKUP_RECORDS];
+        int found = current.find(SignatureIndex.key(digest, 0), sequences);
+        Arrays.sort(sequences, 0, found);
+        byte[] candidate = new byte[RECORD_BYTES];
+        CRC32C checksum = new CRC32C();
+        List<SignatureRecord> records = new ArrayList<>(found);
+        for (int i = 0; i < found; i++) {
+            int segment = table.floor(sequences[i]);
+            if (segment < 0) {
+                continue;
+            }
+            ByteBuffer mapping = table.mappings()[segment];
+            long offset = (sequences[i] - table.firstSequences()[segment]) * RECORD_BYTES;
+            if (offset + RECORD_BYTES > mapping.capacity()) {
+                continue;
+            }
+            mapping.get((int) offset, candidate);
+            if (matches(candidate, checksum, sequences[i], digest)) {
+                records.add(toRecord(candidate));
+            }
+        }
+        return new SignatureLookup(HexFormat.of().formatHex(digest), !records.isEmpty(), records);
+    }
+
+    public synchronized AuditStats getStats() {
+        long count = fsyncs.sum();
+        return new AuditStats(enabled, fsyncPolicy.name().toLowerCase(), written.sum(), buffer.size(),
+                stalls.sum(), rejected.sum(), writeFailures.sum(), sequence, count,
+                count > 0 ? TimeUnit.NANOSECONDS.toMicros(fsyncNanos.sum() / count) : 0,
+                TimeUnit.NANOSECONDS.toMicros(maxFsyncNanos.get()), segmentsOpened.sum(),
+                segmentPath != null ? segmentPath.getFileName().toString() : null,
+                index != null ? index.size() : 0, index != null ? index.slots() : 0,
+                index != null && index.isCrowded(), unindexed.sum());
+    }
+
+    @PreDestroy
+    public void close() {
+        if (writerThread == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Дописывает очередь, фиксирует и закрывает сегмент: открытые файлы не дают сделать чекпоинт
+     */
+    @Override
+    public synchronized void beforeCheckpoint(Context<? extends Resource> context) throws IOException {
+        suspended = true;
+        drain(Integer.MAX_VALUE);
+        closeSegment();
+        index = null;
+        segments = null;
+    }
+
+    /**
+     * Писатель сам откроет последний сегмент и продолжит с первой свободной записи
+     */
+    @Override
+    public synchronized void afterRestore(Context<? extends Resource> context) {
+        suspended = false;
+        LockSupport.unpark(writerThread);
+    }
+
+    private void drainLoop() {
+        while (running || buffer.size() > 0) {
+            int drained;
+            synchronized (this) {
+                if (suspended) {
+                    drained = 0;
+                } else {
+                    try {
+                        drained = drain(DRAIN_BATCH);
+                        commit(!running);
+                    } catch (IOException | UncheckedIOException e) {
+                        // Сегмент будет открыт заново; записи остаются в буфере
+                        writeFailures.increment();
+                        closeQuietly();
+                        LockSupport.parkNanos(REOPEN_PARK_NANOS);
+                        continue;
+                    }
+                }
+            }
+            if (drained == 0) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+        synchronized (this) {
+            try {
+                closeSegment();
+            } catch (IOException | UncheckedIOException e) {
+                closeQuietly();
+            }
+        }
+    }
+
+    private int drain(int limit) throws IOException {
+        int drained = 0;
+        while (drained < limit) {
+            if (mapping == null) {
+                openLatestSegment();
+            }
+            if (position + RECORD_BYTES > segmentBytes) {
+                closeSegment();
+                openNextSegment();
+            }
+            Entry entry = buffer.poll();
+            if (entry == null) {
+                break;
+            }
+            write(entry);
+            drained++;
+        }
+        written.add(drained);
+        if (drained > 0) {
+            dirty = true;
+        }
+        return drained;
+    }
+
+    private void write(Entry entry) throws IOException {
+        long next = sequence + 1;
+        ByteBuffer out = ByteBuffer.wrap(record);
+        Arrays.fill(record, (byte) 0);
+        byte[] keyId = entry.keyId != null ? entry.keyId.getBytes(StandardCharsets.US_ASCII) : new byte[0];
+        int keyIdLength = Math.min(keyId.length, KEY_ID_BYTES);
+        int signatureLength = Math.min(entry.signature.length, SIGNATURE_BYTES);
+        out.putShort(0, VERSION)
+                .put(2, (byte) entry.operation.ordinal())
+                .put(3, (byte) keyIdLength)
+                .putShort(4, (short) signatureLength)
+                .putLong(8, next)
+                .putLong(16, entry.timestampMicros)
+                .put(DIGEST_OFFSET, entry.digest, 0, Math.min(entry.digest.length, 32))
+                .put(KEY_ID_OFFSET, keyId, 0, keyIdLength)
+                .put(SIGNATURE_OFFSET, entry.signature, 0, signatureLength);
+        crc.reset();
+        crc.update(record, 0, CRC_OFFSET);
+        out.putInt(CRC_OFFSET, (int) crc.getValue());
+        mapping.put(position, record);
+        position += RECORD_BYTES;
+        sequence = next;
+        if (!index.put(SignatureIndex.key(entry.digest, 0), next)) {
+            unindexed.increment();
+        }
+    }
+
+    private void commit(boolean force) {
+        if (!dirty || mapping == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        boolean due = switch (fsyncPolicy) {
+            case BATCH -> true;
+            case INTERVAL -> now - lastForceNanos >= fsyncIntervalNanos;
+            case NONE -> false;
+        };
+        if (due || force) {
+            mapping.force();
+            long elapsed = System.nanoTime() - now;
+            fsyncs.increment();
+            fsyncNanos.add(elapsed);
+            maxFsyncNanos.accumulate(elapsed);
+            lastForceNanos = now;
+            dirty = false;
+        }
+    }
+
+    /**
+     * Открывает последний сегмент каталога и находит первую свободную запись;
+     * запись с неверной CRC (оборванная при сбое) считается концом данных.
+     * Индекс дописывается записями после его отметки, начиная с сегмента, где она лежит
+     */
+    private void openLatestSegment() throws IOException {
+        Files.createDirectories(directory);
+        List<Path> paths = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                if (firstSequence(path) > 0) {
+                    paths.add(path);
+                }
+            }
+        }
+        index = SignatureIndex.open(directory.resolve(INDEX_FILE), indexSlots);
+        if (paths.isEmpty()) {
+            segments = SegmentTable.EMPTY;
+            openNextSegment();
+            return;
+        }
+        Collections.sort(paths);
+        Path latest = paths.get(paths.size() - 1);
+        openSegment(latest);
+        SegmentTable table = SegmentTable.EMPTY;
+        for (Path path : paths) {
+            table = table.with(firstSequence(path), path == latest ? mapping : mapReadOnly(path));
+        }
+        // Пустой последний сегмент все равно задает номер следующей записи
+        sequence = Math.max(sequence, firstSequence(latest) - 1);
+        long indexed = index.indexedSequence();
+        for (int i = Math.max(0, table.floor(indexed + 1)); i < paths.size(); i++) {
+            position = scan(table.mappings()[i], indexed);
+        }
+        segments = table;
+    }
+
+    /**
+     * Проходит корректные записи сегмента, добавляя в индекс записи новее {@code indexed};
+     * возвращает смещение конца данных
+     */
+    private int scan(ByteBuffer segment, long indexed) throws IOException {
+        int offset = 0;
+        while (offset + RECORD_BYTES <= segment.capacity() && segment.getShort(offset) == VERSION) {
+            segment.get(offset, record);
+            crc.reset();
+            crc.update(record, 0, CRC_OFFSET);
+            if ((int) crc.getValue() != segment.getInt(offset + CRC_OFFSET)) {
+                break;
+            }
+            long recordSequence = segment.getLong(offset + 8);
+            if (recordSequence > indexed) {
+                if (!index.put(SignatureIndex.key(record, DIGEST_OFFSET), recordSequence)) {
+                    unindexed.increment();
+                }
+            }
+            sequence = Math.max(sequence, recordSequence);
+            offset += RECORD_BYTES;
+        }
+        return offset;
+    }
+
+    private void openNextSegment() throws IOException {
+        long first = sequence + 1;
+        openSegment(directory.resolve(segmentName(first)));
+        segments = segments.with(first, mapping);
+    }
+
+    private void openSegment(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        mapping = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        segmentPath = path;
+        position = 0;
+        lastForceNanos = System.nanoTime();
+        segmentsOpened.increment();
+    }
+
+    /**
+     * Фиксирует сегмент и отмечает в индексе, что все записанные записи проиндексированы
+     */
+    private void closeSegment() throws IOException {
+        commit(true);
+        if (index != null) {
+            index.checkpoint(sequence);
+        }
+        closeQuietly();
+    }
+
+    private static MappedByteBuffer mapReadOnly(Path path) throws IOException {
+        try (FileChannel readChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return readChannel.map(FileChannel.MapMode.READ_ONLY, 0, readChannel.size());
+        }
+    }
+
+    private void closeQuietly() {
+        mapping = null;
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Данные уже в page cache или потеряны вместе с сегментом
+            }
+            channel = null;
+        }
+    }
+
+    /**
+     * Имя сегмента по номеру первой записи; нули слева сохраняют лексикографический порядок
+     */
+    private static String segmentName(long firstSequence) {
+        return SEGMENT_PREFIX + String.format("%020d", firstSequence) + SEGMENT_SUFFIX;
+    }
+
+    /**
+     * Номер первой записи по имени сегмента; -1 для посторонних файлов
+     */
+    private static long firstSequence(Path segment) {
+        String name = segment.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            return -1;
+        }
+    }
+
+    private static boolean matches(byte[] candidate, CRC32C checksum, long sequence, byte[] digest) {
+        ByteBuffer in = ByteBuffer.wrap(candidate);
+        if (in.getShort(0) != VERSION || in.getLong(8) != sequence) {
+            return false;
+        }
+        checksum.reset();
+        checksum.update(candidate, 0, CRC_OFFSET);
+        return (int) checksum.getValue() == in.getInt(CRC_OFFSET)
+                && Arrays.equals(candidate, DIGEST_OFFSET, DIGEST_OFFSET + 32, digest, 0, digest.length);
+    }
+
+    private static SignatureRecord toRecord(byte[] candidate) {
+        ByteBuffer in = ByteBuffer.wrap(candidate);
+        Operation[] operations = Operation.values();
+        int operation = in.get(2);
+        int keyIdLength = in.get(3);
+        int signatureLength = in.getShort(4);
+        long micros = in.getLong(16);
+        Instant timestamp = Instant.ofEpochSecond(Math.floorDiv(micros, 1_000_000L),
+                Math.floorMod(micros, 1_000_000L) * 1000);
+        return new SignatureRecord(in.getLong(8), timestamp.toString(),
+                operation >= 0 && operation < operations.length ? operations[operation].name() : null,
+                keyIdLength > 0 ? new String(candidate, KEY_ID_OFFSET, keyIdLength, StandardCharsets.US_ASCII) : null,
+                Base64.getEncoder().encodeToString(Arrays.copyOfRange(candidate, SIGNATURE_OFFSET,
+                        SIGNATURE_OFFSET + signatureLength)));
+    }
+
+    /**
+     * Сегменты по номерам первых записей; поиск сегмента - двоичный, без аллокаций
+     */
+    private record SegmentTable(long[] firstSequences, ByteBuffer[] mappings) {
+        static final SegmentTable EMPTY = new SegmentTable(new long[0], new ByteBuffer[0]);
+
+        SegmentTable with(long firstSequence, ByteBuffer mapping) {
+            long[] nextSequences = Arrays.copyOf(firstSequences, firstSequences.length + 1);
+            ByteBuffer[] nextMappings = Arrays.copyOf(mappings, mappings.length + 1);
+            nextSequences[firstSequences.length] = firstSequence;
+            nextMappings[mappings.length] = mapping;
+            return new SegmentTable(nextSequences, nextMappings);
+        }
+
+        /**
+         * Индекс сегмента, в котором лежит запись, или -1
+         */
+        int floor(long sequence) {
+            int low = 0;
+            int high = firstSequences.length - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                if (firstSequences[middle] <= sequence) {
+                    low = middle + 1;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            return high;
+        }
+    }
+
+    private record Entry(Operation operation, String keyId, byte[] digest, byte[] signature, long timestampMicros) {
+    }
+}
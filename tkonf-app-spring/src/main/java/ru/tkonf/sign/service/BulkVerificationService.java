@@ -0,0 +1,215 @@
+package ru.tkonf.sign.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.tkonf.sign.model.BulkVerificationResponse;
+import ru.tkonf.sign.model.VerificationRequest;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Пакетная проверка подписей ({@code POST /api/crypto/verify/bulk}) для повторной сверки сохраненных подписей.
+ * <p>
+ * Элементы делятся пополам в собственном {@link ForkJoinPool} с {@code tkonf.crypto.threads} потоками: на
+ * batch-узлах это число ядер, на подах с квотой 0.1 CPU - один поток, который не отнимает квоту у остальных
+ * запросов. Лист задачи - 64 элемента, одно слово битовой карты, поэтому листья пишут результаты без
+ * синхронизации. Каждый элемент проверяется так же, как одиночный {@code /verify}, включая ключи арендаторов.
+ */
+@Service
+public class BulkVerificationService {
+    // Ограничение пакета: больше элементов клиент отправляет несколькими запросами
+    public static final int MAX_BULK_ITEMS = 65536;
+
+    private static final int LEAF_ITEMS = Long.SIZE;
+
+    private final SignatureService signatureService;
+    private final KeyringService keyringService;
+    private final ForkJoinPool pool;
+
+    public BulkVerificationService(SignatureService signatureService, KeyringService keyringService,
+                                   @Value("${tkonf.crypto.threads:2}") int cryptoThreads) {
+        this.signatureService = signatureService;
+        this.keyringService = keyringService;
+        this.pool = new ForkJoinPool(Math.max(1, cryptoThreads), pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("bulk-verify-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+    }
+
+    /**
+     * Проверяет пакет; элемент, который не удалось проверить, считается недействительным
+     */
+    public BulkVerificationResponse verify(String mode, List<VerificationRequest> items) throws CryptoException {
+        Mode parsedMode = Mode.parse(mode);
+        if (items == null || items.isEmpty()) {
+            throw CryptoError.BULK_ITEMS_REQUIRED.exception();
+        }
+        if (items.size() > MAX_BULK_ITEMS) {
+            throw CryptoError.BULK_TOO_LARGE.exception();
+        }
+        long start = System.nanoTime();
+        try {
+            Batch batch = new Batch(items, parsedMode);
+            pool.invoke(new VerifyRange(batch, 0, items.size()));
+            return batch.response();
+        } finally {
+            ServerTiming.recordCrypto(start);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    private boolean verify(VerificationRequest item) throws Exception {
+        if (item == null) {
+            throw CryptoError.MESSAGE_REQUIRED.exception();
+        }
+        if (item.getKeyId() != null) {
+            return item.getDigest() != null
+                    ? keyringService.verifyDigest(item.getKeyId(), item.getDigest(), item.getSignature())
+                    : keyringService.verify(item.getKeyId(), item.getMessage(), item.getSignature());
+        }
+        return item.getDigest() != null
+                ? signatureService.verifyDigest(item.getDigest(), item.getSignature())
+                : signatureService.verifySignature(item.getMessage(), item.getSignature());
+    }
+
+    private enum Mode {
+        // Битовая карта результатов всех элементов
+        BITMAP("bitmap"),
+        // Только счетчики
+        COUNT("count"),
+        // Остановка на первой недействительной подписи
+        FAIL_FAST("fail-fast");
+
+        private final String value;
+
+        Mode(String value) {
+            this.value = value;
+        }
+
+        static Mode parse(String value) throws CryptoException {
+            if (value == null) {
+                return BITMAP;
+            }
+            for (Mode mode : values()) {
+                if (mode.value.equals(value)) {
+                    return mode;
+                }
+            }
+            throw CryptoError.BULK_MODE_INVALID.exception();
+        }
+    }
+
+    /**
+     * Общее состояние пакета; слово {@code i} битовой карты пишет только лист с элементами {@code [64i, 64i + 64)}
+     */
+    private final class Batch {
+        private final List<VerificationRequest> items;
+        private final Mode mode;
+        private final long[] words;
+        private final LongAdder verified = new LongAdder();
+        private final LongAdder valid = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final AtomicInteger firstInvalid = new AtomicInteger(Integer.MAX_VALUE);
+
+        Batch(List<VerificationRequest> items, Mode mode) {
+            this.items = items;
+            this.mode = mode;
+            this.words = mode == Mode.BITMAP ? new long[(items.size() + LEAF_ITEMS - 1) / LEAF_ITEMS] : null;
+        }
+
+        /**
+         * В режиме fail-fast элементы после уже найденной недействительной подписи не нужны;
+         * элементы до нее проверяются, поэтому firstInvalid - действительно первый
+         */
+        boolean skip(int index) {
+            return mode == Mode.FAIL_FAST && index > firstInvalid.get();
+        }
+
+        void verifyLeaf(int from, int to) {
+            long word = 0;
+            int leafVerified = 0;
+            int leafValid = 0;
+            int leafRejected = 0;
+            for (int i = from; i < to && !skip(i); i++) {
+                leafVerified++;
+                boolean isValid = false;
+                try {
+                    isValid = verify(items.get(i));
+                } catch (Exception e) {
+                    // Ошибка элемента (CryptoException, неизвестный ключ) не прерывает пакет
+                    leafRejected++;
+                }
+                if (isValid) {
+                    leafValid++;
+                    word |= 1L << (i - from);
+                } else {
+                    firstInvalid.accumulateAndGet(i, Math::min);
+                }
+            }
+            if (words != null) {
+                words[from / LEAF_ITEMS] = word;
+            }
+            verified.add(leafVerified);
+            valid.add(leafValid);
+            rejected.add(leafRejected);
+        }
+
+        BulkVerificationResponse response() {
+            int first = firstInvalid.get();
+            return new BulkVerificationResponse(mode.value, items.size(), verified.intValue(), valid.intValue(),
+                    rejected.intValue(), first == Integer.MAX_VALUE ? -1 : first, bitmap());
+        }
+
+        private String bitmap() {
+            if (words == null) {
+                return null;
+            }
+            ByteBuffer bytes = ByteBuffer.allocate(words.length * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            bytes.asLongBuffer().put(words);
+            return Base64.getEncoder().encodeToString(Arrays.copyOf(bytes.array(), (items.size() + 7) / 8));
+        }
+    }
+
+    /**
+     * Диапазон {@code [from, to)}; from всегда кратен 64, граница деления - тоже
+     */
+    private static final class VerifyRange extends RecursiveAction {
+        private final Batch batch;
+        private final int from;
+        private final int to;
+
+        VerifyRange(Batch batch, int from, int to) {
+            this.batch = batch;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (batch.skip(from)) {
+                return;
+            }
+            if (to - from <= LEAF_ITEMS) {
+                batch.verifyLeaf(from, to);
+                return;
+            }
+            int half = ((to - from) / 2 + LEAF_ITEMS - 1) & -LEAF_ITEMS;
+            invokeAll(new VerifyRange(batch, from, from + half), new VerifyRange(batch, from + half, to));
+        }
+    }
+}
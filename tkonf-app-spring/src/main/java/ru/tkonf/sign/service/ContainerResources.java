@@ -0,0 +1,107 @@
+package ru.tkonf.sign.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Лимиты контейнера из cgroup v2: {@code cpu.max}, {@code memory.max} и счетчики троттлинга
+ * {@code cpu.stat}. Вне контейнера (или на cgroup v1) берутся значения, которые видит JVM.
+ */
+public final class ContainerResources {
+    public static final String SOURCE_CGROUP_V2 = "cgroup-v2";
+    public static final String SOURCE_JVM = "jvm";
+
+    private static final Path CGROUP_ROOT = Path.of("/sys/fs/cgroup");
+    private static final String UNLIMITED = "max";
+
+    private final Path root;
+    private final String source;
+    private final double cpuLimit;
+    private final long memoryLimitBytes;
+
+    private ContainerResources(Path root, String source, double cpuLimit, long memoryLimitBytes) {
+        this.root = root;
+        this.source = source;
+        this.cpuLimit = cpuLimit;
+        this.memoryLimitBytes = memoryLimitBytes;
+    }
+
+    public static ContainerResources detect() {
+        return detect(CGROUP_ROOT);
+    }
+
+    static ContainerResources detect(Path root) {
+        int processors = Runtime.getRuntime().availableProcessors();
+        long heap = Runtime.getRuntime().maxMemory();
+        List<String> cpuMax = readFirstLineFields(root.resolve("cpu.max"));
+        List<String> memoryMax = readFirstLineFields(root.resolve("memory.max"));
+        if (cpuMax == null && memoryMax == null) {
+            return new ContainerResources(root, SOURCE_JVM, processors, heap);
+        }
+
+        // cpu.max: "<quota> <period>" в микросекундах либо "max <period>" без ограничения
+        double cpuLimit = processors;
+        if (cpuMax != null && cpuMax.size() == 2 && !UNLIMITED.equals(cpuMax.get(0))) {
+            cpuLimit = Math.min(processors, Double.parseDouble(cpuMax.get(0)) / Double.parseDouble(cpuMax.get(1)));
+        }
+        long memoryLimit = heap;
+        if (memoryMax != null && memoryMax.size() == 1 && !UNLIMITED.equals(memoryMax.get(0))) {
+            memoryLimit = Long.parseLong(memoryMax.get(0));
+        }
+        return new ContainerResources(root, SOURCE_CGROUP_V2, cpuLimit, memoryLimit);
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * Доступная доля CPU, например 0.1 при {@code cpus: '0.1'}
+     */
+    public double getCpuLimit() {
+        return cpuLimit;
+    }
+
+    public long getMemoryLimitBytes() {
+        return memoryLimitBytes;
+    }
+
+    /**
+     * Текущие счетчики троттлинга: {nr_periods, nr_throttled, throttled_usec}; нули вне cgroup v2
+     */
+    public long[] readThrottling() {
+        long[] result = new long[3];
+        if (!SOURCE_CGROUP_V2.equals(source)) {
+            return result;
+        }
+        try {
+            for (String line : Files.readAllLines(root.resolve("cpu.stat"))) {
+                int space = line.indexOf(' ');
+                if (space < 0) {
+                    continue;
+                }
+                long value = Long.parseLong(line.substring(space + 1).trim());
+                switch (line.substring(0, space)) {
+                    case "nr_periods" -> result[0] = value;
+                    case "nr_throttled" -> result[1] = value;
+                    case "throttled_usec" -> result[2] = value;
+                    default -> { }
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // cpu.stat недоступен - отдаем нули
+        }
+        return result;
+    }
+
+    private static List<String> readFirstLineFields(Path file) {
+        try {
+            List<String> lines = Files.readAllLines(file);
+            return lines.isEmpty() ? null : List.of(lines.get(0).trim().split("\\s+"));
+        } catch (IOException | SecurityException e) {
+            return null;
+        }
+    }
+}
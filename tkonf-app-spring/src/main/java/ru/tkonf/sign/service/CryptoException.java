@@ -0,0 +1,18 @@
+package ru.tkonf.sign.service;
+
+/**
+ * Ошибка криптооперации без стектрейса и suppressed-исключений: экземпляр на каждый
+ * {@link CryptoError} создается один раз и переиспользуется, бросок ничего не стоит.
+ */
+public final class CryptoException extends Exception {
+    private final transient CryptoError error;
+
+    CryptoException(CryptoError error) {
+        super(error.getMessage(), null, false, false);
+        this.error = error;
+    }
+
+    public CryptoError getError() {
+        return error;
+    }
+}
@@ -0,0 +1,123 @@
+package ru.tkonf.sign.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.crac.Context;
+import org.crac.Core;
+import org.crac.Resource;
+import ru.tkonf.sign.model.SignedMessage;
+import ru.tkonf.sign.util.StripedLruCache;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Base64;
+
+/**
+ * HMAC-SHA256 для внутренних вызовов, которым не нужна асимметричная подпись.
+ * <p>
+ * Секреты лежат в каталоге keyring рядом с ключами арендаторов: {@code <keyId>.hmac} с ключом
+ * в Base64 (см. {@code generate-tenant-key.sh <keyId> hmac}). Пул инициализированных Mac
+ * строится при первом запросе с keyId и живет в LRU размером {@code tkonf.cache.entries}.
+ * Проверка сравнивает MAC за постоянное время.
+ */
+@Service
+public class HmacService implements Resource {
+    public static final String ALGORITHM = "HmacSHA256";
+
+    private static final String KEY_FILE_SUFFIX = ".hmac";
+    private static final int MAC_BYTES = 32;
+    // RFC 2104: ключ короче выхода хеш-функции ослабляет MAC
+    private static final int MIN_KEY_BYTES = 32;
+
+    private final Path directory;
+    private final StripedLruCache<String, MacPool> cache;
+    private final int enginesPerKey;
+
+    public HmacService(@Value("${tkonf.keyring.dir:keys}") String directory,
+                       @Value("${tkonf.cache.entries:1024}") int cacheEntries,
+                       @Value("${tkonf.crypto.threads:2}") int cryptoThreads) {
+        this.directory = Path.of(directory);
+        this.cache = new StripedLruCache<>(cacheEntries);
+        this.enginesPerKey = cryptoThreads;
+        Core.getGlobalContext().register(this);
+    }
+
+    /**
+     * Вычисляет HMAC-SHA256 сообщения секретом keyId; MAC возвращается в поле signature
+     */
+    public SignedMessage sign(String keyId, String message) throws Exception {
+        SignatureService.checkMessage(message, SignatureService.MAX_MESSAGE_BYTES);
+        MacPool pool = resolve(keyId);
+        long start = System.nanoTime();
+        try {
+            byte[] mac = pool.mac(message.getBytes());
+            return new SignedMessage(message, Base64.getEncoder().encodeToString(mac), ALGORITHM, null);
+        } finally {
+            ServerTiming.recordCrypto(start);
+        }
+    }
+
+    /**
+     * Проверяет HMAC-SHA256 сообщения; сравнение не зависит от позиции первого расхождения
+     */
+    public boolean verify(String keyId, String message, String macBase64) throws Exception {
+        SignatureService.checkMessage(message, SignatureService.MAX_MESSAGE_BYTES);
+        MacPool pool = resolve(keyId);
+        SignatureService.checkBase64(macBase64, MAC_BYTES, CryptoError.SIGNATURE_REQUIRED,
+                CryptoError.SIGNATURE_MALFORMED, CryptoError.MAC_LENGTH);
+        long start = System.nanoTime();
+        try {
+            byte[] expected = pool.mac(message.getBytes());
+            return MessageDigest.isEqual(expected, Base64.getDecoder().decode(macBase64));
+        } finally {
+            ServerTiming.recordCrypto(start);
+        }
+    }
+
+    /**
+     * Секреты не должны попадать в образ чекпоинта: после восстановления они перечитываются с диска
+     */
+    @Override
+    public void beforeCheckpoint(Context<? extends Resource> context) {
+        cache.clear();
+    }
+
+    @Override
+    public void afterRestore(Context<? extends Resource> context) {
+        // Секреты загрузятся при первом запросе с keyId
+    }
+
+    private MacPool resolve(String keyId) throws CryptoException {
+        if (keyId == null) {
+            throw CryptoError.HMAC_KEY_REQUIRED.exception();
+        }
+        if (!KeyringService.KEY_ID.matcher(keyId).matches()) {
+            throw CryptoError.KEY_ID_INVALID.exception();
+        }
+        MacPool pool = cache.get(keyId);
+        if (pool != null) {
+            return pool;
+        }
+        // Одновременные промахи по одному ключу читают файл независимо, в кэше остается первый результат
+        return cache.putIfAbsent(keyId, load(directory.resolve(keyId + KEY_FILE_SUFFIX)));
+    }
+
+    private MacPool load(Path file) throws CryptoException {
+        byte[] secret;
+        try {
+            secret = Base64.getMimeDecoder().decode(Files.readString(file, StandardCharsets.US_ASCII).strip());
+        } catch (NoSuchFileException e) {
+            throw CryptoError.KEY_NOT_FOUND.exception();
+        } catch (IOException | IllegalArgumentException e) {
+            throw CryptoError.KEY_UNREADABLE.exception();
+        }
+        if (secret.length < MIN_KEY_BYTES) {
+            throw CryptoError.KEY_UNREADABLE.exception();
+        }
+        return new MacPool(ALGORITHM, secret, enginesPerKey);
+    }
+}
@@ -0,0 +1,239 @@
+package ru.tkonf.sign.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.tkonf.sign.model.JwsBatch;
+import ru.tkonf.sign.model.JwsToken;
+import ru.tkonf.sign.util.StripedLruCache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.interfaces.ECKey;
+import java.security.interfaces.EdECKey;
+import java.security.interfaces.RSAKey;
+import java.security.spec.AlgorithmParameterSpec;
+import java.security.spec.MGF1ParameterSpec;
+import java.security.spec.PSSParameterSpec;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Выпуск JWS в compact-сериализации ({@code header.payload.signature}) ключом сервиса или арендатора.
+ * <p>
+ * Закодированный заголовок и пул объектов Signature строятся один раз на пару ключ/алгоритм и живут
+ * в LRU размером {@code tkonf.cache.entries}. Claims сериализуются через Base64url-кодировщик прямо
+ * в переиспользуемый буфер потока, из него же подписываются, поэтому на токен остаются только
+ * итоговая строка и сама подпись. Ключ сервиса (RSA) поддерживает RS256 и PS256; ES256 и EdDSA
+ * требуют ключа арендатора EC P-256 или Ed25519.
+ */
+@Service
+public class JwsService {
+    // Пакетный выпуск ограничен, чтобы один запрос не занимал поток обработки надолго
+    public static final int MAX_BATCH_TOKENS = 256;
+
+    private static final Base64.Encoder BASE64URL = Base64.getUrlEncoder().withoutPadding();
+    private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+    private static final ThreadLocal<TokenBuffer> BUFFER = ThreadLocal.withInitial(TokenBuffer::new);
+
+    private final SignatureService signatureService;
+    private final AuditLog auditLog;
+    private final KeyringService keyringService;
+    private final ObjectMapper jsonMapper;
+    private final StripedLruCache<String, JwsKey> keys;
+    private final int poolSize;
+
+    public JwsService(SignatureService signatureService,
+                      KeyringService keyringService,
+                      AuditLog auditLog,
+                      ObjectMapper jsonMapper,
+                      @Value("${tkonf.cache.entries:1024}") int cacheEntries,
+                      @Value("${tkonf.crypto.threads:2}") int cryptoThreads) {
+        this.signatureService = signatureService;
+        this.keyringService = keyringService;
+        this.auditLog = auditLog;
+        this.jsonMapper = jsonMapper;
+        this.keys = new StripedLruCache<>(cacheEntries);
+        this.poolSize = cryptoThreads;
+    }
+
+    /**
+     * Выпускает один токен
+     */
+    public JwsToken issue(String alg, String keyId, Map<String, Object> claims) throws Exception {
+        if (claims == null) {
+            throw CryptoError.JWS_CLAIMS_REQUIRED.exception();
+        }
+        JwsKey key = resolve(alg, keyId);
+        long start = System.nanoTime();
+        try {
+            return new JwsToken(key.algorithm.name(), mint(key, claims));
+        } finally {
+            ServerTiming.recordCrypto(start);
+        }
+    }
+
+    /**
+     * Выпускает пакет токенов одним ключом; заголовок и буфер общие для всего пакета
+     */
+    public JwsBatch issueBatch(String alg, String keyId, List<Map<String, Object>> batch) throws Exception {
+        if (batch == null || batch.isEmpty()) {
+            throw CryptoError.JWS_CLAIMS_REQUIRED.exception();
+        }
+        if (batch.size() > MAX_BATCH_TOKENS) {
+            throw CryptoError.JWS_BATCH_TOO_LARGE.exception();
+        }
+        for (Map<String, Object> claims : batch) {
+            if (claims == null) {
+                throw CryptoError.JWS_CLAIMS_REQUIRED.exception();
+            }
+        }
+        JwsKey key = resolve(alg, keyId);
+        long start = System.nanoTime();
+        try {
+            List<String> tokens = new ArrayList<>(batch.size());
+            for (Map<String, Object> claims : batch) {
+                tokens.add(mint(key, claims));
+            }
+            return new JwsBatch(key.algorithm.name(), tokens);
+        } finally {
+            ServerTiming.recordCrypto(start);
+        }
+    }
+
+    private String mint(JwsKey key, Map<String, Object> claims) throws IOException, GeneralSecurityException,
+            CryptoException {
+        TokenBuffer buffer = BUFFER.get();
+        try {
+            buffer.reset();
+            buffer.writeBytes(key.encodedHeader);
+            try (OutputStream payload = BASE64URL.wrap(buffer)) {
+                jsonMapper.writeValue(payload, claims);
+            }
+            if (buffer.size() > SignatureService.MAX_MESSAGE_BYTES) {
+                throw CryptoError.MESSAGE_TOO_LARGE.exception();
+            }
+            byte[] signature = key.signer.sign(buffer.array(), 0, buffer.size());
+            auditLog.record(AuditLog.Operation.JWS, key.keyId,
+                    DigestSigning.sha256(buffer.array(), 0, buffer.size()), signature);
+            buffer.write('.');
+            buffer.writeBytes(BASE64URL.encode(signature));
+            return buffer.toString(StandardCharsets.US_ASCII);
+        } finally {
+            if (buffer.capacity() > MAX_RETAINED_BUFFER) {
+                BUFFER.remove();
+            }
+        }
+    }
+
+    private JwsKey resolve(String alg, String keyId) throws CryptoException {
+        KeyPair keyPair = keyId != null ? keyringService.keyPair(keyId) : signatureService.getKeyPair();
+        Algorithm algorithm = alg != null ? Algorithm.parse(alg) : Algorithm.forKey(keyPair.getPublic());
+        if (!algorithm.supports(keyPair.getPublic())) {
+            throw CryptoError.JWS_KEY_MISMATCH.exception();
+        }
+        String cacheKey = keyId != null ? algorithm.name() + ':' + keyId : algorithm.name();
+        JwsKey key = keys.get(cacheKey);
+        // Ключ сервиса меняется после восстановления из CRaC, ключ арендатора - после перечитывания с диска
+        if (key == null || key.privateKey != keyPair.getPrivate()) {
+            key = new JwsKey(algorithm, keyId, keyPair.getPrivate(), poolSize);
+            keys.put(cacheKey, key);
+        }
+        return key;
+    }
+
+    /**
+     * Алгоритмы JWS (RFC 7518, RFC 8037) и соответствующие им JCA-алгоритмы
+     */
+    enum Algorithm {
+        RS256("SHA256withRSA", null),
+        PS256("RSASSA-PSS", new PSSParameterSpec("SHA-256", "MGF1", MGF1ParameterSpec.SHA256, 32, 1)),
+        // JWS требует подпись ECDSA в виде R||S, а не DER
+        ES256("SHA256withECDSAinP1363Format", null),
+        EdDSA("Ed25519", null);
+
+        private final String jcaAlgorithm;
+        private final AlgorithmParameterSpec parameters;
+
+        Algorithm(String jcaAlgorithm, AlgorithmParameterSpec parameters) {
+            this.jcaAlgorithm = jcaAlgorithm;
+            this.parameters = parameters;
+        }
+
+        static Algorithm parse(String alg) throws CryptoException {
+            for (Algorithm algorithm : values()) {
+                if (algorithm.name().equals(alg)) {
+                    return algorithm;
+                }
+            }
+            throw CryptoError.JWS_ALGORITHM_UNSUPPORTED.exception();
+        }
+
+        static Algorithm forKey(PublicKey key) throws CryptoException {
+            for (Algorithm algorithm : values()) {
+                if (algorithm.supports(key)) {
+                    return algorithm;
+                }
+            }
+            throw CryptoError.JWS_KEY_MISMATCH.exception();
+        }
+
+        boolean supports(PublicKey key) {
+            return switch (this) {
+                case RS256, PS256 -> key instanceof RSAKey;
+                case ES256 -> key instanceof ECKey ecKey
+                        && ecKey.getParams().getCurve().getField().getFieldSize() == 256;
+                case EdDSA -> key instanceof EdECKey edKey && "Ed25519".equals(edKey.getParams().getName());
+            };
+        }
+    }
+
+    /**
+     * Заголовок {@code base64url(header) + '.'} и пул подписи для пары ключ/алгоритм
+     */
+    private static final class JwsKey {
+        private final Algorithm algorithm;
+        private final String keyId;
+        private final PrivateKey privateKey;
+        private final byte[] encodedHeader;
+        private final SignaturePool signer;
+
+        JwsKey(Algorithm algorithm, String keyId, PrivateKey privateKey, int poolSize) {
+            this.algorithm = algorithm;
+            this.keyId = keyId;
+            this.privateKey = privateKey;
+            // keyId уже проверен по шаблону keyring, экранирование в JSON не требуется
+            String header = keyId != null
+                    ? "{\"alg\":\"" + algorithm.name() + "\",\"typ\":\"JWT\",\"kid\":\"" + keyId + "\"}"
+                    : "{\"alg\":\"" + algorithm.name() + "\",\"typ\":\"JWT\"}";
+            String encoded = BASE64URL.encodeToString(header.getBytes(StandardCharsets.US_ASCII)) + '.';
+            this.encodedHeader = encoded.getBytes(StandardCharsets.US_ASCII);
+            this.signer = SignaturePool.forSigning(privateKey, algorithm.jcaAlgorithm, algorithm.parameters, poolSize);
+        }
+    }
+
+    /**
+     * Буфер токена с доступом к массиву без копирования
+     */
+    private static final class TokenBuffer extends ByteArrayOutputStream {
+        TokenBuffer() {
+            super(1024);
+        }
+
+        byte[] array() {
+            return buf;
+        }
+
+        int capacity() {
+            return buf.length;
+        }
+    }
+}
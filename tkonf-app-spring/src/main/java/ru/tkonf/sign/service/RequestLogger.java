@@ -0,0 +1,182 @@
+package ru.tkonf.sign.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.tkonf.sign.util.BoundedRingBuffer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Асинхронный журнал запросов для контроллеров.
+ * <p>
+ * Поток запроса только кладет событие в lock-free кольцевой буфер и никогда не ждет вывода:
+ * при переполнении событие отбрасывается и учитывается в счетчике потерь. Успешные запросы
+ * сэмплируются (каждый N-й в среднем), ошибки ограничиваются числом в секунду. Строки в формате
+ * logfmt пишет отдельный фоновый поток пачками: пачка целых строк уходит в {@code System.out} одним
+ * вызовом, поэтому не перемежается с логами фреймворка посреди строки.
+ */
+@Service
+public class RequestLogger {
+    private static final int MAX_DETAIL_LENGTH = 200;
+    private static final int DRAIN_BATCH = 256;
+    private static final long IDLE_PARK_NANOS = 10_000_000L;
+
+    private final BoundedRingBuffer<Event> buffer;
+    private final int sampleRate;
+    private final int errorsPerSecond;
+
+    private final LongAdder written = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+    private final AtomicLong errorWindow = new AtomicLong();
+    private final AtomicInteger errorsInWindow = new AtomicInteger();
+
+    private final Thread writerThread;
+    private volatile boolean running = true;
+
+    public RequestLogger(@Value("${tkonf.request-log.capacity:4096}") int capacity,
+                         @Value("${tkonf.request-log.sample-rate:100}") int sampleRate,
+                         @Value("${tkonf.request-log.errors-per-second:10}") int errorsPerSecond) {
+        this.buffer = new BoundedRingBuffer<>(capacity);
+        this.sampleRate = sampleRate;
+        this.errorsPerSecond = errorsPerSecond;
+        this.writerThread = new Thread(this::drainLoop, "request-log-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    /**
+     * Успешный запрос: попадает в журнал в среднем один раз из {@code sample-rate}, 0 — не пишется
+     */
+    public void success(String operation, long startNanos) {
+        if (sampleRate <= 0 || (sampleRate > 1 && ThreadLocalRandom.current().nextInt(sampleRate) != 0)) {
+            return;
+        }
+        publish(new Event(System.currentTimeMillis(), operation, "ok",
+                System.nanoTime() - startNanos, null, null));
+    }
+
+    /**
+     * Ошибка запроса: без стектрейса, не больше {@code errors-per-second} записей в секунду
+     */
+    public void failure(String operation, long startNanos, Throwable error) {
+        long second = System.nanoTime() / 1_000_000_000L;
+        long window = errorWindow.get();
+        if (window != second && errorWindow.compareAndSet(window, second)) {
+            errorsInWindow.set(0);
+        }
+        if (errorsInWindow.incrementAndGet() > errorsPerSecond) {
+            rateLimited.increment();
+            return;
+        }
+        publish(new Event(System.currentTimeMillis(), operation, "error",
+                System.nanoTime() - startNanos, error.getClass().getSimpleName(), error.getMessage()));
+    }
+
+    public long getWritten() {
+        return written.sum();
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public long getRateLimited() {
+        return rateLimited.sum();
+    }
+
+    public int getPending() {
+        return buffer.size();
+    }
+
+    @PreDestroy
+    public void close() {
+        running = false;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void publish(Event event) {
+        if (!buffer.offer(event)) {
+            dropped.increment();
+        }
+    }
+
+    private void drainLoop() {
+        // Пачка кодируется в переиспользуемый буфер и целиком пишется в System.out (PrintStream синхронизирован)
+        ByteArrayOutputStream batch = new ByteArrayOutputStream(DRAIN_BATCH * 256);
+        Writer out = new OutputStreamWriter(batch, StandardCharsets.UTF_8);
+        StringBuilder line = new StringBuilder(256);
+        long reportedDropped = 0;
+        try {
+            while (running || buffer.size() > 0) {
+                int drained = 0;
+                Event event;
+                while (drained < DRAIN_BATCH && (event = buffer.poll()) != null) {
+                    format(event, line);
+                    out.append(line);
+                    drained++;
+                }
+                written.add(drained);
+
+                long droppedNow = dropped.sum();
+                if (droppedNow != reportedDropped) {
+                    line.setLength(0);
+                    line.append("ts=").append(Instant.now()).append(" op=request-log outcome=dropped total=")
+                            .append(droppedNow).append('\n');
+                    out.append(line);
+                    reportedDropped = droppedNow;
+                }
+
+                out.flush();
+                if (batch.size() > 0) {
+                    batch.writeTo(System.out);
+                    System.out.flush();
+                    batch.reset();
+                }
+                if (drained == 0) {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+            }
+        } catch (IOException e) {
+            // Запись в память не падает; ошибки самого stdout PrintStream не бросает
+        }
+    }
+
+    private static void format(Event event, StringBuilder line) {
+        line.setLength(0);
+        line.append("ts=").append(Instant.ofEpochMilli(event.timestampMillis))
+                .append(" op=").append(event.operation)
+                .append(" outcome=").append(event.outcome)
+                .append(" dur_us=").append(event.durationNanos / 1000);
+        if (event.errorType != null) {
+            line.append(" error=").append(event.errorType);
+        }
+        if (event.detail != null) {
+            String detail = event.detail.length() > MAX_DETAIL_LENGTH
+                    ? event.detail.substring(0, MAX_DETAIL_LENGTH)
+                    : event.detail;
+            line.append(" detail=\"").append(detail.replace('"', '\'').replace('\n', ' ')).append('"');
+        }
+        line.append('\n');
+    }
+
+    private record Event(long timestampMillis, String operation, String outcome, long durationNanos,
+                         String errorType, String detail) {
+    }
+}
@@ -0,0 +1,181 @@
+package ru.tkonf.sign.service;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Поэтапный замер обработки запроса для заголовка {@code Server-Timing}.
+ * <p>
+ * Экземпляр живет в ThreadLocal и переиспользуется между запросами потока,
+ * поэтому сам замер ничего не аллоцирует, кроме итоговой строки заголовка.
+ * Фазы:
+ * <ul>
+ *     <li>queue — от {@code X-Request-Start} (ставит Envoy) до входа в фильтр;</li>
+ *     <li>parse — от входа в фильтр до начала криптооперации (маршрутизация и разбор тела);</li>
+ *     <li>crypto — суммарное время в {@link SignatureService};</li>
+ *     <li>ser — сериализация ответа;</li>
+ *     <li>total — от входа в фильтр до конца сериализации.</li>
+ * </ul>
+ */
+public final class ServerTiming {
+    public static final String HEADER = "Server-Timing";
+    public static final String REQUEST_START_HEADER = "X-Request-Start";
+
+    private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+
+    private static final ThreadLocal<ServerTiming> CURRENT = ThreadLocal.withInitial(ServerTiming::new);
+
+    // Привязка монотонного nanoTime к wall clock для сравнения с X-Request-Start без Instant.now()
+    private static final long BASE_EPOCH_MICROS = System.currentTimeMillis() * 1000L;
+    private static final long BASE_NANOS = System.nanoTime();
+
+    private final StringBuilder header = new StringBuilder(128);
+    private ByteArrayOutputStream body = new ByteArrayOutputStream(1024);
+
+    private boolean active;
+    private long startNanos;
+    private long queueNanos;
+    private long firstCryptoNanos;
+    private long cryptoNanos;
+    private long serializationStartNanos;
+    private long serializationEndNanos;
+
+    private ServerTiming() {
+    }
+
+    /**
+     * Начинает замер запроса в текущем потоке
+     */
+    public static ServerTiming begin(String requestStart) {
+        ServerTiming timing = CURRENT.get();
+        timing.active = true;
+        timing.startNanos = System.nanoTime();
+        timing.queueNanos = queueNanos(requestStart, timing.startNanos);
+        timing.firstCryptoNanos = 0;
+        timing.cryptoNanos = 0;
+        timing.serializationStartNanos = 0;
+        timing.serializationEndNanos = 0;
+        return timing;
+    }
+
+    /**
+     * Замер текущего потока или null, если запрос не замеряется
+     */
+    public static ServerTiming current() {
+        ServerTiming timing = CURRENT.get();
+        return timing.active ? timing : null;
+    }
+
+    /**
+     * Учитывает криптооперацию, начатую в {@code startNanos}
+     */
+    public static void recordCrypto(long startNanos) {
+        ServerTiming timing = CURRENT.get();
+        if (!timing.active) {
+            return;
+        }
+        if (timing.firstCryptoNanos == 0) {
+            timing.firstCryptoNanos = startNanos;
+        }
+        timing.cryptoNanos += System.nanoTime() - startNanos;
+    }
+
+    public void serializationStarted() {
+        serializationStartNanos = System.nanoTime();
+    }
+
+    public void serializationFinished() {
+        serializationEndNanos = System.nanoTime();
+    }
+
+    /**
+     * Переиспользуемый буфер потока для тела ответа: заголовок можно выставить
+     * только до отправки тела, поэтому тело сериализуется сначала сюда
+     */
+    public ByteArrayOutputStream bodyBuffer() {
+        if (body.size() > MAX_RETAINED_BUFFER) {
+            body = new ByteArrayOutputStream(1024);
+        }
+        body.reset();
+        return body;
+    }
+
+    /**
+     * Завершает замер и возвращает значение заголовка {@code Server-Timing}
+     */
+    public String finish() {
+        long end = serializationEndNanos != 0 ? serializationEndNanos : System.nanoTime();
+        long serializationStart = serializationStartNanos != 0 ? serializationStartNanos : end;
+        long handlerStart = firstCryptoNanos != 0 ? firstCryptoNanos : serializationStart;
+        active = false;
+
+        header.setLength(0);
+        if (queueNanos >= 0) {
+            append("queue", queueNanos);
+        }
+        append("parse", handlerStart - startNanos);
+        append("crypto", cryptoNanos);
+        append("ser", end - serializationStart);
+        append("total", end - startNanos);
+        return header.toString();
+    }
+
+    private void append(String name, long nanos) {
+        if (!header.isEmpty()) {
+            header.append(", ");
+        }
+        long micros = Math.max(0, nanos) / 1000;
+        long fraction = micros % 1000;
+        header.append(name).append(";dur=").append(micros / 1000).append('.');
+        if (fraction < 100) {
+            header.append('0');
+        }
+        if (fraction < 10) {
+            header.append('0');
+        }
+        header.append(fraction);
+    }
+
+    /**
+     * Разбирает {@code t=<секунды>.<доли>}, {@code t=<микросекунды>} или миллисекунды
+     * с эпохи без аллокаций. -1, если заголовка нет или он не распознан.
+     */
+    static long queueNanos(String requestStart, long nowNanos) {
+        if (requestStart == null || requestStart.isEmpty()) {
+            return -1;
+        }
+        int i = requestStart.startsWith("t=") ? 2 : 0;
+        long whole = 0;
+        long fraction = 0;
+        int fractionDigits = -1;
+        for (; i < requestStart.length(); i++) {
+            char c = requestStart.charAt(i);
+            if (c == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+            } else if (c >= '0' && c <= '9') {
+                if (fractionDigits < 0) {
+                    whole = whole * 10 + (c - '0');
+                } else if (fractionDigits < 6) {
+                    fraction = fraction * 10 + (c - '0');
+                    fractionDigits++;
+                }
+            } else {
+                return -1;
+            }
+        }
+
+        long startMicros;
+        if (fractionDigits >= 0) {
+            for (int d = fractionDigits; d < 6; d++) {
+                fraction *= 10;
+            }
+            startMicros = whole * 1_000_000L + fraction;
+        } else if (whole > 100_000_000_000_000L) {
+            startMicros = whole;
+        } else {
+            startMicros = whole * 1000L;
+        }
+
+        long nowMicros = BASE_EPOCH_MICROS + (nowNanos - BASE_NANOS) / 1000L;
+        return Math.max(0, nowMicros - startMicros) * 1000L;
+    }
+}
@@ -0,0 +1,190 @@
+package ru.tkonf.sign.service;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Хеш-индекс журнала аудита вне кучи: первые 8 байт SHA-256 -> номер записи журнала.
+ * <p>
+ * Открытая адресация с линейным пробированием по отображенному в память файлу: слот - два long
+ * (ключ и номер записи), пустой слот - нулевой ключ. Объектов на запись нет, поиск не аллоцирует.
+ * Ключ - префикс дайджеста, поэтому совпадение ключа лишь кандидат: полный дайджест сверяется
+ * с записью журнала. Пишет один поток (писатель журнала), читают потоки запросов: номер записи
+ * публикуется раньше ключа через release/acquire.
+ * <p>
+ * В заголовке хранится номер записи, до которой индекс гарантированно полон на диске; при старте
+ * журнал дописывает в индекс только записи после него.
+ * <p>
+ * Размер таблицы задается при открытии и на ходу не меняется: перенос сотен миллионов пар
+ * в таблицу побольше занял бы писателя журнала на минуты. Выше 7/8 заполнения новые пары
+ * отклоняются (запись остается в журнале, но не находится поиском), чтобы пробирование
+ * всегда заканчивалось на пустом слоте; увеличенный {@code index-slots} перестраивает индекс при старте.
+ */
+final class SignatureIndex {
+    // Слоты адресуются окнами по 1 ГиБ: один MappedByteBuffer ограничен 2 ГиБ
+    private static final int SLOT_BYTES = 16;
+    private static final int CHUNK_SHIFT = 26;
+    private static final long CHUNK_SLOTS = 1L << CHUNK_SHIFT;
+    private static final int HEADER_BYTES = 4096;
+    private static final long MAGIC = 0x544B4F4E46494458L; // "TKONFIDX"
+    private static final int MIN_SLOTS = 1024;
+    // Доля свободных слотов, ниже которой новые пары не добавляются: 1/8
+    private static final int RESERVE_SHIFT = 3;
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    private final long slots;
+    private final long mask;
+    private final MappedByteBuffer header;
+    private final MappedByteBuffer[] chunks;
+    private long size;
+
+    private SignatureIndex(long slots, MappedByteBuffer header, MappedByteBuffer[] chunks, long size) {
+        this.slots = slots;
+        this.mask = slots - 1;
+        this.header = header;
+        this.chunks = chunks;
+        this.size = size;
+    }
+
+    /**
+     * Открывает индекс; файл другого формата или размера меньше запрошенного создается заново
+     * (индексированной считается нулевая запись, и журнал перестраивает индекс целиком)
+     */
+    static SignatureIndex open(Path path, long requestedSlots) throws IOException {
+        long slots = Long.highestOneBit(Math.max(MIN_SLOTS, requestedSlots) - 1) << 1;
+        if (Files.exists(path)) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                if (channel.size() >= HEADER_BYTES) {
+                    MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+                    long existingSlots = header.getLong(8);
+                    if (header.getLong(0) == MAGIC && existingSlots >= slots && Long.bitCount(existingSlots) == 1
+                            && channel.size() == HEADER_BYTES + existingSlots * SLOT_BYTES) {
+                        return map(channel, existingSlots, header);
+                    }
+                }
+            }
+        }
+        return create(path, slots);
+    }
+
+    private static SignatureIndex create(Path path, long slots) throws IOException {
+        Files.deleteIfExists(path);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+            // Файл разреженный: страницы слотов выделяются при первой записи
+            channel.map(FileChannel.MapMode.READ_WRITE, HEADER_BYTES + slots * SLOT_BYTES - 1, 1).put(0, (byte) 0);
+            header.putLong(8, slots).putLong(16, 0).putLong(24, 0);
+            header.putLong(0, MAGIC);
+            return map(channel, slots, header);
+        }
+    }
+
+    private static SignatureIndex map(FileChannel channel, long slots, MappedByteBuffer header)
+            throws IOException {
+        int count = (int) ((slots + CHUNK_SLOTS - 1) >>> CHUNK_SHIFT);
+        MappedByteBuffer[] chunks = new MappedByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            long chunkSlots = Math.min(CHUNK_SLOTS, slots - ((long) i << CHUNK_SHIFT));
+            chunks[i] = channel.map(FileChannel.MapMode.READ_WRITE,
+                    HEADER_BYTES + ((long) i << CHUNK_SHIFT) * SLOT_BYTES, chunkSlots * SLOT_BYTES);
+        }
+        return new SignatureIndex(slots, header, chunks, header.getLong(16));
+    }
+
+    /**
+     * Ключ индекса: первые 8 байт дайджеста; ноль занят под пустой слот
+     */
+    static long key(byte[] digest, int offset) {
+        long key = 0;
+        for (int i = 0; i < Long.BYTES; i++) {
+            key = (key << 8) | (digest[offset + i] & 0xFF);
+        }
+        return key != 0 ? key : 1;
+    }
+
+    /**
+     * Добавляет пару ключ/номер записи; повторное добавление той же пары ничего не меняет,
+     * поэтому дописывание индекса после сбоя идемпотентно. false, если таблица заполнена
+     */
+    boolean put(long key, long sequence) {
+        // SHA-256 равномерен, младшие биты префикса уже хороший хеш
+        long slot = key & mask;
+        while (true) {
+            MappedByteBuffer chunk = chunks[(int) (slot >>> CHUNK_SHIFT)];
+            int offset = (int) (slot & (CHUNK_SLOTS - 1)) * SLOT_BYTES;
+            long existing = (long) LONGS.getAcquire(chunk, offset);
+            if (existing == 0) {
+                if (size >= slots - (slots >>> RESERVE_SHIFT)) {
+                    return false;
+                }
+                LONGS.set(chunk, offset + 8, sequence);
+                LONGS.setRelease(chunk, offset, key);
+                size++;
+                return true;
+            }
+            if (existing == key && (long) LONGS.get(chunk, offset + 8) == sequence) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Номера записей с этим ключом, не больше {@code sequences.length}; возвращает их число
+     */
+    int find(long key, long[] sequences) {
+        int found = 0;
+        long slot = key & mask;
+        for (long probes = 0; probes < slots && found < sequences.length; probes++) {
+            MappedByteBuffer chunk = chunks[(int) (slot >>> CHUNK_SHIFT)];
+            int offset = (int) (slot & (CHUNK_SLOTS - 1)) * SLOT_BYTES;
+            long existing = (long) LONGS.getAcquire(chunk, offset);
+            if (existing == 0) {
+                break;
+            }
+            if (existing == key) {
+                sequences[found++] = (long) LONGS.get(chunk, offset + 8);
+            }
+            slot = (slot + 1) & mask;
+        }
+        return found;
+    }
+
+    /**
+     * Заполнение выше 3/4 удлиняет цепочки пробирования: пора увеличить {@code index-slots}
+     */
+    boolean isCrowded() {
+        return size > slots - (slots >>> 2);
+    }
+
+    /**
+     * Сбрасывает слоты на диск и только потом отмечает, что записи до {@code sequence} проиндексированы
+     */
+    void checkpoint(long sequence) {
+        for (MappedByteBuffer chunk : chunks) {
+            chunk.force();
+        }
+        header.putLong(16, size).putLong(24, sequence);
+        header.force();
+    }
+
+    long indexedSequence() {
+        return header.getLong(24);
+    }
+
+    long size() {
+        return size;
+    }
+
+    long slots() {
+        return slots;
+    }
+}
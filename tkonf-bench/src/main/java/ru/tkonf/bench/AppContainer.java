@@ -0,0 +1,139 @@
+package ru.tkonf.bench;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Контейнер приложения на один сценарий: каждый сценарий стартует в чистой JVM, поэтому результаты не
+ * зависят от порядка сценариев в плане.
+ * <p>
+ * Порт 8080 публикуется на случайный порт 127.0.0.1, JFR-запись пишется в каталог прогона на хосте.
+ * Остановка идет через SIGTERM с ожиданием, чтобы JVM успела сбросить запись ({@code dumponexit}).
+ */
+final class AppContainer implements AutoCloseable {
+    static final String JFR_MOUNT = "/jfr";
+    static final String JFR_FILE = "recording.jfr";
+
+    private static final Duration READY_TIMEOUT = Duration.ofMinutes(5);
+    private static final Duration STOP_TIMEOUT = Duration.ofSeconds(30);
+    private static final long READY_POLL_MILLIS = 200;
+
+    private final String id;
+    private final URI baseUri;
+    private final long startedNanos;
+
+    private AppContainer(String id, URI baseUri, long startedNanos) {
+        this.id = id;
+        this.baseUri = baseUri;
+        this.startedNanos = startedNanos;
+    }
+
+    static AppContainer start(String name, BenchmarkPlan plan, BenchmarkPlan.App app, Path jfrDir)
+            throws IOException {
+        BenchmarkPlan.Limits limits = plan.limits();
+        List<String> args = new ArrayList<>(List.of("run", "--detach", "--name", name,
+                "--cpus", limits.cpus(), "--memory", limits.memory(), "--memory-swap", limits.memory(),
+                "--publish", "127.0.0.1::8080"));
+        if (limits.cpuset() != null) {
+            args.addAll(List.of("--cpuset-cpus", limits.cpuset()));
+        }
+        String javaOpts = app.javaOpts() != null ? app.javaOpts() : "";
+        if (plan.jfr()) {
+            args.addAll(List.of("--volume", jfrDir.toAbsolutePath() + ":" + JFR_MOUNT));
+            javaOpts += " -XX:StartFlightRecording=filename=" + JFR_MOUNT + "/" + JFR_FILE
+                    + ",settings=default,dumponexit=true";
+        }
+        Map<String, String> env = new LinkedHashMap<>();
+        if (plan.env() != null) {
+            env.putAll(plan.env());
+        }
+        if (app.env() != null) {
+            env.putAll(app.env());
+        }
+        env.put("JAVA_OPTS", javaOpts.strip());
+        env.forEach((key, value) -> args.addAll(List.of("--env", key + "=" + value)));
+        args.add(app.image());
+
+        // Контейнер с тем же именем мог остаться от прерванного прогона
+        removeQuietly(name);
+        long startedNanos = System.nanoTime();
+        String id = Docker.run(args.toArray(String[]::new));
+        try {
+            String address = Docker.run("port", id, "8080/tcp").lines().findFirst().orElseThrow();
+            return new AppContainer(id, URI.create("http://" + address + "/"), startedNanos);
+        } catch (IOException | RuntimeException e) {
+            removeQuietly(id);
+            throw e;
+        }
+    }
+
+    String id() {
+        return id;
+    }
+
+    URI baseUri() {
+        return baseUri;
+    }
+
+    /**
+     * PID процесса контейнера на хосте; entrypoint образов делает exec java, поэтому это JVM
+     */
+    long hostPid() throws IOException {
+        return Long.parseLong(Docker.run("inspect", "--format", "{{.State.Pid}}", id));
+    }
+
+    /**
+     * Ждет 200 от {@code /api/crypto/ready} (503, пока идет прогрев JIT); возвращает время от docker run
+     */
+    long awaitReady(HttpClient http) throws IOException, InterruptedException {
+        HttpRequest ready = HttpRequest.newBuilder(baseUri.resolve("api/crypto/ready"))
+                .timeout(Duration.ofSeconds(1))
+                .build();
+        long deadline = System.nanoTime() + READY_TIMEOUT.toNanos();
+        while (System.nanoTime() - deadline < 0) {
+            try {
+                if (http.send(ready, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedNanos);
+                }
+            } catch (IOException e) {
+                // Порт еще не слушается
+            }
+            if (!"true".equals(Docker.run("inspect", "--format", "{{.State.Running}}", id))) {
+                throw new IOException("container exited before becoming ready");
+            }
+            Thread.sleep(READY_POLL_MILLIS);
+        }
+        throw new IOException("not ready after " + READY_TIMEOUT.toMinutes() + "m");
+    }
+
+    /**
+     * SIGTERM и ожидание выхода JVM; затем вывод контейнера сохраняется в файл
+     */
+    void stop(Path logFile) throws IOException {
+        Docker.run("stop", "--time", Long.toString(STOP_TIMEOUT.toSeconds()), id);
+        Docker.writeLogs(id, logFile);
+    }
+
+    @Override
+    public void close() {
+        removeQuietly(id);
+    }
+
+    private static void removeQuietly(String nameOrId) {
+        try {
+            Docker.run("rm", "--force", nameOrId);
+        } catch (IOException e) {
+            // Контейнера нет
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package ru.tkonf.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * План прогона из JSON (см. {@code plans/default.json}): образы приложений, лимиты cgroup и сценарии нагрузки.
+ * <p>
+ * План хранится в репозитории рядом с кодом, поэтому прогоны разных коммитов с одним планом сравнимы:
+ * лимиты, скорость, длительность и тела запросов фиксированы, а хеш плана попадает в отчет.
+ *
+ * @param warmup   нагрузка до начала измерений, в отчет не попадает
+ * @param duration окно измерений
+ * @param jfr      писать JFR-запись в контейнере и брать из нее статистику GC
+ * @param env      переменные окружения всех контейнеров
+ */
+public record BenchmarkPlan(Limits limits, String warmup, String duration, boolean jfr, Map<String, String> env,
+                            List<App> apps, List<Scenario> scenarios) {
+
+    private static final Pattern DURATION = Pattern.compile("(\\d+)(ms|s|m|h)");
+
+    public static BenchmarkPlan read(ObjectMapper json, Path path) throws IOException {
+        BenchmarkPlan plan = json.readValue(path.toFile(), BenchmarkPlan.class);
+        if (plan.limits == null || plan.limits.cpus == null || plan.limits.memory == null) {
+            throw new IllegalArgumentException("limits.cpus and limits.memory are required: results without "
+                    + "fixed limits are not comparable");
+        }
+        if (plan.apps == null || plan.apps.isEmpty() || plan.scenarios == null || plan.scenarios.isEmpty()) {
+            throw new IllegalArgumentException("plan must contain at least one app and one scenario");
+        }
+        for (Scenario scenario : plan.scenarios) {
+            if (scenario.rate <= 0) {
+                throw new IllegalArgumentException("scenario " + scenario.name + ": rate must be positive");
+            }
+        }
+        plan.warmupDuration();
+        if (plan.measureDuration().isZero()) {
+            throw new IllegalArgumentException("duration must be positive");
+        }
+        return plan;
+    }
+
+    public Duration warmupDuration() {
+        return warmup == null ? Duration.ZERO : parseDuration(warmup);
+    }
+
+    public Duration measureDuration() {
+        return parseDuration(duration);
+    }
+
+    /**
+     * Длительность в формате .env-файлов стенда: {@code 500ms}, {@code 30s}, {@code 20m}, {@code 1h}
+     */
+    static Duration parseDuration(String value) {
+        Matcher matcher = value == null ? null : DURATION.matcher(value.trim());
+        if (matcher == null || !matcher.matches()) {
+            throw new IllegalArgumentException("duration must look like 500ms, 30s, 20m or 1h: " + value);
+        }
+        long amount = Long.parseLong(matcher.group(1));
+        return switch (matcher.group(2)) {
+            case "ms" -> Duration.ofMillis(amount);
+            case "s" -> Duration.ofSeconds(amount);
+            case "m" -> Duration.ofMinutes(amount);
+            default -> Duration.ofHours(amount);
+        };
+    }
+
+    /**
+     * Лимиты контейнера; своп отключается ({@code --memory-swap} равен {@code --memory})
+     *
+     * @param cpuset необязательная привязка к ядрам ({@code --cpuset-cpus}), убирает соседей по ядру
+     */
+    public record Limits(String cpus, String memory, String cpuset) {
+    }
+
+    /**
+     * @param javaOpts JAVA_OPTS образа, как в spring.env/quarkus.env/micronaut.env
+     */
+    public record App(String name, String image, String javaOpts, Map<String, String> env) {
+    }
+
+    /**
+     * Сценарий с постоянной скоростью запросов; в теле {@code ${seq}} - номер запроса, {@code ${имя}} -
+     * значение, полученное запросом prepare
+     */
+    public record Scenario(String name, String method, String path, String body, int rate, Prepare prepare) {
+        public String httpMethod() {
+            return method != null ? method : body != null ? "POST" : "GET";
+        }
+    }
+
+    /**
+     * Запрос перед нагрузкой; поле {@code capture} ответа доступно в теле сценария как {@code ${capture}}
+     */
+    public record Prepare(String path, String body, String capture) {
+    }
+}
@@ -0,0 +1,71 @@
+package ru.tkonf.bench;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Отчет прогона ({@code report.json}): один файл на все приложения и сценарии.
+ * <p>
+ * Порядок полей и результатов фиксирован (порядок плана), числа округлены, поэтому отчеты двух коммитов
+ * сравниваются обычным diff или командой {@code compare}. Все, что меняется от запуска к запуску
+ * независимо от кода (время, хост), собрано в {@link Meta}.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BenchmarkReport(Meta meta, BenchmarkPlan.Limits limits, String warmup, String duration,
+                              List<RunResult> results) {
+
+    /**
+     * @param commit     коммит рабочего дерева ({@code git describe --always --dirty})
+     * @param planSha256 хеш файла плана: отчеты с разными хешами сравнивать нельзя
+     */
+    public record Meta(String commit, String plan, String planSha256, String startedAt, String host,
+                       int hostCpus, String dockerVersion) {
+    }
+
+    /**
+     * Результат пары приложение/сценарий; failure - прогон не состоялся, метрик нет
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record RunResult(String app, String scenario, String image, String imageId, Long startupMillis,
+                            Load load, Resources resources, Gc gc, String failure) {
+    }
+
+    /**
+     * Клиентская сторона окна измерений; задержка считается от запланированного момента отправки,
+     * поэтому очередь на стороне клиента при перегрузке сервиса не прячет задержку (coordinated omission)
+     *
+     * @param serverTiming перцентили фаз заголовка Server-Timing (crypto, ser)
+     */
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    public record Load(int targetRate, long requests, long succeeded, double throughput, Latency latency,
+                       Map<String, Long> errors, Map<String, Latency> serverTiming) {
+    }
+
+    /**
+     * Миллисекунды
+     */
+    public record Latency(double mean, double p50, double p90, double p99, double p999, double max) {
+    }
+
+    /**
+     * Контейнер в окне измерений; source - procfs (RSS процесса и cgroup v2) или docker-stats
+     *
+     * @param rssMb            RSS процесса JVM; для docker-stats - память контейнера
+     * @param cpuUtilization   доля квоты {@code --cpus}
+     * @param throttledPercent доля периодов CFS, в которых квота была исчерпана
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record Resources(String source, Double rssAtReadyMb, Double rssAvgMb, Double rssMaxMb,
+                            Double cgroupMemoryMaxMb, Double cpuSeconds, Double cpuMicrosPerRequest,
+                            Double cpuUtilization, Double throttledPercent) {
+    }
+
+    /**
+     * Сборки мусора в окне измерений по JFR
+     */
+    public record Gc(String collector, long collections, double pauseTotalMillis, double pauseMaxMillis,
+                     double heapAfterGcMaxMb) {
+    }
+}
@@ -0,0 +1,261 @@
+package ru.tkonf.bench;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Сравнительный прогон Spring, Quarkus и Micronaut по плану.
+ * <p>
+ * Заменяет ручной порядок стенда: правку .env, подмену spring.env/quarkus.env/micronaut.env,
+ * docker-compose-run.sh и разбор логов Envoy в graph_python. Для каждого приложения и сценария плана
+ * стартует свежий контейнер с лимитами плана, после готовности идут прогрев и окно измерений, затем
+ * контейнер останавливается, и из его JFR-записи читается GC. Все пары попадают в один report.json.
+ * Задержка измеряется клиентом напрямую, без Envoy, по HTTP/1.1 с keep-alive: h2c lt-test в JDK HttpClient
+ * недоступен, а прокси в середине добавлял бы свою задержку ко всем трем приложениям.
+ * <pre>
+ * run plan.json [--out dir] [--apps spring,quarkus] [--scenarios sign-30rps]
+ * compare base/report.json head/report.json [--max-regression 10]
+ * </pre>
+ */
+public final class BenchmarkRunner {
+    private static final DateTimeFormatter RUN_DIR_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final ObjectMapper json = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+    private final HttpClient http = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            usage();
+        }
+        Map<String, String> options = options(args);
+        BenchmarkRunner runner = new BenchmarkRunner();
+        switch (args[0]) {
+            case "run" -> runner.run(Path.of(args[1]), options);
+            case "compare" -> {
+                if (args.length < 3) {
+                    usage();
+                }
+                String maxRegression = options.get("max-regression");
+                System.exit(new ReportComparison(runner.json).compare(Path.of(args[1]), Path.of(args[2]),
+                        maxRegression != null ? Double.parseDouble(maxRegression) : Double.NaN, System.out));
+            }
+            default -> usage();
+        }
+    }
+
+    private void run(Path planPath, Map<String, String> options) throws IOException, InterruptedException {
+        BenchmarkPlan plan = BenchmarkPlan.read(json, planPath);
+        Set<String> apps = filter(options.get("apps"));
+        Set<String> scenarios = filter(options.get("scenarios"));
+        String commit = commit();
+        Path out = options.containsKey("out")
+                ? Path.of(options.get("out"))
+                : Path.of("results", "bench", LocalDateTime.now().format(RUN_DIR_TIME) + "-" + commit);
+        Files.createDirectories(out);
+
+        BenchmarkReport.Meta meta = new BenchmarkReport.Meta(commit, planPath.toString(), sha256(planPath),
+                Instant.now().truncatedTo(ChronoUnit.SECONDS).toString(),
+                System.getProperty("os.name") + " " + System.getProperty("os.version") + " "
+                        + System.getProperty("os.arch"),
+                Runtime.getRuntime().availableProcessors(), Docker.run("version", "--format", "{{.Server.Version}}"));
+        List<BenchmarkReport.RunResult> results = new ArrayList<>();
+        for (BenchmarkPlan.App app : plan.apps()) {
+            if (apps != null && !apps.contains(app.name())) {
+                continue;
+            }
+            String imageId;
+            try {
+                imageId = Docker.run("image", "inspect", "--format", "{{.Id}}", app.image());
+            } catch (IOException e) {
+                imageId = null;
+            }
+            for (BenchmarkPlan.Scenario scenario : plan.scenarios()) {
+                if (scenarios != null && !scenarios.contains(scenario.name())) {
+                    continue;
+                }
+                BenchmarkReport.RunResult result = imageId != null
+                        ? runScenario(plan, app, imageId, scenario, out)
+                        : failure(app, null, scenario, "image " + app.image() + " not found, build it first");
+                results.add(result);
+                System.out.println(describe(result));
+            }
+        }
+        Path report = out.resolve("report.json");
+        json.writeValue(report.toFile(), new BenchmarkReport(meta, plan.limits(), plan.warmup(), plan.duration(),
+                results));
+        System.out.println("Report: " + report);
+    }
+
+    /**
+     * Один контейнер на пару приложение/сценарий; ошибка пары не останавливает прогон
+     */
+    private BenchmarkReport.RunResult runScenario(BenchmarkPlan plan, BenchmarkPlan.App app, String imageId,
+                                                  BenchmarkPlan.Scenario scenario, Path out)
+            throws InterruptedException {
+        Path runDir = out.resolve(app.name()).resolve(scenario.name());
+        Path jfrDir = runDir.resolve("jfr");
+        Path log = runDir.resolve("container.log");
+        AppContainer container = null;
+        try {
+            Files.createDirectories(jfrDir);
+            // Пользователь JVM в образах - 185 или 1001, каталог записи должен быть ему доступен
+            Files.setPosixFilePermissions(jfrDir, PosixFilePermissions.fromString("rwxrwxrwx"));
+            container = AppContainer.start("tkonf-bench-" + app.name() + "-" + scenario.name(), plan, app, jfrDir);
+            long startupMillis = container.awaitReady(http);
+            String body = prepare(container.baseUri(), scenario);
+
+            Instant[] window = new Instant[2];
+            BenchmarkReport.Load load;
+            BenchmarkReport.Resources resources;
+            try (ResourceSampler sampler = ResourceSampler.start(container, Double.parseDouble(plan.limits().cpus()))) {
+                load = new LoadGenerator(http).run(container.baseUri(), scenario, body, plan.warmupDuration(),
+                        plan.measureDuration(), new LoadGenerator.MeasureWindow() {
+                            @Override
+                            public void started() {
+                                sampler.begin();
+                                window[0] = Instant.now();
+                            }
+
+                            @Override
+                            public void finished() {
+                                window[1] = Instant.now();
+                                sampler.end();
+                            }
+                        });
+                resources = sampler.summary(load.succeeded());
+            }
+            container.stop(log);
+            BenchmarkReport.Gc gc = plan.jfr()
+                    ? JfrGcReader.read(jfrDir.resolve(AppContainer.JFR_FILE), window[0], window[1])
+                    : null;
+            return new BenchmarkReport.RunResult(app.name(), scenario.name(), app.image(), imageId, startupMillis,
+                    load, resources, gc, null);
+        } catch (IOException | RuntimeException e) {
+            if (container != null) {
+                try {
+                    container.stop(log);
+                } catch (IOException ignored) {
+                    // Контейнер удаляется ниже
+                }
+            }
+            return failure(app, imageId, scenario, e.getMessage());
+        } finally {
+            if (container != null) {
+                container.close();
+            }
+        }
+    }
+
+    /**
+     * Подставляет в тело сценария поле ответа prepare (например, подпись для /verify)
+     */
+    private String prepare(URI base, BenchmarkPlan.Scenario scenario) throws IOException, InterruptedException {
+        BenchmarkPlan.Prepare prepare = scenario.prepare();
+        if (prepare == null) {
+            return scenario.body();
+        }
+        HttpRequest request = HttpRequest.newBuilder(base.resolve(prepare.path()))
+                .timeout(LoadGenerator.REQUEST_TIMEOUT)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(prepare.body() != null ? prepare.body() : "{}"))
+                .build();
+        HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+        JsonNode value = response.statusCode() == 200 ? json.readTree(response.body()).get(prepare.capture()) : null;
+        if (value == null || !value.isValueNode()) {
+            throw new IOException("prepare " + prepare.path() + " returned " + response.statusCode()
+                    + " without field " + prepare.capture());
+        }
+        return scenario.body().replace("${" + prepare.capture() + "}", value.asText());
+    }
+
+    private static BenchmarkReport.RunResult failure(BenchmarkPlan.App app, String imageId,
+                                                     BenchmarkPlan.Scenario scenario, String message) {
+        return new BenchmarkReport.RunResult(app.name(), scenario.name(), app.image(), imageId, null, null, null,
+                null, message);
+    }
+
+    private static String describe(BenchmarkReport.RunResult result) {
+        String run = result.app() + "/" + result.scenario() + ": ";
+        if (result.failure() != null) {
+            return run + "FAILED " + result.failure();
+        }
+        BenchmarkReport.Load load = result.load();
+        long errors = load.errors() == null ? 0 : load.errors().values().stream().mapToLong(Long::longValue).sum();
+        String rss = result.resources() != null ? ", rss max " + result.resources().rssMaxMb() + " MB" : "";
+        return run + "startup " + result.startupMillis() + " ms, " + load.throughput() + " req/s, p50 "
+                + load.latency().p50() + " ms, p99 " + load.latency().p99() + " ms, p999 "
+                + load.latency().p999() + " ms" + rss + ", errors " + errors;
+    }
+
+    private static String commit() {
+        try {
+            Process git = new ProcessBuilder("git", "describe", "--always", "--dirty").start();
+            String commit = new String(git.getInputStream().readAllBytes()).strip();
+            return git.waitFor() == 0 && !commit.isEmpty() ? commit : "unknown";
+        } catch (IOException e) {
+            return "unknown";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "unknown";
+        }
+    }
+
+    private static String sha256(Path file) throws IOException {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(Files.readAllBytes(file)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Set<String> filter(String list) {
+        return list == null ? null : Set.of(list.split(","));
+    }
+
+    private static Map<String, String> options(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].startsWith("--")) {
+                if (i + 1 >= args.length) {
+                    usage();
+                }
+                options.put(args[i].substring(2), args[++i]);
+            }
+        }
+        return options;
+    }
+
+    private static void usage() {
+        System.err.println("""
+                Usage:
+                  run <plan.json> [--out <dir>] [--apps <name,...>] [--scenarios <name,...>]
+                  compare <base report.json> <head report.json> [--max-regression <percent>]""");
+        System.exit(2);
+    }
+}
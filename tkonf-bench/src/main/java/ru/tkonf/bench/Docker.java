@@ -0,0 +1,72 @@
+package ru.tkonf.bench;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Вызовы docker CLI: тот же docker, что у docker-compose-run.sh, без клиента Docker API в зависимостях
+ */
+final class Docker {
+    private static final long COMMAND_TIMEOUT_SECONDS = 120;
+
+    private Docker() {
+    }
+
+    /**
+     * stdout команды без завершающих пробелов; ненулевой код выхода - исключение с stderr
+     */
+    static String run(String... args) throws IOException {
+        List<String> command = new ArrayList<>(args.length + 1);
+        command.add("docker");
+        command.addAll(List.of(args));
+        Process process = new ProcessBuilder(command).start();
+        CompletableFuture<String> stderr = CompletableFuture.supplyAsync(() -> read(process.getErrorStream()));
+        String stdout = read(process.getInputStream());
+        try {
+            if (!process.waitFor(COMMAND_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+                throw new IOException("docker " + args[0] + " did not finish in " + COMMAND_TIMEOUT_SECONDS + "s");
+            }
+        } catch (InterruptedException e) {
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while running docker " + args[0], e);
+        }
+        if (process.exitValue() != 0) {
+            throw new IOException("docker " + String.join(" ", args) + " failed: " + stderr.join().strip());
+        }
+        return stdout.strip();
+    }
+
+    /**
+     * Вывод контейнера (stdout и stderr вместе) в файл
+     */
+    static void writeLogs(String id, Path file) throws IOException {
+        Process process = new ProcessBuilder("docker", "logs", id)
+                .redirectErrorStream(true)
+                .redirectOutput(file.toFile())
+                .start();
+        try {
+            if (!process.waitFor(COMMAND_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        } catch (InterruptedException e) {
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static String read(InputStream stream) {
+        try (stream) {
+            return new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            return "";
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package ru.tkonf.bench;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Статистика GC из JFR-записи контейнера за окно измерений.
+ * <p>
+ * Используются только события настроек {@code default}: {@code jdk.GarbageCollection} (паузы) и
+ * {@code jdk.GCHeapSummary} (занятая куча после сборки). Часы контейнера - часы хоста, поэтому окно
+ * задается моментами {@link Instant}, снятыми генератором нагрузки.
+ */
+final class JfrGcReader {
+    private JfrGcReader() {
+    }
+
+    /**
+     * null - записи нет (JFR выключен или JVM не успела ее сбросить)
+     */
+    static BenchmarkReport.Gc read(Path recording, Instant from, Instant to) throws IOException {
+        if (!Files.isRegularFile(recording) || Files.size(recording) == 0) {
+            return null;
+        }
+        String collector = null;
+        long collections = 0;
+        Duration pauseTotal = Duration.ZERO;
+        Duration pauseMax = Duration.ZERO;
+        long heapAfterGcMax = 0;
+        try (RecordingFile file = new RecordingFile(recording)) {
+            while (file.hasMoreEvents()) {
+                RecordedEvent event = file.readEvent();
+                String type = event.getEventType().getName();
+                if (type.equals("jdk.GCConfiguration")) {
+                    collector = event.getString("youngCollector") + "/" + event.getString("oldCollector");
+                    continue;
+                }
+                if (event.getStartTime().isBefore(from) || event.getStartTime().isAfter(to)) {
+                    continue;
+                }
+                if (type.equals("jdk.GarbageCollection")) {
+                    collections++;
+                    Duration pauses = event.getDuration("sumOfPauses");
+                    pauseTotal = pauseTotal.plus(pauses);
+                    Duration longest = event.getDuration("longestPause");
+                    if (longest.compareTo(pauseMax) > 0) {
+                        pauseMax = longest;
+                    }
+                } else if (type.equals("jdk.GCHeapSummary") && "After GC".equals(event.getString("when"))) {
+                    heapAfterGcMax = Math.max(heapAfterGcMax, event.getLong("heapUsed"));
+                }
+            }
+        }
+        return new BenchmarkReport.Gc(collector, collections, Numbers.millis(pauseTotal.toNanos() / 1000.0),
+                Numbers.millis(pauseMax.toNanos() / 1000.0), Numbers.megabytes(heapAfterGcMax));
+    }
+}
@@ -0,0 +1,198 @@
+package ru.tkonf.bench;
+
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Нагрузка с постоянной скоростью (открытая модель), как у lt-test: запрос {@code i} отправляется в момент
+ * {@code start + i / rate} независимо от того, ответил ли сервис на предыдущие.
+ * <p>
+ * Задержка отсчитывается от запланированного момента, а не от фактической отправки: если генератор или
+ * пул соединений отстал, это время входит в задержку, и перцентили не занижаются (coordinated omission).
+ * Одновременных запросов не больше {@link #MAX_IN_FLIGHT}; запрос сверх лимита не отправляется и
+ * считается ошибкой {@code client-backlog} - при такой очереди сервис все равно уже не справляется.
+ */
+final class LoadGenerator {
+    static final int MAX_IN_FLIGHT = 1024;
+    static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(10);
+
+    private final HttpClient http;
+
+    LoadGenerator(HttpClient http) {
+        this.http = http;
+    }
+
+    /**
+     * Прогрев, затем окно измерений; window получает начало окна перед первым запросом окна и конец
+     * сразу после отправки последнего, до ожидания ответов
+     */
+    BenchmarkReport.Load run(URI base, BenchmarkPlan.Scenario scenario, String bodyTemplate, Duration warmup,
+                             Duration duration, MeasureWindow window) throws InterruptedException {
+        URI uri = base.resolve(scenario.path());
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / scenario.rate();
+        Counters counters = new Counters();
+        Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT);
+        long start = System.nanoTime();
+        long measureStart = start + warmup.toNanos();
+        long end = measureStart + duration.toNanos();
+        boolean measuring = false;
+        for (long seq = 0; ; seq++) {
+            long intended = start + seq * intervalNanos;
+            if (intended - end >= 0) {
+                break;
+            }
+            boolean measured = intended - measureStart >= 0;
+            if (measured && !measuring) {
+                measuring = true;
+                window.started();
+            }
+            parkUntil(intended);
+            if (measured) {
+                counters.requests.increment();
+            }
+            if (!inFlight.tryAcquire()) {
+                if (measured) {
+                    counters.error("client-backlog");
+                }
+                continue;
+            }
+            HttpRequest request = request(uri, scenario.httpMethod(), bodyTemplate, seq);
+            http.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+                inFlight.release();
+                if (measured) {
+                    counters.complete(intended, response, error);
+                }
+            });
+        }
+        window.finished();
+        // Ответы окна дожидаются; запрос без ответа завершится по таймауту и попадет в ошибки
+        if (inFlight.tryAcquire(MAX_IN_FLIGHT, REQUEST_TIMEOUT.toSeconds() + 5, TimeUnit.SECONDS)) {
+            inFlight.release(MAX_IN_FLIGHT);
+        }
+        return counters.toLoad(scenario.rate(), duration);
+    }
+
+    private static HttpRequest request(URI uri, String method, String bodyTemplate, long seq) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri).timeout(REQUEST_TIMEOUT);
+        if (bodyTemplate == null) {
+            return request.method(method, HttpRequest.BodyPublishers.noBody()).build();
+        }
+        return request.header("Content-Type", "application/json")
+                .method(method, HttpRequest.BodyPublishers.ofString(bodyTemplate.replace("${seq}", Long.toString(seq))))
+                .build();
+    }
+
+    private static void parkUntil(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    /**
+     * Разбирает {@code crypto;dur=1.234, ser;dur=0.050} в микросекунды по фазам
+     */
+    static Map<String, Long> parseServerTiming(String header) {
+        Map<String, Long> phases = new TreeMap<>();
+        if (header == null) {
+            return phases;
+        }
+        for (String metric : header.split(",")) {
+            String[] parts = metric.trim().split(";");
+            for (int i = 1; i < parts.length; i++) {
+                String param = parts[i].trim();
+                if (param.startsWith("dur=")) {
+                    try {
+                        phases.put(parts[0].trim(), Math.round(Double.parseDouble(param.substring(4)) * 1000));
+                    } catch (NumberFormatException e) {
+                        // Фаза без длительности пропускается, как в lt-test
+                    }
+                }
+            }
+        }
+        return phases;
+    }
+
+    /**
+     * Границы окна измерений для выборок ресурсов и JFR
+     */
+    interface MeasureWindow {
+        void started();
+
+        void finished();
+    }
+
+    /**
+     * Счетчики окна измерений
+     */
+    private static final class Counters {
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder succeeded = new LongAdder();
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final Map<String, LatencyHistogram> phases = new ConcurrentHashMap<>();
+        private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+
+        void complete(long intended, HttpResponse<Void> response, Throwable error) {
+            if (error != null) {
+                error(errorKind(error));
+                return;
+            }
+            if (response.statusCode() / 100 != 2) {
+                error("http-" + response.statusCode());
+                return;
+            }
+            succeeded.increment();
+            latency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intended));
+            parseServerTiming(response.headers().firstValue("Server-Timing").orElse(null))
+                    .forEach((phase, micros) ->
+                            phases.computeIfAbsent(phase, name -> new LatencyHistogram()).record(micros));
+        }
+
+        void error(String kind) {
+            errors.computeIfAbsent(kind, name -> new LongAdder()).increment();
+        }
+
+        BenchmarkReport.Load toLoad(int rate, Duration duration) {
+            Map<String, Long> errorCounts = new TreeMap<>();
+            errors.forEach((kind, count) -> errorCounts.put(kind, count.sum()));
+            Map<String, BenchmarkReport.Latency> serverTiming = new TreeMap<>();
+            phases.forEach((phase, histogram) -> serverTiming.put(phase, latency(histogram)));
+            double seconds = duration.toNanos() / 1e9;
+            return new BenchmarkReport.Load(rate, requests.sum(), succeeded.sum(),
+                    Numbers.round(succeeded.sum() / seconds, 2), latency(latency), errorCounts, serverTiming);
+        }
+
+        private static String errorKind(Throwable error) {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause()
+                    : error;
+            if (cause instanceof HttpTimeoutException) {
+                return "timeout";
+            }
+            if (cause instanceof ConnectException) {
+                return "connect";
+            }
+            return "io";
+        }
+
+        private static BenchmarkReport.Latency latency(LatencyHistogram histogram) {
+            return new BenchmarkReport.Latency(Numbers.millis(histogram.meanMicros()),
+                    Numbers.millis(histogram.percentileMicros(0.5)), Numbers.millis(histogram.percentileMicros(0.9)),
+                    Numbers.millis(histogram.percentileMicros(0.99)), Numbers.millis(histogram.percentileMicros(0.999)),
+                    Numbers.millis(histogram.maxMicros()));
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package ru.tkonf.bench;
+
+/**
+ * Округление чисел отчета: лишние знаки - шум, из-за которого отчеты одного кода отличаются в diff
+ */
+final class Numbers {
+    private Numbers() {
+    }
+
+    static double round(double value, int digits) {
+        double scale = Math.pow(10, digits);
+        return Math.round(value * scale) / scale;
+    }
+
+    static double millis(double micros) {
+        return round(micros / 1000, 3);
+    }
+
+    static double megabytes(long bytes) {
+        return round(bytes / (1024.0 * 1024.0), 1);
+    }
+}
@@ -0,0 +1,95 @@
+package ru.tkonf.bench;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Сравнение двух отчетов по парам приложение/сценарий: базовый коммит против текущего.
+ * <p>
+ * С порогом {@code --max-regression} код выхода 1, если хоть одна метрика ухудшилась больше чем на
+ * порог в процентах; так сравнение можно ставить в CI после прогона на выделенной машине.
+ */
+final class ReportComparison {
+    private final ObjectMapper json;
+
+    ReportComparison(ObjectMapper json) {
+        this.json = json.copy().disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    }
+
+    /**
+     * Печатает таблицу различий; возвращает код выхода
+     */
+    int compare(Path basePath, Path headPath, double maxRegressionPercent, PrintStream out) throws IOException {
+        BenchmarkReport base = json.readValue(basePath.toFile(), BenchmarkReport.class);
+        BenchmarkReport head = json.readValue(headPath.toFile(), BenchmarkReport.class);
+        if (!Objects.equals(base.meta().planSha256(), head.meta().planSha256())) {
+            out.println("WARNING: reports use different plans, numbers are not comparable");
+        }
+        out.printf("base %s, head %s%n", base.meta().commit(), head.meta().commit());
+        out.printf("%-28s %-16s %12s %12s %9s%n", "run", "metric", "base", "head", "delta");
+
+        Map<String, BenchmarkReport.RunResult> baseRuns = new LinkedHashMap<>();
+        base.results().forEach(result -> baseRuns.put(result.app() + "/" + result.scenario(), result));
+        int regressions = 0;
+        for (BenchmarkReport.RunResult result : head.results()) {
+            String run = result.app() + "/" + result.scenario();
+            BenchmarkReport.RunResult previous = baseRuns.get(run);
+            if (previous == null || previous.failure() != null || result.failure() != null) {
+                out.printf("%-28s %s%n", run, previous == null ? "no base run"
+                        : "failed: " + Objects.requireNonNullElse(result.failure(), previous.failure()));
+                continue;
+            }
+            for (Metric metric : Metric.values()) {
+                Double before = metric.value.apply(previous);
+                Double after = metric.value.apply(result);
+                if (before == null || after == null) {
+                    continue;
+                }
+                double delta = before == 0
+                        ? (after == 0 ? 0 : Double.POSITIVE_INFINITY)
+                        : (after - before) / before * 100;
+                double worse = metric.higherIsBetter ? -delta : delta;
+                boolean regression = !Double.isNaN(maxRegressionPercent) && worse > maxRegressionPercent;
+                if (regression) {
+                    regressions++;
+                }
+                out.printf("%-28s %-16s %12.3f %12.3f %+8.1f%%%s%n", run, metric.label, before, after, delta,
+                        regression ? "  REGRESSION" : "");
+            }
+        }
+        return regressions > 0 ? 1 : 0;
+    }
+
+    private enum Metric {
+        THROUGHPUT("req/s", true, result -> result.load().throughput()),
+        P50("p50 ms", false, result -> result.load().latency().p50()),
+        P99("p99 ms", false, result -> result.load().latency().p99()),
+        P999("p999 ms", false, result -> result.load().latency().p999()),
+        ERRORS("errors", false, result -> result.load().errors() == null ? 0.0
+                : result.load().errors().values().stream().mapToLong(Long::longValue).sum()),
+        STARTUP("startup ms", false, result -> result.startupMillis() == null ? null
+                : result.startupMillis().doubleValue()),
+        RSS_MAX("rss max MB", false, result -> result.resources() == null ? null : result.resources().rssMaxMb()),
+        CPU_PER_REQUEST("cpu us/req", false, result -> result.resources() == null ? null
+                : result.resources().cpuMicrosPerRequest()),
+        GC_PAUSE("gc pause ms", false, result -> result.gc() == null ? null : result.gc().pauseTotalMillis());
+
+        private final String label;
+        private final boolean higherIsBetter;
+        private final Function<BenchmarkReport.RunResult, Double> value;
+
+        Metric(String label, boolean higherIsBetter, Function<BenchmarkReport.RunResult, Double> value) {
+            this.label = label;
+            this.higherIsBetter = higherIsBetter;
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package ru.tkonf.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Память и CPU контейнера раз в секунду.
+ * <p>
+ * Основной источник - файлы хоста: RSS процесса JVM из {@code /proc/<pid>/status} и счетчики cgroup v2
+ * ({@code memory.current}, {@code cpu.stat}) из каталога, указанного в {@code /proc/<pid>/cgroup}. Чтение
+ * с хоста не тратит квоту контейнера, в отличие от {@code docker exec}, а {@code cpu.stat} дает
+ * дросселирование CFS - главный эффект квоты 0.1 CPU. Если файлы недоступны (Docker Desktop, cgroup v1),
+ * используется {@code docker stats}: память контейнера вместо RSS и CPU без дросселирования.
+ */
+final class ResourceSampler implements AutoCloseable {
+    private static final long INTERVAL_SECONDS = 1;
+    private static final Pattern VM_RSS = Pattern.compile("VmRSS:\\s+(\\d+) kB");
+    private static final Pattern STATS_CPU = Pattern.compile("([\\d.]+)%");
+    private static final Pattern STATS_MEMORY = Pattern.compile("([\\d.]+)\\s*([KMG]i?B|B)");
+    private static final Map<String, Long> UNITS = Map.of("B", 1L, "KiB", 1L << 10, "MiB", 1L << 20,
+            "GiB", 1L << 30, "KB", 1000L, "MB", 1000_000L, "GB", 1000_000_000L);
+
+    private final String containerId;
+    private final Path status;
+    private final Path cgroup;
+    private final double cpus;
+    private final ScheduledExecutorService timer;
+
+    // Состояние окна; пишет поток таймера и mark/finish под монитором
+    private Sample readySample;
+    private Sample baseline;
+    private Sample last;
+    private Sample endSample;
+    private long rssSum;
+    private long rssMax;
+    private long memoryMax;
+    private int samples;
+    private double statsCpuSeconds;
+
+    private ResourceSampler(String containerId, Path status, Path cgroup, double cpus) {
+        this.containerId = containerId;
+        this.status = status;
+        this.cgroup = cgroup;
+        this.cpus = cpus;
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "resource-sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Первая выборка сразу: она фиксирует память только что готового приложения
+     */
+    static ResourceSampler start(AppContainer container, double cpus) {
+        Path status = null;
+        Path cgroup = null;
+        try {
+            long pid = container.hostPid();
+            Path proc = Path.of("/proc", Long.toString(pid));
+            String cgroupLine = Files.readAllLines(proc.resolve("cgroup")).stream()
+                    .filter(line -> line.startsWith("0::"))
+                    .findFirst()
+                    .orElse(null);
+            Path cgroupDir = cgroupLine != null ? Path.of("/sys/fs/cgroup", cgroupLine.substring(3)) : null;
+            if (Files.isReadable(proc.resolve("status")) && cgroupDir != null
+                    && Files.isReadable(cgroupDir.resolve("cpu.stat"))) {
+                status = proc.resolve("status");
+                cgroup = cgroupDir;
+            }
+        } catch (IOException | RuntimeException e) {
+            // Остается docker stats
+        }
+        ResourceSampler sampler = new ResourceSampler(container.id(), status, cgroup, cpus);
+        sampler.readySample = sampler.sample();
+        sampler.timer.scheduleAtFixedRate(sampler::tick, INTERVAL_SECONDS, INTERVAL_SECONDS, TimeUnit.SECONDS);
+        return sampler;
+    }
+
+    /**
+     * Начало окна измерений: счетчики CPU отсчитываются отсюда, пики сбрасываются
+     */
+    synchronized void begin() {
+        baseline = sample();
+        last = baseline;
+        rssSum = 0;
+        rssMax = 0;
+        memoryMax = 0;
+        samples = 0;
+        statsCpuSeconds = 0;
+        accumulate(baseline);
+    }
+
+    /**
+     * Конец окна измерений: последняя выборка, таймер останавливается
+     */
+    synchronized void end() {
+        timer.shutdownNow();
+        if (baseline != null) {
+            Sample sample = sample();
+            accumulate(sample);
+            endSample = sample;
+        }
+    }
+
+    /**
+     * Итог окна; requests - успешные запросы окна для CPU на запрос. null - выборок не было
+     */
+    synchronized BenchmarkReport.Resources summary(long requests) {
+        Sample end = endSample;
+        if (baseline == null || end == null) {
+            return null;
+        }
+        Double rssAtReady = readySample != null ? Numbers.megabytes(readySample.rssBytes) : null;
+        double rssAvg = samples > 0 ? (double) rssSum / samples : 0;
+        if (cgroup == null) {
+            return new BenchmarkReport.Resources("docker-stats", rssAtReady, Numbers.megabytes((long) rssAvg),
+                    Numbers.megabytes(rssMax), null, Numbers.round(statsCpuSeconds, 2),
+                    requests > 0 ? Numbers.round(statsCpuSeconds * 1e6 / requests, 1) : null,
+                    Numbers.round(statsCpuSeconds / windowSeconds(end) / cpus, 3), null);
+        }
+        double cpuSeconds = (end.cpuMicros - baseline.cpuMicros) / 1e6;
+        long periods = end.periods - baseline.periods;
+        return new BenchmarkReport.Resources("procfs", rssAtReady, Numbers.megabytes((long) rssAvg),
+                Numbers.megabytes(rssMax), Numbers.megabytes(memoryMax), Numbers.round(cpuSeconds, 2),
+                requests > 0 ? Numbers.round(cpuSeconds * 1e6 / requests, 1) : null,
+                Numbers.round(cpuSeconds / windowSeconds(end) / cpus, 3),
+                periods > 0 ? Numbers.round(100.0 * (end.throttledPeriods - baseline.throttledPeriods) / periods, 1)
+                        : null);
+    }
+
+    @Override
+    public void close() {
+        timer.shutdownNow();
+    }
+
+    private synchronized void tick() {
+        if (baseline != null && endSample == null) {
+            accumulate(sample());
+        }
+    }
+
+    private void accumulate(Sample sample) {
+        if (sample == null) {
+            return;
+        }
+        rssSum += sample.rssBytes;
+        rssMax = Math.max(rssMax, sample.rssBytes);
+        memoryMax = Math.max(memoryMax, sample.memoryBytes);
+        samples++;
+        if (cgroup == null && last != null) {
+            // docker stats дает мгновенный процент, CPU-секунды интегрируются по времени между выборками
+            statsCpuSeconds += sample.cpuPercent / 100 * (sample.nanos - last.nanos) / 1e9;
+        }
+        last = sample;
+    }
+
+    private double windowSeconds(Sample end) {
+        return Math.max(1e-3, (end.nanos - baseline.nanos) / 1e9);
+    }
+
+    /**
+     * Выборка; null - процесс уже завершился или docker недоступен
+     */
+    private Sample sample() {
+        long now = System.nanoTime();
+        try {
+            if (cgroup != null) {
+                Matcher rss = VM_RSS.matcher(Files.readString(status));
+                long rssBytes = rss.find() ? Long.parseLong(rss.group(1)) * 1024 : 0;
+                long memoryBytes = Long.parseLong(Files.readString(cgroup.resolve("memory.current")).strip());
+                Map<String, Long> cpu = readFlatKeyed(cgroup.resolve("cpu.stat"));
+                return new Sample(now, rssBytes, memoryBytes, cpu.getOrDefault("usage_usec", 0L),
+                        cpu.getOrDefault("nr_periods", 0L), cpu.getOrDefault("nr_throttled", 0L), 0);
+            }
+            String[] stats = Docker.run("stats", "--no-stream", "--format", "{{.CPUPerc}};{{.MemUsage}}",
+                    containerId).split(";");
+            Matcher cpu = STATS_CPU.matcher(stats[0]);
+            Matcher memory = STATS_MEMORY.matcher(stats[1]);
+            long memoryBytes = memory.find()
+                    ? (long) (Double.parseDouble(memory.group(1)) * UNITS.getOrDefault(memory.group(2), 1L))
+                    : 0;
+            return new Sample(now, memoryBytes, memoryBytes, 0, 0, 0,
+                    cpu.find() ? Double.parseDouble(cpu.group(1)) : 0);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static Map<String, Long> readFlatKeyed(Path file) throws IOException {
+        Map<String, Long> values = new HashMap<>();
+        for (String line : Files.readAllLines(file)) {
+            String[] parts = line.split(" ");
+            if (parts.length == 2) {
+                values.put(parts[0], Long.parseLong(parts[1]));
+            }
+        }
+        return values;
+    }
+
+    private record Sample(long nanos, long rssBytes, long memoryBytes, long cpuMicros, long periods,
+                          long throttledPeriods, double cpuPercent) {
+    }
+}
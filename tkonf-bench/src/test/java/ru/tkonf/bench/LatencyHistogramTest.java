@@ -0,0 +1,55 @@
+package ru.tkonf.bench;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+
+    @Test
+    @DisplayName("Перцентили равномерного распределения с ошибкой не больше 1/64")
+    void percentilesWithinBucketError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 1_000_000; micros++) {
+            histogram.record(micros);
+        }
+        assertEquals(1_000_000, histogram.count());
+        assertEquals(1_000_000, histogram.maxMicros());
+        assertEquals(500_000.5, histogram.meanMicros(), 1e-6);
+        for (double q : new double[] {0.5, 0.9, 0.99, 0.999}) {
+            long exact = (long) Math.ceil(q * 1_000_000);
+            long reported = histogram.percentileMicros(q);
+            assertTrue(reported >= exact && reported <= exact + exact / 64, q + ": " + reported);
+        }
+        assertEquals(1_000_000, histogram.percentileMicros(1.0));
+    }
+
+    @Test
+    @DisplayName("Малые значения хранятся точно, корзины идут без пропусков и наложений")
+    void bucketsAreContiguous() {
+        for (long value = 0; value < 128; value++) {
+            assertEquals(value, LatencyHistogram.highestEquivalent(LatencyHistogram.index(value)));
+        }
+        for (long value = 128; value < 1 << 20; value++) {
+            int index = LatencyHistogram.index(value);
+            assertTrue(LatencyHistogram.highestEquivalent(index) >= value);
+            assertTrue(index == 0 || LatencyHistogram.highestEquivalent(index - 1) < value);
+        }
+    }
+
+    @Test
+    @DisplayName("Server-Timing и длительности плана разбираются как в lt-test и .env")
+    void parsesServerTimingAndDurations() {
+        assertEquals(Map.of("crypto", 1234L, "ser", 50L),
+                LoadGenerator.parseServerTiming("crypto;dur=1.234, ser;dur=0.050, cache;desc=hit"));
+        assertEquals(Duration.ofMinutes(20), BenchmarkPlan.parseDuration("20m"));
+        assertEquals(Duration.ofMillis(500), BenchmarkPlan.parseDuration("500ms"));
+        assertThrows(IllegalArgumentException.class, () -> BenchmarkPlan.parseDuration("20 minutes"));
+    }
+}
@@ -0,0 +1,20 @@
+package ru.tkonf.sign.client;
+
+/**
+ * Счетчики клиента: по ним видно, сколько вызовов сошлось в пакеты и сколько стоят хеджированные повторы
+ */
+public record ClientStats(
+        // Вызовы sign/signAsync
+        long signCalls,
+        // HTTP запросы /sign и /sign/batch
+        long signRequests,
+        // Из них /sign/batch
+        long batchRequests,
+        // Вторые попытки, отправленные по таймеру хеджирования
+        long hedgedRequests,
+        // Загрузки публичного ключа (200) и подтверждения кэша (304)
+        long publicKeyFetches,
+        long publicKeyNotModified,
+        // Проверки подписи без обращения к сервису
+        long localVerifications) {
+}
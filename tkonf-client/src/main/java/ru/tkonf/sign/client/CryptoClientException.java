@@ -0,0 +1,30 @@
+package ru.tkonf.sign.client;
+
+/**
+ * Ошибка вызова сервиса: ответ с кодом ошибки ({@code code} из {@code ErrorResponse}) или сбой транспорта
+ */
+public class CryptoClientException extends RuntimeException {
+    // HTTP статус ответа; 0 - ответа не было
+    private final int status;
+    private final String code;
+
+    public CryptoClientException(int status, String code, String message) {
+        super(message);
+        this.status = status;
+        this.code = code;
+    }
+
+    public CryptoClientException(String message, Throwable cause) {
+        super(message, cause);
+        this.status = 0;
+        this.code = null;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public String getCode() {
+        return code;
+    }
+}
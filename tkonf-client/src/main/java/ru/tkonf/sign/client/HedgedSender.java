@@ -0,0 +1,142 @@
+package ru.tkonf.sign.client;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Отправка запросов с хеджированием: если ответа нет дольше {@code hedgeAfter}, тот же запрос уходит
+ * второй раз, и побеждает первый ответ. Хвост задержек одной медленной реплики (GC, дросселирование
+ * квоты CPU) так отрезается ценой нескольких процентов лишних запросов. Ошибка транспорта запускает
+ * следующую попытку сразу, не дожидаясь таймера.
+ * <p>
+ * Лишние запросы ограничены бюджетом {@link #HEDGE_BUDGET_PERCENT} от всех запросов: при общей деградации
+ * сервиса хеджирование не удваивает нагрузку на него.
+ */
+final class HedgedSender {
+    private static final int HEDGE_BUDGET_PERCENT = 10;
+    // Запас бюджета на старте, пока запросов еще мало
+    private static final int HEDGE_BUDGET_INITIAL = 10;
+
+    private final HttpClient http;
+    private final ScheduledExecutorService timer;
+    // null - хеджирование выключено
+    private final Duration hedgeAfter;
+    private final int maxAttempts;
+
+    private final LongAdder requests = new LongAdder();
+    final LongAdder hedges = new LongAdder();
+
+    HedgedSender(HttpClient http, ScheduledExecutorService timer, Duration hedgeAfter, int maxAttempts) {
+        this.http = http;
+        this.timer = timer;
+        this.hedgeAfter = hedgeAfter;
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * Синхронная отправка; ответ с любым статусом возвращается, исключение - только если не удалась ни одна попытка
+     */
+    HttpResponse<byte[]> send(HttpRequest request, boolean idempotent) {
+        try {
+            return sendAsync(request, idempotent).get();
+        } catch (ExecutionException e) {
+            throw transportFailure(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CryptoClientException("Interrupted while waiting for " + request.uri(), e);
+        }
+    }
+
+    /**
+     * Неидемпотентные запросы отправляются один раз: повтор /sign создал бы вторую запись аудита
+     */
+    CompletableFuture<HttpResponse<byte[]>> sendAsync(HttpRequest request, boolean idempotent) {
+        requests.increment();
+        if (!idempotent) {
+            return http.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
+        }
+        Call call = new Call(request);
+        call.launch();
+        if (hedgeAfter != null) {
+            ScheduledFuture<?> hedge = timer.schedule(call::hedge, hedgeAfter.toNanos(), TimeUnit.NANOSECONDS);
+            call.result.whenComplete((response, error) -> hedge.cancel(false));
+        }
+        return call.result;
+    }
+
+    static CryptoClientException transportFailure(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof CryptoClientException clientException) {
+            return clientException;
+        }
+        return new CryptoClientException(cause instanceof IOException
+                ? "Crypto service is unreachable: " + cause.getMessage()
+                : "Crypto service call failed: " + cause, cause);
+    }
+
+    private boolean withinBudget() {
+        return hedges.sum() < HEDGE_BUDGET_INITIAL + requests.sum() * HEDGE_BUDGET_PERCENT / 100;
+    }
+
+    /**
+     * Попытки одного запроса; результат завершает первая успешная или последняя неудачная попытка
+     */
+    private final class Call {
+        private final HttpRequest request;
+        private final CompletableFuture<HttpResponse<byte[]>> result = new CompletableFuture<>();
+        private int started;
+        private int failed;
+
+        Call(HttpRequest request) {
+            this.request = request;
+        }
+
+        void hedge() {
+            if (!result.isDone() && withinBudget() && start()) {
+                hedges.increment();
+                http.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray()).whenComplete(this::onAttempt);
+            }
+        }
+
+        void launch() {
+            if (start()) {
+                http.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray()).whenComplete(this::onAttempt);
+            }
+        }
+
+        private synchronized boolean start() {
+            if (result.isDone() || started >= maxAttempts) {
+                return false;
+            }
+            started++;
+            return true;
+        }
+
+        private void onAttempt(HttpResponse<byte[]> response, Throwable error) {
+            if (error == null) {
+                result.complete(response);
+                return;
+            }
+            synchronized (this) {
+                failed++;
+            }
+            // Повтор сразу, если попытки еще остались
+            launch();
+            synchronized (this) {
+                if (failed == started) {
+                    result.completeExceptionally(error);
+                }
+            }
+        }
+    }
+}
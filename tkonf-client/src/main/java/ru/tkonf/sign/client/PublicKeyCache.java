@@ -0,0 +1,126 @@
+package ru.tkonf.sign.client;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.spec.X509EncodedKeySpec;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Публичный ключ сервиса для локальной проверки подписей.
+ * <p>
+ * Ключ хранится вместе с ETag ответа {@code /public-key}. После {@code maxAge} следующий вызов
+ * перепроверяет его условным GET с {@code If-None-Match}: пока ключ не менялся, сервис отвечает 304 без тела.
+ * Ключ сервиса меняется после восстановления из CRaC-чекпоинта, поэтому отрицательный результат
+ * проверки тоже перепроверяет ключ, но не чаще раза в {@link #MIN_REVALIDATE_NANOS}: поток поддельных
+ * подписей не должен превращаться в поток запросов к сервису.
+ */
+final class PublicKeyCache {
+    // Ключ сервиса - RSA 2048, подпись - SHA256withRSA
+    static final String KEY_ALGORITHM = "RSA";
+
+    private static final long MIN_REVALIDATE_NANOS = 1_000_000_000L;
+
+    private final HedgedSender sender;
+    private final URI uri;
+    private final Duration timeout;
+    private final long maxAgeNanos;
+
+    final LongAdder fetches = new LongAdder();
+    final LongAdder notModified = new LongAdder();
+
+    private volatile Entry entry;
+
+    PublicKeyCache(HedgedSender sender, URI uri, Duration timeout, Duration maxAge) {
+        this.sender = sender;
+        this.uri = uri;
+        this.timeout = timeout;
+        this.maxAgeNanos = maxAge.toNanos();
+    }
+
+    /**
+     * Текущий ключ; запрос к сервису только при первом вызове и после истечения maxAge
+     */
+    Entry get() {
+        Entry current = entry;
+        if (current != null && System.nanoTime() - current.checkedAt < maxAgeNanos) {
+            return current;
+        }
+        return revalidate(current, 0);
+    }
+
+    /**
+     * Перепроверяет ключ после отрицательной проверки подписи; возвращает тот же объект, если ключ не сменился
+     */
+    Entry revalidateAfterMismatch(Entry seen) {
+        return revalidate(seen, MIN_REVALIDATE_NANOS);
+    }
+
+    /**
+     * Ключ из ответа /sign отличается от кэша - ключ сменился, кэш больше не годится
+     */
+    void observe(String publicKeyBase64) {
+        Entry current = entry;
+        if (current != null && publicKeyBase64 != null && !current.base64.equals(publicKeyBase64)) {
+            synchronized (this) {
+                if (entry == current) {
+                    entry = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Один запрос на все потоки: пока первый поток ждет ответ, остальные ждут на мониторе и берут его результат
+     */
+    private synchronized Entry revalidate(Entry seen, long minAgeNanos) {
+        Entry current = entry;
+        if (current != seen) {
+            // Другой поток уже обновил ключ
+            return current != null ? current : fetch(null);
+        }
+        if (current != null && System.nanoTime() - current.checkedAt < minAgeNanos) {
+            return current;
+        }
+        return fetch(current);
+    }
+
+    private Entry fetch(Entry current) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri).timeout(timeout).GET();
+        if (current != null && current.eTag != null) {
+            request.header("If-None-Match", current.eTag);
+        }
+        HttpResponse<byte[]> response = sender.send(request.build(), true);
+        long now = System.nanoTime();
+        if (response.statusCode() == 304 && current != null) {
+            notModified.increment();
+            entry = new Entry(current.key, current.base64, current.eTag, now);
+            return entry;
+        }
+        if (response.statusCode() != 200) {
+            throw new CryptoClientException(response.statusCode(), null, "Public key request failed");
+        }
+        String base64 = new String(response.body(), StandardCharsets.US_ASCII).trim();
+        try {
+            PublicKey key = KeyFactory.getInstance(KEY_ALGORITHM)
+                    .generatePublic(new X509EncodedKeySpec(Base64.getDecoder().decode(base64)));
+            fetches.increment();
+            entry = new Entry(key, base64, response.headers().firstValue("ETag").orElse(null), now);
+            return entry;
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            throw new CryptoClientException("Public key response is not an X.509 RSA key", e);
+        }
+    }
+
+    /**
+     * Ключ, его Base64 для сравнения с ответами /sign, ETag и момент последней проверки
+     */
+    record Entry(PublicKey key, String base64, String eTag, long checkedAt) {
+    }
+}
@@ -0,0 +1,236 @@
+package ru.tkonf.sign.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Сборка одновременных вызовов sign в пакеты {@code /sign/batch}.
+ * <p>
+ * Пакеты собираются без таймера ожидания: поток отправки берет первое сообщение из очереди, ждет
+ * свободный слот из {@code maxInFlight} и забирает все, что накопилось к этому моменту, но не больше
+ * {@code maxBatch}. При малой нагрузке слот свободен, и одиночный вызов сразу уходит обычным {@code /sign}
+ * без добавленной задержки; под нагрузкой сообщения копятся, пока слоты заняты, и пакеты растут сами.
+ * Сообщения разных ключей в один пакет не попадают: пакет подписывается одним ключом.
+ */
+final class SignBatcher {
+    // Ошибки отдельных сообщений: по ответу на пакет не понять, какое из них виновато
+    private static final Set<String> MESSAGE_ERRORS = Set.of("MESSAGE_REQUIRED", "MESSAGE_TOO_LARGE");
+
+    private final HedgedSender sender;
+    private final ObjectMapper json;
+    private final PublicKeyCache publicKeys;
+    private final URI signUri;
+    private final URI batchUri;
+    private final Duration timeout;
+    private final boolean hedgeSigning;
+    private final int maxBatch;
+    private final Semaphore inFlight;
+    private final LinkedBlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+
+    final LongAdder calls = new LongAdder();
+    final LongAdder requests = new LongAdder();
+    final LongAdder batches = new LongAdder();
+
+    private volatile boolean running = true;
+    private final Thread flushThread;
+
+    SignBatcher(HedgedSender sender, ObjectMapper json, PublicKeyCache publicKeys, URI signUri, URI batchUri,
+                Duration timeout, boolean hedgeSigning, int maxBatch, int maxInFlight) {
+        this.sender = sender;
+        this.json = json;
+        this.publicKeys = publicKeys;
+        this.signUri = signUri;
+        this.batchUri = batchUri;
+        this.timeout = timeout;
+        this.hedgeSigning = hedgeSigning;
+        this.maxBatch = maxBatch;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.flushThread = new Thread(this::flushLoop, "tkonf-sign-batcher");
+        this.flushThread.setDaemon(true);
+        this.flushThread.start();
+    }
+
+    CompletableFuture<SignedMessage> submit(String keyId, String message) {
+        Pending pending = new Pending(keyId, message, new CompletableFuture<>());
+        calls.increment();
+        queue.add(pending);
+        // close() мог уже выбрать очередь: такое сообщение не будет отправлено
+        if (!running && queue.remove(pending)) {
+            pending.result.completeExceptionally(closed());
+        }
+        return pending.result;
+    }
+
+    /**
+     * Останавливает поток отправки; сообщения в очереди завершаются ошибкой, отправленные дожидаются ответа
+     */
+    void close() {
+        running = false;
+        flushThread.interrupt();
+        failQueued();
+    }
+
+    private void flushLoop() {
+        List<Pending> drained = new ArrayList<>(maxBatch);
+        List<List<Pending>> groups = new ArrayList<>();
+        int dispatched = 0;
+        try {
+            while (running) {
+                drained.add(queue.take());
+                inFlight.acquire();
+                queue.drainTo(drained, maxBatch - 1);
+                groups.addAll(groupByKey(drained));
+                drained.clear();
+                for (dispatched = 0; dispatched < groups.size(); dispatched++) {
+                    // Слот первой группы уже занят выше
+                    if (dispatched > 0) {
+                        inFlight.acquire();
+                    }
+                    List<Pending> group = groups.get(dispatched);
+                    try {
+                        dispatch(group).whenComplete((ignored, error) -> inFlight.release());
+                    } catch (RuntimeException e) {
+                        group.forEach(pending -> pending.result.completeExceptionally(e));
+                        inFlight.release();
+                    }
+                }
+                groups.clear();
+            }
+        } catch (InterruptedException e) {
+            drained.forEach(pending -> pending.result.completeExceptionally(closed()));
+            for (int i = dispatched; i < groups.size(); i++) {
+                groups.get(i).forEach(pending -> pending.result.completeExceptionally(closed()));
+            }
+        }
+        failQueued();
+    }
+
+    private static Collection<List<Pending>> groupByKey(List<Pending> drained) {
+        Map<String, List<Pending>> groups = new LinkedHashMap<>();
+        for (Pending pending : drained) {
+            groups.computeIfAbsent(pending.keyId, keyId -> new ArrayList<>()).add(pending);
+        }
+        return groups.values();
+    }
+
+    private CompletableFuture<Void> dispatch(List<Pending> group) {
+        if (group.size() == 1) {
+            return signOne(group.get(0));
+        }
+        ObjectNode body = json.createObjectNode();
+        body.put("keyId", group.get(0).keyId);
+        ArrayNode messages = body.putArray("batch");
+        group.forEach(pending -> messages.add(pending.message));
+        requests.increment();
+        batches.increment();
+        return sender.sendAsync(TkonfCryptoClient.post(json, batchUri, timeout, body), hedgeSigning)
+                .<CompletableFuture<Void>>handle((response, error) -> {
+                    if (error == null && response.statusCode() == 400
+                            && MESSAGE_ERRORS.contains(errorCode(response))) {
+                        // Каждое сообщение подписывается отдельно и получает свою ошибку, остальные - подпись
+                        return CompletableFuture.allOf(group.stream().map(this::signOne)
+                                .toArray(CompletableFuture[]::new));
+                    }
+                    completeBatch(group, response, error);
+                    return CompletableFuture.<Void>completedFuture(null);
+                })
+                .thenCompose(Function.identity());
+    }
+
+    private CompletableFuture<Void> signOne(Pending pending) {
+        ObjectNode body = json.createObjectNode();
+        body.put("message", pending.message);
+        body.put("keyId", pending.keyId);
+        requests.increment();
+        HttpRequest request = TkonfCryptoClient.post(json, signUri, timeout, body);
+        return sender.sendAsync(request, hedgeSigning).<Void>handle((response, error) -> {
+            try {
+                if (error != null) {
+                    throw HedgedSender.transportFailure(error);
+                }
+                JsonNode signed = TkonfCryptoClient.readOk(json, response);
+                SignedMessage message = new SignedMessage(pending.message, signed.path("signature").asText(null),
+                        signed.path("algorithm").asText(null), signed.path("publicKey").asText(null));
+                observeKey(pending, message.publicKey());
+                pending.result.complete(message);
+            } catch (RuntimeException e) {
+                pending.result.completeExceptionally(e);
+            }
+            return null;
+        });
+    }
+
+    private void completeBatch(List<Pending> group, HttpResponse<byte[]> response, Throwable error) {
+        try {
+            if (error != null) {
+                throw HedgedSender.transportFailure(error);
+            }
+            JsonNode batch = TkonfCryptoClient.readOk(json, response);
+            JsonNode signatures = batch.path("signatures");
+            if (signatures.size() != group.size()) {
+                throw new CryptoClientException(response.statusCode(), null,
+                        "Batch response has " + signatures.size() + " signatures for " + group.size() + " messages");
+            }
+            String algorithm = batch.path("algorithm").asText(null);
+            String publicKey = batch.path("publicKey").asText(null);
+            observeKey(group.get(0), publicKey);
+            for (int i = 0; i < group.size(); i++) {
+                Pending pending = group.get(i);
+                pending.result.complete(new SignedMessage(pending.message, signatures.get(i).asText(), algorithm,
+                        publicKey));
+            }
+        } catch (RuntimeException e) {
+            group.forEach(pending -> pending.result.completeExceptionally(e));
+        }
+    }
+
+    /**
+     * Подпись ключом сервиса несет его текущий публичный ключ: смена ключа видна без запроса /public-key
+     */
+    private void observeKey(Pending pending, String publicKey) {
+        if (pending.keyId == null) {
+            publicKeys.observe(publicKey);
+        }
+    }
+
+    private String errorCode(HttpResponse<byte[]> response) {
+        try {
+            return json.readTree(response.body()).path("code").asText(null);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void failQueued() {
+        Pending pending;
+        while ((pending = queue.poll()) != null) {
+            pending.result.completeExceptionally(closed());
+        }
+    }
+
+    private static CryptoClientException closed() {
+        return new CryptoClientException(0, null, "Client is closed");
+    }
+
+    private record Pending(String keyId, String message, CompletableFuture<SignedMessage> result) {
+    }
+}
@@ -0,0 +1,7 @@
+package ru.tkonf.sign.client;
+
+/**
+ * Подписанное сообщение; поля повторяют ответ {@code /api/crypto/sign}
+ */
+public record SignedMessage(String originalMessage, String signature, String algorithm, String publicKey) {
+}
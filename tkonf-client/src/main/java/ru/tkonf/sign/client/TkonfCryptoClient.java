@@ -0,0 +1,304 @@
+package ru.tkonf.sign.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.Signature;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Клиент сервиса подписи {@code /api/crypto}.
+ * <p>
+ * Один экземпляр на приложение: все вызовы идут через общий {@link HttpClient} с его пулом keep-alive
+ * соединений и общий {@link ObjectMapper}.
+ * <ul>
+ *     <li>Одновременные {@link #sign}/{@link #signAsync} собираются в пакеты {@code /sign/batch}
+ *     (см. {@link SignBatcher}): под нагрузкой запросов и TLS/HTTP накладных расходов в разы меньше.</li>
+ *     <li>Идемпотентные запросы - проверка подписи и публичный ключ - хеджируются после
+ *     {@link Builder#hedgeAfter}, если оно задано (см. {@link HedgedSender}). Подпись по умолчанию не
+ *     хеджируется: каждый вызов /sign пишет запись в журнал аудита сервиса.</li>
+ *     <li>{@link #verifyLocally} проверяет подписи ключа сервиса без запроса: ключ кэшируется по ETag
+ *     и перепроверяется условным GET (см. {@link PublicKeyCache}).</li>
+ * </ul>
+ * <pre>{@code
+ * try (TkonfCryptoClient client = TkonfCryptoClient.builder("http://localhost:8080").build()) {
+ *     SignedMessage signed = client.sign("hello");
+ *     boolean valid = client.verifyLocally("hello", signed.signature());
+ * }
+ * }</pre>
+ */
+public final class TkonfCryptoClient implements AutoCloseable {
+    // Лимит сервиса на размер /sign/batch
+    public static final int MAX_BATCH_MESSAGES = 256;
+
+    private static final String SIGNATURE_ALGORITHM = "SHA256withRSA";
+
+    private final HttpClient http;
+    private final boolean ownsHttpClient;
+    private final ObjectMapper json;
+    private final ScheduledExecutorService timer;
+    private final HedgedSender sender;
+    private final PublicKeyCache publicKeys;
+    private final SignBatcher batcher;
+    private final URI verifyUri;
+    private final Duration timeout;
+
+    private final LongAdder localVerifications = new LongAdder();
+
+    private TkonfCryptoClient(Builder builder) {
+        URI api = URI.create(builder.baseUrl.replaceAll("/+$", "") + "/api/crypto/");
+        this.ownsHttpClient = builder.httpClient == null;
+        this.http = ownsHttpClient
+                ? HttpClient.newBuilder().connectTimeout(builder.connectTimeout).build()
+                : builder.httpClient;
+        this.json = new ObjectMapper();
+        this.timeout = builder.requestTimeout;
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "tkonf-client-hedge");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.sender = new HedgedSender(http, timer, builder.hedgeAfter, builder.maxAttempts);
+        this.publicKeys = new PublicKeyCache(sender, api.resolve("public-key"), timeout, builder.publicKeyMaxAge);
+        this.batcher = new SignBatcher(sender, json, publicKeys, api.resolve("sign"), api.resolve("sign/batch"),
+                timeout, builder.hedgeSigning, builder.maxBatch, builder.maxInFlight);
+        this.verifyUri = api.resolve("verify");
+    }
+
+    public static Builder builder(String baseUrl) {
+        return new Builder(baseUrl);
+    }
+
+    /**
+     * Подпись ключом сервиса
+     */
+    public SignedMessage sign(String message) {
+        return sign(null, message);
+    }
+
+    /**
+     * Подпись ключом арендатора; keyId null - ключом сервиса
+     */
+    public SignedMessage sign(String keyId, String message) {
+        return join(signAsync(keyId, message));
+    }
+
+    public CompletableFuture<SignedMessage> signAsync(String keyId, String message) {
+        return batcher.submit(keyId, Objects.requireNonNull(message, "message"));
+    }
+
+    /**
+     * Проверка на сервисе; нужна для ключей арендаторов, подписи ключом сервиса дешевле проверять локально
+     */
+    public boolean verify(String keyId, String message, String signature) {
+        return join(verifyAsync(keyId, message, signature));
+    }
+
+    public CompletableFuture<Boolean> verifyAsync(String keyId, String message, String signature) {
+        ObjectNode body = json.createObjectNode();
+        body.put("message", message);
+        body.put("signature", signature);
+        body.put("keyId", keyId);
+        return sender.sendAsync(post(json, verifyUri, timeout, body), true)
+                .thenApply(response -> readOk(json, response).path("valid").asBoolean());
+    }
+
+    /**
+     * Проверка подписи ключа сервиса без запроса к нему.
+     * <p>
+     * Отрицательный результат перепроверяет ключ: если сервис сменил ключ, подпись проверяется еще раз новым
+     */
+    public boolean verifyLocally(String message, String signature) {
+        byte[] data = message.getBytes(StandardCharsets.UTF_8);
+        byte[] signatureBytes;
+        try {
+            signatureBytes = Base64.getDecoder().decode(signature);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        localVerifications.increment();
+        PublicKeyCache.Entry key = publicKeys.get();
+        if (verify(key, data, signatureBytes)) {
+            return true;
+        }
+        PublicKeyCache.Entry fresh = publicKeys.revalidateAfterMismatch(key);
+        return !fresh.base64().equals(key.base64()) && verify(fresh, data, signatureBytes);
+    }
+
+    public ClientStats getStats() {
+        return new ClientStats(batcher.calls.sum(), batcher.requests.sum(), batcher.batches.sum(),
+                sender.hedges.sum(), publicKeys.fetches.sum(), publicKeys.notModified.sum(), localVerifications.sum());
+    }
+
+    /**
+     * Неотправленные подписи завершаются ошибкой; собственный HttpClient закрывается после текущих запросов
+     */
+    @Override
+    public void close() {
+        batcher.close();
+        timer.shutdownNow();
+        if (ownsHttpClient) {
+            http.shutdown();
+        }
+    }
+
+    private static boolean verify(PublicKeyCache.Entry key, byte[] data, byte[] signature) {
+        try {
+            Signature verifier = Signature.getInstance(SIGNATURE_ALGORITHM);
+            verifier.initVerify(key.key());
+            verifier.update(data);
+            return verifier.verify(signature);
+        } catch (GeneralSecurityException e) {
+            // Подпись не той длины или не того формата
+            return false;
+        }
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw HedgedSender.transportFailure(e.getCause());
+        }
+    }
+
+    static HttpRequest post(ObjectMapper json, URI uri, Duration timeout, ObjectNode body) {
+        try {
+            return HttpRequest.newBuilder(uri)
+                    .timeout(timeout)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(json.writeValueAsBytes(body)))
+                    .build();
+        } catch (IOException e) {
+            throw new CryptoClientException("Request cannot be serialized", e);
+        }
+    }
+
+    /**
+     * Тело успешного ответа; ответ с ошибкой превращается в исключение с кодом из ErrorResponse
+     */
+    static JsonNode readOk(ObjectMapper json, HttpResponse<byte[]> response) {
+        JsonNode body;
+        try {
+            body = json.readTree(response.body());
+        } catch (IOException e) {
+            throw new CryptoClientException(response.statusCode(), null, "HTTP " + response.statusCode());
+        }
+        if (response.statusCode() != 200) {
+            throw new CryptoClientException(response.statusCode(), body.path("code").asText(null),
+                    body.path("error").asText("HTTP " + response.statusCode()));
+        }
+        return body;
+    }
+
+    public static final class Builder {
+        private final String baseUrl;
+        private HttpClient httpClient;
+        private Duration connectTimeout = Duration.ofSeconds(5);
+        private Duration requestTimeout = Duration.ofSeconds(10);
+        private int maxBatch = 64;
+        private int maxInFlight = 8;
+        private Duration hedgeAfter;
+        private boolean hedgeSigning;
+        private int maxAttempts = 2;
+        private Duration publicKeyMaxAge = Duration.ofMinutes(5);
+
+        private Builder(String baseUrl) {
+            this.baseUrl = Objects.requireNonNull(baseUrl, "baseUrl");
+        }
+
+        /**
+         * Готовый HttpClient приложения (прокси, TLS, executor); клиент его не закрывает
+         */
+        public Builder httpClient(HttpClient httpClient) {
+            this.httpClient = httpClient;
+            return this;
+        }
+
+        public Builder connectTimeout(Duration connectTimeout) {
+            this.connectTimeout = connectTimeout;
+            return this;
+        }
+
+        public Builder requestTimeout(Duration requestTimeout) {
+            this.requestTimeout = requestTimeout;
+            return this;
+        }
+
+        /**
+         * Наибольший пакет /sign/batch; 1 - без пакетов
+         */
+        public Builder maxBatch(int maxBatch) {
+            if (maxBatch < 1 || maxBatch > MAX_BATCH_MESSAGES) {
+                throw new IllegalArgumentException("maxBatch must be 1.." + MAX_BATCH_MESSAGES);
+            }
+            this.maxBatch = maxBatch;
+            return this;
+        }
+
+        /**
+         * Одновременных запросов подписи; пока все заняты, новые вызовы копятся в следующий пакет
+         */
+        public Builder maxInFlight(int maxInFlight) {
+            if (maxInFlight < 1) {
+                throw new IllegalArgumentException("maxInFlight must be positive");
+            }
+            this.maxInFlight = maxInFlight;
+            return this;
+        }
+
+        /**
+         * Задержка второй попытки; разумное значение - p95 задержки сервиса. null - без хеджирования
+         */
+        public Builder hedgeAfter(Duration hedgeAfter) {
+            this.hedgeAfter = hedgeAfter;
+            return this;
+        }
+
+        /**
+         * Хеджировать и подпись: быстрее хвост, но повтор дает вторую запись аудита и вторую подпись
+         */
+        public Builder hedgeSigning(boolean hedgeSigning) {
+            this.hedgeSigning = hedgeSigning;
+            return this;
+        }
+
+        /**
+         * Попыток на идемпотентный запрос, включая хеджированные и повторы после ошибки транспорта
+         */
+        public Builder maxAttempts(int maxAttempts) {
+            if (maxAttempts < 1) {
+                throw new IllegalArgumentException("maxAttempts must be positive");
+            }
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        /**
+         * Сколько кэшированный публичный ключ используется без перепроверки
+         */
+        public Builder publicKeyMaxAge(Duration publicKeyMaxAge) {
+            this.publicKeyMaxAge = publicKeyMaxAge;
+            return this;
+        }
+
+        public TkonfCryptoClient build() {
+            return new TkonfCryptoClient(this);
+        }
+    }
+}
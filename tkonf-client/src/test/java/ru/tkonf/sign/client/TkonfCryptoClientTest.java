@@ -0,0 +1,273 @@
+package ru.tkonf.sign.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.security.Signature;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Клиент против заглушки сервиса на com.sun.net.httpserver: те же пути, коды ошибок и ETag, что у приложений
+ */
+class TkonfCryptoClientTest {
+    private StubService service;
+
+    @BeforeEach
+    void startService() throws Exception {
+        service = new StubService();
+    }
+
+    @AfterEach
+    void stopService() {
+        service.stop();
+    }
+
+    @Test
+    @DisplayName("Одновременные подписи собираются в пакеты и проверяются локально")
+    void concurrentSignsAreBatched() {
+        service.signDelayMillis = 20;
+        try (TkonfCryptoClient client = TkonfCryptoClient.builder(service.url()).maxInFlight(1).build()) {
+            List<CompletableFuture<SignedMessage>> futures = IntStream.range(0, 100)
+                    .mapToObj(i -> client.signAsync(null, "message-" + i))
+                    .toList();
+            for (int i = 0; i < futures.size(); i++) {
+                SignedMessage signed = futures.get(i).join();
+                assertEquals("message-" + i, signed.originalMessage());
+                assertEquals("SHA256withRSA", signed.algorithm());
+                assertTrue(client.verifyLocally(signed.originalMessage(), signed.signature()));
+            }
+            ClientStats stats = client.getStats();
+            assertEquals(100, stats.signCalls());
+            assertTrue(stats.batchRequests() > 0);
+            assertTrue(stats.signRequests() < 100);
+            assertEquals(1, stats.publicKeyFetches());
+            assertEquals(100, stats.localVerifications());
+        }
+    }
+
+    @Test
+    @DisplayName("Ошибка одного сообщения пакета достается только ему")
+    void batchFallsBackToSingleSigns() {
+        service.signDelayMillis = 20;
+        try (TkonfCryptoClient client = TkonfCryptoClient.builder(service.url()).maxInFlight(1).build()) {
+            List<CompletableFuture<SignedMessage>> futures = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                futures.add(client.signAsync(null, i == 10 ? "x".repeat(StubService.MAX_MESSAGE_CHARS + 1) : "m" + i));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                if (i == 10) {
+                    CompletionException e = assertThrows(CompletionException.class, futures.get(i)::join);
+                    CryptoClientException cause = assertInstanceOf(CryptoClientException.class, e.getCause());
+                    assertEquals(400, cause.getStatus());
+                    assertEquals("MESSAGE_TOO_LARGE", cause.getCode());
+                } else {
+                    assertEquals("m" + i, futures.get(i).join().originalMessage());
+                }
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Публичный ключ перепроверяется по ETag и обновляется после смены ключа")
+    void publicKeyIsRevalidated() throws Exception {
+        try (TkonfCryptoClient client = TkonfCryptoClient.builder(service.url())
+                .publicKeyMaxAge(Duration.ZERO)
+                .build()) {
+            SignedMessage signed = client.sign("hello");
+            assertTrue(client.verifyLocally("hello", signed.signature()));
+            assertTrue(client.verifyLocally("hello", signed.signature()));
+            assertEquals(1, client.getStats().publicKeyFetches());
+            assertEquals(1, client.getStats().publicKeyNotModified());
+
+            // Сервис сменил ключ, например после восстановления из чекпоинта
+            service.rotateKey();
+            assertTrue(client.verifyLocally("rotated", service.sign("rotated")));
+            assertFalse(client.verifyLocally("hello", signed.signature()));
+            assertEquals(2, client.getStats().publicKeyFetches());
+        }
+    }
+
+    @Test
+    @DisplayName("Зависший запрос проверки перекрывается хеджированным")
+    void slowVerifyIsHedged() throws Exception {
+        String signature = service.sign("hedged");
+        service.stallNextVerify.set(true);
+        try (TkonfCryptoClient client = TkonfCryptoClient.builder(service.url())
+                .hedgeAfter(Duration.ofMillis(50))
+                .build()) {
+            long start = System.nanoTime();
+            assertTrue(client.verify(null, "hedged", signature));
+            assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(StubService.STALL) < 0);
+            assertEquals(1, client.getStats().hedgedRequests());
+        }
+    }
+
+    @Test
+    @DisplayName("Ошибка сервиса приходит с кодом ErrorResponse")
+    void serviceErrorCarriesCode() {
+        try (TkonfCryptoClient client = TkonfCryptoClient.builder(service.url()).build()) {
+            CryptoClientException e = assertThrows(CryptoClientException.class,
+                    () -> client.sign("x".repeat(StubService.MAX_MESSAGE_CHARS + 1)));
+            assertEquals("MESSAGE_TOO_LARGE", e.getCode());
+        }
+    }
+
+    /**
+     * Минимальный сервис: /sign, /sign/batch, /verify и /public-key с ETag, ключ RSA 2048
+     */
+    private static final class StubService {
+        static final int MAX_MESSAGE_CHARS = 1024;
+        static final Duration STALL = Duration.ofSeconds(5);
+
+        private final ObjectMapper json = new ObjectMapper();
+        private final HttpServer server;
+        private final ExecutorService executor = Executors.newCachedThreadPool();
+        private final AtomicBoolean stallNextVerify = new AtomicBoolean();
+        private volatile KeyPair keyPair;
+        private volatile long signDelayMillis;
+
+        StubService() throws Exception {
+            rotateKey();
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.setExecutor(executor);
+            server.createContext("/api/crypto/sign", this::sign);
+            server.createContext("/api/crypto/verify", this::verify);
+            server.createContext("/api/crypto/public-key", this::publicKey);
+            server.start();
+        }
+
+        String url() {
+            return "http://127.0.0.1:" + server.getAddress().getPort();
+        }
+
+        void stop() {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+
+        void rotateKey() throws GeneralSecurityException {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+            generator.initialize(2048);
+            keyPair = generator.generateKeyPair();
+        }
+
+        String sign(String message) throws GeneralSecurityException {
+            Signature signer = Signature.getInstance("SHA256withRSA");
+            signer.initSign(keyPair.getPrivate());
+            signer.update(message.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(signer.sign());
+        }
+
+        private String publicKeyBase64() {
+            return Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded());
+        }
+
+        private String eTag() throws GeneralSecurityException {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(keyPair.getPublic().getEncoded());
+            return '"' + HexFormat.of().formatHex(hash, 0, 16) + '"';
+        }
+
+        private void sign(HttpExchange exchange) throws IOException {
+            try (exchange) {
+                Thread.sleep(signDelayMillis);
+                JsonNode request = json.readTree(exchange.getRequestBody());
+                List<String> messages = new ArrayList<>();
+                boolean batch = exchange.getRequestURI().getPath().endsWith("/batch");
+                if (batch) {
+                    request.path("batch").forEach(message -> messages.add(message.asText()));
+                } else {
+                    messages.add(request.path("message").asText());
+                }
+                List<String> signatures = new ArrayList<>();
+                for (String message : messages) {
+                    if (message.length() > MAX_MESSAGE_CHARS) {
+                        error(exchange, "MESSAGE_TOO_LARGE");
+                        return;
+                    }
+                    signatures.add(sign(message));
+                }
+                ObjectNode response = json.createObjectNode()
+                        .put("algorithm", "SHA256withRSA")
+                        .put("publicKey", publicKeyBase64());
+                if (batch) {
+                    signatures.forEach(response.putArray("signatures")::add);
+                } else {
+                    response.put("originalMessage", messages.get(0)).put("signature", signatures.get(0));
+                }
+                send(exchange, 200, json.writeValueAsBytes(response));
+            } catch (InterruptedException | GeneralSecurityException e) {
+                exchange.sendResponseHeaders(500, -1);
+            }
+        }
+
+        private void verify(HttpExchange exchange) throws IOException {
+            try (exchange) {
+                if (stallNextVerify.getAndSet(false)) {
+                    Thread.sleep(STALL.toMillis());
+                }
+                JsonNode request = json.readTree(exchange.getRequestBody());
+                Signature verifier = Signature.getInstance("SHA256withRSA");
+                verifier.initVerify(keyPair.getPublic());
+                verifier.update(request.path("message").asText().getBytes(StandardCharsets.UTF_8));
+                boolean valid = verifier.verify(Base64.getDecoder().decode(request.path("signature").asText()));
+                send(exchange, 200, json.writeValueAsBytes(json.createObjectNode().put("valid", valid)));
+            } catch (InterruptedException | GeneralSecurityException e) {
+                exchange.sendResponseHeaders(500, -1);
+            }
+        }
+
+        private void publicKey(HttpExchange exchange) throws IOException {
+            try (exchange) {
+                String eTag = eTag();
+                exchange.getResponseHeaders().set("ETag", eTag);
+                if (eTag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                    exchange.sendResponseHeaders(304, -1);
+                    return;
+                }
+                send(exchange, 200, publicKeyBase64().getBytes(StandardCharsets.US_ASCII));
+            } catch (GeneralSecurityException e) {
+                exchange.sendResponseHeaders(500, -1);
+            }
+        }
+
+        private void error(HttpExchange exchange, String code) throws IOException {
+            send(exchange, 400, json.writeValueAsBytes(json.createObjectNode()
+                    .put("code", code).put("error", code.toLowerCase())));
+        }
+
+        private void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+            exchange.sendResponseHeaders(status, body.length);
+            exchange.getResponseBody().write(body);
+        }
+    }
+}